@@ -6,6 +6,7 @@ import de.fraunhofer.aisec.analysis.structures.AnalysisContext;
 import de.fraunhofer.aisec.analysis.structures.Finding;
 import de.fraunhofer.aisec.analysis.structures.ServerConfiguration;
 import de.fraunhofer.aisec.analysis.structures.TypestateMode;
+import de.fraunhofer.aisec.crymlin.DfgSlicer;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -75,9 +76,21 @@ public class Main implements Callable<Integer> {
 						.launchLsp(executionMode.lsp)
 						.launchConsole(executionMode.tui)
 						.typestateAnalysis(analysisMode.tsMode)
+						.matrixTypestateWeights(analysisMode.matrixWeights)
+						.ruleParallelism(analysisMode.ruleParallelism)
+						.dfgSliceBudget(analysisMode.dfgSliceBudget)
 						.disableGoodFindings(disableGoodFindings)
 						.analyzeIncludes(translationSettings.analyzeIncludes)
 						.includePath(translationSettings.includesPath)
+						.persistParallelism(translationSettings.persistParallelism)
+						.inMemoryCpg(translationSettings.inMemoryCpg)
+						.nodeMaterializationDepth(translationSettings.nodeMaterializationDepth)
+						.nodeCacheSize(translationSettings.nodeCacheSize)
+						.lazyCode(translationSettings.lazyCode)
+						.snapshotDirectory(translationSettings.snapshotDirectory)
+						.overflowDirectory(translationSettings.overflowDirectory)
+						.overflowHeapThreshold(translationSettings.overflowHeapThreshold)
+						.overflowSerializationStats(translationSettings.overflowSerializationStats)
 						.markFiles(markFolderName.getAbsolutePath())
 						.build())
 				.build();
@@ -149,6 +162,15 @@ class AnalysisMode {
 	@Option(names = "--typestate", paramLabel = "<NFA|WPDS>", defaultValue = "NFA", type = TypestateMode.class, description = "Typestate analysis mode\nNFA:  Non-deterministic finite automaton (faster, intraprocedural)\nWPDS: Weighted pushdown system (slower, interprocedural)")
 	//@CommandLine.ArgGroup(exclusive = true, multiplicity = "1", heading = "Typestate Analysis\n")
 	protected TypestateMode tsMode = TypestateMode.NFA;
+
+	@Option(names = "--matrix-weights", description = "Represent WPDS typestate weights as bit matrices instead of sets of NFA transitions")
+	protected boolean matrixWeights;
+
+	@Option(names = "--rule-parallelism", paramLabel = "<threads>", defaultValue = "1", description = "Number of MARK rules to evaluate in parallel", showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	protected int ruleParallelism = 1;
+
+	@Option(names = "--dfg-slice-budget", paramLabel = "<vertices>", defaultValue = "10000", description = "Maximum number of vertices visited when following data flows backwards", showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	protected int dfgSliceBudget = DfgSlicer.DEFAULT_BUDGET;
 }
 
 class TranslationSettings {
@@ -158,4 +180,31 @@ class TranslationSettings {
 
 	@Option(names = { "--includes" }, description = "Path(s) containing include files. Path must be separated by : (Mac/Linux) or ; (Windows)", split = ":|;")
 	protected File[] includesPath;
+
+	@Option(names = "--persist-parallelism", paramLabel = "<threads>", defaultValue = "1", description = "Number of threads preparing translation units for the graph database", showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	protected int persistParallelism = 1;
+
+	@Option(names = "--in-memory-cpg", description = "Query the CPG in memory instead of persisting it into the graph database")
+	protected boolean inMemoryCpg = false;
+
+	@Option(names = "--node-materialization-depth", paramLabel = "<edges>", defaultValue = "-1", description = "Number of relationships followed when converting graph vertices into nodes, -1 for all", showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	protected int nodeMaterializationDepth = -1;
+
+	@Option(names = "--node-cache-size", paramLabel = "<nodes>", defaultValue = "0", description = "Maximum number of converted nodes kept in memory, 0 for unlimited", showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	protected int nodeCacheSize = 0;
+
+	@Option(names = "--lazy-code", description = "Read the code of vertices from the source files on demand instead of keeping it in memory")
+	protected boolean lazyCode = false;
+
+	@Option(names = "--snapshot-dir", paramLabel = "<dir>", description = "Reuse graph snapshots of unchanged sources from this directory and store new ones in it")
+	protected File snapshotDirectory = null;
+
+	@Option(names = "--overflow-dir", paramLabel = "<dir>", description = "Directory for the temporary files of nodes overflowed from the heap, default is the system's temporary directory")
+	protected File overflowDirectory = null;
+
+	@Option(names = "--overflow-heap-threshold", paramLabel = "<percent>", defaultValue = "5", description = "Heap usage in percent above which nodes are overflowed to disk", showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	protected int overflowHeapThreshold = 5;
+
+	@Option(names = "--overflow-serialization-stats", description = "Collect statistics on the serialization of overflowed nodes")
+	protected boolean overflowSerializationStats = false;
 }
@@ -0,0 +1,393 @@
+
+package de.fraunhofer.aisec.analysis.markevaluation;
+
+import de.fraunhofer.aisec.analysis.structures.ConstantValue;
+import de.fraunhofer.aisec.analysis.structures.ErrorValue;
+import de.fraunhofer.aisec.analysis.utils.Utils;
+import de.fraunhofer.aisec.analysis.wpds.NFA;
+import de.fraunhofer.aisec.crymlin.builtin.Builtin;
+import de.fraunhofer.aisec.crymlin.builtin.BuiltinRegistry;
+import de.fraunhofer.aisec.mark.markDsl.Argument;
+import de.fraunhofer.aisec.mark.markDsl.BooleanLiteral;
+import de.fraunhofer.aisec.mark.markDsl.ComparisonExpression;
+import de.fraunhofer.aisec.mark.markDsl.Expression;
+import de.fraunhofer.aisec.mark.markDsl.FunctionCallExpression;
+import de.fraunhofer.aisec.mark.markDsl.IntegerLiteral;
+import de.fraunhofer.aisec.mark.markDsl.Literal;
+import de.fraunhofer.aisec.mark.markDsl.LiteralListExpression;
+import de.fraunhofer.aisec.mark.markDsl.LogicalAndExpression;
+import de.fraunhofer.aisec.mark.markDsl.LogicalOrExpression;
+import de.fraunhofer.aisec.mark.markDsl.MultiplicationExpression;
+import de.fraunhofer.aisec.mark.markDsl.Operand;
+import de.fraunhofer.aisec.mark.markDsl.OrderExpression;
+import de.fraunhofer.aisec.mark.markDsl.RuleStatement;
+import de.fraunhofer.aisec.mark.markDsl.StringLiteral;
+import de.fraunhofer.aisec.mark.markDsl.UnaryExpression;
+import de.fraunhofer.aisec.markmodel.fsm.DFA;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Pre-compiled form of the "when" and "ensure" expressions of a MARK rule.
+ * <p>
+ * The plan is created once by the {@code MarkModelLoader} and then used by every evaluation of the rule. For each node of the expression tree, it stores the kind
+ * of the node, the parsed value of literals, the builtin called by function call expressions and the compiled pattern of "like" comparisons against a string
+ * literal and the automata of "order" expressions. Logical, comparison, multiplication and unary expressions whose operands are all constant (e.g.
+ * {@code 0x2 * 0x3 == 0x6}) are folded into their value, unless their evaluation results in an error, which is left to be reported by the evaluation. Expressions
+ * which are not part of the plan are compiled on the fly, so evaluation results do not depend on whether a plan exists.
+ */
+public class EvaluationPlan {
+
+	private static final Logger log = LoggerFactory.getLogger(EvaluationPlan.class);
+
+	/**
+	 * Kinds of expression nodes the {@code ExpressionEvaluator} dispatches on.
+	 */
+	public enum Kind {
+		ORDER, LOGICAL, COMPARISON, MULTIPLICATION, UNARY, LITERAL, OPERAND, BUILTIN, LITERAL_LIST, UNKNOWN
+	}
+
+	/**
+	 * A compiled expression node.
+	 */
+	static class CompiledExpression {
+		@NonNull
+		final Kind kind;
+
+		/**
+		 * For literals: the parsed value or null, if the literal could not be parsed.
+		 */
+		@Nullable
+		Object literalValue;
+
+		/**
+		 * For literals which could not be parsed: the description of the error.
+		 */
+		@Nullable
+		String literalError;
+
+		/**
+		 * For function calls: the builtin registered under the name of the function at compile time.
+		 */
+		@Nullable
+		Builtin builtin;
+
+		/**
+		 * For "like" comparisons against a string literal: the compiled pattern.
+		 */
+		@Nullable
+		Pattern pattern;
+
+		/**
+		 * For order expressions: the minimized DFA, as used by the {@code OrderNFAEvaluator}.
+		 */
+		@Nullable
+		DFA dfa;
+
+		/**
+		 * For order expressions: the typestate NFA, as used by the {@code TypeStateAnalysis}. It is only read, so it can be shared between evaluations.
+		 */
+		@Nullable
+		NFA nfa;
+
+		/**
+		 * For constant subexpressions: the value they evaluate to in every context.
+		 */
+		@Nullable
+		Object folded;
+
+		CompiledExpression(@NonNull Kind kind) {
+			this.kind = kind;
+		}
+
+		/**
+		 * Returns a fresh value for this literal or folded subexpression. Values are not shared between evaluations, as responsible vertices may be added to them.
+		 */
+		@NonNull
+		ConstantValue newConstantValue() {
+			if (folded != null) {
+				return ConstantValue.of(folded);
+			}
+			if (literalError != null) {
+				return ErrorValue.newErrorValue(literalError);
+			}
+			return ConstantValue.of(literalValue);
+		}
+
+		/**
+		 * Returns the value of a constant node, i.e. of a literal which could be parsed or of a folded subexpression, or null if the node is not constant.
+		 */
+		@Nullable
+		ConstantValue constantValue() {
+			if (folded != null || (kind == Kind.LITERAL && literalError == null && literalValue != null)) {
+				return newConstantValue();
+			}
+			return null;
+		}
+	}
+
+	private final Map<Expression, CompiledExpression> nodes = new IdentityHashMap<>();
+
+	private EvaluationPlan() {
+		// use compile() or empty()
+	}
+
+	/**
+	 * Returns a plan without any compiled expressions, so that every expression is compiled on the fly and no subexpression is folded.
+	 */
+	@NonNull
+	static EvaluationPlan empty() {
+		return new EvaluationPlan();
+	}
+
+	/**
+	 * Compiles the "when" and "ensure" expressions of a rule statement.
+	 *
+	 * @param stmt the rule statement, as parsed by Xtext
+	 * @return the plan
+	 */
+	@NonNull
+	public static EvaluationPlan compile(@NonNull RuleStatement stmt) {
+		EvaluationPlan plan = new EvaluationPlan();
+		if (stmt.getCond() != null) {
+			plan.add(stmt.getCond().getExp());
+		}
+		if (stmt.getEnsure() != null) {
+			plan.add(stmt.getEnsure().getExp());
+		}
+		return plan;
+	}
+
+	/**
+	 * Returns the compiled node for an expression. Expressions which are not part of this plan are compiled, but not added to it, so the plan can be shared between
+	 * threads.
+	 */
+	@NonNull
+	CompiledExpression get(@NonNull Expression expr) {
+		CompiledExpression node = nodes.get(expr);
+		if (node == null) {
+			node = compileNode(expr);
+		}
+		return node;
+	}
+
+	/**
+	 * Returns the minimized DFA of an order expression.
+	 */
+	@NonNull
+	public DFA getDfa(@NonNull OrderExpression expr) {
+		CompiledExpression node = get(expr);
+		assert node.dfa != null;
+		return node.dfa;
+	}
+
+	/**
+	 * Returns the typestate NFA of an order expression. Callers must not modify it.
+	 */
+	@NonNull
+	public NFA getNfa(@NonNull OrderExpression expr) {
+		CompiledExpression node = get(expr);
+		assert node.nfa != null;
+		return node.nfa;
+	}
+
+	private void add(@Nullable Expression expr) {
+		if (expr == null || nodes.containsKey(expr)) {
+			return;
+		}
+		CompiledExpression node = compileNode(expr);
+		nodes.put(expr, node);
+
+		switch (node.kind) {
+			case LOGICAL:
+				if (expr instanceof LogicalAndExpression) {
+					add(((LogicalAndExpression) expr).getLeft());
+					add(((LogicalAndExpression) expr).getRight());
+				} else {
+					add(((LogicalOrExpression) expr).getLeft());
+					add(((LogicalOrExpression) expr).getRight());
+				}
+				fold(expr, node);
+				break;
+			case COMPARISON:
+				add(((ComparisonExpression) expr).getLeft());
+				add(((ComparisonExpression) expr).getRight());
+				fold(expr, node);
+				break;
+			case MULTIPLICATION:
+				add(((MultiplicationExpression) expr).getLeft());
+				add(((MultiplicationExpression) expr).getRight());
+				fold(expr, node);
+				break;
+			case UNARY:
+				add(((UnaryExpression) expr).getExp());
+				fold(expr, node);
+				break;
+			case BUILTIN:
+				for (Argument arg : ((FunctionCallExpression) expr).getArgs()) {
+					add((Expression) arg); // Every Argument is also an Expression
+				}
+				break;
+			case LITERAL_LIST:
+				for (Literal l : ((LiteralListExpression) expr).getValues()) {
+					add(l);
+				}
+				break;
+			default:
+				// leaves and order expressions, which are evaluated by the OrderEvaluator
+		}
+	}
+
+	/**
+	 * Evaluates an operator node whose operands have already been added to the plan, if all of them are constant. The evaluation uses the same functions as the
+	 * {@code ExpressionEvaluator}, so a folded node evaluates to the same value as without the plan.
+	 */
+	private void fold(@NonNull Expression expr, @NonNull CompiledExpression node) {
+		List<ConstantValue> operands = new ArrayList<>();
+		for (Expression operand : operands(expr)) {
+			CompiledExpression operandNode = operand != null ? nodes.get(operand) : null;
+			ConstantValue value = operandNode != null ? operandNode.constantValue() : null;
+			if (value == null) {
+				return;
+			}
+			operands.add(value);
+		}
+
+		ConstantValue result;
+		try {
+			if (expr instanceof LogicalAndExpression) {
+				LogicalAndExpression and = (LogicalAndExpression) expr;
+				result = ExpressionEvaluator.combineLogical(true, operands.get(0), operands.get(1), and.getLeft(), and.getRight());
+			} else if (expr instanceof LogicalOrExpression) {
+				LogicalOrExpression or = (LogicalOrExpression) expr;
+				result = ExpressionEvaluator.combineLogical(false, operands.get(0), operands.get(1), or.getLeft(), or.getRight());
+			} else if (expr instanceof ComparisonExpression) {
+				result = ExpressionEvaluator.compareValues(((ComparisonExpression) expr).getOp(), operands.get(0), operands.get(1), node.pattern);
+			} else if (expr instanceof MultiplicationExpression) {
+				result = ExpressionEvaluator.multiplyValues(((MultiplicationExpression) expr).getOp(), operands.get(0), operands.get(1));
+			} else {
+				result = ExpressionEvaluator.applyUnary(((UnaryExpression) expr).getOp(), operands.get(0), (UnaryExpression) expr);
+			}
+		}
+		catch (RuntimeException e) {
+			// e.g. a division by zero or an invalid pattern. Leave it to the evaluation to fail in the same way
+			log.debug("Not folding {}", ExpressionHelper.exprToString(expr), e);
+			return;
+		}
+
+		if (!ConstantValue.isError(result)) {
+			node.folded = result.getValue();
+		}
+	}
+
+	@NonNull
+	private static List<Expression> operands(@NonNull Expression expr) {
+		if (expr instanceof LogicalAndExpression) {
+			return List.of(((LogicalAndExpression) expr).getLeft(), ((LogicalAndExpression) expr).getRight());
+		} else if (expr instanceof LogicalOrExpression) {
+			return List.of(((LogicalOrExpression) expr).getLeft(), ((LogicalOrExpression) expr).getRight());
+		} else if (expr instanceof ComparisonExpression) {
+			return List.of(((ComparisonExpression) expr).getLeft(), ((ComparisonExpression) expr).getRight());
+		} else if (expr instanceof MultiplicationExpression) {
+			return List.of(((MultiplicationExpression) expr).getLeft(), ((MultiplicationExpression) expr).getRight());
+		}
+		return List.of(((UnaryExpression) expr).getExp());
+	}
+
+	@NonNull
+	private static CompiledExpression compileNode(@NonNull Expression expr) {
+		CompiledExpression node = new CompiledExpression(kindOf(expr));
+		switch (node.kind) {
+			case LITERAL:
+				compileLiteral((Literal) expr, node);
+				break;
+			case ORDER:
+				node.dfa = DFA.of(((OrderExpression) expr).getExp());
+				node.nfa = NFA.of(((OrderExpression) expr).getExp());
+				break;
+			case BUILTIN:
+				node.builtin = BuiltinRegistry.getInstance().getBuiltin(((FunctionCallExpression) expr).getName());
+				break;
+			case COMPARISON:
+				ComparisonExpression comparison = (ComparisonExpression) expr;
+				if ("like".equals(comparison.getOp()) && comparison.getRight() instanceof StringLiteral) {
+					String regex = ExpressionHelper.toComparableString(Utils.stripQuotedString(((StringLiteral) comparison.getRight()).getValue()));
+					try {
+						node.pattern = Pattern.compile(regex);
+					}
+					catch (PatternSyntaxException e) {
+						// leave it to the evaluation to report the invalid pattern
+						log.warn("Invalid pattern {} in like-expression", regex);
+					}
+				}
+				break;
+			default:
+				// nothing to pre-compute
+		}
+		return node;
+	}
+
+	@NonNull
+	private static Kind kindOf(@NonNull Expression expr) {
+		// from lowest to highest operator precedence
+		if (expr instanceof OrderExpression) {
+			return Kind.ORDER;
+		} else if (expr instanceof LogicalOrExpression || expr instanceof LogicalAndExpression) {
+			return Kind.LOGICAL;
+		} else if (expr instanceof ComparisonExpression) {
+			return Kind.COMPARISON;
+		} else if (expr instanceof MultiplicationExpression) {
+			return Kind.MULTIPLICATION;
+		} else if (expr instanceof UnaryExpression) {
+			return Kind.UNARY;
+		} else if (expr instanceof Literal) {
+			return Kind.LITERAL;
+		} else if (expr instanceof Operand) {
+			return Kind.OPERAND;
+		} else if (expr instanceof FunctionCallExpression) {
+			return Kind.BUILTIN;
+		} else if (expr instanceof LiteralListExpression) {
+			return Kind.LITERAL_LIST;
+		}
+		return Kind.UNKNOWN;
+	}
+
+	private static void compileLiteral(@NonNull Literal literal, @NonNull CompiledExpression node) {
+		String v = literal.getValue();
+
+		// ordering based on Mark grammar
+		if (literal instanceof IntegerLiteral) {
+			log.debug("Literal is Integer: {}", v);
+
+			try {
+				if (v.startsWith("0x")) {
+					node.literalValue = Integer.parseInt(v.substring(2), 16);
+				} else {
+					node.literalValue = Long.parseLong(v);
+				}
+			}
+			catch (NumberFormatException nfe) {
+				log.warn("Unable to convert integer literal {}", v, nfe);
+				node.literalError = String.format("Unable to convert integer literal %s: %s", v, nfe.getMessage());
+			}
+		} else if (literal instanceof BooleanLiteral) {
+			log.debug("Literal is Boolean: {}", v);
+			node.literalValue = Boolean.parseBoolean(v);
+		} else if (literal instanceof StringLiteral) {
+			log.debug("Literal is String: {}", v);
+			node.literalValue = Utils.stripQuotedString(v);
+		} else {
+			log.warn("Unknown literal encountered: {}", v);
+			node.literalError = String.format("Unknown literal encountered: %s", v);
+		}
+	}
+}
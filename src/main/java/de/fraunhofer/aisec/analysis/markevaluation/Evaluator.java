@@ -1,7 +1,6 @@
 
 package de.fraunhofer.aisec.analysis.markevaluation;
 
-import com.google.common.collect.Lists;
 import de.fraunhofer.aisec.analysis.structures.AnalysisContext;
 import de.fraunhofer.aisec.analysis.structures.CPGInstanceContext;
 import de.fraunhofer.aisec.analysis.structures.ConstantValue;
@@ -22,7 +21,13 @@ import de.fraunhofer.aisec.crymlin.CrymlinQueryWrapper;
 import de.fraunhofer.aisec.crymlin.connectors.db.TraversalConnection;
 import de.fraunhofer.aisec.crymlin.dsl.CrymlinTraversalSource;
 import de.fraunhofer.aisec.mark.markDsl.AliasedEntityExpression;
+import de.fraunhofer.aisec.mark.markDsl.Argument;
+import de.fraunhofer.aisec.mark.markDsl.Expression;
+import de.fraunhofer.aisec.mark.markDsl.FunctionCallExpression;
+import de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration;
+import de.fraunhofer.aisec.mark.markDsl.LogicalAndExpression;
 import de.fraunhofer.aisec.mark.markDsl.OpStatement;
+import de.fraunhofer.aisec.mark.markDsl.Operand;
 import de.fraunhofer.aisec.mark.markDsl.RuleStatement;
 import de.fraunhofer.aisec.markmodel.MEntity;
 import de.fraunhofer.aisec.markmodel.MOp;
@@ -30,18 +35,25 @@ import de.fraunhofer.aisec.markmodel.MRule;
 import de.fraunhofer.aisec.markmodel.Mark;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -52,6 +64,12 @@ import java.util.stream.Collectors;
 public class Evaluator {
 	private static final Logger log = LoggerFactory.getLogger(Evaluator.class);
 
+	/**
+	 * Maximum number of instance combinations of a rule which are evaluated at once. Memory consumption of the evaluation is proportional to this number rather
+	 * than to the number of all combinations.
+	 */
+	static final int MAX_CONTEXTS_PER_BATCH = 10_000;
+
 	@NonNull
 	private final Mark markModel;
 
@@ -116,7 +134,18 @@ public class Evaluator {
 	 */
 	private void assignCallVerticesToOps(@NonNull AnalysisContext ctx, @NonNull CrymlinTraversalSource crymlinTraversal) {
 		Benchmark b = new Benchmark(this.getClass(), "Precalculating matching nodes");
-		// iterate over all entities and precalculate:
+		// match the call statements of all ops against the CPG in a single pass
+		List<FunctionDeclaration> calls = new ArrayList<>();
+		for (MEntity ent : markModel.getEntities()) {
+			for (MOp op : ent.getOps()) {
+				for (OpStatement opStmt : op.getStatements()) {
+					calls.add(opStmt.getCall());
+				}
+			}
+		}
+		Map<FunctionDeclaration, Set<Vertex>> verticesByCall = CrymlinQueryWrapper.getVerticesForFunctionDeclarations(ctx.getDatabase(), calls, crymlinTraversal);
+
+		// iterate over all entities and assign:
 		// - call statements to vertices
 		for (MEntity ent : markModel.getEntities()) {
 			log.info("Precalculating call statements for entity {}", ent.getName());
@@ -125,7 +154,7 @@ public class Evaluator {
 				log.debug("Looking for call statements for {}", op.getName());
 				int numMatches = 0;
 				for (OpStatement opStmt : op.getStatements()) {
-					Set<Vertex> temp = CrymlinQueryWrapper.getVerticesForFunctionDeclaration(ctx.getDatabase(), opStmt.getCall(), crymlinTraversal);
+					Set<Vertex> temp = verticesByCall.get(opStmt.getCall());
 					log.debug(
 						"Call {}({}) of op {} found {} times",
 						opStmt.getCall().getName(),
@@ -146,44 +175,92 @@ public class Evaluator {
 
 	/**
 	 * Evaluates all rules and creates findings.
+	 * <p>
+	 * Rules are independent of each other once {@code assignCallVerticesToOps} has assigned the call vertices to their ops. If configured, they are thus evaluated in
+	 * parallel by a fork-join pool, where each task uses its own traversal source.
 	 *
 	 * @param ctx              the result/analysis context
 	 * @param crymlinTraversal connection to the db
 	 */
 	private void evaluateRules(AnalysisContext ctx, @NonNull CrymlinTraversalSource crymlinTraversal) {
+		if (config.ruleParallelism <= 1) {
+			for (MRule rule : this.markModel.getRules()) {
+				evaluateRule(rule, ctx, crymlinTraversal);
+			}
+			return;
+		}
 
-		for (MRule rule : this.markModel.getRules()) {
-			log.info("checking rule {}", rule.getName());
+		ForkJoinPool pool = new ForkJoinPool(config.ruleParallelism);
+		try {
+			List<Pair<MRule, ForkJoinTask<?>>> tasks = new ArrayList<>();
+			for (MRule rule : this.markModel.getRules()) {
+				tasks.add(new Pair<>(rule, pool.submit(() -> {
+					try (CrymlinTraversalSource traversal = ctx.getDatabase().getGraph().traversal(CrymlinTraversalSource.class)) {
+						evaluateRule(rule, ctx, traversal);
+					}
+					return null;
+				})));
+			}
 
-			/* Evaluate "using" part and collect the instances of MARK entities, as well as the potential vertex representing the base object variables. */
-			List<List<Pair<String, Vertex>>> entities = findInstancesForEntities(rule);
+			for (Pair<MRule, ForkJoinTask<?>> task : tasks) {
+				try {
+					task.getValue1().get();
+				}
+				catch (ExecutionException e) {
+					log.error("Error evaluating rule {}", task.getValue0().getName(), e.getCause());
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			log.error("Interrupted while evaluating rules", e);
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
 
-			// skip evaluation if there are no cpg-nodes which would be used in this evaluation
-			if (!entities.isEmpty()) {
-				boolean hasCPGNodes = false;
-				outer: for (Map.Entry<String, Pair<String, MEntity>> entity : rule.getEntityReferences().entrySet()) {
-					if (entity.getValue() == null || entity.getValue().getValue1() == null) {
-						log.warn("Rule {} references an unknown entity {}", rule.getName(), entity.getKey());
-						break;
-					}
-					for (MOp op : entity.getValue().getValue1().getOps()) {
-						if (!op.getAllVertices().isEmpty()) {
-							hasCPGNodes = true;
-							break outer;
-						}
-					}
+	/**
+	 * Evaluates a single rule and adds its findings to the context.
+	 *
+	 * @param rule             the rule to evaluate
+	 * @param ctx              the result/analysis context
+	 * @param crymlinTraversal connection to the db. Must not be shared with other threads.
+	 */
+	private void evaluateRule(@NonNull MRule rule, @NonNull AnalysisContext ctx, @NonNull CrymlinTraversalSource crymlinTraversal) {
+		log.info("checking rule {}", rule.getName());
+
+		/* Evaluate "using" part and collect the instances of MARK entities, as well as the potential vertex representing the base object variables. */
+		List<List<Pair<String, Vertex>>> entities = findInstancesForEntities(rule);
+
+		// skip evaluation if there are no cpg-nodes which would be used in this evaluation
+		if (!entities.isEmpty()) {
+			boolean hasCPGNodes = false;
+			outer: for (Map.Entry<String, Pair<String, MEntity>> entity : rule.getEntityReferences().entrySet()) {
+				if (entity.getValue() == null || entity.getValue().getValue1() == null) {
+					log.warn("Rule {} references an unknown entity {}", rule.getName(), entity.getKey());
+					break;
 				}
-				if (!hasCPGNodes) {
-					log.warn("Rule {} does not have any corresponding CPG-nodes. Skipping", rule.getName());
-					continue;
+				for (MOp op : entity.getValue().getValue1().getOps()) {
+					if (!op.getAllVertices().isEmpty()) {
+						hasCPGNodes = true;
+						break outer;
+					}
 				}
 			}
+			if (!hasCPGNodes) {
+				log.warn("Rule {} does not have any corresponding CPG-nodes. Skipping", rule.getName());
+				return;
+			}
+		}
 
-			/* Create evaluation context. */
-			// Generate all combinations of instances for each entity.
-			// We take the n-th cartesian product of all _possible_ program variables that correspond to Mark entities.
-			// A CPGInstanceContext is a specific interpretation of a Mark rule that needs to be evaluated.
-			MarkContextHolder markCtxHolder = createMarkContext(entities);
+		/* Create evaluation contexts. */
+		// We enumerate the n-th cartesian product of all _possible_ program variables that correspond to Mark entities lazily and evaluate it in batches.
+		// A CPGInstanceContext is a specific interpretation of a Mark rule that needs to be evaluated.
+		InstanceCombinations combinations = new InstanceCombinations(entities, getWhenConstraints(rule, entities, crymlinTraversal));
+		Collection<Finding> findings = new HashSet<>();
+		while (combinations.hasNext()) {
+			MarkContextHolder markCtxHolder = createMarkContext(combinations, MAX_CONTEXTS_PER_BATCH);
 
 			ExpressionEvaluator ee = new ExpressionEvaluator(this.markModel, rule, ctx, config, crymlinTraversal, markCtxHolder);
 
@@ -194,11 +271,11 @@ public class Evaluator {
 			Map<Integer, MarkIntermediateResult> result = ee.evaluateExpression(rule.getStatement().getEnsure().getExp());
 
 			/* Get findings from "result" */
-			Collection<Finding> findings = getFindings(result, markCtxHolder, rule);
-
-			log.info("Got {} findings: {}", findings.size(), findings.stream().map(f -> f.getLogMsg()).collect(Collectors.toList()));
-			ctx.getFindings().addAll(findings);
+			findings.addAll(getFindings(result, markCtxHolder, rule));
 		}
+
+		log.info("Got {} findings: {}", findings.size(), findings.stream().map(f -> f.getLogMsg()).collect(Collectors.toList()));
+		ctx.getFindings().addAll(findings);
 	}
 
 	private Collection<Finding> getFindings(@NonNull Map<Integer, MarkIntermediateResult> result, @NonNull MarkContextHolder markCtxHolder,
@@ -323,20 +400,96 @@ public class Evaluator {
 		markCtxHolder.setCreateFindingsDuringEvaluation(true);
 	}
 
-	private MarkContextHolder createMarkContext(List<List<Pair<String, Vertex>>> entities) {
+	/**
+	 * Creates a context holder for the next at most {@code maxContexts} instance combinations.
+	 */
+	static MarkContextHolder createMarkContext(Iterator<CPGInstanceContext> combinations, int maxContexts) {
 		MarkContextHolder context = new MarkContextHolder();
-		for (List<Pair<String, Vertex>> list : Lists.cartesianProduct(entities)) {
-			CPGInstanceContext instanceCtx = new CPGInstanceContext();
-			for (Pair<String, Vertex> p : list) {
-				String markInstanceName = p.getValue0();
-				Vertex v = p.getValue1();
-				instanceCtx.putMarkInstance(markInstanceName, v);
-			}
-			context.addInitialInstanceContext(instanceCtx);
+		for (int i = 0; i < maxContexts && combinations.hasNext(); i++) {
+			context.addInitialInstanceContext(combinations.next());
 		}
 		return context;
 	}
 
+	/**
+	 * Derives constraints on the combinations of instances from the "when" part of a rule.
+	 * <p>
+	 * Currently, conjuncts of the form {@code _inside_same_function(a, b)} are used, where {@code a} and {@code b} are instances of the rule. Combinations whose
+	 * instances are contained in different functions make the "when" part false and would be removed by {@code evaluateWhen} anyway. They are thus not
+	 * enumerated at all.
+	 *
+	 * @param rule             the rule
+	 * @param entities         the instances for each entity, as returned by {@code findInstancesForEntities}
+	 * @param crymlinTraversal connection to the db
+	 * @return the constraints
+	 */
+	private List<InstanceCombinations.Constraint> getWhenConstraints(@NonNull MRule rule, @NonNull List<List<Pair<String, Vertex>>> entities,
+			@NonNull CrymlinTraversalSource crymlinTraversal) {
+		List<InstanceCombinations.Constraint> constraints = new ArrayList<>();
+		RuleStatement s = rule.getStatement();
+		if (s.getCond() == null) {
+			return constraints;
+		}
+
+		Map<String, Integer> positions = new HashMap<>();
+		for (int i = 0; i < entities.size(); i++) {
+			positions.put(entities.get(i).get(0).getValue0(), i);
+		}
+
+		Map<Object, Optional<Object>> functionCache = new HashMap<>();
+		Function<Vertex, Optional<Object>> containingFunction = v -> functionCache.computeIfAbsent(v.id(),
+			id -> CrymlinQueryWrapper.getContainingFunction(v, crymlinTraversal).map(Vertex::id));
+
+		List<Expression> conjuncts = new ArrayList<>();
+		collectConjuncts(s.getCond().getExp(), conjuncts);
+		for (Expression conjunct : conjuncts) {
+			if (!(conjunct instanceof FunctionCallExpression)) {
+				continue;
+			}
+			FunctionCallExpression call = (FunctionCallExpression) conjunct;
+			if (!"_inside_same_function".equals(call.getName()) || call.getArgs().size() != 2) {
+				continue;
+			}
+			Integer first = getInstancePosition(call.getArgs().get(0), positions);
+			Integer second = getInstancePosition(call.getArgs().get(1), positions);
+			if (first == null || second == null || first.equals(second)) {
+				continue;
+			}
+
+			log.debug("Only enumerating combinations of rule {} which satisfy {}", rule.getName(), ExpressionHelper.exprToString(conjunct));
+			constraints.add(new InstanceCombinations.Constraint(first, second, (a, b) -> {
+				if (a == null || b == null) {
+					// the builtin returns an error, which does not remove the context
+					return true;
+				}
+				Optional<Object> functionOfA = containingFunction.apply(a);
+				Optional<Object> functionOfB = containingFunction.apply(b);
+				return functionOfA.isEmpty() || functionOfB.isEmpty() || functionOfA.equals(functionOfB);
+			}));
+		}
+		return constraints;
+	}
+
+	private void collectConjuncts(Expression expr, List<Expression> conjuncts) {
+		if (expr instanceof LogicalAndExpression) {
+			collectConjuncts(((LogicalAndExpression) expr).getLeft(), conjuncts);
+			collectConjuncts(((LogicalAndExpression) expr).getRight(), conjuncts);
+		} else {
+			conjuncts.add(expr);
+		}
+	}
+
+	/**
+	 * Returns the position of the instance referenced by the argument or null, if the argument is not a plain instance.
+	 */
+	@Nullable
+	private Integer getInstancePosition(Argument arg, Map<String, Integer> positions) {
+		if (!(arg instanceof Operand) || ((Operand) arg).getOperand().contains(".")) {
+			return null;
+		}
+		return positions.get(((Operand) arg).getOperand());
+	}
+
 	/**
 	 * Collect all entities, and calculate which instances correspond to the entity.
 	 * <p>
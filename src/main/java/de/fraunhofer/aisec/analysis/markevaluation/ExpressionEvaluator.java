@@ -18,11 +18,9 @@ import de.fraunhofer.aisec.crymlin.builtin.Builtin;
 import de.fraunhofer.aisec.crymlin.builtin.BuiltinRegistry;
 import de.fraunhofer.aisec.crymlin.dsl.CrymlinTraversalSource;
 import de.fraunhofer.aisec.mark.markDsl.Argument;
-import de.fraunhofer.aisec.mark.markDsl.BooleanLiteral;
 import de.fraunhofer.aisec.mark.markDsl.ComparisonExpression;
 import de.fraunhofer.aisec.mark.markDsl.Expression;
 import de.fraunhofer.aisec.mark.markDsl.FunctionCallExpression;
-import de.fraunhofer.aisec.mark.markDsl.IntegerLiteral;
 import de.fraunhofer.aisec.mark.markDsl.Literal;
 import de.fraunhofer.aisec.mark.markDsl.LiteralListExpression;
 import de.fraunhofer.aisec.mark.markDsl.LogicalAndExpression;
@@ -30,7 +28,6 @@ import de.fraunhofer.aisec.mark.markDsl.LogicalOrExpression;
 import de.fraunhofer.aisec.mark.markDsl.MultiplicationExpression;
 import de.fraunhofer.aisec.mark.markDsl.Operand;
 import de.fraunhofer.aisec.mark.markDsl.OrderExpression;
-import de.fraunhofer.aisec.mark.markDsl.StringLiteral;
 import de.fraunhofer.aisec.mark.markDsl.UnaryExpression;
 import de.fraunhofer.aisec.markmodel.MRule;
 import de.fraunhofer.aisec.markmodel.Mark;
@@ -64,6 +61,10 @@ public class ExpressionEvaluator {
 	private final AnalysisContext resultCtx;
 	private final MarkContextHolder markContextHolder;
 	private final Mark markModel;
+	// the compiled expressions of the rule
+	private final EvaluationPlan plan;
+	// results of pure builtins, by builtin name and argument values
+	private final Map<List<Object>, Object> pureBuiltinResults = new HashMap<>();
 
 	public ExpressionEvaluator(Mark markModel, MRule rule, AnalysisContext resultCtx, ServerConfiguration config, CrymlinTraversalSource traversal,
 			MarkContextHolder context) {
@@ -73,6 +74,7 @@ public class ExpressionEvaluator {
 		this.config = config;
 		this.traversal = traversal;
 		this.markContextHolder = context;
+		this.plan = rule.getPlan() != null ? rule.getPlan() : EvaluationPlan.compile(rule.getStatement());
 	}
 
 	/**
@@ -92,49 +94,54 @@ public class ExpressionEvaluator {
 			return markContextHolder.generateNullResult();
 		}
 
-		// from lowest to highest operator precedence
-		log.debug("evaluating {}: {}", expr.getClass().getSimpleName(), ExpressionHelper.exprToString(expr));
+		if (log.isDebugEnabled()) {
+			log.debug("evaluating {}: {}", expr.getClass().getSimpleName(), ExpressionHelper.exprToString(expr));
+		}
 
-		if (expr instanceof OrderExpression) {
-			return evaluateOrderExpression((OrderExpression) expr);
-		} else if (expr instanceof LogicalOrExpression) {
-			return evaluateLogicalExpr(expr);
-		} else if (expr instanceof LogicalAndExpression) {
-			return evaluateLogicalExpr(expr);
-		} else if (expr instanceof ComparisonExpression) {
-			return evaluateLogicalExpr(expr);
-		} else if (expr instanceof MultiplicationExpression) {
-			return evaluateMultiplicationExpr((MultiplicationExpression) expr);
-		} else if (expr instanceof UnaryExpression) {
-			return evaluateUnaryExpr((UnaryExpression) expr);
-		} else if (expr instanceof Literal) {
-			return evaluateLiteral((Literal) expr);
-		} else if (expr instanceof Operand) {
-			return evaluateOperand((Operand) expr);
-		} else if (expr instanceof FunctionCallExpression) {
-			return evaluateBuiltin((FunctionCallExpression) expr);
-		} else if (expr instanceof LiteralListExpression) {
-			Map<Integer, MarkIntermediateResult> literalList = new HashMap<>();
-			for (Literal l : ((LiteralListExpression) expr).getValues()) {
-				Map<Integer, MarkIntermediateResult> res = evaluateLiteral(l);
-				for (Map.Entry<Integer, MarkIntermediateResult> entry : res.entrySet()) {
-					ListValue inner = (ListValue) literalList.computeIfAbsent(entry.getKey(), x -> new ListValue());
-					inner.add(entry.getValue());
+		EvaluationPlan.CompiledExpression node = plan.get(expr);
+		if (node.folded != null) {
+			// constant subexpression, evaluated when compiling the rule
+			return evaluateLiteral(node);
+		}
+		switch (node.kind) {
+			case ORDER:
+				return evaluateOrderExpression((OrderExpression) expr);
+			case LOGICAL:
+				return evaluateLogicalExpr(expr);
+			case COMPARISON:
+				return evaluateComparisonExpr((ComparisonExpression) expr, node);
+			case MULTIPLICATION:
+				return evaluateMultiplicationExpr((MultiplicationExpression) expr);
+			case UNARY:
+				return evaluateUnaryExpr((UnaryExpression) expr);
+			case LITERAL:
+				return evaluateLiteral(node);
+			case OPERAND:
+				return evaluateOperand((Operand) expr);
+			case BUILTIN:
+				return evaluateBuiltin((FunctionCallExpression) expr, node);
+			case LITERAL_LIST:
+				Map<Integer, MarkIntermediateResult> literalList = new HashMap<>();
+				for (Literal l : ((LiteralListExpression) expr).getValues()) {
+					Map<Integer, MarkIntermediateResult> res = evaluateLiteral(plan.get(l));
+					for (Map.Entry<Integer, MarkIntermediateResult> entry : res.entrySet()) {
+						ListValue inner = (ListValue) literalList.computeIfAbsent(entry.getKey(), x -> new ListValue());
+						inner.add(entry.getValue());
+					}
 				}
-			}
-			return literalList;
+				return literalList;
+			default:
+				throw new ExpressionEvaluationException("unknown expression: " + ExpressionHelper.exprToString(expr));
 		}
-
-		throw new ExpressionEvaluationException("unknown expression: " + ExpressionHelper.exprToString(expr));
 	}
 
 	@NonNull
 	private Map<Integer, MarkIntermediateResult> evaluateOrderExpression(OrderExpression orderExpression) {
 		log.info("Evaluating order expression: {}", ExpressionHelper.exprToString(orderExpression));
 		Map<Integer, MarkIntermediateResult> result = new HashMap<>();
+		// one evaluator for all contexts, so that contexts in the same function share a single walk of its EOG
+		OrderEvaluator orderEvaluator = new OrderEvaluator(this.markRule, this.config);
 		for (Map.Entry<Integer, MarkContext> entry : markContextHolder.getAllContexts().entrySet()) {
-
-			OrderEvaluator orderEvaluator = new OrderEvaluator(this.markRule, this.config);
 			ConstantValue res = orderEvaluator.evaluate(orderExpression, entry.getKey(), this.resultCtx, this.traversal, this.markContextHolder);
 
 			if (markContextHolder.isCreateFindingsDuringEvaluation() && res != null && Objects.equals(res.getValue(), true)) {
@@ -163,14 +170,14 @@ public class ExpressionEvaluator {
 
 	@NonNull
 	private Map<Integer, MarkIntermediateResult> evaluateLogicalExpr(Expression expr) {
-		log.debug("Evaluating logical expression: {}", ExpressionHelper.exprToString(expr));
+		if (log.isDebugEnabled()) {
+			log.debug("Evaluating logical expression: {}", ExpressionHelper.exprToString(expr));
+		}
 
 		Expression leftExp;
 		Expression rightExp;
 
-		if (expr instanceof ComparisonExpression) {
-			return evaluateComparisonExpr((ComparisonExpression) expr);
-		} else if (expr instanceof LogicalAndExpression) {
+		if (expr instanceof LogicalAndExpression) {
 			LogicalAndExpression lae = (LogicalAndExpression) expr;
 
 			leftExp = lae.getLeft();
@@ -197,86 +204,23 @@ public class ExpressionEvaluator {
 			ConstantValue leftBoxed = (ConstantValue) getcorrespondingLeftResult(leftResult, key);
 			ConstantValue rightBoxed = (ConstantValue) entry.getValue();
 
-			Object left = leftBoxed.getValue();
-			Object right = rightBoxed.getValue();
-
-			boolean leftHasError = ConstantValue.isError(leftBoxed);
-			boolean rightHasError = ConstantValue.isError(rightBoxed);
-
-			if (leftHasError && rightHasError) {
-				// null & null = null, null | null = null
-
-				combinedResult.put(key, ErrorValue.newErrorValue("Cannot perform logical expression, left and right expression have an error", leftBoxed, rightBoxed));
-
-			} else if (!(leftHasError || left.getClass().equals(Boolean.class))
-					||
-					!(rightHasError || right.getClass().equals(Boolean.class))) {
-
-				log.warn("At least one subexpression is not of type Boolean: {} vs {}",
-					ExpressionHelper.exprToString(leftExp),
-					ExpressionHelper.exprToString(rightExp));
-				combinedResult.put(key, ErrorValue.newErrorValue(String.format("Cannot perform logical expression, left is %s, right is %s",
-					leftHasError ? "error" : left.toString(),
-					rightHasError ? "error" : right.toString()), leftBoxed, rightBoxed));
-
-			} else if (expr instanceof LogicalAndExpression) {
-				if (leftHasError || rightHasError) {
-					// null & true = null
-					// null & false = false
-					if ((!rightHasError && right.equals(false))
-							||
-							(!leftHasError && left.equals(false))) {
-						combinedResult.put(key, ConstantValue.of(false));
-					} else {
-						combinedResult.put(key, ErrorValue.newErrorValue(String.format("Cannot perform logical AND, left is %s, right is %s",
-							leftHasError ? "error" : left.toString(),
-							rightHasError ? "error" : right.toString())));
-					}
-				} else if (left.getClass().equals(Boolean.class)
-						&&
-						right.getClass().equals(Boolean.class)) {
-
-					ConstantValue cv = ConstantValue.of(Boolean.logicalAnd((Boolean) left, (Boolean) right));
-					cv.addResponsibleVerticesFrom(leftBoxed, rightBoxed);
-					combinedResult.put(key, cv);
-				}
-
-			} else { // LogicalOrExpression
-				if (leftHasError || rightHasError) {
-					// null | true = true
-					// null | false = null
-					if ((!rightHasError && right.equals(true))
-							||
-							(!leftHasError && left.equals(true))) {
-						combinedResult.put(key, ConstantValue.of(true));
-					} else {
-						combinedResult.put(key, ErrorValue.newErrorValue(String.format("Cannot perform logical or, left is %s, right is %s",
-							leftHasError ? "error" : left.toString(),
-							rightHasError ? "error" : right.toString())));
-					}
-				} else if (left.getClass().equals(Boolean.class)
-						&&
-						right.getClass().equals(Boolean.class)) {
-
-					ConstantValue cv = ConstantValue.of(Boolean.logicalOr((Boolean) left, (Boolean) right));
-					cv.addResponsibleVerticesFrom(leftBoxed, rightBoxed);
-					combinedResult.put(key, cv);
-				}
-			}
+			combinedResult.put(key, combineLogical(expr instanceof LogicalAndExpression, leftBoxed, rightBoxed, leftExp, rightExp));
 		}
 
 		return combinedResult;
 	}
 
-	private Map<Integer, MarkIntermediateResult> evaluateComparisonExpr(ComparisonExpression expr) {
+	private Map<Integer, MarkIntermediateResult> evaluateComparisonExpr(ComparisonExpression expr, EvaluationPlan.CompiledExpression node) {
 		String op = expr.getOp();
 		Expression leftExpr = expr.getLeft();
 		Expression rightExpr = expr.getRight();
 
-		log.debug(
-			"comparing expression {} with expression {}",
-			ExpressionHelper.exprToString(leftExpr),
-			ExpressionHelper.exprToString(rightExpr));
+		if (log.isDebugEnabled()) {
+			log.debug(
+				"comparing expression {} with expression {}",
+				ExpressionHelper.exprToString(leftExpr),
+				ExpressionHelper.exprToString(rightExpr));
+		}
 
 		Map<Integer, MarkIntermediateResult> leftResult = evaluateExpression(leftExpr);
 		Map<Integer, MarkIntermediateResult> rightResult = evaluateExpression(rightExpr);
@@ -322,60 +266,7 @@ public class ExpressionEvaluator {
 				}
 
 			} else {
-
-				ConstantValue rightBoxed = (ConstantValue) entry.getValue();
-				Object right = rightBoxed.getValue();
-
-				if (ConstantValue.isError(leftBoxed) || ConstantValue.isError(rightBoxed)) {
-
-					// result of comparison is not known
-					combinedResult.put(key, ErrorValue.newErrorValue(
-						"Cannot perform comparison, " + (ConstantValue.isError(leftBoxed) ? "left" : "right") + " expression has errors", leftBoxed, rightBoxed));
-				} else {
-
-					String leftComp = ExpressionHelper.toComparableString(left);
-					String rightComp = ExpressionHelper.toComparableString(right);
-
-					log.debug("left result={} right result={}", left, right);
-
-					ConstantValue cv;
-					switch (op) {
-						case "==":
-							cv = ConstantValue.of(comp.compare(leftComp, rightComp) == 0);
-							cv.addResponsibleVerticesFrom(leftBoxed, rightBoxed);
-							break;
-						case "!=":
-							cv = ConstantValue.of(comp.compare(leftComp, rightComp) != 0);
-							cv.addResponsibleVerticesFrom(leftBoxed, rightBoxed);
-							break;
-						case "<":
-							cv = ConstantValue.of(comp.compare(leftComp, rightComp) < 0);
-							cv.addResponsibleVerticesFrom(leftBoxed, rightBoxed);
-							break;
-						case "<=":
-							cv = ConstantValue.of(comp.compare(leftComp, rightComp) <= 0);
-							cv.addResponsibleVerticesFrom(leftBoxed, rightBoxed);
-							break;
-						case ">":
-							cv = ConstantValue.of(comp.compare(leftComp, rightComp) > 0);
-							cv.addResponsibleVerticesFrom(leftBoxed, rightBoxed);
-							break;
-						case ">=":
-							cv = ConstantValue.of(comp.compare(leftComp, rightComp) >= 0);
-							cv.addResponsibleVerticesFrom(leftBoxed, rightBoxed);
-							break;
-
-						case "like":
-							cv = ConstantValue.of(
-								Pattern.matches(ExpressionHelper.toComparableString(right), ExpressionHelper.toComparableString(left)));
-							cv.addResponsibleVerticesFrom(leftBoxed, rightBoxed);
-							break;
-						default:
-							log.warn("Unsupported operand {}", op);
-							cv = ErrorValue.newErrorValue(String.format("Unsupported operand %s", op));
-					}
-					combinedResult.put(key, cv);
-				}
+				combinedResult.put(key, compareValues(op, leftBoxed, (ConstantValue) entry.getValue(), node.pattern));
 			}
 		}
 		return combinedResult;
@@ -467,16 +358,14 @@ public class ExpressionEvaluator {
 	 * @return the result of the built-in call
 	 */
 	@NonNull
-	private Map<Integer, MarkIntermediateResult> evaluateBuiltin(FunctionCallExpression expr) {
+	private Map<Integer, MarkIntermediateResult> evaluateBuiltin(FunctionCallExpression expr, EvaluationPlan.CompiledExpression node) {
 		String functionName = expr.getName();
 
-		// Call built-in function (if available)
-		Optional<Builtin> builtin = BuiltinRegistry.getInstance()
-				.getRegisteredBuiltins()
-				.stream()
-				.filter(b -> b.getName()
-						.equals(functionName))
-				.findFirst();
+		// Call built-in function (if available). Usually, it has already been resolved when compiling the rule.
+		Optional<Builtin> builtin = Optional.ofNullable(node.builtin);
+		if (builtin.isEmpty()) {
+			builtin = Optional.ofNullable(BuiltinRegistry.getInstance().getBuiltin(functionName));
+		}
 
 		Map<Integer, MarkIntermediateResult> arguments = evaluateArgs(expr.getArgs());
 
@@ -490,7 +379,20 @@ public class ExpressionEvaluator {
 					continue;
 				}
 
-				ConstantValue cv = builtin.get().execute(resultCtx, (ListValue) (entry.getValue()), entry.getKey(), markContextHolder, this);
+				ListValue args = (ListValue) entry.getValue();
+				ConstantValue cv;
+				List<Object> memoKey = builtin.get().isPure() ? getMemoKey(functionName, args) : null;
+				if (memoKey != null && pureBuiltinResults.containsKey(memoKey)) {
+					cv = ConstantValue.of(pureBuiltinResults.get(memoKey));
+					for (MarkIntermediateResult arg : args) {
+						cv.addResponsibleVerticesFrom((ConstantValue) arg);
+					}
+				} else {
+					cv = builtin.get().execute(resultCtx, args, entry.getKey(), markContextHolder, this);
+					if (memoKey != null && cv != null && !ConstantValue.isError(cv)) {
+						pureBuiltinResults.put(memoKey, cv.getValue());
+					}
+				}
 
 				result.put(entry.getKey(), cv);
 
@@ -506,36 +408,29 @@ public class ExpressionEvaluator {
 		return result;
 	}
 
-	private Map<Integer, MarkIntermediateResult> evaluateLiteral(Literal literal) {
-		String v = literal.getValue();
-
-		ConstantValue value;
-
-		// ordering based on Mark grammar
-		if (literal instanceof IntegerLiteral) {
-			log.debug("Literal is Integer: {}", v);
-
-			try {
-				if (v.startsWith("0x")) {
-					value = ConstantValue.of(Integer.parseInt(v.substring(2), 16));
-				} else {
-					value = ConstantValue.of(Long.parseLong(v));
-				}
+	/**
+	 * Returns the key under which the result of a pure builtin for the given arguments is memoized, or null if the arguments are not all plain values.
+	 */
+	@Nullable
+	private List<Object> getMemoKey(String functionName, ListValue args) {
+		List<Object> key = new ArrayList<>(args.size() + 1);
+		key.add(functionName);
+		for (MarkIntermediateResult arg : args) {
+			if (!(arg instanceof ConstantValue) || ConstantValue.isError(arg)) {
+				return null;
 			}
-			catch (NumberFormatException nfe) {
-				log.warn("Unable to convert integer literal {}", v, nfe);
-				value = ErrorValue.newErrorValue(String.format("Unable to convert integer literal %s: %s", v, nfe.getMessage()));
+			ConstantValue cv = (ConstantValue) arg;
+			if (!(cv.isString() || cv.isNumeric() || cv.isBoolean())) {
+				return null;
 			}
-		} else if (literal instanceof BooleanLiteral) {
-			log.debug("Literal is Boolean: {}", v);
-			value = ConstantValue.of(Boolean.parseBoolean(v));
-		} else if (literal instanceof StringLiteral) {
-			log.debug("Literal is String: {}", v);
-			value = ConstantValue.of(Utils.stripQuotedString(v));
-		} else {
-			log.warn("Unknown literal encountered: {}", v);
-			value = ErrorValue.newErrorValue(String.format("Unknown literal encountered: %s", v));
+			key.add(cv.getValue());
 		}
+		return key;
+	}
+
+	private Map<Integer, MarkIntermediateResult> evaluateLiteral(EvaluationPlan.CompiledExpression node) {
+		// the literal has already been parsed (or the constant subexpression folded) when compiling the rule
+		ConstantValue value = node.newConstantValue();
 
 		Map<Integer, MarkIntermediateResult> ret = new HashMap<>();
 		for (Integer key : markContextHolder.getAllContexts()
@@ -547,7 +442,9 @@ public class ExpressionEvaluator {
 
 	@NonNull
 	private Map<Integer, MarkIntermediateResult> evaluateMultiplicationExpr(MultiplicationExpression expr) {
-		log.debug("Evaluating multiplication expression: {}", ExpressionHelper.exprToString(expr));
+		if (log.isDebugEnabled()) {
+			log.debug("Evaluating multiplication expression: {}", ExpressionHelper.exprToString(expr));
+		}
 
 		String op = expr.getOp();
 
@@ -564,182 +461,23 @@ public class ExpressionEvaluator {
 			ConstantValue leftBoxed = (ConstantValue) getcorrespondingLeftResult(leftResult, key);
 			ConstantValue rightBoxed = (ConstantValue) entry.getValue();
 
-			Object left = leftBoxed.getValue();
-			Object right = rightBoxed.getValue();
-
-			if (ConstantValue.isError(leftBoxed) || ConstantValue.isError(rightBoxed)) {
-
-				// result of expr is not known
-				combinedResult.put(key, ErrorValue.newErrorValue("cannot multiply expressions, left or right expression has errors", leftBoxed, rightBoxed));
-			} else {
-
-				Class leftResultType = left.getClass();
-				Class rightResultType = right.getClass();
-
-				if (!leftResultType.equals(rightResultType)) {
-					log.warn("Type of left expression does not match type of right expression: {} vs {}",
-						leftResultType.getSimpleName(),
-						rightResultType.getSimpleName());
-					combinedResult.put(key, ErrorValue.newErrorValue(String.format("Type of left expression does not match type of right expression: %s vs %s",
-						leftResultType.getSimpleName(),
-						rightResultType.getSimpleName())));
-				}
-
-				Object unboxedResult;
-
-				switch (op) {
-					case "*":
-						// FIXME check if an overflow occurs (Math.multiplyExact). But what to do if this overflows?
-						if (leftResultType.equals(Integer.class)) {
-							unboxedResult = ((Integer) left * (Integer) right);
-						} else if (leftResultType.equals(Float.class)) {
-							unboxedResult = ((Float) left * (Float) right);
-						} else {
-							log.warn("Multiplication operator multiplication ('*') not supported for type: {}", leftResultType.getSimpleName());
-							unboxedResult = ErrorValue.newErrorValue(String.format("Multiplication operator multiplication ('*') not supported for type: %s",
-								leftResultType.getSimpleName()));
-						}
-						break;
-					case "/":
-						if (leftResultType.equals(Integer.class)) {
-							unboxedResult = ((Integer) left / (Integer) right);
-						} else if (leftResultType.equals(Float.class)) {
-							unboxedResult = ((Float) left / (Float) right);
-						} else {
-							log.warn("Multiplication operator division ('/') not supported for type: {}", leftResultType.getSimpleName());
-							unboxedResult = ErrorValue
-									.newErrorValue(String.format("Multiplication operator division ('/') not supported for type: %s", leftResultType.getSimpleName()));
-						}
-						break;
-					case "%":
-						if (leftResultType.equals(Integer.class)) {
-							unboxedResult = ((Integer) left % (Integer) right);
-						} else {
-							log.warn("Multiplication operator remainder ('%') not supported for type: {}", leftResultType.getSimpleName());
-							unboxedResult = ErrorValue.newErrorValue(String.format("Multiplication operator remainder ('%%') not supported for type: %s",
-								leftResultType.getSimpleName()));
-						}
-						break;
-					case "<<":
-						if (leftResultType.equals(Integer.class)) {
-							if (((Integer) right) >= 0) {
-								unboxedResult = ((Integer) left << (Integer) right);
-							} else {
-								log.warn("Left shift operator supports only non-negative integers as its right operand");
-								unboxedResult = ErrorValue.newErrorValue("Left shift operator supports only non-negative integers as its right operand");
-							}
-						} else {
-							log.warn("Multiplication operator left shift ('<<') not supported for type: {}", leftResultType.getSimpleName());
-							unboxedResult = ErrorValue.newErrorValue(String.format("Multiplication operator left shift ('<<') not supported for type: %s",
-								leftResultType.getSimpleName()));
-						}
-						break;
-					case ">>":
-						if (leftResultType.equals(Integer.class)) {
-							if (((Integer) right) >= 0) {
-								unboxedResult = ((Integer) left >> (Integer) right);
-							} else {
-								log.warn("Right shift operator supports only non-negative integers as its right operand");
-								unboxedResult = ErrorValue.newErrorValue("Right shift operator supports only non-negative integers as its right operand");
-							}
-						} else {
-							log.warn("Multiplication operator right shift ('>>') not supported for type: {}", leftResultType.getSimpleName());
-							unboxedResult = ErrorValue.newErrorValue(String.format("Multiplication operator right shift ('>>') not supported for type: %s",
-								leftResultType.getSimpleName()));
-						}
-						break;
-					case "&":
-						if (leftResultType.equals(Integer.class)) {
-							unboxedResult = ((Integer) left & (Integer) right);
-						} else {
-							log.warn("Addition operator bitwise and ('&') not supported for type: {}", leftResultType.getSimpleName());
-							unboxedResult = ErrorValue
-									.newErrorValue(String.format("Addition operator bitwise and ('&') not supported for type: %s", leftResultType.getSimpleName()));
-						}
-						break;
-					case "&^":
-						if (leftResultType.equals(Integer.class)) {
-							unboxedResult = ((Integer) left & ~(Integer) right);
-						} else {
-							log.warn("Addition operator bitwise or ('|') not supported for type: {}", leftResultType.getSimpleName());
-							unboxedResult = ErrorValue
-									.newErrorValue(String.format("Addition operator bitwise or ('|') not supported for type: %s", leftResultType.getSimpleName()));
-						}
-						break;
-					default:
-						log.error("Unsupported expression {}", op);
-						unboxedResult = ErrorValue.newErrorValue(String.format("Unsupported expression %s", op));
-				}
-				ConstantValue cv = ConstantValue.of(unboxedResult);
-				cv.addResponsibleVerticesFrom(leftBoxed, rightBoxed);
-				combinedResult.put(key, cv);
-			}
+			combinedResult.put(key, multiplyValues(op, leftBoxed, rightBoxed));
 		}
 		return combinedResult;
 	}
 
 	@NonNull
 	private Map<Integer, MarkIntermediateResult> evaluateUnaryExpr(UnaryExpression expr) {
-		log.debug("Evaluating unary expression: {}", ExpressionHelper.exprToString(expr));
+		if (log.isDebugEnabled()) {
+			log.debug("Evaluating unary expression: {}", ExpressionHelper.exprToString(expr));
+		}
 
 		String op = expr.getOp();
 
 		Map<Integer, MarkIntermediateResult> subExprResult = evaluateExpression(expr.getExp()); // evaluate the subexpression
 
 		for (Map.Entry<Integer, MarkIntermediateResult> entry : subExprResult.entrySet()) {
-
-			ConstantValue valueBoxed = (ConstantValue) entry.getValue();
-			Object value = valueBoxed.getValue();
-			Class subExprResultType = value.getClass();
-
-			Object unboxedResult;
-
-			switch (op) {
-				case "+":
-					if (subExprResultType.equals(Integer.class) || subExprResultType.equals(Float.class)) {
-						continue; // do not change anything
-					} else {
-						log.warn("Unary operator plus sign ('+') not supported for type: {}", subExprResultType.getSimpleName());
-						unboxedResult = ErrorValue
-								.newErrorValue(String.format("Unary operator plus sign ('+') not supported for type: %s", subExprResultType.getSimpleName()));
-					}
-					break;
-				case "-":
-					if (subExprResultType.equals(Integer.class)) {
-						unboxedResult = -((Integer) value);
-					} else if (subExprResultType.equals(Float.class)) {
-						unboxedResult = -((Float) value);
-					} else {
-						log.warn("Unary operator minus sign ('-') not supported for type: {}", subExprResultType.getSimpleName());
-						unboxedResult = ErrorValue
-								.newErrorValue(String.format("Unary operator minus sign ('-') not supported for type: %s", subExprResultType.getSimpleName()));
-					}
-					break;
-				case "!":
-					if (subExprResultType.equals(Boolean.class)) {
-						unboxedResult = !((Boolean) value);
-					} else {
-						log.warn("Unary operator logical not ('!') not supported for type: {}", subExprResultType.getSimpleName());
-						unboxedResult = ErrorValue
-								.newErrorValue(String.format("Unary operator logical not ('!') not supported for type: %s", subExprResultType.getSimpleName()));
-					}
-					break;
-				case "^":
-					if (subExprResultType.equals(Integer.class)) {
-						unboxedResult = ~((Integer) value);
-					} else {
-						log.warn("Unary operator bitwise complement ('~') not supported for type: {}", subExprResultType.getSimpleName());
-						unboxedResult = ErrorValue
-								.newErrorValue(String.format("Unary operator bitwise complement ('~') not supported for type: %s", subExprResultType.getSimpleName()));
-					}
-					break;
-				default:
-					log.warn("Trying to evaluate unknown unary expression: {}", ExpressionHelper.exprToString(expr));
-					unboxedResult = ErrorValue.newErrorValue(String.format("Trying to evaluate unknown unary expression: %s", ExpressionHelper.exprToString(expr)));
-			}
-			ConstantValue cv = ConstantValue.of(unboxedResult);
-			cv.addResponsibleVerticesFrom(valueBoxed);
-			subExprResult.put(entry.getKey(), cv);
+			entry.setValue(applyUnary(op, (ConstantValue) entry.getValue(), expr));
 		}
 		return subExprResult;
 	}
@@ -784,7 +522,7 @@ public class ExpressionEvaluator {
 
 		if (resolvedOperand == null) {
 			// if this operand is not resolved yet in this expressionevaluation, resolve it
-			Map<Integer, List<CPGVertexWithValue>> operandVertices = CrymlinQueryWrapper.resolveOperand(resultCtx.getDatabase(), markContextHolder, operand, markRule,
+			Map<Integer, List<CPGVertexWithValue>> operandVertices = CrymlinQueryWrapper.resolveOperand(resultCtx, markContextHolder, operand, markRule,
 				markModel, traversal);
 			if (operandVertices.size() == 0) {
 				log.warn("Did not find any vertices for {}, following evaluation will be imprecise", operand);
@@ -796,6 +534,297 @@ public class ExpressionEvaluator {
 		return resolvedOperand;
 	}
 
+	/**
+	 * Combines the values of the two sides of a logical expression. Errors are only propagated if the other side does not decide the result.
+	 *
+	 * @param and true for a logical "and", false for a logical "or"
+	 */
+	@NonNull
+	static ConstantValue combineLogical(boolean and, @NonNull ConstantValue leftBoxed, @NonNull ConstantValue rightBoxed, Expression leftExp, Expression rightExp) {
+		Object left = leftBoxed.getValue();
+		Object right = rightBoxed.getValue();
+
+		boolean leftHasError = ConstantValue.isError(leftBoxed);
+		boolean rightHasError = ConstantValue.isError(rightBoxed);
+
+		if (leftHasError && rightHasError) {
+			// null & null = null, null | null = null
+			return ErrorValue.newErrorValue("Cannot perform logical expression, left and right expression have an error", leftBoxed, rightBoxed);
+
+		} else if (!(leftHasError || left.getClass().equals(Boolean.class))
+				||
+				!(rightHasError || right.getClass().equals(Boolean.class))) {
+
+			log.warn("At least one subexpression is not of type Boolean: {} vs {}",
+				ExpressionHelper.exprToString(leftExp),
+				ExpressionHelper.exprToString(rightExp));
+			return ErrorValue.newErrorValue(String.format("Cannot perform logical expression, left is %s, right is %s",
+				leftHasError ? "error" : left.toString(),
+				rightHasError ? "error" : right.toString()), leftBoxed, rightBoxed);
+
+		} else if (and) {
+			if (leftHasError || rightHasError) {
+				// null & true = null
+				// null & false = false
+				if ((!rightHasError && right.equals(false))
+						||
+						(!leftHasError && left.equals(false))) {
+					return ConstantValue.of(false);
+				}
+				return ErrorValue.newErrorValue(String.format("Cannot perform logical AND, left is %s, right is %s",
+					leftHasError ? "error" : left.toString(),
+					rightHasError ? "error" : right.toString()));
+			}
+
+			ConstantValue cv = ConstantValue.of(Boolean.logicalAnd((Boolean) left, (Boolean) right));
+			cv.addResponsibleVerticesFrom(leftBoxed, rightBoxed);
+			return cv;
+
+		} else { // LogicalOrExpression
+			if (leftHasError || rightHasError) {
+				// null | true = true
+				// null | false = null
+				if ((!rightHasError && right.equals(true))
+						||
+						(!leftHasError && left.equals(true))) {
+					return ConstantValue.of(true);
+				}
+				return ErrorValue.newErrorValue(String.format("Cannot perform logical or, left is %s, right is %s",
+					leftHasError ? "error" : left.toString(),
+					rightHasError ? "error" : right.toString()));
+			}
+
+			ConstantValue cv = ConstantValue.of(Boolean.logicalOr((Boolean) left, (Boolean) right));
+			cv.addResponsibleVerticesFrom(leftBoxed, rightBoxed);
+			return cv;
+		}
+	}
+
+	/**
+	 * Compares two single values.
+	 *
+	 * @param pattern the pre-compiled pattern of a "like" comparison against a string literal, or null
+	 */
+	@NonNull
+	static ConstantValue compareValues(@NonNull String op, @NonNull ConstantValue leftBoxed, @NonNull ConstantValue rightBoxed, @Nullable Pattern pattern) {
+		if (ConstantValue.isError(leftBoxed) || ConstantValue.isError(rightBoxed)) {
+			// result of comparison is not known
+			return ErrorValue.newErrorValue(
+				"Cannot perform comparison, " + (ConstantValue.isError(leftBoxed) ? "left" : "right") + " expression has errors", leftBoxed, rightBoxed);
+		}
+
+		Object left = leftBoxed.getValue();
+		Object right = rightBoxed.getValue();
+		String leftComp = ExpressionHelper.toComparableString(left);
+		String rightComp = ExpressionHelper.toComparableString(right);
+		ExpressionComparator<String> comp = new ExpressionComparator<>();
+
+		log.debug("left result={} right result={}", left, right);
+
+		ConstantValue cv;
+		switch (op) {
+			case "==":
+				cv = ConstantValue.of(comp.compare(leftComp, rightComp) == 0);
+				break;
+			case "!=":
+				cv = ConstantValue.of(comp.compare(leftComp, rightComp) != 0);
+				break;
+			case "<":
+				cv = ConstantValue.of(comp.compare(leftComp, rightComp) < 0);
+				break;
+			case "<=":
+				cv = ConstantValue.of(comp.compare(leftComp, rightComp) <= 0);
+				break;
+			case ">":
+				cv = ConstantValue.of(comp.compare(leftComp, rightComp) > 0);
+				break;
+			case ">=":
+				cv = ConstantValue.of(comp.compare(leftComp, rightComp) >= 0);
+				break;
+			case "like":
+				if (pattern != null) {
+					// right side is a string literal, whose pattern has been compiled in advance
+					cv = ConstantValue.of(pattern.matcher(leftComp).matches());
+				} else {
+					cv = ConstantValue.of(Pattern.matches(rightComp, leftComp));
+				}
+				break;
+			default:
+				log.warn("Unsupported operand {}", op);
+				return ErrorValue.newErrorValue(String.format("Unsupported operand %s", op));
+		}
+		cv.addResponsibleVerticesFrom(leftBoxed, rightBoxed);
+		return cv;
+	}
+
+	/**
+	 * Applies a multiplicative operator to two single values.
+	 */
+	@NonNull
+	static ConstantValue multiplyValues(@NonNull String op, @NonNull ConstantValue leftBoxed, @NonNull ConstantValue rightBoxed) {
+		if (ConstantValue.isError(leftBoxed) || ConstantValue.isError(rightBoxed)) {
+			// result of expr is not known
+			return ErrorValue.newErrorValue("cannot multiply expressions, left or right expression has errors", leftBoxed, rightBoxed);
+		}
+
+		Object left = leftBoxed.getValue();
+		Object right = rightBoxed.getValue();
+		Class leftResultType = left.getClass();
+		Class rightResultType = right.getClass();
+
+		if (!leftResultType.equals(rightResultType)) {
+			log.warn("Type of left expression does not match type of right expression: {} vs {}",
+				leftResultType.getSimpleName(),
+				rightResultType.getSimpleName());
+		}
+
+		Object unboxedResult;
+
+		switch (op) {
+			case "*":
+				// FIXME check if an overflow occurs (Math.multiplyExact). But what to do if this overflows?
+				if (leftResultType.equals(Integer.class)) {
+					unboxedResult = ((Integer) left * (Integer) right);
+				} else if (leftResultType.equals(Float.class)) {
+					unboxedResult = ((Float) left * (Float) right);
+				} else {
+					log.warn("Multiplication operator multiplication ('*') not supported for type: {}", leftResultType.getSimpleName());
+					unboxedResult = ErrorValue.newErrorValue(String.format("Multiplication operator multiplication ('*') not supported for type: %s",
+						leftResultType.getSimpleName()));
+				}
+				break;
+			case "/":
+				if (leftResultType.equals(Integer.class)) {
+					unboxedResult = ((Integer) left / (Integer) right);
+				} else if (leftResultType.equals(Float.class)) {
+					unboxedResult = ((Float) left / (Float) right);
+				} else {
+					log.warn("Multiplication operator division ('/') not supported for type: {}", leftResultType.getSimpleName());
+					unboxedResult = ErrorValue
+							.newErrorValue(String.format("Multiplication operator division ('/') not supported for type: %s", leftResultType.getSimpleName()));
+				}
+				break;
+			case "%":
+				if (leftResultType.equals(Integer.class)) {
+					unboxedResult = ((Integer) left % (Integer) right);
+				} else {
+					log.warn("Multiplication operator remainder ('%') not supported for type: {}", leftResultType.getSimpleName());
+					unboxedResult = ErrorValue.newErrorValue(String.format("Multiplication operator remainder ('%%') not supported for type: %s",
+						leftResultType.getSimpleName()));
+				}
+				break;
+			case "<<":
+				if (leftResultType.equals(Integer.class)) {
+					if (((Integer) right) >= 0) {
+						unboxedResult = ((Integer) left << (Integer) right);
+					} else {
+						log.warn("Left shift operator supports only non-negative integers as its right operand");
+						unboxedResult = ErrorValue.newErrorValue("Left shift operator supports only non-negative integers as its right operand");
+					}
+				} else {
+					log.warn("Multiplication operator left shift ('<<') not supported for type: {}", leftResultType.getSimpleName());
+					unboxedResult = ErrorValue.newErrorValue(String.format("Multiplication operator left shift ('<<') not supported for type: %s",
+						leftResultType.getSimpleName()));
+				}
+				break;
+			case ">>":
+				if (leftResultType.equals(Integer.class)) {
+					if (((Integer) right) >= 0) {
+						unboxedResult = ((Integer) left >> (Integer) right);
+					} else {
+						log.warn("Right shift operator supports only non-negative integers as its right operand");
+						unboxedResult = ErrorValue.newErrorValue("Right shift operator supports only non-negative integers as its right operand");
+					}
+				} else {
+					log.warn("Multiplication operator right shift ('>>') not supported for type: {}", leftResultType.getSimpleName());
+					unboxedResult = ErrorValue.newErrorValue(String.format("Multiplication operator right shift ('>>') not supported for type: %s",
+						leftResultType.getSimpleName()));
+				}
+				break;
+			case "&":
+				if (leftResultType.equals(Integer.class)) {
+					unboxedResult = ((Integer) left & (Integer) right);
+				} else {
+					log.warn("Addition operator bitwise and ('&') not supported for type: {}", leftResultType.getSimpleName());
+					unboxedResult = ErrorValue
+							.newErrorValue(String.format("Addition operator bitwise and ('&') not supported for type: %s", leftResultType.getSimpleName()));
+				}
+				break;
+			case "&^":
+				if (leftResultType.equals(Integer.class)) {
+					unboxedResult = ((Integer) left & ~(Integer) right);
+				} else {
+					log.warn("Addition operator bitwise or ('|') not supported for type: {}", leftResultType.getSimpleName());
+					unboxedResult = ErrorValue
+							.newErrorValue(String.format("Addition operator bitwise or ('|') not supported for type: %s", leftResultType.getSimpleName()));
+				}
+				break;
+			default:
+				log.error("Unsupported expression {}", op);
+				unboxedResult = ErrorValue.newErrorValue(String.format("Unsupported expression %s", op));
+		}
+		ConstantValue cv = ConstantValue.of(unboxedResult);
+		cv.addResponsibleVerticesFrom(leftBoxed, rightBoxed);
+		return cv;
+	}
+
+	/**
+	 * Applies a unary operator to a single value.
+	 */
+	@NonNull
+	static ConstantValue applyUnary(@NonNull String op, @NonNull ConstantValue valueBoxed, @NonNull UnaryExpression expr) {
+		Object value = valueBoxed.getValue();
+		Class subExprResultType = value.getClass();
+
+		Object unboxedResult;
+
+		switch (op) {
+			case "+":
+				if (subExprResultType.equals(Integer.class) || subExprResultType.equals(Float.class)) {
+					return valueBoxed; // do not change anything
+				}
+				log.warn("Unary operator plus sign ('+') not supported for type: {}", subExprResultType.getSimpleName());
+				unboxedResult = ErrorValue
+						.newErrorValue(String.format("Unary operator plus sign ('+') not supported for type: %s", subExprResultType.getSimpleName()));
+				break;
+			case "-":
+				if (subExprResultType.equals(Integer.class)) {
+					unboxedResult = -((Integer) value);
+				} else if (subExprResultType.equals(Float.class)) {
+					unboxedResult = -((Float) value);
+				} else {
+					log.warn("Unary operator minus sign ('-') not supported for type: {}", subExprResultType.getSimpleName());
+					unboxedResult = ErrorValue
+							.newErrorValue(String.format("Unary operator minus sign ('-') not supported for type: %s", subExprResultType.getSimpleName()));
+				}
+				break;
+			case "!":
+				if (subExprResultType.equals(Boolean.class)) {
+					unboxedResult = !((Boolean) value);
+				} else {
+					log.warn("Unary operator logical not ('!') not supported for type: {}", subExprResultType.getSimpleName());
+					unboxedResult = ErrorValue
+							.newErrorValue(String.format("Unary operator logical not ('!') not supported for type: %s", subExprResultType.getSimpleName()));
+				}
+				break;
+			case "^":
+				if (subExprResultType.equals(Integer.class)) {
+					unboxedResult = ~((Integer) value);
+				} else {
+					log.warn("Unary operator bitwise complement ('~') not supported for type: {}", subExprResultType.getSimpleName());
+					unboxedResult = ErrorValue
+							.newErrorValue(String.format("Unary operator bitwise complement ('~') not supported for type: %s", subExprResultType.getSimpleName()));
+				}
+				break;
+			default:
+				log.warn("Trying to evaluate unknown unary expression: {}", ExpressionHelper.exprToString(expr));
+				unboxedResult = ErrorValue.newErrorValue(String.format("Trying to evaluate unknown unary expression: %s", ExpressionHelper.exprToString(expr)));
+		}
+		ConstantValue cv = ConstantValue.of(unboxedResult);
+		cv.addResponsibleVerticesFrom(valueBoxed);
+		return cv;
+	}
+
 	public CrymlinTraversalSource getCrymlinTraversal() {
 		return this.traversal;
 	}
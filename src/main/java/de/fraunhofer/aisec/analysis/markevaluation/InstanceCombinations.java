@@ -0,0 +1,149 @@
+
+package de.fraunhofer.aisec.analysis.markevaluation;
+
+import de.fraunhofer.aisec.analysis.structures.CPGInstanceContext;
+import de.fraunhofer.aisec.analysis.structures.Pair;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiPredicate;
+
+/**
+ * Lazily enumerates the cartesian product of the instances of all entities used by a MARK rule.
+ * <p>
+ * In contrast to {@code Lists.cartesianProduct}, a combination is only created when it is requested, so memory is proportional to the number of combinations
+ * consumed at a time rather than to the size of the product. In addition, constraints between two instances can be given. A constraint is checked as soon as
+ * both of its instances are assigned, so whole subtrees of the product are skipped if a partial combination violates it.
+ */
+class InstanceCombinations implements Iterator<CPGInstanceContext> {
+
+	/**
+	 * A constraint between the instances at two positions of the combination.
+	 */
+	static class Constraint {
+		private final int first;
+		private final int second;
+		private final BiPredicate<Vertex, Vertex> compatible;
+
+		/**
+		 * @param first      position of the first instance
+		 * @param second     position of the second instance
+		 * @param compatible returns false, if a combination containing both vertices must not be enumerated
+		 */
+		Constraint(int first, int second, @NonNull BiPredicate<Vertex, Vertex> compatible) {
+			this.first = first;
+			this.second = second;
+			this.compatible = compatible;
+		}
+	}
+
+	@NonNull
+	private final List<List<Pair<String, Vertex>>> entities;
+
+	/**
+	 * Constraints, indexed by the larger of their two positions, i.e. the position at which they can be checked.
+	 */
+	@NonNull
+	private final List<List<Constraint>> constraintsByPosition = new ArrayList<>();
+
+	private final int[] indices;
+
+	private boolean nextComputed;
+	private boolean hasNext;
+
+	/**
+	 * @param entities    for each entity of the rule, the list of its possible instances
+	 * @param constraints constraints between instances. Note that they must only rule out combinations which would not yield any result anyway.
+	 */
+	InstanceCombinations(@NonNull List<List<Pair<String, Vertex>>> entities, @NonNull List<Constraint> constraints) {
+		this.entities = entities;
+		this.indices = new int[entities.size()];
+		for (int i = 0; i < entities.size(); i++) {
+			constraintsByPosition.add(new ArrayList<>());
+		}
+		for (Constraint c : constraints) {
+			constraintsByPosition.get(Math.max(c.first, c.second)).add(c);
+		}
+
+		// Like Lists.cartesianProduct, the product of an empty list of entities is a single empty combination
+		this.nextComputed = true;
+		this.hasNext = entities.isEmpty() || findNext(0);
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (!nextComputed) {
+			int last = indices.length - 1;
+			indices[last]++;
+			hasNext = findNext(last);
+			nextComputed = true;
+		}
+		return hasNext;
+	}
+
+	@Override
+	public CPGInstanceContext next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		CPGInstanceContext instanceCtx = new CPGInstanceContext();
+		for (int i = 0; i < indices.length; i++) {
+			Pair<String, Vertex> p = entities.get(i).get(indices[i]);
+			instanceCtx.putMarkInstance(p.getValue0(), p.getValue1());
+		}
+
+		if (indices.length == 0) {
+			// an empty product has exactly one combination
+			hasNext = false;
+		} else {
+			nextComputed = false;
+		}
+		return instanceCtx;
+	}
+
+	/**
+	 * Advances {@code indices} to the next consistent combination, starting with the candidate currently at position {@code pos}.
+	 *
+	 * @return false, if there is no further combination
+	 */
+	private boolean findNext(int pos) {
+		while (pos >= 0) {
+			if (indices[pos] >= entities.get(pos).size()) {
+				// all candidates at this position are exhausted, backtrack
+				indices[pos] = 0;
+				pos--;
+				if (pos >= 0) {
+					indices[pos]++;
+				}
+			} else if (!isConsistent(pos)) {
+				indices[pos]++;
+			} else if (pos == indices.length - 1) {
+				return true;
+			} else {
+				pos++;
+				indices[pos] = 0;
+			}
+		}
+		return false;
+	}
+
+	private boolean isConsistent(int pos) {
+		for (Constraint c : constraintsByPosition.get(pos)) {
+			if (!c.compatible.test(vertexAt(c.first), vertexAt(c.second))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Nullable
+	private Vertex vertexAt(int pos) {
+		return entities.get(pos).get(indices[pos]).getValue1();
+	}
+}
@@ -13,6 +13,7 @@ import de.fraunhofer.aisec.crymlin.dsl.CrymlinTraversalSource;
 import de.fraunhofer.aisec.mark.markDsl.OrderExpression;
 import de.fraunhofer.aisec.markmodel.MRule;
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,6 +22,9 @@ public class OrderEvaluator {
 	private static final Logger log = LoggerFactory.getLogger(OrderEvaluator.class);
 	private final MRule rule;
 	private final ServerConfiguration config;
+	// shared by all contexts, so that each function is only walked once
+	@Nullable
+	private OrderNFAEvaluator orderNFAEvaluator;
 
 	public OrderEvaluator(@NonNull MRule rule, ServerConfiguration config) {
 		this.rule = rule;
@@ -37,7 +41,7 @@ public class OrderEvaluator {
 
 			case WPDS:
 				log.info("Evaluating order with WPDS");
-				TypeStateAnalysis ts = new TypeStateAnalysis(markContextHolder, resultCtx);
+				TypeStateAnalysis ts = new TypeStateAnalysis(markContextHolder, resultCtx, config.matrixTypestateWeights);
 				try {
 					// NOTE: rule and orderExpression might be redundant as arguments
 					result = ts.analyze(orderExpression, contextID, resultCtx, crymlinTraversal, rule);
@@ -50,7 +54,9 @@ public class OrderEvaluator {
 
 			case NFA:
 				log.info("Evaluating order with NFA");
-				OrderNFAEvaluator orderNFAEvaluator = new OrderNFAEvaluator(rule, markContextHolder);
+				if (orderNFAEvaluator == null) {
+					orderNFAEvaluator = new OrderNFAEvaluator(rule, markContextHolder);
+				}
 				result = orderNFAEvaluator.evaluate(orderExpression, contextID, resultCtx, crymlinTraversal);
 				break;
 
@@ -8,31 +8,39 @@ import de.fraunhofer.aisec.analysis.structures.ErrorValue;
 import de.fraunhofer.aisec.analysis.structures.Finding;
 import de.fraunhofer.aisec.analysis.structures.MarkContextHolder;
 import de.fraunhofer.aisec.analysis.structures.Pair;
+import de.fraunhofer.aisec.analysis.utils.Utils;
+import de.fraunhofer.aisec.cpg.graph.ConstructExpression;
+import de.fraunhofer.aisec.cpg.graph.MemberCallExpression;
+import de.fraunhofer.aisec.cpg.graph.StaticCallExpression;
 import de.fraunhofer.aisec.crymlin.CrymlinQueryWrapper;
 import de.fraunhofer.aisec.crymlin.dsl.CrymlinTraversalSource;
 import de.fraunhofer.aisec.mark.markDsl.OrderExpression;
 import de.fraunhofer.aisec.markmodel.MEntity;
 import de.fraunhofer.aisec.markmodel.MOp;
 import de.fraunhofer.aisec.markmodel.MRule;
-import de.fraunhofer.aisec.markmodel.fsm.FSM;
-import de.fraunhofer.aisec.markmodel.fsm.Node;
+import de.fraunhofer.aisec.markmodel.fsm.DFA;
 import org.apache.tinkerpop.gremlin.structure.Direction;
 import org.apache.tinkerpop.gremlin.structure.Edge;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URI;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.TreeSet;
 
 import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.END_COLUMN;
 import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.END_LINE;
@@ -46,6 +54,10 @@ public class OrderNFAEvaluator {
 	private static final Logger log = LoggerFactory.getLogger(OrderNFAEvaluator.class);
 	private final MRule rule;
 	private final MarkContextHolder markContextHolder;
+	@Nullable
+	private Map<Vertex, MOp> verticesToOp;
+	// results by order expression and function, shared by all contexts in the same function
+	private final Map<List<Object>, FunctionResult> functionResults = new HashMap<>();
 
 	public OrderNFAEvaluator(MRule rule, MarkContextHolder markContextHolder) {
 		this.rule = rule;
@@ -107,25 +119,10 @@ public class OrderNFAEvaluator {
 
 		Vertex functionDeclaration = containingFunction.get();
 
-		boolean isOrderValid = true;
-
 		// rule.getFSM().pushToDB(); //debug only
 		log.info("\tEvaluating rule {}", rule.getName());
 
-		// Cache which Vertex belongs to which Op/Entity
-		// a vertex can _only_ belong to one entity/op!
-		HashMap<Vertex, MOp> verticesToOp = new HashMap<>();
-		for (Map.Entry<String, Pair<String, MEntity>> entry : rule.getEntityReferences().entrySet()) {
-			MEntity ent = entry.getValue().getValue1();
-			if (ent == null) {
-				continue;
-			}
-			for (MOp op : ent.getOps()) {
-				op.getAllVertices().forEach(v -> verticesToOp.put(v, op));
-			}
-		}
-
-		if (verticesToOp.isEmpty()) {
+		if (getVerticesToOp().isEmpty()) {
 			log.info("no nodes match this rule. Skipping rule.");
 			return ErrorValue.newErrorValue("no nodes match this rule. Skipping rule.");
 		}
@@ -144,304 +141,50 @@ public class OrderNFAEvaluator {
 			referencedVertices.add(v.id());
 		}
 
-		FSM fsm = new FSM();
-		fsm.sequenceToFSM(orderExpression.getExp());
-
-		log.info("Evaluating function {}", (Object) functionDeclaration.value("name"));
-
-		HashSet<Vertex> currentWorklist = new HashSet<>();
-		currentWorklist.add(functionDeclaration);
-
-		// which bases did we already see, but are not initialized correctly base to set of eogpaths
-		HashMap<String, HashSet<String>> disallowedBases = new HashMap<>();
-		// stores the current markings in the FSM (i.e., which base is at which FSM-node)
-		HashMap<String, HashSet<Node>> baseToFSMNodes = new HashMap<>();
-		// last usage of base
-		HashMap<String, Vertex> lastBaseUsage = new HashMap<>();
-
-		HashMap<Long, HashSet<String>> nodeIDtoEOGPathSet = new HashMap<>();
-		HashSet<String> startEOG = new HashSet<>();
-		startEOG.add("0");
-		nodeIDtoEOGPathSet.put((Long) functionDeclaration.id(), startEOG);
-
-		HashSet<String> seenStates = new HashSet<>();
-		long visitedNodes = 0;
-
-		while (!currentWorklist.isEmpty()) {
-			HashSet<Vertex> nextWorklist = new HashSet<>();
-
-			for (Vertex vertex : currentWorklist) {
-				visitedNodes++;
-
-				String currentState = getStateSnapshot(vertex, baseToFSMNodes);
-				seenStates.add(currentState);
-
-				HashSet<String> eogPathSet = nodeIDtoEOGPathSet.get((Long) vertex.id());
-				if (eogPathSet == null) {
-					log.warn("Error during Order-evaluation, no path set for node {}", (Long) vertex.id());
-					continue;
-				}
-				for (String eogPath : eogPathSet) {
-
-					// ... no direct access to the labels TreeSet of Neo4JVertex
-					if ((vertex.label().contains("MemberCallExpression") || vertex.label().equals("CallExpression")
-							|| vertex.label().contains("ConstructExpression")
-							|| vertex.label().contains("StaticCallExpression"))
-							// is the vertex part of any op of any mentioned entity? If not, ignore
-							&& verticesToOp.get(vertex) != null) {
-
-						MOp op = verticesToOp.get(vertex);
-						// check if the vertex actually belongs to a entity used in this rule
-						if (rule.getEntityReferences()
-								.values()
-								.stream()
-								.anyMatch(x -> Objects.equals(x.getValue1(), op.getParent()))) {
-
-							String base = null;
-							String ref = null;
-							Vertex refNode = null;
-							if (vertex.label().contains("MemberCallExpression")) {
-								Iterator<Edge> it = vertex.edges(Direction.OUT, "BASE");
-								if (it.hasNext()) {
-									Vertex baseVertex = it.next()
-											.inVertex();
-									base = baseVertex.value("name");
-									Iterator<Edge> refIterator = baseVertex.edges(Direction.OUT, "REFERS_TO");
-									if (refIterator.hasNext()) {
-										refNode = refIterator.next()
-												.inVertex();
-										ref = refNode.id().toString();
-									}
-								}
-							} else if (vertex.label().contains("StaticCallExpression") || vertex.label().equals("CallExpression")) {
-								Iterator<Edge> it = vertex.edges(Direction.OUT, "DFG");
-								if (it.hasNext()) {
-									Vertex baseVertex = it.next()
-											.inVertex();
-									base = baseVertex.value("name");
-									if (baseVertex.label().equals("ConstructExpression")) {
-										it = baseVertex.edges(Direction.OUT, "DFG");
-										if (it.hasNext()) {
-											baseVertex = it.next().inVertex();
-											base = baseVertex.value("name");
-										}
-									}
-									if (baseVertex.label().equals("VariableDeclaration")) {
-										// this is already the reference
-										refNode = baseVertex;
-										ref = refNode.id().toString();
-									} else {
-										Iterator<Edge> refIterator = baseVertex.edges(Direction.OUT, "REFERS_TO");
-										if (refIterator.hasNext()) {
-											refNode = refIterator.next()
-													.inVertex();
-											ref = refNode.id().toString();
-										}
-									}
-								}
-							} else { // ctor
-								Iterator<Edge> it = vertex.edges(Direction.IN, "INITIALIZER");
-								if (it.hasNext()) {
-									Vertex baseVertex = it.next().outVertex();
-									it = baseVertex.edges(Direction.OUT, "DFG");
-									if (it.hasNext()) {
-										baseVertex = it.next().inVertex();
-										base = baseVertex.value("name");
-										// for ctor, the DFG points already to the variabledecl
-										refNode = baseVertex;
-										ref = refNode.id().toString();
-									}
-								}
-							}
-							if (base == null) {
-								log.error("base must not be null for {}", vertex.label());
-							} else {
-
-								if (refNode != null
-										&& !referencedVertices.contains(refNode.id())) {
-									log.info("this call does not reference the function we are looking at, skipping.");
-
-								} else {
-									// if we have a reference to a node in the cpg, we add this to the prefixed
-									// base this way, we could differentiate between nodes with the same base
-									// name, but referencing different variables (e.g., if they are used in
-									// different blocks)
-									if (ref != null) {
-										base += "|" + ref;
-									}
-
-									String prefixedBase = eogPath + "." + base;
-
-									if (isDisallowedBase(disallowedBases, eogPath, base)) {
-										// we hide base errors for now!
-									} else {
-										Set<Node> nodesInFSM;
-										if (baseToFSMNodes.get(prefixedBase) == null) {
-											// we have not seen this base before. check if this is the start of an order
-											nodesInFSM = fsm.getStart(); // start nodes
-										} else {
-											nodesInFSM = baseToFSMNodes.get(prefixedBase); // nodes calculated in previous step
-										}
-
-										HashSet<Node> nextNodesInFSM = new HashSet<>();
-
-										// did at least one fsm-Node-match occur?
-										boolean match = false;
-										for (Node n : nodesInFSM) {
-											// are there any ops corresponding to the current base and the current function name?
-											if (op != null && op.getName().equals(n.getOp())) {
-												// this also has as effect, that if the FSM is in a end-state and a
-												// intermediate state, and we follow the intermediate state, the
-												// end-state is removed again, which is correct!
-												nextNodesInFSM.addAll(n.getSuccessors());
-												match = true;
-											}
-										}
-										if (!match) {
-											// if not, this call is not allowed, and this base must not be used in the
-											// following eog
-											isOrderValid = false;
-											Finding f = new Finding(
-												"Violation against Order: "
-														+ vertex.value("code")
-														+ " ("
-														+ (op == null ? "null" : op.getName())
-														+ ") is not allowed. Expected one of: "
-														+ nodesInFSM.stream()
-																.map(Node::getName)
-																.sorted()
-																.collect(Collectors.joining(", "))
-														+ " ("
-														+ rule.getErrorMessage()
-														+ ")",
-												rule.getErrorMessage(),
-												CrymlinQueryWrapper.getFileLocation(vertex),
-												toIntExact(vertex.value(START_LINE)) - 1,
-												toIntExact(vertex.value(END_LINE)) - 1,
-												toIntExact(vertex.value(START_COLUMN)) - 1,
-												toIntExact(vertex.value(END_COLUMN)) - 1);
-											if (markContextHolder.isCreateFindingsDuringEvaluation()) {
-												ctx.getFindings().add(f);
-											}
-											log.info("Finding: {}", f);
-											disallowedBases.computeIfAbsent(base, x -> new HashSet<>()).add(eogPath);
-										} else {
-											Vertex vertex1 = lastBaseUsage.get(prefixedBase);
-											long prevMaxLine = 0;
-											if (vertex1 != null) {
-												prevMaxLine = vertex1.value(START_LINE);
-											}
-											long newLine = vertex.value(START_LINE);
-											if (prevMaxLine <= newLine) {
-												lastBaseUsage.put(prefixedBase, vertex);
-											}
-											baseToFSMNodes.put(prefixedBase, nextNodesInFSM);
-										}
-									}
-								}
-							}
-						}
-					}
-					ArrayList<Vertex> outVertices = new ArrayList<>();
-					vertex.edges(Direction.OUT, EOG)
-							.forEachRemaining(edge -> outVertices.add(edge.inVertex()));
-
-					// if more than one vertex follows the curreant one, we need to branch the eogPath
-					if (outVertices.size() > 1) { // split
-						HashSet<String> oldBases = new HashSet<>();
-						HashMap<String, HashSet<Node>> newBases = new HashMap<>();
-						// first we collect all entries which we need to remove from the baseToFSMNodes
-						// map we also store these entries without the eog path prefix, to update later
-						// in (1)
-						for (Map.Entry<String, HashSet<Node>> entry : baseToFSMNodes.entrySet()) {
-							if (entry.getKey().startsWith(eogPath)) {
-								oldBases.add(entry.getKey());
-								// keep the "." before the real base, as we need it later anyway
-								newBases.put(entry.getKey().substring(eogPath.length()),
-									entry.getValue());
-							}
-						}
-						oldBases.forEach(baseToFSMNodes::remove);
-
-						// (1) update all entries previously removed from the baseToFSMNodes map with
-						// the new eogpath as prefix to the base
-						for (int i = outVertices.size() - 1; i >= 0; i--) {
-							// also update them in the baseToFSMNodes map
-							String newEOGPath = eogPath + i;
-							newBases.forEach((k, v) -> baseToFSMNodes.put(newEOGPath + k, v));
-
-							String stateOfNext = getStateSnapshot(outVertices.get(i), baseToFSMNodes);
-							if (seenStates.contains(stateOfNext)) {
-								log.debug("node/FSM state already visited: {}. Do not split into this.", stateOfNext);
-								outVertices.remove(i);
-								newBases.forEach((k, v) -> baseToFSMNodes.remove(newEOGPath + k));
-							} else {
-								// update the eogpath directly in the vertices for the next step
-								nodeIDtoEOGPathSet.computeIfAbsent((Long) outVertices.get(i).id(),
-									x -> new HashSet<>()).add(newEOGPath);
-							}
-						}
-					} else if (outVertices.size() == 1) {
-						// else, if we only have one vertex following this
-						// vertex, simply propagate the current eogpath to the next vertex
-						nodeIDtoEOGPathSet.computeIfAbsent((Long) outVertices.get(0).id(),
-							x -> new HashSet<>()).add(eogPath);
-					}
-
-					nextWorklist.addAll(outVertices);
-				}
-				// the current vertex has been analyzed with all these eogpath. remove from map, if we
-				// visit it in another iteration
-				nodeIDtoEOGPathSet.remove((Long) vertex.id());
-			}
-			currentWorklist = nextWorklist;
+		// Each function is analyzed once for all bases. Contexts in the same function only select the results for the bases they reference.
+		List<Object> key = List.of(orderExpression, functionDeclaration.id());
+		FunctionResult result = functionResults.get(key);
+		if (result == null) {
+			result = analyze(orderExpression, functionDeclaration);
+			functionResults.put(key, result);
 		}
 
-		log.info("Done evaluating function {}, rule {}. Visited Nodes: {}", functionDeclaration.value("name"), rule.getName(), visitedNodes);
-		// now the whole function was evaluated.
-		// Check that the FSM is in its end/beginning state for all bases
-		HashMap<String, HashSet<String>> nonterminatedBases = new HashMap<>();
-		for (Map.Entry<String, HashSet<Node>> entry : baseToFSMNodes.entrySet()) {
-			boolean hasEnd = false;
-			HashSet<String> notEnded = new HashSet<>();
-			for (Node n : entry.getValue()) {
-				if (n.isEnd()) {
-					// if one of the nodes in this fsm is at an END-node, this is fine.
-					hasEnd = true;
-					break;
-				} else {
-					notEnded.add(n.getName());
-				}
-			}
-			if (!hasEnd) {
-				// extract the real base name from eogpath.base
-				HashSet<String> next = nonterminatedBases.computeIfAbsent(entry.getKey(),
-					x -> new HashSet<>());
-				next.addAll(notEnded);
+		boolean isOrderValid = true;
+		for (Violation violation : result.violations) {
+			if (!result.isReferenced(violation.base, referencedVertices)) {
+				continue;
 			}
-		}
-		for (Map.Entry<String, HashSet<String>> entry : nonterminatedBases.entrySet()) {
 			isOrderValid = false;
-			Vertex vertex = lastBaseUsage.get(entry.getKey());
-			if (vertex == null) {
-				String[] split = entry.getKey().split("\\.");
-				if (split.length != 2) {
-					log.warn("Invalid eogpath");
-				} else {
-					if (split[0].length() <= 1) {
-						log.warn("Invalid eogpath length");
-					} else {
-						while (vertex == null || split[0].length() > 2) { // remove a number of branches until we find a last usage
-							split[0] = split[0].substring(0, split[0].length() - 1);
-							vertex = lastBaseUsage.get(split[0] + "." + split[1]);
-						}
-					}
-				}
+			Vertex vertex = violation.vertex;
+			Finding f = new Finding(
+				"Violation against Order: "
+						+ vertex.value("code")
+						+ " ("
+						+ violation.op.getName()
+						+ ") is not allowed. Expected one of: "
+						+ String.join(", ", violation.expected)
+						+ " ("
+						+ rule.getErrorMessage()
+						+ ")",
+				rule.getErrorMessage(),
+				CrymlinQueryWrapper.getFileLocation(vertex),
+				toIntExact(vertex.value(START_LINE)) - 1,
+				toIntExact(vertex.value(END_LINE)) - 1,
+				toIntExact(vertex.value(START_COLUMN)) - 1,
+				toIntExact(vertex.value(END_COLUMN)) - 1);
+			if (markContextHolder.isCreateFindingsDuringEvaluation()) {
+				ctx.getFindings().add(f);
 			}
-			String base = entry.getKey().split("\\|")[0]; // remove potential refers_to local
-			if (base.contains(".")) {
-				base = base.substring(base.indexOf('.') + 1); // remove eogpath
+			log.info("Finding: {}", f);
+		}
+
+		for (Unterminated unterminated : result.unterminated) {
+			if (!result.isReferenced(unterminated.base, referencedVertices)) {
+				continue;
 			}
+			isOrderValid = false;
+			Vertex vertex = unterminated.lastUsage;
+			String base = result.bases.get(unterminated.base).split("\\|")[0]; // remove potential refers_to local
 			URI file = null;
 			int startLine = -1;
 			int endLine = -1;
@@ -458,10 +201,7 @@ public class OrderNFAEvaluator {
 				"Violation against Order: Base "
 						+ base
 						+ " is not correctly terminated. Expected one of ["
-						+ entry.getValue()
-								.stream()
-								.sorted()
-								.collect(Collectors.joining(", "))
+						+ String.join(", ", unterminated.expected)
 						+ "] to follow the correct last call on this base."
 						+ " ("
 						+ rule.getErrorMessage()
@@ -485,34 +225,422 @@ public class OrderNFAEvaluator {
 		return of;
 	}
 
-	private boolean isDisallowedBase(
-			HashMap<String, HashSet<String>> disallowedBases, String eogpath, String base) {
-		HashSet<String> disallowedEOGPaths = disallowedBases.get(base);
-		if (disallowedEOGPaths != null) {
-			return disallowedEOGPaths.stream().anyMatch(eogpath::startsWith);
+	/**
+	 * Returns which vertex belongs to which op of the entities of this rule. A vertex can _only_ belong to one entity/op!
+	 */
+	private Map<Vertex, MOp> getVerticesToOp() {
+		if (verticesToOp == null) {
+			verticesToOp = new HashMap<>();
+			for (Map.Entry<String, Pair<String, MEntity>> entry : rule.getEntityReferences().entrySet()) {
+				MEntity ent = entry.getValue().getValue1();
+				if (ent == null) {
+					continue;
+				}
+				for (MOp op : ent.getOps()) {
+					op.getAllVertices().forEach(v -> verticesToOp.put(v, op));
+				}
+			}
 		}
-		return false;
+		return verticesToOp;
 	}
 
-	private String getStateSnapshot(Vertex v, HashMap<String, HashSet<Node>> baseToFSMNodes) {
-		HashMap<String, HashSet<Node>> simplified = new HashMap<>();
+	/**
+	 * Evaluates the order for all bases used in a function, walking its EOG once.
+	 */
+	private FunctionResult analyze(OrderExpression orderExpression, Vertex functionDeclaration) {
+		// the DFA is compiled once per rule and shared by all contexts
+		EvaluationPlan plan = rule.getPlan() != null ? rule.getPlan() : EvaluationPlan.compile(rule.getStatement());
+		DFA dfa = plan.getDfa(orderExpression);
+
+		log.info("Evaluating function {}", (Object) functionDeclaration.value("name"));
 
-		for (Map.Entry<String, HashSet<Node>> entry : baseToFSMNodes.entrySet()) {
-			simplified.computeIfAbsent(entry.getKey().split("\\.")[1], x -> new HashSet<>()).addAll(entry.getValue());
+		// Collect the EOG of the function and the calls of ops on any base
+		List<Vertex> eog = new ArrayList<>();
+		Map<Object, Integer> eogIndex = new HashMap<>();
+		List<int[]> successors = new ArrayList<>();
+		collectEog(functionDeclaration, eog, eogIndex, successors);
+
+		FunctionResult result = new FunctionResult();
+		Map<String, Integer> baseOrdinals = new HashMap<>();
+		OpCall[] calls = new OpCall[eog.size()];
+		for (int i = 0; i < eog.size(); i++) {
+			calls[i] = getOpCall(eog.get(i), dfa, result, baseOrdinals);
 		}
+		// Find the fixpoint of the state sets at all vertices. Sets are merged at join points, regardless of the path they were reached on.
+		States states = new States(dfa.getNumStates());
+		int[] in = new int[eog.size()];
+		Arrays.fill(in, -1);
+		if (!eog.isEmpty()) {
+			in[0] = states.initial(result.bases.size());
+		}
+		ArrayDeque<Integer> worklist = new ArrayDeque<>();
+		boolean[] queued = new boolean[eog.size()];
+		worklist.add(0);
+		queued[0] = true;
+		long visitedNodes = 0;
+		while (!worklist.isEmpty()) {
+			int i = worklist.poll();
+			queued[i] = false;
+			visitedNodes++;
+
+			int out = calls[i] == null ? in[i] : states.transfer(in[i], calls[i], dfa);
+			for (int succ : successors.get(i)) {
+				int joined = in[succ] < 0 ? out : states.join(in[succ], out);
+				if (joined != in[succ]) {
+					in[succ] = joined;
+					if (!queued[succ]) {
+						worklist.add(succ);
+						queued[succ] = true;
+					}
+				}
+			}
+		}
+
+		log.info("Done evaluating function {}, rule {}. Visited Nodes: {}, distinct states: {}", functionDeclaration.value("name"), rule.getName(), visitedNodes,
+			states.size());
 
-		List<String> fsmStates = simplified.entrySet()
+		// Calls which are not allowed in some of the states of their base. This base must not be used in the following eog.
+		// For each base and DFA state, also remember the last allowed call leading into that state. If the base ends up in the state, this call is where
+		// the base was last used correctly.
+		Vertex[][] lastBaseUsage = new Vertex[result.bases.size()][dfa.getNumStates()];
+		for (int i = 0; i < eog.size(); i++) {
+			OpCall call = calls[i];
+			if (call == null || in[i] < 0) {
+				continue;
+			}
+			Vertex vertex = eog.get(i);
+			TreeSet<String> expected = new TreeSet<>();
+			BitSet state = states.get(in[i]);
+			for (int s : states.getDfaStates(state, call.base, false)) {
+				int dfaState = s == dfa.getNumStates() ? dfa.getInitialState() : s;
+				int target = dfa.next(dfaState, call.opId);
+				if (target == DFA.NONE) {
+					expected.addAll(dfa.getExpected(dfaState));
+				} else {
+					Vertex previous = lastBaseUsage[call.base][target];
+					if (previous == null || (long) previous.value(START_LINE) <= (long) vertex.value(START_LINE)) {
+						lastBaseUsage[call.base][target] = vertex;
+					}
+				}
+			}
+			// States are joined over all paths, so this is a may-violation per base: the call is reported if it is not allowed in at least one of the
+			// states its base may be in, even if it is allowed on other paths
+			if (!expected.isEmpty()) {
+				result.violations.add(new Violation(vertex, call.op, call.base, List.copyOf(expected)));
+			}
+		}
+
+		// now the whole function was evaluated.
+		// Check that the DFA is in an end state for all bases when leaving the function
+		BitSet exitState = new BitSet();
+		for (int i = 0; i < eog.size(); i++) {
+			if (successors.get(i).length == 0 && in[i] >= 0) {
+				exitState.or(states.get(calls[i] == null ? in[i] : states.transfer(in[i], calls[i], dfa)));
+			}
+		}
+		for (int b = 0; b < result.bases.size(); b++) {
+			// one finding per last usage, for the states the base may be left in after it
+			Map<Vertex, TreeSet<String>> expectedByLastUsage = new LinkedHashMap<>();
+			for (int s : states.getDfaStates(exitState, b, true)) {
+				if (s < dfa.getNumStates() && !dfa.isAccepting(s)) {
+					expectedByLastUsage.computeIfAbsent(lastBaseUsage[b][s], v -> new TreeSet<>()).addAll(dfa.getExpected(s));
+				}
+			}
+			for (Map.Entry<Vertex, TreeSet<String>> entry : expectedByLastUsage.entrySet()) {
+				result.unterminated.add(new Unterminated(b, entry.getKey(), List.copyOf(entry.getValue())));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Collects all vertices reachable from the function declaration via EOG edges. The function declaration gets index 0.
+	 */
+	private static void collectEog(Vertex functionDeclaration, List<Vertex> eog, Map<Object, Integer> eogIndex, List<int[]> successors) {
+		eog.add(functionDeclaration);
+		eogIndex.put(functionDeclaration.id(), 0);
+		for (int i = 0; i < eog.size(); i++) {
+			List<Integer> next = new ArrayList<>();
+			Iterator<Edge> it = eog.get(i).edges(Direction.OUT, EOG);
+			while (it.hasNext()) {
+				Vertex target = it.next().inVertex();
+				Integer index = eogIndex.get(target.id());
+				if (index == null) {
+					index = eog.size();
+					eogIndex.put(target.id(), index);
+					eog.add(target);
+				}
+				if (!next.contains(index)) {
+					next.add(index);
+				}
+			}
+			successors.add(next.stream().mapToInt(Integer::intValue).toArray());
+		}
+	}
+
+	/**
+	 * Returns the call of an op of this rule at a vertex, or null if the vertex is not such a call. Bases are added to the result when they are first seen.
+	 */
+	@Nullable
+	private OpCall getOpCall(Vertex vertex, DFA dfa, FunctionResult result, Map<String, Integer> baseOrdinals) {
+		MOp op = getVerticesToOp().get(vertex);
+		if (op == null
+				|| !(Utils.hasLabel(vertex, MemberCallExpression.class) || vertex.label().equals("CallExpression")
+						|| Utils.hasLabel(vertex, ConstructExpression.class)
+						|| Utils.hasLabel(vertex, StaticCallExpression.class))) {
+			// the vertex is not part of any op of any mentioned entity, ignore
+			return null;
+		}
+		// check if the vertex actually belongs to a entity used in this rule
+		if (rule.getEntityReferences()
+				.values()
 				.stream()
-				.map(
-					x -> x.getKey()
-							+ "("
-							+ x.getValue().stream().map(Node::toString).collect(Collectors.joining(","))
-							+ ")")
-				.distinct()
-				.sorted()
-				.collect(Collectors.toList());
-
-		return v.id() + " " + String.join(",", fsmStates);
+				.noneMatch(x -> Objects.equals(x.getValue1(), op.getParent()))) {
+			return null;
+		}
+
+		String base = null;
+		Vertex refNode = null;
+		if (Utils.hasLabel(vertex, MemberCallExpression.class)) {
+			Iterator<Edge> it = vertex.edges(Direction.OUT, "BASE");
+			if (it.hasNext()) {
+				Vertex baseVertex = it.next()
+						.inVertex();
+				base = baseVertex.value("name");
+				Iterator<Edge> refIterator = baseVertex.edges(Direction.OUT, "REFERS_TO");
+				if (refIterator.hasNext()) {
+					refNode = refIterator.next()
+							.inVertex();
+				}
+			}
+		} else if (Utils.hasLabel(vertex, StaticCallExpression.class) || vertex.label().equals("CallExpression")) {
+			Iterator<Edge> it = vertex.edges(Direction.OUT, "DFG");
+			if (it.hasNext()) {
+				Vertex baseVertex = it.next()
+						.inVertex();
+				base = baseVertex.value("name");
+				if (baseVertex.label().equals("ConstructExpression")) {
+					it = baseVertex.edges(Direction.OUT, "DFG");
+					if (it.hasNext()) {
+						baseVertex = it.next().inVertex();
+						base = baseVertex.value("name");
+					}
+				}
+				if (baseVertex.label().equals("VariableDeclaration")) {
+					// this is already the reference
+					refNode = baseVertex;
+				} else {
+					Iterator<Edge> refIterator = baseVertex.edges(Direction.OUT, "REFERS_TO");
+					if (refIterator.hasNext()) {
+						refNode = refIterator.next()
+								.inVertex();
+					}
+				}
+			}
+		} else { // ctor
+			Iterator<Edge> it = vertex.edges(Direction.IN, "INITIALIZER");
+			if (it.hasNext()) {
+				Vertex baseVertex = it.next().outVertex();
+				it = baseVertex.edges(Direction.OUT, "DFG");
+				if (it.hasNext()) {
+					baseVertex = it.next().inVertex();
+					base = baseVertex.value("name");
+					// for ctor, the DFG points already to the variabledecl
+					refNode = baseVertex;
+				}
+			}
+		}
+		if (base == null) {
+			log.error("base must not be null for {}", vertex.label());
+			return null;
+		}
+		// if we have a reference to a node in the cpg, we add this to the base. This way, we could differentiate
+		// between nodes with the same base name, but referencing different variables (e.g., if they are used in
+		// different blocks)
+		if (refNode != null) {
+			base += "|" + refNode.id();
+		}
+		Integer ordinal = baseOrdinals.get(base);
+		if (ordinal == null) {
+			ordinal = result.bases.size();
+			baseOrdinals.put(base, ordinal);
+			result.bases.add(base);
+			result.baseRefs.add(refNode != null ? refNode.id() : null);
+		}
+		return new OpCall(op, dfa.getOpId(op.getName()), ordinal);
+	}
+
+	/**
+	 * Result of the evaluation of a function for all of its bases.
+	 */
+	private static class FunctionResult {
+		/** Bases by ordinal, i.e. their name and the ID of the variable they refer to, if any. */
+		final List<String> bases = new ArrayList<>();
+		/** IDs of the variables the bases refer to, or null. */
+		final List<Object> baseRefs = new ArrayList<>();
+		final List<Violation> violations = new ArrayList<>();
+		final List<Unterminated> unterminated = new ArrayList<>();
+
+		/**
+		 * Returns true if a base refers to one of the given vertices. Bases which do not refer to any vertex belong to every context.
+		 */
+		boolean isReferenced(int base, Set<Object> referencedVertices) {
+			Object ref = baseRefs.get(base);
+			if (ref != null && !referencedVertices.contains(ref)) {
+				log.debug("this call does not reference the function we are looking at, skipping.");
+				return false;
+			}
+			return true;
+		}
 	}
 
+	/**
+	 * A call which is not allowed in at least one of the states its base may be in, i.e. on at least one path to it.
+	 */
+	private static class Violation {
+		final Vertex vertex;
+		final MOp op;
+		final int base;
+		final List<String> expected;
+
+		Violation(Vertex vertex, MOp op, int base, List<String> expected) {
+			this.vertex = vertex;
+			this.op = op;
+			this.base = base;
+			this.expected = expected;
+		}
+	}
+
+	/**
+	 * A base which may not be in an end state when leaving the function.
+	 */
+	private static class Unterminated {
+		final int base;
+		@Nullable
+		final Vertex lastUsage;
+		final List<String> expected;
+
+		Unterminated(int base, @Nullable Vertex lastUsage, List<String> expected) {
+			this.base = base;
+			this.lastUsage = lastUsage;
+			this.expected = expected;
+		}
+	}
+
+	/**
+	 * A call of an op on a base.
+	 */
+	private static class OpCall {
+		final MOp op;
+		final int opId;
+		final int base;
+
+		OpCall(MOp op, int opId, int base) {
+			this.op = op;
+			this.opId = opId;
+			this.base = base;
+		}
+	}
+
+	/**
+	 * Hash-consed sets of abstract states.
+	 * <p>
+	 * An abstract state is a bitset holding, for each base, the DFA states the base may be in. The bits of base <code>b</code> start at <code>b * stride</code>.
+	 * Bit <code>n</code> (the number of DFA states) stands for a base which has not been used yet. A base on which a call was not allowed is disallowed, i.e.
+	 * further calls on it are ignored: its DFA state is then kept at an offset of <code>n + 1</code>, so that it is still checked for termination. Each distinct set
+	 * is stored once and referred to by its ID, so states at vertices are compared by ID.
+	 */
+	private static class States {
+		private final int numDfaStates;
+		private final int stride;
+		private final List<BitSet> sets = new ArrayList<>();
+		private final Map<BitSet, Integer> ids = new HashMap<>();
+		private final Map<Long, Integer> joins = new HashMap<>();
+
+		States(int numDfaStates) {
+			this.numDfaStates = numDfaStates;
+			this.stride = 2 * (numDfaStates + 1);
+		}
+
+		int intern(BitSet set) {
+			Integer id = ids.get(set);
+			if (id == null) {
+				id = sets.size();
+				ids.put(set, id);
+				sets.add(set);
+			}
+			return id;
+		}
+
+		BitSet get(int id) {
+			return sets.get(id);
+		}
+
+		int size() {
+			return sets.size();
+		}
+
+		/**
+		 * Returns the state in which no base has been used yet.
+		 */
+		int initial(int numBases) {
+			BitSet set = new BitSet(numBases * stride);
+			for (int b = 0; b < numBases; b++) {
+				set.set(b * stride + numDfaStates);
+			}
+			return intern(set);
+		}
+
+		int join(int a, int b) {
+			if (a == b) {
+				return a;
+			}
+			long key = ((long) Math.min(a, b) << 32) | Math.max(a, b);
+			Integer joined = joins.get(key);
+			if (joined == null) {
+				BitSet set = (BitSet) sets.get(a).clone();
+				set.or(sets.get(b));
+				joined = intern(set);
+				joins.put(key, joined);
+			}
+			return joined;
+		}
+
+		/**
+		 * Moves the base of a call to the successors of its DFA states. If the call is not allowed in a state, the base is disallowed.
+		 */
+		int transfer(int id, OpCall call, DFA dfa) {
+			BitSet set = sets.get(id);
+			int from = call.base * stride;
+			BitSet next = (BitSet) set.clone();
+			next.clear(from, from + numDfaStates + 1);
+			for (int i = set.nextSetBit(from); i >= 0 && i < from + numDfaStates + 1; i = set.nextSetBit(i + 1)) {
+				int s = i - from;
+				int dfaState = s == numDfaStates ? dfa.getInitialState() : s;
+				int target = dfa.next(dfaState, call.opId);
+				if (target == DFA.NONE) {
+					next.set(from + numDfaStates + 1 + s);
+				} else {
+					next.set(from + target);
+				}
+			}
+			return intern(next);
+		}
+
+		/**
+		 * Returns the DFA states of a base, or <code>numDfaStates</code> if it has not been used yet. Disallowed bases are only included if requested.
+		 */
+		List<Integer> getDfaStates(BitSet set, int base, boolean includeDisallowed) {
+			List<Integer> result = new ArrayList<>();
+			int from = base * stride;
+			int to = from + (includeDisallowed ? stride : numDfaStates + 1);
+			for (int i = set.nextSetBit(from); i >= 0 && i < to; i = set.nextSetBit(i + 1)) {
+				int s = (i - from) % (numDfaStates + 1);
+				if (!result.contains(s)) {
+					result.add(s);
+				}
+			}
+			return result;
+		}
+	}
 }
@@ -0,0 +1,353 @@
+
+package de.fraunhofer.aisec.analysis.scp;
+
+import de.fraunhofer.aisec.analysis.structures.ConstantValue;
+import de.fraunhofer.aisec.analysis.utils.Utils;
+import de.fraunhofer.aisec.cpg.graph.BinaryOperator;
+import de.fraunhofer.aisec.cpg.graph.DeclaredReferenceExpression;
+import de.fraunhofer.aisec.cpg.graph.ExpressionList;
+import de.fraunhofer.aisec.cpg.graph.Literal;
+import de.fraunhofer.aisec.cpg.graph.VariableDeclaration;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.DFG;
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.EOG;
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.REFERS_TO;
+
+/**
+ * Reaching definitions of the variables used in a single function.
+ * <p>
+ * The analysis is run once per function over its evaluation order graph (EOG). A definition of a variable is either its declaration (with the value of its
+ * initializer), an assignment ({@code BinaryOperator} "=") to it, or, at the entry of the function, the declaration of a variable declared elsewhere. Values are
+ * resolved like in {@link SimpleConstantResolver}, but instead of searching the graph backwards for every use, the constant values of a use are looked up from
+ * the definitions reaching it. If several definitions reach a use, e.g. after a branch, all of their values are returned.
+ * <p>
+ * Once built, an instance may be shared between threads.
+ */
+public class ReachingDefinitions {
+
+	private static final Logger log = LoggerFactory.getLogger(ReachingDefinitions.class);
+
+	/**
+	 * A definition of a variable.
+	 */
+	private static class Definition {
+		/** ID of the vertex of the declaration of the defined variable. */
+		@NonNull
+		final Object variable;
+
+		/** For declarations: the declaration, whose initializer determines the value. */
+		@Nullable
+		Vertex declaration;
+
+		/** For assignments of a reference to another variable: the reference and the ID of the declaration it refers to. */
+		@Nullable
+		Vertex reference;
+		@Nullable
+		Object referencedVariable;
+
+		/** The value, once resolved. */
+		@Nullable
+		Optional<ConstantValue> value;
+
+		Definition(@NonNull Object variable) {
+			this.variable = variable;
+		}
+	}
+
+	/** Index of each vertex of the function, by vertex ID. */
+	@NonNull
+	private final Map<Object, Integer> indexById;
+
+	@NonNull
+	private final List<Definition> definitions;
+
+	/** Definitions of each variable, by ID of its declaration. */
+	@NonNull
+	private final Map<Object, BitSet> definitionsByVariable;
+
+	/** Definitions reaching each vertex (before it is evaluated). */
+	private final BitSet[] reachingIn;
+
+	private ReachingDefinitions(@NonNull Map<Object, Integer> indexById, @NonNull List<Definition> definitions, @NonNull Map<Object, BitSet> definitionsByVariable,
+			BitSet[] reachingIn) {
+		this.indexById = indexById;
+		this.definitions = definitions;
+		this.definitionsByVariable = definitionsByVariable;
+		this.reachingIn = reachingIn;
+	}
+
+	/**
+	 * Runs the analysis for a function.
+	 *
+	 * @param function the vertex of a FunctionDeclaration or MethodDeclaration
+	 * @return the reaching definitions for all vertices in the AST of the function
+	 */
+	@NonNull
+	public static ReachingDefinitions build(@NonNull Vertex function) {
+		// Collect the AST of the function
+		Map<Object, Integer> indexById = new HashMap<>();
+		List<Vertex> vertices = new ArrayList<>();
+		indexById.put(function.id(), 0);
+		vertices.add(function);
+		for (int i = 0; i < vertices.size(); i++) {
+			Iterator<Edge> edges = vertices.get(i).edges(Direction.OUT);
+			while (edges.hasNext()) {
+				Edge e = edges.next();
+				Vertex child = e.inVertex();
+				if ("AST".equals(e.property("sub-graph").orElse(null)) && !indexById.containsKey(child.id())) {
+					indexById.put(child.id(), vertices.size());
+					vertices.add(child);
+				}
+			}
+		}
+		int n = vertices.size();
+
+		// Every variable used in the function is defined on entry of the function by its declaration
+		List<Definition> definitions = new ArrayList<>();
+		Map<Object, BitSet> definitionsByVariable = new HashMap<>();
+		BitSet entry = new BitSet();
+		for (Vertex v : vertices) {
+			if (Utils.hasLabel(v, DeclaredReferenceExpression.class)) {
+				Iterator<Vertex> declarations = v.vertices(Direction.OUT, REFERS_TO);
+				while (declarations.hasNext()) {
+					Vertex declaration = declarations.next();
+					if (!definitionsByVariable.containsKey(declaration.id())) {
+						Definition def = new Definition(declaration.id());
+						def.declaration = declaration;
+						entry.set(addDefinition(def, definitions, definitionsByVariable));
+					}
+				}
+			}
+		}
+
+		// Declarations and assignments within the function
+		int[] generated = new int[n];
+		Arrays.fill(generated, -1);
+		for (int i = 0; i < n; i++) {
+			Vertex v = vertices.get(i);
+			Definition def = null;
+			if (definitionsByVariable.containsKey(v.id())) {
+				def = new Definition(v.id());
+				def.declaration = v;
+			} else if (Utils.hasLabel(v, BinaryOperator.class) && "=".equals(v.property("operatorCode").orElse(null))) {
+				def = getAssignment(v);
+			}
+			if (def != null) {
+				generated[i] = addDefinition(def, definitions, definitionsByVariable);
+			}
+		}
+
+		// EOG edges within the function
+		int[][] predecessors = new int[n][];
+		int[][] successors = new int[n][];
+		for (int i = 0; i < n; i++) {
+			predecessors[i] = getNeighbors(vertices.get(i), Direction.IN, indexById);
+			successors[i] = getNeighbors(vertices.get(i), Direction.OUT, indexById);
+		}
+
+		// Solve the dataflow equations with a worklist
+		BitSet[] reachingIn = new BitSet[n];
+		BitSet[] reachingOut = new BitSet[n];
+		Deque<Integer> worklist = new ArrayDeque<>();
+		boolean[] queued = new boolean[n];
+		for (int i = 0; i < n; i++) {
+			reachingIn[i] = new BitSet();
+			reachingOut[i] = new BitSet();
+			worklist.add(i);
+			queued[i] = true;
+		}
+		while (!worklist.isEmpty()) {
+			int i = worklist.poll();
+			queued[i] = false;
+
+			BitSet in;
+			if (predecessors[i].length == 0) {
+				in = (BitSet) entry.clone();
+			} else {
+				in = new BitSet();
+				for (int p : predecessors[i]) {
+					in.or(reachingOut[p]);
+				}
+			}
+			reachingIn[i] = in;
+
+			BitSet out = (BitSet) in.clone();
+			if (generated[i] >= 0) {
+				out.andNot(definitionsByVariable.get(definitions.get(generated[i]).variable));
+				out.set(generated[i]);
+			}
+			if (!out.equals(reachingOut[i])) {
+				reachingOut[i] = out;
+				for (int s : successors[i]) {
+					if (!queued[s]) {
+						worklist.add(s);
+						queued[s] = true;
+					}
+				}
+			}
+		}
+
+		return new ReachingDefinitions(indexById, definitions, definitionsByVariable, reachingIn);
+	}
+
+	private static int addDefinition(@NonNull Definition def, @NonNull List<Definition> definitions, @NonNull Map<Object, BitSet> definitionsByVariable) {
+		int index = definitions.size();
+		definitions.add(def);
+		definitionsByVariable.computeIfAbsent(def.variable, k -> new BitSet()).set(index);
+		return index;
+	}
+
+	@NonNull
+	private static int[] getNeighbors(@NonNull Vertex v, @NonNull Direction direction, @NonNull Map<Object, Integer> indexById) {
+		List<Integer> neighbors = new ArrayList<>();
+		Iterator<Vertex> it = v.vertices(direction, EOG);
+		while (it.hasNext()) {
+			Integer index = indexById.get(it.next().id());
+			if (index != null) {
+				neighbors.add(index);
+			}
+		}
+		return neighbors.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Returns the definition made by an assignment, or null if its left-hand side does not refer to a variable.
+	 */
+	@Nullable
+	private static Definition getAssignment(@NonNull Vertex assignment) {
+		Iterator<Vertex> lhsVertices = assignment.vertices(Direction.OUT, "LHS");
+		if (!lhsVertices.hasNext()) {
+			return null;
+		}
+		Iterator<Vertex> assignees = lhsVertices.next().vertices(Direction.OUT, REFERS_TO);
+		if (!assignees.hasNext()) {
+			return null;
+		}
+
+		Definition def = new Definition(assignees.next().id());
+		def.value = Optional.empty();
+		Iterator<Vertex> rhsVertices = assignment.vertices(Direction.OUT, "RHS");
+		if (!rhsVertices.hasNext()) {
+			return def;
+		}
+		Vertex rhs = rhsVertices.next();
+
+		if (rhs.label().equals(Literal.class.getSimpleName())) {
+			def.value = getLiteralValue(rhs);
+		} else if (rhs.label().equals(ExpressionList.class.getSimpleName()) && rhs.edges(Direction.IN, EOG).hasNext()) {
+			// C/C++ assigns last expression in list.
+			Vertex lastExpressionInList = rhs.edges(Direction.IN, EOG).next().outVertex();
+			if (Utils.hasLabel(lastExpressionInList, Literal.class)) {
+				def.value = getLiteralValue(lastExpressionInList);
+			} else if (lastExpressionInList.label().equals(DeclaredReferenceExpression.class.getSimpleName())) {
+				Iterator<Edge> refersTo = lastExpressionInList.edges(Direction.IN, DFG);
+				if (refersTo.hasNext()) {
+					Vertex source = refersTo.next().outVertex();
+					if (source.label().equals(VariableDeclaration.class.getSimpleName())) {
+						// the value is the one the referenced variable has at this point
+						def.reference = lastExpressionInList;
+						def.referencedVariable = source.id();
+						def.value = null;
+					}
+				}
+			}
+		}
+		return def;
+	}
+
+	@NonNull
+	private static Optional<ConstantValue> getLiteralValue(@NonNull Vertex literal) {
+		Object literalValue = literal.property("value").orElse(null);
+		Optional<ConstantValue> constantValue = ConstantValue.tryOf(literalValue);
+		if (constantValue.isEmpty() && literalValue != null) {
+			log.warn("Unknown literal type encountered: {} (value: {})", literalValue.getClass(), literalValue);
+		}
+		return constantValue;
+	}
+
+	/**
+	 * Returns true, if the vertex is part of the function this analysis was run for.
+	 */
+	public boolean covers(@NonNull Vertex v) {
+		return indexById.containsKey(v.id());
+	}
+
+	/**
+	 * Returns the IDs of all vertices covered by this analysis.
+	 */
+	@NonNull
+	public Set<Object> getVertexIds() {
+		return indexById.keySet();
+	}
+
+	/**
+	 * Returns the constant values a reference to a variable may have, i.e. the values of all definitions of the variable reaching the reference.
+	 * <p>
+	 * Definitions whose value cannot be resolved are ignored. Every call returns new {@code ConstantValue} objects, so callers may modify them.
+	 *
+	 * @param reference a DeclaredReferenceExpression covered by this analysis
+	 * @return the (possibly empty) set of values
+	 */
+	@NonNull
+	public synchronized Set<ConstantValue> resolveConstantValues(@NonNull Vertex reference) {
+		Set<ConstantValue> result = new HashSet<>();
+		Integer index = indexById.get(reference.id());
+		if (index == null) {
+			return result;
+		}
+
+		Set<Integer> visited = new HashSet<>();
+		Iterator<Vertex> declarations = reference.vertices(Direction.OUT, REFERS_TO);
+		while (declarations.hasNext()) {
+			collectValues(index, declarations.next().id(), visited, result);
+		}
+		return result;
+	}
+
+	private void collectValues(int index, @NonNull Object variable, @NonNull Set<Integer> visited, @NonNull Set<ConstantValue> result) {
+		BitSet ofVariable = definitionsByVariable.get(variable);
+		if (ofVariable == null) {
+			return;
+		}
+		BitSet reaching = (BitSet) reachingIn[index].clone();
+		reaching.and(ofVariable);
+
+		for (int d = reaching.nextSetBit(0); d >= 0; d = reaching.nextSetBit(d + 1)) {
+			if (!visited.add(d)) {
+				continue;
+			}
+			Definition def = definitions.get(d);
+			if (def.reference != null && def.referencedVariable != null) {
+				Integer referenceIndex = indexById.get(def.reference.id());
+				if (referenceIndex != null) {
+					collectValues(referenceIndex, def.referencedVariable, visited, result);
+				}
+				continue;
+			}
+			if (def.value == null) {
+				def.value = def.declaration != null ? SimpleConstantResolver.resolveInitializer(def.declaration) : Optional.empty();
+			}
+			def.value.ifPresent(cv -> result.add(ConstantValue.of(cv.getValue())));
+		}
+	}
+}
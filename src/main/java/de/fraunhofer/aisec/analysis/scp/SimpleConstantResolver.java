@@ -66,6 +66,10 @@ public class SimpleConstantResolver implements ConstantResolver {
 	 * <p>
 	 * 8. {no initializer with value e.g. function argument} continue traversing the graph
 	 *
+	 * <p>
+	 * Only the IDs of <code>declRefExpr</code> and its declarations are used, all relationships are followed in the graph. The nodes may thus be incompletely
+	 * materialized (see {@link de.fraunhofer.aisec.analysis.structures.ServerConfiguration#nodeMaterializationDepth}).
+	 *
 	 * @param declRefExpr The DeclaredReferenceExpression that will be resolved.
 	 */
 	@NonNull
@@ -93,8 +97,6 @@ public class SimpleConstantResolver implements ConstantResolver {
 			return Optional.empty();
 		}
 
-		Optional<ConstantValue> retVal = Optional.empty();
-
 		log.debug("Vertex for function call: {}", vDeclaredReferenceExpr.property("code").value());
 		log.debug("Vertex of variable declaration: {}", variableDeclarationVertex.property("code").value());
 
@@ -112,7 +114,7 @@ public class SimpleConstantResolver implements ConstantResolver {
 				}
 				seen.add(tVertex);
 
-				boolean isBinaryOperatorVertex = tVertex.label().contains(BinaryOperator.class.getSimpleName());
+				boolean isBinaryOperatorVertex = Utils.hasLabel(tVertex, BinaryOperator.class);
 
 				Iterator<Vertex> lhsVertices = tVertex.vertices(Direction.OUT, "LHS");
 
@@ -197,6 +199,18 @@ public class SimpleConstantResolver implements ConstantResolver {
 		}
 
 		// we arrived at the declaration of the variable. See if we have an initializer
+		return resolveInitializer(variableDeclarationVertex);
+	}
+
+	/**
+	 * Resolves the constant value a variable declaration is initialized with.
+	 *
+	 * @param variableDeclarationVertex the vertex of the declaration
+	 * @return the value, or empty if the declaration has no initializer or its value cannot be resolved
+	 */
+	static Optional<ConstantValue> resolveInitializer(@NonNull Vertex variableDeclarationVertex) {
+		Optional<ConstantValue> retVal = Optional.empty();
+
 		Iterator<Vertex> itInitializerVertex = variableDeclarationVertex.vertices(Direction.OUT, "INITIALIZER");
 
 		if (itInitializerVertex.hasNext()) {
@@ -3,10 +3,11 @@
  * <p>
  * Classes in this package allow to resolve values of constants. The constant resolution is "simple", because:
  * <p>
- * - it only operates intraprocedurally, i.e. it does not consider method calls. - it does not consider branches - it does not support all kinds of operators
+ * - it only operates intraprocedurally, i.e. it does not consider method calls. - it does not evaluate branch conditions, i.e. the values of all definitions
+ * reaching a use are returned (see {@code ReachingDefinitions}) - it does not support all kinds of operators
  * <p>
- * The analysis is sound, in that it only returns a constant if there is only one possible execution path yielding that constant. It is by no means complete, i.e. there
- * are various ways how the analysis may miss a potential constant.
+ * Every returned constant is assigned on at least one execution path reaching the use. The analysis is by no means complete, i.e. there are various ways how the
+ * analysis may miss a potential constant.
  */
 
 package de.fraunhofer.aisec.analysis.scp;
\ No newline at end of file
@@ -15,6 +15,9 @@ import de.fraunhofer.aisec.cpg.helpers.Benchmark;
 import de.fraunhofer.aisec.cpg.passes.Pass;
 import de.fraunhofer.aisec.crymlin.builtin.Builtin;
 import de.fraunhofer.aisec.crymlin.builtin.BuiltinRegistry;
+import de.fraunhofer.aisec.crymlin.connectors.db.CpgDatabase;
+import de.fraunhofer.aisec.crymlin.connectors.db.Database;
+import de.fraunhofer.aisec.crymlin.connectors.db.GraphSnapshot;
 import de.fraunhofer.aisec.crymlin.connectors.db.OverflowDatabase;
 import de.fraunhofer.aisec.crymlin.connectors.db.TraversalConnection;
 import de.fraunhofer.aisec.crymlin.connectors.lsp.CpgLanguageServer;
@@ -85,7 +88,7 @@ public class AnalysisServer {
 
 	private TranslationResult translationResult;
 
-	private OverflowDatabase<Node> db;
+	private Database<Node> db;
 
 	private Mark markModel = new Mark();
 
@@ -112,7 +115,11 @@ public class AnalysisServer {
 		bench.stop();
 		log.info("Registered {} builtins", i);
 
-		db = new OverflowDatabase(config);
+		if (config.inMemoryCpg) {
+			db = new CpgDatabase<>();
+		} else {
+			db = new OverflowDatabase(config);
+		}
 	}
 
 	/**
@@ -190,23 +197,46 @@ public class AnalysisServer {
 		File srcLocation = analyzer.getConfig()
 				.getSourceLocations()
 				.get(0);
-		AnalysisContext ctx = new AnalysisContext(srcLocation, db); // NOTE: We currently operate on a single source file.
+		AnalysisContext ctx = new AnalysisContext(List.of(srcLocation), db, config.dfgSliceBudget); // NOTE: We currently operate on a single source file.
 		for (Pass p : analyzer.getPasses()) {
 			if (p instanceof PassWithContext) {
 				((PassWithContext) p).setContext(ctx);
 			}
 		}
+		// Reuse the graph of a previous analysis of the same sources, if there is a snapshot of it
+		String snapshotKey = getSnapshotKey(analyzer);
+		File snapshot = snapshotKey != null ? GraphSnapshot.getFile(config.snapshotDirectory, snapshotKey) : null;
+		if (snapshot != null && snapshot.exists() && ((OverflowDatabase<Node>) db).loadSnapshot(snapshot, snapshotKey)) {
+			log.info("Skipping translation of {}, loaded graph from snapshot", srcLocation.getName());
+			TranslationResult result = new TranslationResult(analyzer);
+			result.getScratch().put("ctx", ctx);
+			translationResult = result;
+			return evaluate(CompletableFuture.completedFuture(result), ctx);
+		}
+
 		// Run all passes and persist the result
 		final Benchmark benchParsing = new Benchmark(AnalysisServer.class, "  Parsing source and creating CPG for " + srcLocation.getName());
-		return analyzer.analyze() // Run analysis
+		return evaluate(analyzer.analyze() // Run analysis
 				.thenApply(
 					result -> {
 						benchParsing.stop();
 						// Attach analysis context to result
 						result.getScratch().put("ctx", ctx);
 						translationResult = result;
-						return persistToODB(result);
-					})
+						persistToODB(result);
+						if (snapshot != null) {
+							saveSnapshot(snapshot, snapshotKey);
+						}
+						return result;
+					}),
+			ctx);
+	}
+
+	/**
+	 * Evaluates the MARK rules against the persisted CPG, once it is available.
+	 */
+	private CompletableFuture<AnalysisContext> evaluate(CompletableFuture<TranslationResult> persisted, AnalysisContext ctx) {
+		return persisted
 				.thenApply(
 					result -> {
 						Benchmark bench = new Benchmark(AnalysisServer.class, "  Evaluation of MARK");
@@ -232,6 +262,38 @@ public class AnalysisServer {
 					});
 	}
 
+	/**
+	 * Returns the key of the graph snapshot of the sources of a translation, or null if snapshots are disabled or the sources cannot be read.
+	 */
+	@Nullable
+	private String getSnapshotKey(TranslationManager analyzer) {
+		if (config.snapshotDirectory == null || !(db instanceof OverflowDatabase)) {
+			return null;
+		}
+		List<String> options = new ArrayList<>(GraphSnapshot.getTranslationOptions(analyzer.getConfig()));
+		options.add("lazyCode=" + config.lazyCode);
+		List<File> sources = new ArrayList<>(analyzer.getConfig().getSourceLocations());
+		if (config.analyzeIncludes) {
+			sources.addAll(Arrays.asList(config.includePath));
+		}
+		try {
+			return GraphSnapshot.computeKey(sources, options);
+		}
+		catch (IOException e) {
+			log.warn("Cannot compute key of graph snapshot: {}", e.getMessage());
+			return null;
+		}
+	}
+
+	private void saveSnapshot(@NonNull File snapshot, @NonNull String snapshotKey) {
+		try {
+			((OverflowDatabase<Node>) db).saveSnapshot(snapshot, snapshotKey);
+		}
+		catch (IOException e) {
+			log.warn("Cannot write graph snapshot: {}", e.getMessage());
+		}
+	}
+
 	public void loadMarkRulesFromConfig() {
 		/*
 		 * Load MARK model as given in configuration, if it has not been set manually before.
@@ -1,35 +1,64 @@
 
 package de.fraunhofer.aisec.analysis.structures;
 
+import de.fraunhofer.aisec.analysis.scp.ReachingDefinitions;
+import de.fraunhofer.aisec.analysis.wpds.TypestateWpds;
 import de.fraunhofer.aisec.cpg.graph.Node;
+import de.fraunhofer.aisec.crymlin.DfgSlicer;
+import de.fraunhofer.aisec.crymlin.EogReachabilityIndex;
 import de.fraunhofer.aisec.crymlin.connectors.db.Database;
 import org.checkerframework.checker.nullness.qual.NonNull;
 
 import java.io.File;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * State of one analysis, shared by all MARK rules evaluated in it. The findings and the caches of per-function results are thread-safe, as rules may be
+ * evaluated in parallel.
+ */
 public class AnalysisContext {
 
 	/** List of violations of MARK rules. the region, etc. */
 	@NonNull
-	private final Set<Finding> findings = new HashSet<>();
+	private final Set<Finding> findings = ConcurrentHashMap.newKeySet();
 
 	/** Map of method signatures to {@code Method}s. */
 	public final Map<String, Method> methods = new HashMap<>();
 
 	private final List<File> sourceLocations;
 
+	/** EOG reachability indices of functions, by ID of the vertices they cover. */
+	@NonNull
+	private final Map<Object, EogReachabilityIndex> eogReachabilityIndices = new ConcurrentHashMap<>();
+
+	/** Reaching definitions of functions, by ID of the vertices they cover. */
+	@NonNull
+	private final Map<Object, ReachingDefinitions> reachingDefinitions = new ConcurrentHashMap<>();
+
+	/** WPDS of typestate rules, by rule and order expression. */
+	@NonNull
+	private final Map<Object, TypestateWpds> typestateWpds = new ConcurrentHashMap<>();
+
+	/** Backward DFG slices, shared by all rules of this analysis. */
+	@NonNull
+	private final DfgSlicer dfgSlicer;
+
 	/** The database used for this analysis. */
 	@NonNull
 	private Database<Node> db;
 
-	public AnalysisContext(List<File> sourceLocations, @NonNull Database<Node> db) {
+	public AnalysisContext(List<File> sourceLocations, @NonNull Database<Node> db, int dfgSliceBudget) {
 		this.sourceLocations = sourceLocations;
 		this.db = db;
+		this.dfgSlicer = new DfgSlicer(dfgSliceBudget);
+	}
+
+	public AnalysisContext(List<File> sourceLocations, @NonNull Database<Node> db) {
+		this(sourceLocations, db, DfgSlicer.DEFAULT_BUDGET);
 	}
 
 	public AnalysisContext(File f, @NonNull Database<Node> db) {
@@ -55,4 +84,39 @@ public class AnalysisContext {
 	public Database<Node> getDatabase() {
 		return this.db;
 	}
+
+	/**
+	 * Returns the cache of EOG reachability indices, see {@code CrymlinQueryWrapper.eogConnection}.
+	 *
+	 * @return mutable map from vertex ID to the index covering the vertex
+	 */
+	@NonNull
+	public Map<Object, EogReachabilityIndex> getEogReachabilityIndices() {
+		return this.eogReachabilityIndices;
+	}
+
+	/**
+	 * Returns the cache of reaching definitions, see {@code CrymlinQueryWrapper.resolveConstantValues}.
+	 *
+	 * @return mutable map from vertex ID to the reaching definitions of the function containing the vertex
+	 */
+	@NonNull
+	public Map<Object, ReachingDefinitions> getReachingDefinitions() {
+		return this.reachingDefinitions;
+	}
+
+	/**
+	 * Returns the cache of typestate WPDS, see {@code TypeStateAnalysis}.
+	 *
+	 * @return mutable map from rule and order expression to the WPDS of the rule
+	 */
+	@NonNull
+	public Map<Object, TypestateWpds> getTypestateWpds() {
+		return this.typestateWpds;
+	}
+
+	@NonNull
+	public DfgSlicer getDfgSlicer() {
+		return this.dfgSlicer;
+	}
 }
@@ -0,0 +1,169 @@
+
+package de.fraunhofer.aisec.analysis.structures;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from primitive <code>long</code> keys (typically vertex IDs) to non-null values.
+ * <p>
+ * Keys are stored unboxed in an open-addressing table with linear probing, so an entry costs one array slot for the key and one for the value, instead of a
+ * boxed <code>Long</code> and a map entry object. The map is not thread-safe.
+ *
+ * @param <V> type of the values
+ */
+public class LongObjectMap<V> {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+
+	/** Values of the slots, <code>null</code> for empty slots. */
+	private Object[] values;
+
+	private int size;
+
+	public LongObjectMap() {
+		this(MIN_CAPACITY / 2);
+	}
+
+	/**
+	 * @param expectedSize number of entries the map can hold without resizing
+	 */
+	public LongObjectMap(int expectedSize) {
+		allocate(capacityFor(expectedSize));
+	}
+
+	@Nullable
+	public V get(long key) {
+		int mask = values.length - 1;
+		for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return (V) values[i];
+			}
+		}
+		return null;
+	}
+
+	public boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Associates a value with a key.
+	 *
+	 * @return the previous value of the key, or null if there was none
+	 */
+	@Nullable
+	public V put(long key, @NonNull V value) {
+		if (2 * (size + 1) > values.length) {
+			resize(2 * values.length);
+		}
+		int mask = values.length - 1;
+		int i = slot(key, mask);
+		for (; values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				V previous = (V) values[i];
+				values[i] = value;
+				return previous;
+			}
+		}
+		keys[i] = key;
+		values[i] = value;
+		size++;
+		return null;
+	}
+
+	/**
+	 * Removes a key from the map.
+	 *
+	 * @return the value of the key, or null if there was none
+	 */
+	@Nullable
+	public V remove(long key) {
+		int mask = values.length - 1;
+		int i = slot(key, mask);
+		while (values[i] != null && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		if (values[i] == null) {
+			return null;
+		}
+		V removed = (V) values[i];
+
+		// Shift following entries of the probe sequence back, so that lookups do not stop at the freed slot
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (values[j] == null) {
+				break;
+			}
+			int home = slot(keys[j], mask);
+			boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+			if (!stays) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		values[i] = null;
+		size--;
+		return removed;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(capacity);
+		int mask = capacity - 1;
+		for (int k = 0; k < oldValues.length; k++) {
+			if (oldValues[k] != null) {
+				int i = slot(oldKeys[k], mask);
+				while (values[i] != null) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[k];
+				values[i] = oldValues[k];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+	}
+
+	/**
+	 * Returns the smallest power of two which keeps the load factor of the given number of entries at or below 1/2.
+	 */
+	static int capacityFor(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < 2 * expectedSize) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	/**
+	 * Returns the home slot of a key, spreading sequential IDs over the table.
+	 */
+	static int slot(long key, int mask) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+}
@@ -0,0 +1,91 @@
+
+package de.fraunhofer.aisec.analysis.structures;
+
+/**
+ * Hash set of pairs of primitive <code>long</code> values, such as the IDs of the source and target vertex of an edge.
+ * <p>
+ * Pairs are stored unboxed in an open-addressing table with linear probing. Elements cannot be removed. The set is not thread-safe.
+ */
+public class LongPairSet {
+
+	private long[] firsts;
+	private long[] seconds;
+	private boolean[] used;
+
+	private int size;
+
+	public LongPairSet() {
+		allocate(LongObjectMap.capacityFor(0));
+	}
+
+	/**
+	 * Adds a pair to the set.
+	 *
+	 * @return true, if the set did not contain the pair before
+	 */
+	public boolean add(long first, long second) {
+		if (2 * (size + 1) > used.length) {
+			resize(2 * used.length);
+		}
+		int mask = used.length - 1;
+		int i = slot(first, second, mask);
+		for (; used[i]; i = (i + 1) & mask) {
+			if (firsts[i] == first && seconds[i] == second) {
+				return false;
+			}
+		}
+		firsts[i] = first;
+		seconds[i] = second;
+		used[i] = true;
+		size++;
+		return true;
+	}
+
+	public boolean contains(long first, long second) {
+		int mask = used.length - 1;
+		for (int i = slot(first, second, mask); used[i]; i = (i + 1) & mask) {
+			if (firsts[i] == first && seconds[i] == second) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		allocate(LongObjectMap.capacityFor(0));
+		size = 0;
+	}
+
+	private void resize(int capacity) {
+		long[] oldFirsts = firsts;
+		long[] oldSeconds = seconds;
+		boolean[] oldUsed = used;
+		allocate(capacity);
+		int mask = capacity - 1;
+		for (int k = 0; k < oldUsed.length; k++) {
+			if (oldUsed[k]) {
+				int i = slot(oldFirsts[k], oldSeconds[k], mask);
+				while (used[i]) {
+					i = (i + 1) & mask;
+				}
+				firsts[i] = oldFirsts[k];
+				seconds[i] = oldSeconds[k];
+				used[i] = true;
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		firsts = new long[capacity];
+		seconds = new long[capacity];
+		used = new boolean[capacity];
+	}
+
+	private static int slot(long first, long second, int mask) {
+		return LongObjectMap.slot(first ^ Long.rotateLeft(second * 0xC2B2AE3D27D4EB4FL, 31), mask);
+	}
+}
@@ -2,6 +2,7 @@
 package de.fraunhofer.aisec.analysis.structures;
 
 import de.fraunhofer.aisec.analysis.server.AnalysisServer;
+import de.fraunhofer.aisec.crymlin.DfgSlicer;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -24,6 +25,12 @@ public class ServerConfiguration {
 	@NonNull
 	public final TypestateMode typestateAnalysis;
 
+	/**
+	 * If true, the weights of the WPDS typestate analysis are bit matrices over typestates rather
+	 * than sets of NFA transitions.
+	 */
+	public final boolean matrixTypestateWeights;
+
 	/**
 	 * Passed down to {@link de.fraunhofer.aisec.cpg.TranslationConfiguration}. Whether or not to
 	 * parse include files.
@@ -47,23 +54,123 @@ public class ServerConfiguration {
 	 */
 	public final boolean disableOverflow;
 
+	/**
+	 * Directory of the files OverflowDB overflows to, or null for the default temporary directory.
+	 * Each database uses a file of its own, which is deleted when the database is closed.
+	 */
+	@Nullable
+	public final File overflowDirectory;
+
+	/**
+	 * Percentage of the heap which must be in use before OverflowDB starts to overflow nodes to disk.
+	 */
+	public final int overflowHeapThreshold;
+
+	/**
+	 * If true, OverflowDB collects statistics on the serialization of overflowed nodes.
+	 */
+	public final boolean overflowSerializationStats;
+
+	/**
+	 * Number of MARK rules evaluated in parallel. A value of 1 evaluates all rules sequentially in
+	 * the calling thread.
+	 */
+	public final int ruleParallelism;
+
+	/**
+	 * Maximum number of vertices visited when computing a backward DFG slice for {@code
+	 * _receives_value_from}. Rules exceeding it cannot be evaluated.
+	 */
+	public final int dfgSliceBudget;
+
+	/**
+	 * Number of threads used to prepare the vertices and edges of translation units when persisting
+	 * the CPG. A value of 1 persists everything in the calling thread.
+	 */
+	public final int persistParallelism;
+
+	/**
+	 * If true, vertices are created in an order determined only by the CPG, so that vertex IDs are
+	 * reproducible across runs, regardless of {@link #persistParallelism}.
+	 */
+	public final boolean deterministicIds;
+
+	/**
+	 * If true, the CPG is not persisted into OverflowDB, but queried in place through a read-only
+	 * graph over its nodes (see {@code CpgDatabase}).
+	 */
+	public final boolean inMemoryCpg;
+
+	/**
+	 * Number of relationships followed when converting a vertex into a node. Nodes further away are
+	 * created without relationships. Converting their vertex itself yields another node with its
+	 * relationships. A negative value converts everything reachable from the vertex.
+	 */
+	public final int nodeMaterializationDepth;
+
+	/**
+	 * Maximum number of converted nodes kept in the cache of the database, evicting ones which have not
+	 * been used recently. A value of 0 or less keeps all of them.
+	 */
+	public final int nodeCacheSize;
+
+	/**
+	 * If true, vertices do not store their <code>code</code> property if it equals the source text at
+	 * their location. It is then read on demand from the source files.
+	 */
+	public final boolean lazyCode;
+
+	/**
+	 * Directory of persistent graph snapshots, or null if snapshots are disabled. If a snapshot of the
+	 * analyzed sources exists, it is loaded instead of building and persisting the CPG. Otherwise, a
+	 * snapshot is written after the CPG has been persisted.
+	 */
+	@Nullable
+	public final File snapshotDirectory;
+
 	private ServerConfiguration(
 			boolean launchConsole,
 			boolean launchLsp,
 			@Nullable String markModelFiles,
 			@NonNull TypestateMode typestateMode,
+			boolean matrixTypestateWeights,
 			boolean analyzeIncludes,
 			@NonNull File[] includePath,
 			boolean disableGoodFindings,
-			boolean disableOverflow) {
+			boolean disableOverflow,
+			@Nullable File overflowDirectory,
+			int overflowHeapThreshold,
+			boolean overflowSerializationStats,
+			int ruleParallelism,
+			int dfgSliceBudget,
+			int persistParallelism,
+			boolean deterministicIds,
+			boolean inMemoryCpg,
+			int nodeMaterializationDepth,
+			int nodeCacheSize,
+			boolean lazyCode,
+			@Nullable File snapshotDirectory) {
 		this.launchConsole = launchConsole;
 		this.launchLsp = launchLsp;
 		this.markModelFiles = markModelFiles;
 		this.typestateAnalysis = typestateMode;
+		this.matrixTypestateWeights = matrixTypestateWeights;
 		this.analyzeIncludes = analyzeIncludes;
 		this.includePath = includePath;
 		this.disableGoodFindings = disableGoodFindings;
 		this.disableOverflow = disableOverflow;
+		this.overflowDirectory = overflowDirectory;
+		this.overflowHeapThreshold = overflowHeapThreshold;
+		this.overflowSerializationStats = overflowSerializationStats;
+		this.ruleParallelism = ruleParallelism;
+		this.dfgSliceBudget = dfgSliceBudget;
+		this.persistParallelism = persistParallelism;
+		this.deterministicIds = deterministicIds;
+		this.inMemoryCpg = inMemoryCpg;
+		this.nodeMaterializationDepth = nodeMaterializationDepth;
+		this.nodeCacheSize = nodeCacheSize;
+		this.lazyCode = lazyCode;
+		this.snapshotDirectory = snapshotDirectory;
 	}
 
 	public static Builder builder() {
@@ -77,10 +184,25 @@ public class ServerConfiguration {
 		private String markModelFiles = ""; // Path of a file or directory
 		@NonNull
 		private TypestateMode typestateAnalysis = TypestateMode.NFA;
+		private boolean matrixTypestateWeights;
 		private boolean analyzeIncludes;
 		private File[] includePath = new File[0];
 		private boolean disableGoodFindings;
 		private boolean disableOverflow;
+		@Nullable
+		private File overflowDirectory;
+		private int overflowHeapThreshold = 5;
+		private boolean overflowSerializationStats;
+		private int ruleParallelism = 1;
+		private int dfgSliceBudget = DfgSlicer.DEFAULT_BUDGET;
+		private int persistParallelism = 1;
+		private boolean deterministicIds = true;
+		private boolean inMemoryCpg;
+		private int nodeMaterializationDepth = -1;
+		private int nodeCacheSize;
+		private boolean lazyCode;
+		@Nullable
+		private File snapshotDirectory;
 
 		public Builder launchConsole(boolean launchConsole) {
 			this.launchConsole = launchConsole;
@@ -102,6 +224,11 @@ public class ServerConfiguration {
 			return this;
 		}
 
+		public Builder matrixTypestateWeights(boolean matrixTypestateWeights) {
+			this.matrixTypestateWeights = matrixTypestateWeights;
+			return this;
+		}
+
 		public Builder analyzeIncludes(boolean analyzeIncludes) {
 			this.analyzeIncludes = analyzeIncludes;
 			return this;
@@ -126,16 +253,89 @@ public class ServerConfiguration {
 			return this;
 		}
 
+		public Builder overflowDirectory(@Nullable File overflowDirectory) {
+			this.overflowDirectory = overflowDirectory;
+			return this;
+		}
+
+		public Builder overflowHeapThreshold(int overflowHeapThreshold) {
+			this.overflowHeapThreshold = Math.max(1, Math.min(100, overflowHeapThreshold));
+			return this;
+		}
+
+		public Builder overflowSerializationStats(boolean overflowSerializationStats) {
+			this.overflowSerializationStats = overflowSerializationStats;
+			return this;
+		}
+
+		public Builder ruleParallelism(int ruleParallelism) {
+			this.ruleParallelism = Math.max(1, ruleParallelism);
+			return this;
+		}
+
+		public Builder dfgSliceBudget(int dfgSliceBudget) {
+			this.dfgSliceBudget = Math.max(1, dfgSliceBudget);
+			return this;
+		}
+
+		public Builder persistParallelism(int persistParallelism) {
+			this.persistParallelism = Math.max(1, persistParallelism);
+			return this;
+		}
+
+		public Builder deterministicIds(boolean deterministicIds) {
+			this.deterministicIds = deterministicIds;
+			return this;
+		}
+
+		public Builder inMemoryCpg(boolean inMemoryCpg) {
+			this.inMemoryCpg = inMemoryCpg;
+			return this;
+		}
+
+		public Builder nodeMaterializationDepth(int nodeMaterializationDepth) {
+			this.nodeMaterializationDepth = nodeMaterializationDepth;
+			return this;
+		}
+
+		public Builder nodeCacheSize(int nodeCacheSize) {
+			this.nodeCacheSize = nodeCacheSize;
+			return this;
+		}
+
+		public Builder lazyCode(boolean lazyCode) {
+			this.lazyCode = lazyCode;
+			return this;
+		}
+
+		public Builder snapshotDirectory(@Nullable File snapshotDirectory) {
+			this.snapshotDirectory = snapshotDirectory;
+			return this;
+		}
+
 		public ServerConfiguration build() {
 			return new ServerConfiguration(
 				launchConsole,
 				launchLsp,
 				markModelFiles,
 				typestateAnalysis,
+				matrixTypestateWeights,
 				analyzeIncludes,
 				includePath,
 				disableGoodFindings,
-				disableOverflow);
+				disableOverflow,
+				overflowDirectory,
+				overflowHeapThreshold,
+				overflowSerializationStats,
+				ruleParallelism,
+				dfgSliceBudget,
+				persistParallelism,
+				deterministicIds,
+				inMemoryCpg,
+				nodeMaterializationDepth,
+				nodeCacheSize,
+				lazyCode,
+				snapshotDirectory);
 		}
 	}
 }
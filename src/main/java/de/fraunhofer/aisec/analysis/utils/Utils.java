@@ -7,7 +7,7 @@ import de.fraunhofer.aisec.cpg.graph.type.Type;
 import de.fraunhofer.aisec.cpg.graph.type.UnknownType;
 import de.fraunhofer.aisec.cpg.sarif.PhysicalLocation;
 import de.fraunhofer.aisec.cpg.sarif.Region;
-import de.fraunhofer.aisec.crymlin.connectors.db.OverflowDatabase;
+import de.fraunhofer.aisec.crymlin.connectors.db.ClassHierarchy;
 import de.fraunhofer.aisec.mark.markDsl.Parameter;
 import de.fraunhofer.aisec.markmodel.Constants;
 import org.apache.tinkerpop.gremlin.process.traversal.Path;
@@ -115,9 +115,7 @@ public class Utils {
 	 * @return
 	 */
 	public static boolean hasLabel(@NonNull Vertex v, @NonNull Class<? extends Node> cpgClass) {
-		String label = v.label();
-		Set<String> subClasses = Set.of(OverflowDatabase.getSubclasses(cpgClass));
-		return label.equals(cpgClass.getSimpleName()) || subClasses.contains(label);
+		return ClassHierarchy.hasLabel(v, cpgClass);
 	}
 
 	/**
@@ -345,16 +343,7 @@ public class Utils {
 		}
 
 		StringBuilder sb = new StringBuilder();
-		if (base.property("labels").isPresent()) {
-			Object labels = base.property("labels").value();
-			String label;
-			if (labels instanceof List) {
-				label = (String) ((List) labels).get(0);
-			} else {
-				label = labels.toString();
-			}
-			sb.append(label);
-		}
+		sb.append(base.label());
 		sb.append("  [");
 		if (base.property("code").isPresent()) {
 			sb.append(base.property("code").value());
@@ -0,0 +1,217 @@
+
+package de.fraunhofer.aisec.analysis.wpds;
+
+import de.fraunhofer.aisec.markmodel.fsm.Node;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A relation between typestates, stored as a boolean matrix.
+ * <p>
+ * Typestates, i.e. the nodes of typestate NFAs, are interned by name and numbered by an {@link Interner}, as {@link TypestateWeight} compares them by name.
+ * An interner is created per typestate WPDS, so state numbers stay small and are released with it. Only matrices of the same interner can be combined. Row
+ * <code>s</code> of the matrix is a bitset of long words holding the targets of state <code>s</code>. Composing two relations is a matrix product, which ORs the rows of the targets,
+ * and the union of two relations ORs their rows. Matrices are immutable and kept in a canonical form without trailing zeros, so comparing and hashing them is
+ * cheap.
+ * <p>
+ * Unlike sets of {@link NFATransition}s, matrices do not keep transition labels. When converted back, transitions are labeled with the op of their target.
+ */
+public final class TransitionMatrix {
+
+	private static final long[] EMPTY_ROW = new long[0];
+
+	@NonNull
+	private final Interner interner;
+
+	@NonNull
+	private final long[][] rows;
+
+	private final int hash;
+
+	private TransitionMatrix(@NonNull Interner interner, @NonNull long[][] rows) {
+		this.interner = interner;
+		this.rows = rows;
+		this.hash = Arrays.deepHashCode(rows);
+	}
+
+	/**
+	 * Numbers typestates for the matrices created with it.
+	 */
+	public static final class Interner {
+
+		/** Interned typestates, by ID and by name. */
+		private final List<Node> states = new ArrayList<>();
+		private final Map<String, Integer> stateIds = new HashMap<>();
+
+		/**
+		 * Returns the ID of a typestate. States with the same name get the same ID.
+		 */
+		synchronized int intern(@NonNull Node state) {
+			String name = state.toString();
+			Integer id = stateIds.get(name);
+			if (id == null) {
+				id = states.size();
+				stateIds.put(name, id);
+				states.add(state);
+			}
+			return id;
+		}
+
+		private synchronized Node getState(int id) {
+			return states.get(id);
+		}
+	}
+
+	/**
+	 * Creates the matrix of a set of transitions, numbering their typestates with the given interner.
+	 */
+	@NonNull
+	public static TransitionMatrix of(@NonNull Interner interner, @NonNull Set<NFATransition<Node>> transitions) {
+		long[][] rows = new long[0][];
+		for (NFATransition<Node> t : transitions) {
+			int source = interner.intern(t.getSource());
+			int target = interner.intern(t.getTarget());
+			if (source >= rows.length) {
+				rows = Arrays.copyOf(rows, source + 1);
+			}
+			long[] row = rows[source] == null ? EMPTY_ROW : rows[source];
+			if (target / 64 >= row.length) {
+				row = Arrays.copyOf(row, target / 64 + 1);
+			}
+			row[target / 64] |= 1L << (target % 64);
+			rows[source] = row;
+		}
+		return canonical(interner, rows);
+	}
+
+	@NonNull
+	public Interner getInterner() {
+		return interner;
+	}
+
+	/**
+	 * Returns the composition of this relation with another one, i.e. <code>{s ↦ u ∣ s ↦ t ∈ this, t ↦ u ∈ other}</code>.
+	 */
+	@NonNull
+	public TransitionMatrix multiply(@NonNull TransitionMatrix other) {
+		checkInterner(other);
+		long[][] result = new long[rows.length][];
+		for (int s = 0; s < rows.length; s++) {
+			long[] row = EMPTY_ROW;
+			long[] targets = rows[s];
+			for (int w = 0; w < targets.length; w++) {
+				long word = targets[w];
+				while (word != 0) {
+					int t = w * 64 + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					if (t < other.rows.length) {
+						row = or(row, other.rows[t]);
+					}
+				}
+			}
+			result[s] = row;
+		}
+		return canonical(interner, result);
+	}
+
+	/**
+	 * Returns the union of this relation and another one.
+	 */
+	@NonNull
+	public TransitionMatrix union(@NonNull TransitionMatrix other) {
+		checkInterner(other);
+		long[][] result = new long[Math.max(rows.length, other.rows.length)][];
+		for (int s = 0; s < result.length; s++) {
+			result[s] = or(s < rows.length ? rows[s] : EMPTY_ROW, s < other.rows.length ? other.rows[s] : EMPTY_ROW);
+		}
+		return canonical(interner, result);
+	}
+
+	private void checkInterner(@NonNull TransitionMatrix other) {
+		if (other.interner != interner) {
+			throw new IllegalArgumentException("Matrices of different typestate interners cannot be combined");
+		}
+	}
+
+	public boolean isEmpty() {
+		return rows.length == 0;
+	}
+
+	/**
+	 * Converts this relation back into a set of transitions.
+	 */
+	@NonNull
+	public Set<NFATransition<Node>> toTransitions() {
+		Set<NFATransition<Node>> result = new HashSet<>();
+		for (int s = 0; s < rows.length; s++) {
+			for (int w = 0; w < rows[s].length; w++) {
+				long word = rows[s][w];
+				while (word != 0) {
+					int t = w * 64 + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					Node target = interner.getState(t);
+					result.add(new NFATransition<>(interner.getState(s), target, target.getOp()));
+				}
+			}
+		}
+		return result;
+	}
+
+	private static long[] or(long[] a, long[] b) {
+		if (b.length == 0) {
+			return a;
+		}
+		if (a.length == 0) {
+			return b;
+		}
+		long[] result = Arrays.copyOf(a.length >= b.length ? a : b, Math.max(a.length, b.length));
+		long[] shorter = a.length >= b.length ? b : a;
+		for (int i = 0; i < shorter.length; i++) {
+			result[i] |= shorter[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Removes trailing zero words and rows. Rows may be shared between matrices, as they are never modified.
+	 */
+	private static TransitionMatrix canonical(@NonNull Interner interner, long[][] rows) {
+		int numRows = 0;
+		for (int s = 0; s < rows.length; s++) {
+			long[] row = rows[s] == null ? EMPTY_ROW : rows[s];
+			int length = row.length;
+			while (length > 0 && row[length - 1] == 0) {
+				length--;
+			}
+			rows[s] = length == 0 ? EMPTY_ROW : length == row.length ? row : Arrays.copyOf(row, length);
+			if (length > 0) {
+				numRows = s + 1;
+			}
+		}
+		return new TransitionMatrix(interner, numRows == rows.length ? rows : Arrays.copyOf(rows, numRows));
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof TransitionMatrix)) {
+			return false;
+		}
+		TransitionMatrix other = (TransitionMatrix) o;
+		return interner == other.interner && hash == other.hash && Arrays.deepEquals(rows, other.rows);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+}
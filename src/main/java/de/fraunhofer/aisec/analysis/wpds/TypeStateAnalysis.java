@@ -9,6 +9,7 @@ import de.breakpointsec.pushdown.rules.NormalRule;
 import de.breakpointsec.pushdown.rules.PopRule;
 import de.breakpointsec.pushdown.rules.PushRule;
 import de.breakpointsec.pushdown.rules.Rule;
+import de.fraunhofer.aisec.analysis.markevaluation.EvaluationPlan;
 import de.fraunhofer.aisec.analysis.structures.AnalysisContext;
 import de.fraunhofer.aisec.analysis.structures.CPGInstanceContext;
 import de.fraunhofer.aisec.analysis.structures.ConstantValue;
@@ -20,15 +21,12 @@ import de.fraunhofer.aisec.analysis.structures.Pair;
 import de.fraunhofer.aisec.analysis.utils.Utils;
 import de.fraunhofer.aisec.cpg.graph.CallExpression;
 import de.fraunhofer.aisec.cpg.graph.CompoundStatement;
-import de.fraunhofer.aisec.cpg.graph.Declaration;
 import de.fraunhofer.aisec.cpg.graph.DeclarationStatement;
 import de.fraunhofer.aisec.cpg.graph.DeclaredReferenceExpression;
 import de.fraunhofer.aisec.cpg.graph.Expression;
 import de.fraunhofer.aisec.cpg.graph.FunctionDeclaration;
 import de.fraunhofer.aisec.cpg.graph.IfStatement;
-import de.fraunhofer.aisec.cpg.graph.ParamVariableDeclaration;
 import de.fraunhofer.aisec.cpg.graph.ReturnStatement;
-import de.fraunhofer.aisec.cpg.graph.Statement;
 import de.fraunhofer.aisec.cpg.graph.VariableDeclaration;
 import de.fraunhofer.aisec.cpg.graph.type.Type;
 import de.fraunhofer.aisec.cpg.sarif.Region;
@@ -98,11 +96,22 @@ public class TypeStateAnalysis {
 	@NonNull
 	private final MarkContextHolder markContextHolder;
 	private CPGInstanceContext instanceContext;
+	/** Transitions of the typestate NFA of the current rule. */
+	private Set<NFATransition<Node>> tsTransitions = Set.of();
 	private AnalysisContext ctx;
+	/** If true, weights are bit matrices rather than sets of NFA transitions. */
+	private final boolean matrixWeights;
+	/** Numbers the typestates of matrix weights. A new one is used for each WPDS. */
+	private TransitionMatrix.Interner typestateInterner;
 
 	public TypeStateAnalysis(@NonNull MarkContextHolder markContextHolder, @NonNull AnalysisContext ctx) {
+		this(markContextHolder, ctx, false);
+	}
+
+	public TypeStateAnalysis(@NonNull MarkContextHolder markContextHolder, @NonNull AnalysisContext ctx, boolean matrixWeights) {
 		this.markContextHolder = markContextHolder;
 		this.ctx = ctx;
+		this.matrixWeights = matrixWeights;
 	}
 
 	/**
@@ -137,12 +146,25 @@ public class TypeStateAnalysis {
 			return ErrorValue.newErrorValue(String.format("OrderExpression does not refer to a Mark instance: %s. Will not run TS analysis", orderExpr.toString()));
 		}
 
-		/* Create typestate NFA, representing the regular expression of a MARK typestate rule. */
-		NFA tsNFA = NFA.of(orderExpr.getExp());
+		/* Get the typestate NFA, representing the regular expression of a MARK typestate rule. It is compiled once per rule. */
+		EvaluationPlan plan = rule.getPlan() != null ? rule.getPlan() : EvaluationPlan.compile(rule.getStatement());
+		NFA tsNFA = plan.getNfa(orderExpr);
+		tsTransitions = tsNFA.getTransitions();
 		log.debug("Initial typestate NFA:\n{}", tsNFA);
 
-		// Create a weighted pushdown system
-		CpgWpds wpds = createWpds(crymlinTraversal, tsNFA);
+		// Create a weighted pushdown system. It does not depend on the context, so it is created once per rule.
+		List<Object> key = List.of(rule, orderExpr);
+		TypestateWpds typestateWpds = ctx.getTypestateWpds().get(key);
+		if (typestateWpds == null) {
+			typestateWpds = new TypestateWpds(createWpds(crymlinTraversal, tsNFA));
+			TypestateWpds previous = ctx.getTypestateWpds().putIfAbsent(key, typestateWpds);
+			if (previous != null) {
+				typestateWpds = previous;
+			}
+		} else {
+			log.info("Reusing WPDS of rule {}", rule.getName());
+		}
+		CpgWpds wpds = typestateWpds.getWpds();
 
 		/*
 		 * Create a weighted automaton (= a weighted NFA) that describes the initial configurations. The initial configuration is the statement containing the declaration
@@ -181,8 +203,8 @@ public class TypeStateAnalysis {
 			// For debugging only: Print the non-saturated NFA
 			log.debug("Non saturated NFA {}", wnfa);
 		}
-		// Saturate the NFA from the WPDS, using the post-* algorithm.
-		wpds.poststar(wnfa);
+		// Saturate the NFA from the WPDS, using the post-* algorithm. Saturated automata are shared by all contexts with the same initial configuration.
+		wnfa = typestateWpds.poststar(wnfa);
 
 		// For debugging only: Print the post-*-saturated NFA
 		log.debug("Saturated WNFA {}", wnfa);
@@ -365,6 +387,7 @@ public class TypeStateAnalysis {
 
 		/* Create empty WPDS */
 		CpgWpds wpds = new CpgWpds();
+		typestateInterner = new TransitionMatrix.Interner();
 
 		/**
 		 * For each function, create a WPDS.
@@ -415,10 +438,7 @@ public class TypeStateAnalysis {
 		Set<Val> valsInScope = new HashSet<>();
 
 		// Make sure we track all parameters inside this function
-		List<ParamVariableDeclaration> params = fd.getParameters();
-		for (ParamVariableDeclaration p : params) {
-			valsInScope.add(new Val(p.getName(), fd.getName()));
-		}
+		valsInScope.addAll(parametersToVals(fdVertex));
 
 		// Start creation of WPDS rules by traversing the EOG
 		while (!worklist.isEmpty()) {
@@ -458,7 +478,6 @@ public class TypeStateAnalysis {
 
 		String currentFunctionName = (String) functionVertex.property(NAME).orElse("UNKNOWN");
 		Stmt currentStmt = vertexToStmt(currentStmtVertex);
-		de.fraunhofer.aisec.cpg.graph.Node stmtNode = db.vertexToNode(currentStmtVertex);
 
 		/* First we create normal rules from previous stmt to the current stmt, simply propagating existing values. */
 		Set<NormalRule<Stmt, Val, TypestateWeight>> normalRules = createNormalRules(previousStmt, currentStmtVertex, valsInScope, tsNfa);
@@ -475,13 +494,12 @@ public class TypeStateAnalysis {
 		/*
 		  Handle calls into known methods (not a "phantom" method) by creating push rule.
 		 */
-		if (CrymlinQueryWrapper.isCallExpression(currentStmtVertex) && !Utils.isPhantom((CallExpression) stmtNode)) {
-			CallExpression callE = (CallExpression) stmtNode;
+		if (CrymlinQueryWrapper.isCallExpression(currentStmtVertex) && currentStmtVertex.vertices(Direction.OUT, INVOKES).hasNext()) {
 			/*
 			 * For calls to functions whose body is known, we create push/pop rule pairs. All arguments flow into the parameters of the function. The
 			 * "return site" is the statement to which flow returns after the function call.
 			 */
-			Set<PushRule<Stmt, Val, TypestateWeight>> pushRules = createPushRules(callE, crymlinTraversal, currentFunctionName, currentStmt, currentStmtVertex);
+			Set<PushRule<Stmt, Val, TypestateWeight>> pushRules = createPushRules(crymlinTraversal, currentFunctionName, currentStmt, currentStmtVertex);
 			for (PushRule<Stmt, Val, TypestateWeight> pushRule : pushRules) {
 				log.debug("  Adding push rule: {}", pushRule);
 				wpds.addRule(pushRule);
@@ -502,15 +520,14 @@ public class TypeStateAnalysis {
 			// Note: We might be a bit more gracious here to tolerate incorrect code. For example, a non-declared variable would be a "BinaryOperator".
 			log.debug("Found variable declaration {}", currentStmtVertex.property("code")
 					.orElse(""));
-			DeclarationStatement ds = (DeclarationStatement) db.vertexToNode(currentStmtVertex);
-			for (Declaration decl : ds.getDeclarations()) {
-				if (!(decl instanceof VariableDeclaration)) {
+			for (Vertex decl : getAdjacent(currentStmtVertex, DECLARATIONS)) {
+				if (!Utils.hasLabel(decl, VariableDeclaration.class)) {
 					continue;
 				}
-				Val declVal = new Val(decl.getName(), currentFunctionName);
-				Expression rhs = ((VariableDeclaration) decl).getInitializer();
+				Val declVal = new Val(getName(decl), currentFunctionName);
+				Vertex rhs = getFirstAdjacent(decl, INITIALIZER);
 
-				if (rhs instanceof CallExpression) {
+				if (rhs != null && CrymlinQueryWrapper.isCallExpression(rhs)) {
 					/* Handle function/method calls whose return value is assigned to a declared variable.
 					   A new data flow for the declared variable (declVal) is introduced.
 					 */
@@ -530,7 +547,7 @@ public class TypeStateAnalysis {
 					 *
 					 * We simply take rhs.getName() as a data source. This might be imprecise and need further differentiation. For instance, if rhs is an expression (other than CallExpression), we might want to recursively handle data flows within that expression. This is currently not implemented as it is not needed for our use case and would add unneeded complexity.
 					 */
-					Val rhsVal = new Val(rhs.getName(), currentFunctionName);
+					Val rhsVal = new Val(getName(rhs), currentFunctionName);
 
 					// Add declVal to set of currently tracked variables
 					valsInScope.add(declVal);
@@ -545,20 +562,20 @@ public class TypeStateAnalysis {
 			ReturnStatement returnV = (ReturnStatement) db.vertexToNode(currentStmtVertex);
 			if (returnV != null && !returnV.isDummy()) {
 				Set<Val> returnedVals = findReturnedVals(crymlinTraversal, currentStmtVertex);
+				Vertex returnValue = getFirstAdjacent(currentStmtVertex, RETURN_VALUE);
 
 				for (Val returnedVal : returnedVals) {
-					Set<NFATransition<Node>> relevantNFATransitions = tsNfa.getTransitions()
+					Set<NFATransition<Node>> relevantNFATransitions = tsTransitions
 							.stream()
 							.filter(
 								tran -> tran.getTarget()
 										.getOp()
 										.equals(returnedVal.getVariable()))
 							.collect(Collectors.toSet());
-					TypestateWeight weight = relevantNFATransitions.isEmpty() ? TypestateWeight.one() : new TypestateWeight(relevantNFATransitions);
+					TypestateWeight weight = createWeight(relevantNFATransitions);
 
 					// Pop Rule for actually returned value
-					PopRule<Stmt, Val, TypestateWeight> returnPopRule = new PopRule<>(new Val(returnV.getReturnValue()
-							.getName(),
+					PopRule<Stmt, Val, TypestateWeight> returnPopRule = new PopRule<>(new Val(returnValue != null ? getName(returnValue) : "",
 						currentFunctionName),
 						currentStmt, returnedVal, weight);
 					wpds.addRule(returnPopRule);
@@ -653,25 +670,32 @@ public class TypeStateAnalysis {
 				|| v.edges(Direction.IN, CrymlinConstants.STATEMENTS).hasNext() || numberOfOutgoingEogs >= 2;
 	}
 
-	private Set<NormalRule<Stmt, Val, TypestateWeight>> createNormalRules(final Stmt previousStmt, final Vertex v, final Set<Val> valsInScope, final NFA tsNfa) {
-		var db = ctx.getDatabase();
+	/**
+	 * Creates the weight of a rule triggering the given typestate transitions, or ONE if it triggers none.
+	 */
+	@NonNull
+	private TypestateWeight createWeight(@NonNull Set<NFATransition<Node>> transitions) {
+		if (transitions.isEmpty()) {
+			return TypestateWeight.one();
+		}
+		return matrixWeights ? new TypestateWeight(TransitionMatrix.of(typestateInterner, transitions)) : new TypestateWeight(transitions);
+	}
 
+	private Set<NormalRule<Stmt, Val, TypestateWeight>> createNormalRules(final Stmt previousStmt, final Vertex v, final Set<Val> valsInScope, final NFA tsNfa) {
 		Stmt currentStmt = vertexToStmt(v);
 
-		de.fraunhofer.aisec.cpg.graph.@Nullable Node currentStmtNode = db.vertexToNode(v);
-
 		Set<NormalRule<Stmt, Val, TypestateWeight>> result = new HashSet<>();
 
+		// Determine weight. It does not depend on the value in scope.
+		Set<NFATransition<Node>> relevantNFATransitions = tsTransitions
+				.stream()
+				.filter(
+					tran -> triggersTypestateTransition(v, tran.getTarget().getBase(), tran.getTarget().getOp()))
+				.collect(Collectors.toSet());
+		TypestateWeight weight = createWeight(relevantNFATransitions);
+
 		// Create normal rule. Flow remains where it is.
 		for (Val valInScope : valsInScope) {
-			// Determine weight
-			Set<NFATransition<Node>> relevantNFATransitions = tsNfa.getTransitions()
-					.stream()
-					.filter(
-						tran -> triggersTypestateTransition(currentStmtNode, tran.getTarget().getBase(), tran.getTarget().getOp()))
-					.collect(Collectors.toSet());
-			TypestateWeight weight = relevantNFATransitions.isEmpty() ? TypestateWeight.one() : new TypestateWeight(relevantNFATransitions);
-
 			NormalRule<Stmt, Val, TypestateWeight> normalRule = new NormalRule<>(valInScope, previousStmt, valInScope, currentStmt, weight);
 			log.debug("Adding normal rule {}", normalRule);
 			result.add(normalRule);
@@ -683,18 +707,19 @@ public class TypeStateAnalysis {
 	/**
 	 * Returns true if the given CPG {@code Node} will result in a transition from any typestate into the typestate detened by {@code op}.
 	 *
-	 * @param cpgNode A CPG node - typically a {@code CallExpression} or anything that contains a call (e.g., a {@code VariableDeclaration})
+	 * @param cpgNode Vertex of a CPG node - typically a {@code CallExpression} or anything that contains a call (e.g., a {@code VariableDeclaration})
 	 * @param markInstance The current MARK instance.
 	 * @param op The target typestate, indicated by a MARK op.
 	 * @return
 	 */
-	private boolean triggersTypestateTransition(de.fraunhofer.aisec.cpg.graph.Node cpgNode, @Nullable String markInstance, String op) {
+	private boolean triggersTypestateTransition(Vertex cpgNode, @Nullable String markInstance, String op) {
 		/*
 		 TODO Future improvement: This method is repeatedly called for different "ops" and thus repeats quite some work.
 		 The "op" paramenter should be removed and the method should return a (possibly empty) set of target typestates (=ops)
 		 that would be reached, so this method needs to be called only once per CPG node.
 		 */
-		if (markInstance == null || cpgNode.getName().equals("")) {
+		String name = getName(cpgNode);
+		if (markInstance == null || name.equals("")) {
 			return false;
 		}
 
@@ -707,27 +732,28 @@ public class TypeStateAnalysis {
 		// For non-OO languages, we need to check valInScope against function args and return value (=assignee)
 		String assigneeVar = null;
 		String assignerFqn = null;
-		if (cpgNode instanceof VariableDeclaration) {
-			assigneeVar = cpgNode.getName();
-			if (((VariableDeclaration) cpgNode).getInitializer() instanceof CallExpression) {
-				assignerFqn = ((CallExpression) ((VariableDeclaration) cpgNode).getInitializer()).getFqn();
+		if (Utils.hasLabel(cpgNode, VariableDeclaration.class)) {
+			assigneeVar = name;
+			Vertex initializer = getFirstAdjacent(cpgNode, INITIALIZER);
+			if (initializer != null && isCallExpression(initializer)) {
+				assignerFqn = (String) initializer.property("fqn").orElse(null);
 			}
-		} else if (cpgNode instanceof CallExpression) {
-			assignerFqn = ((CallExpression) cpgNode).getFqn();
+		} else if (isCallExpression(cpgNode)) {
+			assignerFqn = (String) cpgNode.property("fqn").orElse(null);
 		}
 
-		// For method calls we collect the "base", its type(s), and the method arguments.
+		// For method calls we collect the "base", its type(s), and the types of the method arguments.
 		Set<Type> types = new HashSet<>();
-		List<Expression> arguments = new ArrayList<>();
-		if (cpgNode instanceof CallExpression) {
-			de.fraunhofer.aisec.cpg.graph.Node base = ((CallExpression) cpgNode).getBase();
+		List<Vertex> arguments = new ArrayList<>();
+		if (isCallExpression(cpgNode)) {
+			Vertex base = getFirstAdjacent(cpgNode, BASE);
 
 			// Check for type of base, if exists
-			if (base != null && base instanceof Expression) {
-				types = ((Expression) base).getPossibleSubTypes();
+			if (base != null && Utils.hasLabel(base, Expression.class)) {
+				types = getTypes(base, POSSIBLE_SUB_TYPES);
 			}
 
-			arguments.addAll(((CallExpression) cpgNode).getArguments());
+			arguments.addAll(getAdjacent(cpgNode, ARGUMENTS));
 		}
 
 		for (MOp o : mEntity.getValue1().getOps()) {
@@ -745,7 +771,7 @@ public class TypeStateAnalysis {
 							&& (assigneeVar != null // is return value assigned to valInScope?
 									|| arguments.isEmpty()
 									|| CrymlinQueryWrapper.argumentsMatchSourceParameters(opStatement.getCall().getParams(),
-										((CallExpression) cpgNode).getArguments()))) {
+										arguments.stream().map(arg -> getTypes(arg, TYPE).stream().findFirst().orElse(null)).collect(Collectors.toList())))) {
 						return true;
 					}
 				} else {
@@ -753,7 +779,7 @@ public class TypeStateAnalysis {
 						if (type.getTypeName().startsWith(Utils.getScope(opStatement.getCall().getName()).replace("::", ".")) // Dirty: startsWith() to ignore modifiers (such as "*").
 								&& opStatement.getCall()
 										.getName()
-										.endsWith(cpgNode.getName())) {
+										.endsWith(name)) {
 							// TODO should rather compare fully qualified names instead of "endsWith"
 							return true;
 						}
@@ -775,16 +801,9 @@ public class TypeStateAnalysis {
 	 */
 	@NonNull
 	private Map<String, Set<Pair<Val, Val>>> findParamToValues(Vertex functionDeclaration, Vertex returnV, CrymlinTraversalSource crymlinTraversalSource) {
-		var db = ctx.getDatabase();
-
 		Map<String, Set<Pair<Val, Val>>> result = new HashMap<>();
 		try {
-			FunctionDeclaration calleeFD = (FunctionDeclaration) db.vertexToNode(functionDeclaration);
-			if (calleeFD == null) {
-				log.error("Unexpected: FunctionDeclaration of callee is null.");
-				return result;
-			}
-			String calleeName = calleeFD.getName();
+			String calleeName = getName(functionDeclaration);
 
 			List<Vertex> calls = crymlinTraversalSource.byID((long) returnV.id())
 					.repeat(__().out(DFG))
@@ -794,8 +813,8 @@ public class TypeStateAnalysis {
 					.toList();
 
 			for (Vertex call : calls) {
-				CallExpression ce = (CallExpression) db.vertexToNode(call);
-				if (ce == null) {
+				Vertex callee = getFirstAdjacent(call, INVOKES); // TODO we assume there is exactly one (=our) called function ("callee"). In case of fuzzy resolution, there might be more.
+				if (callee == null) {
 					continue;
 				}
 
@@ -811,20 +830,12 @@ public class TypeStateAnalysis {
 						.toList();
 
 				for (Vertex callerV : callers) {
-					FunctionDeclaration caller = (FunctionDeclaration) db.vertexToNode(callerV);
-					if (caller == null) {
-						log.error("Unexpected: Null Node object for FunctionDeclaration vertex {}", callerV.id());
-						continue;
-					}
-					List<Expression> args = ce.getArguments();
-					FunctionDeclaration callee = ce.getInvokes()
-							.get(
-								0); // TODO we assume there is exactly one (=our) called function ("callee"). In case of fuzzy resolution, there might be more.
-					List<ParamVariableDeclaration> params = callee.getParameters();
+					List<Vertex> args = getAdjacent(call, ARGUMENTS);
+					List<Vertex> params = getAdjacent(callee, PARAMETERS);
 
 					Set<Pair<Val, Val>> pToA = new HashSet<>();
 					for (int i = 0; i < Math.min(params.size(), args.size()); i++) {
-						pToA.add(new Pair<>(new Val(params.get(i).getName(), calleeName), new Val(args.get(i).getName(), caller.getName())));
+						pToA.add(new Pair<>(new Val(getName(params.get(i)), calleeName), new Val(getName(args.get(i)), getName(callerV))));
 					}
 					result.put(calleeName, pToA);
 				}
@@ -903,7 +914,6 @@ public class TypeStateAnalysis {
 	 * Typically, there will be only a single push rule per call expression. Only in case of multiple return sites, such as when considering exception handling, the
 	 * resulting set may contain more than one rule.
 	 *
-	 * @param mce
 	 * @param crymlinTraversal
 	 * @param currentFunctionName
 	 * @param nfa
@@ -911,28 +921,33 @@ public class TypeStateAnalysis {
 	 * @param currentStmtVertex
 	 * @return
 	 */
-	private Set<PushRule<Stmt, Val, TypestateWeight>> createPushRules(CallExpression mce, CrymlinTraversalSource crymlinTraversal, String currentFunctionName,
+	private Set<PushRule<Stmt, Val, TypestateWeight>> createPushRules(CrymlinTraversalSource crymlinTraversal, String currentFunctionName,
 			Stmt currentStmt, Vertex currentStmtVertex) {
 		// Return site(s). Actually, multiple return sites will only occur in case of exception handling.
 		List<Vertex> returnSites = CrymlinQueryWrapper.getNextStatements(crymlinTraversal, (long) currentStmtVertex.id());
 
 		// Arguments of function call
-		List<Val> argVals = argumentsToVals(mce, currentFunctionName);
+		List<Val> argVals = argumentsToVals(currentStmtVertex, currentFunctionName);
 
 		Set<PushRule<Stmt, Val, TypestateWeight>> pushRules = new HashSet<>();
-		for (FunctionDeclaration potentialCallee : mce.getInvokes()) {
+		for (Vertex calleeVertex : getAdjacent(currentStmtVertex, INVOKES)) {
+			FunctionDeclaration potentialCallee = (FunctionDeclaration) ctx.getDatabase().vertexToNode(calleeVertex);
+			if (potentialCallee == null) {
+				continue;
+			}
+
 			// Parameters of function
-			if (potentialCallee.getParameters().size() != argVals.size()) {
+			List<Val> parmVals = parametersToVals(calleeVertex);
+			if (parmVals.size() != argVals.size()) {
 				log.warn("Skipping call from {} to {} due different argument/parameter counts.", currentFunctionName,
-					potentialCallee.getSignature());
+					potentialCallee.getName());
 				continue;
 			}
-			List<Val> parmVals = parametersToVals(potentialCallee);
 
 			// Get first statement of callee. This is the jump target of our Push Rule.
-			Statement firstStmt = getFirstStmtOfMethod(potentialCallee);
+			Vertex firstStmt = getFirstStmtOfMethod(calleeVertex);
 
-			if (firstStmt != null && firstStmt.getCode() != null) {
+			if (firstStmt != null && firstStmt.property("code").isPresent()) {
 				for (int i = 0; i < argVals.size(); i++) {
 					for (Vertex returnSiteVertex : returnSites) {
 						Stmt returnSite = vertexToStmt(returnSiteVertex);
@@ -956,17 +971,16 @@ public class TypeStateAnalysis {
 	}
 
 	@Nullable
-	private Statement getFirstStmtOfMethod(@NonNull FunctionDeclaration potentialCallee) {
-		if (potentialCallee.getBody() != null) {
-			Statement firstStmt = potentialCallee.getBody();
-			while (firstStmt instanceof CompoundStatement) {
-				firstStmt = ((CompoundStatement) firstStmt).getStatements().get(0);
-			}
-			return firstStmt;
+	private Vertex getFirstStmtOfMethod(@NonNull Vertex potentialCallee) {
+		Vertex firstStmt = getFirstAdjacent(potentialCallee, BODY);
+		if (firstStmt == null) {
+			log.error("Function does not have a body: {}", getName(potentialCallee));
+			return null;
 		}
-
-		log.error("Function does not have a body: {}", potentialCallee.getName());
-		return null;
+		while (firstStmt != null && Utils.hasLabel(firstStmt, CompoundStatement.class)) {
+			firstStmt = getFirstAdjacent(firstStmt, STATEMENTS);
+		}
+		return firstStmt;
 	}
 
 	/**
@@ -976,23 +990,63 @@ public class TypeStateAnalysis {
 	 * @return
 	 */
 	@NonNull
-	private List<Val> parametersToVals(@NonNull FunctionDeclaration func) {
+	private List<Val> parametersToVals(@NonNull Vertex func) {
 		List<Val> parmVals = new ArrayList<>();
-		for (ParamVariableDeclaration p : func.getParameters()) {
-			parmVals.add(new Val(p.getName(), func.getName()));
+		for (Vertex p : getAdjacent(func, PARAMETERS)) {
+			parmVals.add(new Val(getName(p), getName(func)));
 		}
 		return parmVals;
 	}
 
-	private List<Val> argumentsToVals(CallExpression callExpression, String currentFunctionName) {
+	private List<Val> argumentsToVals(Vertex callExpression, String currentFunctionName) {
 		List<Val> argVals = new ArrayList<>();
-		List<Expression> args = callExpression.getArguments();
-		for (Expression arg : args) {
-			argVals.add(new Val(arg.getName(), currentFunctionName));
+		for (Vertex arg : getAdjacent(callExpression, ARGUMENTS)) {
+			argVals.add(new Val(getName(arg), currentFunctionName));
 		}
 		return argVals;
 	}
 
+	/**
+	 * Returns the vertices adjacent to <code>v</code> by outgoing edges of a relationship, in the order of the relationship.
+	 * <p>
+	 * Relationships are followed in the graph rather than on nodes, as nodes are converted only up to
+	 * {@link de.fraunhofer.aisec.analysis.structures.ServerConfiguration#nodeMaterializationDepth} relationships away.
+	 */
+	@NonNull
+	private static List<Vertex> getAdjacent(@NonNull Vertex v, @NonNull String relationship) {
+		List<Vertex> result = new ArrayList<>();
+		v.vertices(Direction.OUT, relationship).forEachRemaining(result::add);
+		return result;
+	}
+
+	/**
+	 * Returns the first vertex adjacent to <code>v</code> by outgoing edges of a relationship, or null if there is none.
+	 */
+	@Nullable
+	private static Vertex getFirstAdjacent(@NonNull Vertex v, @NonNull String relationship) {
+		Iterator<Vertex> it = v.vertices(Direction.OUT, relationship);
+		return it.hasNext() ? it.next() : null;
+	}
+
+	/**
+	 * Returns the types adjacent to <code>v</code> by outgoing edges of a relationship, e.g. {@link CrymlinConstants#TYPE}.
+	 */
+	@NonNull
+	private Set<Type> getTypes(@NonNull Vertex v, @NonNull String relationship) {
+		Set<Type> types = new HashSet<>();
+		for (Vertex t : getAdjacent(v, relationship)) {
+			if (Utils.hasLabel(t, Type.class)) {
+				types.add((Type) ctx.getDatabase().vertexToNode(t));
+			}
+		}
+		return types;
+	}
+
+	@NonNull
+	private static String getName(@NonNull Vertex v) {
+		return (String) v.property(NAME).orElse("");
+	}
+
 	/**
 	 * Convert a CPG vertex into a <code>Stmt</code> in context of the WPDS.
 	 *
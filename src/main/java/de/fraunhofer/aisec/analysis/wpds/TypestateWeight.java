@@ -17,10 +17,16 @@ import java.util.stream.Collectors;
  * <p>
  * A weight domain is a bounded idempotent semiring. In our case, the semiring's operations "combine" and "extend" are linked to a nondeterministic finite automaton
  * (FSM), created from the typedef definition in a Mark file (=a regular expression).
+ *
+ * <p>
+ * A weight is a relation between typestates. It is either stored as a set of {@link NFATransition}s or, if created from a {@link TransitionMatrix}, as a bit
+ * matrix. Operations on matrices are considerably cheaper. Weights of both kinds may be combined and extended, which results in a matrix.
  */
 public class TypestateWeight extends Semiring {
 	private @NonNull Set<NFATransition<Node>> value = new HashSet<>();
 	@Nullable
+	private TransitionMatrix matrix = null;
+	@Nullable
 	private NFA nfa = null;
 	@Nullable
 	private Element fixedElement = null;
@@ -38,6 +44,10 @@ public class TypestateWeight extends Semiring {
 		this.value = typestateTransitions;
 	}
 
+	public TypestateWeight(@NonNull TransitionMatrix matrix) {
+		this.matrix = matrix;
+	}
+
 	public TypestateWeight(@NonNull Element fixedEle) {
 		this.fixedElement = fixedEle;
 	}
@@ -72,6 +82,12 @@ public class TypestateWeight extends Semiring {
 
 		TypestateWeight otherW = (TypestateWeight) other;
 
+		if (this.matrix != null || otherW.matrix != null) {
+			TransitionMatrix.Interner interner = getInterner(otherW);
+			TransitionMatrix product = this.toMatrix(interner).multiply(otherW.toMatrix(interner));
+			return product.isEmpty() ? TypestateWeight.zero() : new TypestateWeight(product);
+		}
+
 		Set<NFATransition<Node>> resultSet = new HashSet<>();
 		for (NFATransition<Node> my : this.value) {
 			for (NFATransition<Node> theirs : otherW.value) {
@@ -104,6 +120,12 @@ public class TypestateWeight extends Semiring {
 			return zero();
 		}
 
+		if (other instanceof TypestateWeight && (this.matrix != null || ((TypestateWeight) other).matrix != null)) {
+			TypestateWeight otherW = (TypestateWeight) other;
+			TransitionMatrix.Interner interner = getInterner(otherW);
+			return new TypestateWeight(this.toMatrix(interner).union(otherW.toMatrix(interner)));
+		}
+
 		if (other instanceof TypestateWeight) {
 			Set<NFATransition<Node>> union = Sets.union(this.value, ((TypestateWeight) other).value);
 			return new TypestateWeight(union);
@@ -124,6 +146,10 @@ public class TypestateWeight extends Semiring {
 			return nfa.getCurrentConfiguration();
 		}
 
+		if (matrix != null) {
+			return matrix.toTransitions();
+		}
+
 		// Concatenate transitions' toString(), joined by comma
 		return value;
 	}
@@ -134,7 +160,23 @@ public class TypestateWeight extends Semiring {
 			return this.fixedElement.toString();
 		}
 
-		return this.value.stream().map(NFATransition::toString).collect(Collectors.joining(", "));
+		Set<NFATransition<Node>> transitions = matrix != null ? matrix.toTransitions() : this.value;
+		return transitions.stream().map(NFATransition::toString).collect(Collectors.joining(", "));
+	}
+
+	/**
+	 * Returns the interner of the matrix of this weight or, if it is a set of transitions, of the other weight.
+	 */
+	@NonNull
+	private TransitionMatrix.Interner getInterner(@NonNull TypestateWeight other) {
+		TransitionMatrix m = matrix != null ? matrix : other.matrix;
+		assert m != null;
+		return m.getInterner();
+	}
+
+	@NonNull
+	private TransitionMatrix toMatrix(@NonNull TransitionMatrix.Interner interner) {
+		return matrix != null ? matrix : TransitionMatrix.of(interner, value);
 	}
 
 	@Override
@@ -147,6 +189,9 @@ public class TypestateWeight extends Semiring {
 		if (this.fixedElement != null) {
 			result = prime * result + this.fixedElement.hashCode();
 		}
+		if (this.matrix != null) {
+			result = prime * result + this.matrix.hashCode();
+		}
 		return result;
 	}
 
@@ -166,6 +211,9 @@ public class TypestateWeight extends Semiring {
 		if (this.fixedElement != null) {
 			return this.fixedElement.equals(other.fixedElement);
 		}
+		if (this.matrix != null || other.matrix != null) {
+			return this.matrix != null && this.matrix.equals(other.matrix);
+		}
 
 		return this.value.equals(other.value);
 	}
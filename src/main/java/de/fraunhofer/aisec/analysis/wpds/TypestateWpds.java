@@ -0,0 +1,58 @@
+
+package de.fraunhofer.aisec.analysis.wpds;
+
+import de.breakpointsec.pushdown.fsm.Transition;
+import de.breakpointsec.pushdown.fsm.WeightedAutomaton;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The WPDS of a typestate rule, shared by all MARK contexts the rule is evaluated for.
+ * <p>
+ * The rules of the WPDS abstract the data flows of the whole program and only depend on the typestate NFA and the entities of the MARK rule. They are thus created
+ * once per rule and kept in the {@code AnalysisContext}. Only the initial configuration may differ between contexts, so post* is run once per initial
+ * configuration and the saturated automaton is reused.
+ */
+public class TypestateWpds {
+
+	@NonNull
+	private final CpgWpds wpds;
+
+	/** Saturated automata by the weighted transitions of their initial configuration. */
+	@NonNull
+	private final Map<Map<Transition<Stmt, Val>, TypestateWeight>, WeightedAutomaton<Stmt, Val, TypestateWeight>> saturated = new HashMap<>();
+
+	public TypestateWpds(@NonNull CpgWpds wpds) {
+		this.wpds = wpds;
+	}
+
+	@NonNull
+	public CpgWpds getWpds() {
+		return wpds;
+	}
+
+	/**
+	 * Saturates an initial configuration using post*. If the same configuration, i.e. the same transitions with the same weights, has been saturated before,
+	 * the saturated automaton is returned instead. Callers must not modify it.
+	 *
+	 * @param initial automaton describing the initial configuration
+	 * @return the saturated automaton
+	 */
+	@NonNull
+	public synchronized WeightedAutomaton<Stmt, Val, TypestateWeight> poststar(@NonNull WeightedAutomaton<Stmt, Val, TypestateWeight> initial) {
+		// post* propagates the weights of the initial transitions, so configurations only differing in their weights are saturated separately
+		Map<Transition<Stmt, Val>, TypestateWeight> key = new HashMap<>();
+		for (Transition<Stmt, Val> t : initial.getTransitions()) {
+			key.put(t, initial.getWeightFor(t));
+		}
+		WeightedAutomaton<Stmt, Val, TypestateWeight> wnfa = saturated.get(key);
+		if (wnfa == null) {
+			wpds.poststar(initial);
+			wnfa = initial;
+			saturated.put(key, wnfa);
+		}
+		return wnfa;
+	}
+}
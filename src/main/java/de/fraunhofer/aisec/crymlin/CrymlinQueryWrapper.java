@@ -3,7 +3,9 @@ package de.fraunhofer.aisec.crymlin;
 
 import com.google.common.collect.Iterators;
 import com.google.common.collect.UnmodifiableIterator;
+import de.fraunhofer.aisec.analysis.scp.ReachingDefinitions;
 import de.fraunhofer.aisec.analysis.scp.SimpleConstantResolver;
+import de.fraunhofer.aisec.analysis.structures.AnalysisContext;
 import de.fraunhofer.aisec.analysis.structures.CPGVertexWithValue;
 import de.fraunhofer.aisec.analysis.structures.ConstantValue;
 import de.fraunhofer.aisec.analysis.structures.ErrorValue;
@@ -38,6 +40,7 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -50,10 +53,13 @@ import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.ARGUMENTS;
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.BASE;
 import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.DFG;
 import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.EOG;
 import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.FIELDS;
 import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.INITIALIZER;
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.MEMBER;
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.NAME;
 import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.POSSIBLE_SUB_TYPES;
 import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.REFERS_TO;
 import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.TYPE;
@@ -95,22 +101,28 @@ public class CrymlinQueryWrapper {
 		Set<Vertex> ret = new HashSet<>(crymlinTraversal.ctors(fqnName).toSet());
 
 		// now, ret contains possible candidates --> need to filter out calls where params don't match
-		ret.removeIf(
-			v -> {
-				// ConstructExpression needs a special treatment because the argument of a ConstructExpression is the CallExpression to the constructor and we are interested in its arguments.
-				if (Utils.hasLabel(v, ConstructExpression.class)) {
-					List<Vertex> args = getArguments(v);
-					if (args.size() == 1 && Utils.hasLabel(args.get(0), CallExpression.class)) {
-						return !argumentsMatchParameters(db, parameters, getArguments(args.get(0)));
-					}
-				}
-
-				return !argumentsMatchParameters(db, parameters, getArguments(v));
-			});
+		ret.removeIf(v -> !argumentsMatchParameters(db, parameters, getConstructorArguments(v)));
 
 		return ret;
 	}
 
+	/**
+	 * Returns the arguments of a constructor call.
+	 * <p>
+	 * ConstructExpression needs a special treatment because the argument of a ConstructExpression is the CallExpression to the constructor and we are interested in its
+	 * arguments.
+	 *
+	 * @param v
+	 * @return
+	 */
+	private static List<Vertex> getConstructorArguments(@NonNull Vertex v) {
+		List<Vertex> args = getArguments(v);
+		if (Utils.hasLabel(v, ConstructExpression.class) && args.size() == 1 && Utils.hasLabel(args.get(0), CallExpression.class)) {
+			return getArguments(args.get(0));
+		}
+		return args;
+	}
+
 	public static List<Vertex> getArguments(@NonNull Vertex v) {
 		Iterator<Edge> referencedArguments = v.edges(Direction.OUT, ARGUMENTS);
 
@@ -146,19 +158,7 @@ public class CrymlinQueryWrapper {
 		Set<Vertex> ret = new HashSet<>(crymlinTraversal.callsFqn(fqnName).toSet());
 
 		// now, ret contains possible candidates --> need to filter out calls where params don't match
-		ret.removeIf(
-			v -> {
-				Iterator<Edge> referencedArguments = v.edges(Direction.OUT, ARGUMENTS);
-
-				// Collect all argument Vertices into a list
-				List<Vertex> arguments = new ArrayList<>();
-				while (referencedArguments.hasNext()) {
-					Edge e = referencedArguments.next();
-					arguments.add(e.inVertex());
-				}
-
-				return !argumentsMatchParameters(db, parameters, arguments);
-			});
+		ret.removeIf(v -> !argumentsMatchParameters(db, parameters, getArguments(v)));
 
 		return ret;
 	}
@@ -226,22 +226,19 @@ public class CrymlinQueryWrapper {
 	}
 
 	/**
-	 * Same as {@code argumentsMatchParameters(EList<Parameter>, List<Vertex>) } but for arguments as List<Expression>
+	 * Same as {@code argumentsMatchParameters(EList<Parameter>, List<Vertex>) } but for the types of the arguments, one (possibly null) per argument
 	 * @param markParameters
 	 * @param sourceArguments
 	 *
 	 * @return
 	 */
-	public static boolean argumentsMatchSourceParameters(EList<Parameter> markParameters, List<Expression> sourceArguments) {
+	public static boolean argumentsMatchSourceParameters(EList<Parameter> markParameters, List<Type> sourceArguments) {
 		int i = 0;
 
 		while (i < markParameters.size() && i < sourceArguments.size()) {
 			Parameter markParam = markParameters.get(i);
 
-			Set<Type> sourceArgs = new HashSet<>();
-			for (Expression arg : sourceArguments) {
-				sourceArgs.add(arg.getType());
-			}
+			Set<Type> sourceArgs = new HashSet<>(sourceArguments);
 
 			if (sourceArgs.isEmpty()) {
 				log.error("Cannot compare function arguments to MARK parameters. Unexpectedly null element or no argument types: {}",
@@ -538,13 +535,15 @@ public class CrymlinQueryWrapper {
 	/**
 	 * Given a MARK variable and a list of vertices, attempts to find constant values that would be assigned to these variables at runtime.
 	 * <p>
-	 * The precision of this resolution depends on the implementation of the ConstantResolver.
+	 * Values of references to variables are looked up from the reaching definitions of the containing function, see {@link #resolveConstantValues}.
 	 *
 	 * @param vertices
 	 * @param markVar
 	 * @return
 	 */
-	private static List<CPGVertexWithValue> resolveValuesForVertices(@NonNull Database<Node> db, List<CPGVertexWithValue> vertices, @NonNull String markVar) {
+	private static List<CPGVertexWithValue> resolveValuesForVertices(@NonNull AnalysisContext ctx, @NonNull CrymlinTraversalSource crymlin,
+			List<CPGVertexWithValue> vertices, @NonNull String markVar) {
+		Database<Node> db = ctx.getDatabase();
 		List<CPGVertexWithValue> ret = new ArrayList<>();
 
 		for (CPGVertexWithValue v : vertices) {
@@ -556,15 +555,13 @@ public class CrymlinQueryWrapper {
 						.value()));
 				ret.add(add);
 			} else if (Utils.hasLabel(v.getArgumentVertex(), DeclaredReferenceExpression.class)) {
-				// Otherwise we use ConstantResolver to find concrete values of a DeclaredReferenceExpression.
-				ConstantResolver cResolver = new SimpleConstantResolver(db);
-				DeclaredReferenceExpression declExpr = (DeclaredReferenceExpression) db
-						.vertexToNode(v.getArgumentVertex());
-				if (declExpr == null) {
+				// Otherwise we look up the concrete values of a DeclaredReferenceExpression from the reaching definitions.
+				Optional<Set<ConstantValue>> resolved = resolveConstantValues(ctx, crymlin, v.getArgumentVertex());
+				if (resolved.isEmpty()) {
 					continue;
 				}
 
-				Set<ConstantValue> constantValue = cResolver.resolveConstantValues(declExpr);
+				Set<ConstantValue> constantValue = resolved.get();
 
 				if (!constantValue.isEmpty()) {
 					constantValue.forEach(cv -> {
@@ -579,8 +576,9 @@ public class CrymlinQueryWrapper {
 				}
 			} else if (Utils.hasLabel(v.getArgumentVertex(), MemberExpression.class)) {
 				// When resolving to a member ("javax.crypto.Cipher.ENCRYPT_MODE") we resolve to the member's name.
-				MemberExpression memberExpression = (MemberExpression) db.vertexToNode(v.getArgumentVertex());
-				String fqn = memberExpression.getBase().getName() + '.' + memberExpression.getMember().getName();
+				Vertex memberExpression = v.getArgumentVertex();
+				String fqn = memberExpression.vertices(Direction.OUT, BASE).next().property(NAME).orElse("") + "."
+						+ memberExpression.vertices(Direction.OUT, MEMBER).next().property(NAME).orElse("");
 				ConstantValue cv = ConstantValue.of(fqn);
 				CPGVertexWithValue add = CPGVertexWithValue.of(v);
 				add.setValue(cv);
@@ -596,6 +594,43 @@ public class CrymlinQueryWrapper {
 		return ret;
 	}
 
+	/**
+	 * Resolves the constant values a DeclaredReferenceExpression may have at runtime.
+	 * <p>
+	 * The values are looked up from the {@link ReachingDefinitions} of the function containing the reference. Reaching definitions are computed once per function
+	 * on first use and cached in the analysis context. References outside of functions are resolved with a {@link SimpleConstantResolver}.
+	 *
+	 * @param ctx     the analysis context holding the cached reaching definitions
+	 * @param crymlin traversal used to find the function containing the reference
+	 * @param declRef vertex of the DeclaredReferenceExpression
+	 * @return the (possibly empty) set of values, or empty if the vertex cannot be resolved at all
+	 */
+	@NonNull
+	public static Optional<Set<ConstantValue>> resolveConstantValues(@NonNull AnalysisContext ctx, @NonNull CrymlinTraversalSource crymlin, @NonNull Vertex declRef) {
+		Map<Object, ReachingDefinitions> cache = ctx.getReachingDefinitions();
+		ReachingDefinitions reachingDefinitions = cache.get(declRef.id());
+		if (reachingDefinitions == null) {
+			Optional<Vertex> function = getContainingFunction(declRef, crymlin);
+			if (function.isPresent()) {
+				reachingDefinitions = ReachingDefinitions.build(function.get());
+				for (Object id : reachingDefinitions.getVertexIds()) {
+					cache.putIfAbsent(id, reachingDefinitions);
+				}
+			}
+		}
+
+		if (reachingDefinitions != null && reachingDefinitions.covers(declRef)) {
+			return Optional.of(reachingDefinitions.resolveConstantValues(declRef));
+		}
+
+		ConstantResolver cResolver = new SimpleConstantResolver(ctx.getDatabase());
+		DeclaredReferenceExpression declExpr = (DeclaredReferenceExpression) ctx.getDatabase().vertexToNode(declRef);
+		if (declExpr == null) {
+			return Optional.empty();
+		}
+		return Optional.of(cResolver.resolveConstantValues(declExpr));
+	}
+
 	public static Set<Vertex> getVerticesForFunctionDeclaration(
 			@NonNull Database<Node> db,
 			de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration functionDeclaration,
@@ -611,6 +646,84 @@ public class CrymlinQueryWrapper {
 		return callsAndInitializers;
 	}
 
+	/**
+	 * Returns the vertices of calls and constructor calls matching each of the given MARK function declarations.
+	 * <p>
+	 * This is equivalent to calling {@code getVerticesForFunctionDeclaration} for each function declaration, but instead of running two queries per declaration, all
+	 * declarations are compiled into a table by (unified) name and matched in a single pass over all calls and constructor calls. Arguments are only compared to the
+	 * MARK parameters for vertices whose name matches.
+	 *
+	 * @param db
+	 * @param functionDeclarations MARK function declarations, i.e. the calls of op statements
+	 * @param crymlinTraversal
+	 * @return a map containing a (possibly empty) set of vertices for each of the function declarations
+	 */
+	@NonNull
+	public static Map<de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration, Set<Vertex>> getVerticesForFunctionDeclarations(
+			@NonNull Database<Node> db,
+			@NonNull Collection<de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration> functionDeclarations,
+			@NonNull CrymlinTraversalSource crymlinTraversal) {
+
+		Map<de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration, Set<Vertex>> result = new HashMap<>();
+		Map<String, List<de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration>> declarationsByName = new HashMap<>();
+		for (de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration functionDeclaration : functionDeclarations) {
+			result.put(functionDeclaration, new HashSet<>());
+			declarationsByName.computeIfAbsent(Utils.unifyType(functionDeclaration.getName()), k -> new ArrayList<>()).add(functionDeclaration);
+		}
+
+		// Calls are matched by their exact fully qualified name
+		Iterator<Vertex> calls = crymlinTraversal.calls();
+		while (calls.hasNext()) {
+			Vertex v = calls.next();
+			Object fqn = v.property("fqn").orElse(null);
+			List<de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration> candidates = fqn != null ? declarationsByName.get(fqn.toString()) : null;
+			if (candidates == null || Utils.hasLabel(v, NewExpression.class)) {
+				continue;
+			}
+
+			List<Vertex> arguments = getArguments(v);
+			for (de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration candidate : candidates) {
+				if (argumentsMatchParameters(db, candidate.getParams(), arguments)) {
+					result.get(candidate).add(v);
+				}
+			}
+		}
+
+		// Constructor calls are matched by the name of the constructed type, which must contain the name of the function declaration (as in ctors())
+		Map<String, List<de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration>> declarationsByTypeName = new HashMap<>();
+		Iterator<Vertex> ctors = crymlinTraversal.ctors();
+		while (ctors.hasNext()) {
+			Vertex v = ctors.next();
+			if (Utils.hasLabel(v, NewExpression.class)) {
+				continue;
+			}
+
+			Set<de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration> candidates = new HashSet<>();
+			v.vertices(Direction.OUT, TYPE).forEachRemaining(type -> {
+				Object typeName = type.property(NAME).orElse(null);
+				if (typeName != null) {
+					candidates.addAll(declarationsByTypeName.computeIfAbsent(typeName.toString(), name -> declarationsByName.entrySet()
+							.stream()
+							.filter(e -> name.contains(e.getKey()))
+							.flatMap(e -> e.getValue().stream())
+							.collect(Collectors.toList())));
+				}
+			});
+			if (candidates.isEmpty()) {
+				continue;
+			}
+
+			List<Vertex> arguments = getConstructorArguments(v);
+			for (de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration candidate : candidates) {
+				if (argumentsMatchParameters(db, candidate.getParams(), arguments)) {
+					result.get(candidate).add(v);
+				}
+			}
+		}
+
+		return result;
+	}
+
 	/**
 	 * Given a Vertex v, try to find the function or method in which v is contained.
 	 * <p>
@@ -715,10 +828,11 @@ public class CrymlinQueryWrapper {
 		return Optional.empty();
 	}
 
-	public static Map<Integer, List<CPGVertexWithValue>> resolveOperand(@NonNull Database<Node> db, MarkContextHolder context, @NonNull String markVar,
+	public static Map<Integer, List<CPGVertexWithValue>> resolveOperand(@NonNull AnalysisContext ctx, MarkContextHolder context, @NonNull String markVar,
 			@NonNull MRule rule,
 			Mark markModel, @NonNull CrymlinTraversalSource crymlin) {
 
+		Database<Node> db = ctx.getDatabase();
 		HashMap<Integer, List<CPGVertexWithValue>> verticesPerContext = new HashMap<>();
 
 		// first get all vertices for the operand
@@ -730,7 +844,7 @@ public class CrymlinQueryWrapper {
 		}
 
 		// Use Constant resolver to resolve assignments to arguments
-		List<CPGVertexWithValue> vertices = new ArrayList<>(resolveValuesForVertices(db, matchingVertices, markVar));
+		List<CPGVertexWithValue> vertices = new ArrayList<>(resolveValuesForVertices(ctx, crymlin, matchingVertices, markVar));
 
 		// now split them up to belong to each instance (t) or markvar (t.foo)
 		final String instance = markVar.substring(0, markVar.lastIndexOf('.'));
@@ -803,6 +917,9 @@ public class CrymlinQueryWrapper {
 
 	/**
 	 * Returns a set of ValueDeclarations where the variable/field/argument given by <code>delRefExpr</code> is declared.
+	 * <p>
+	 * The REFERS_TO relationship is looked up in the graph, so <code>declRefExpr</code> may be incompletely materialized. The same holds for the returned
+	 * declarations: callers which navigate their relationships must resolve them through the database.
 	 *
 	 * @param declRefExpr
 	 * @return
@@ -822,6 +939,48 @@ public class CrymlinQueryWrapper {
 		return new File(path).toURI();
 	}
 
+	/**
+	 * Checks whether there is an EOG path from source to sink, like {@link #eogConnection(Vertex, Vertex, boolean)}.
+	 * <p>
+	 * If branches are allowed, the query is answered from an {@link EogReachabilityIndex} of the function containing the source. Indices are built on first use and
+	 * cached in the analysis context, so repeated queries within a function (e.g., for every MARK context of a rule) do not search the graph again.
+	 *
+	 * @param ctx              the analysis context holding the cached indices
+	 * @param crymlinTraversal traversal used to find the function containing the source
+	 * @param source           source vertex
+	 * @param sink             sink vertex
+	 * @param branchesAllowed  if false, the path must not contain branches
+	 * @return true, if there is a path from source to sink
+	 */
+	public static boolean eogConnection(@NonNull AnalysisContext ctx, @NonNull CrymlinTraversalSource crymlinTraversal, Vertex source, Vertex sink,
+			boolean branchesAllowed) {
+		if (!branchesAllowed || Objects.equals(source, sink)) {
+			// paths without branches are found by following a single chain of EOG edges, no index needed
+			return eogConnection(source, sink, branchesAllowed);
+		}
+
+		Map<Object, EogReachabilityIndex> indices = ctx.getEogReachabilityIndices();
+		EogReachabilityIndex index = indices.get(source.id());
+		if (index == null) {
+			Optional<Vertex> function = getContainingFunction(source, crymlinTraversal);
+			if (function.isEmpty()) {
+				return eogConnection(source, sink, true);
+			}
+			index = EogReachabilityIndex.build(function.get());
+			for (Object id : index.getVertexIds()) {
+				indices.putIfAbsent(id, index);
+			}
+			if (!index.getVertexIds().contains(source.id())) {
+				return eogConnection(source, sink, true);
+			}
+		}
+
+		if (!index.isLabeled()) {
+			return eogConnection(source, sink, true);
+		}
+		return index.reaches(source, sink);
+	}
+
 	public static boolean eogConnection(Vertex source, Vertex sink, boolean branchesAllowed) {
 
 		if (Objects.equals(source, sink)) {
@@ -0,0 +1,125 @@
+
+package de.fraunhofer.aisec.crymlin;
+
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes backward slices along data flow graph (DFG) edges, i.e. the set of all vertices a vertex (transitively) receives values from.
+ * <p>
+ * Vertices are mapped to dense ordinals and slices are stored as bitsets over these ordinals. Complete slices are memoized per vertex, and a slice which reaches a
+ * vertex with a memoized slice reuses it instead of walking the graph again. Each slice is limited to a budget of visited vertices; slices exceeding it are
+ * returned as incomplete and are not memoized.
+ * <p>
+ * A slicer is shared by all rules of an analysis (see {@code AnalysisContext}) and is thread-safe without locking: memoized slices are never modified once
+ * published, and if two threads slice the same vertex concurrently, both compute it and the first one is memoized.
+ */
+public class DfgSlicer {
+
+	/** Default maximum number of vertices visited for a single slice. */
+	public static final int DEFAULT_BUDGET = 10_000;
+
+	private final int budget;
+
+	private final Map<Object, Integer> ordinalById = new ConcurrentHashMap<>();
+
+	private final Map<Integer, BitSet> slicesByOrdinal = new ConcurrentHashMap<>();
+
+	private final AtomicInteger nextOrdinal = new AtomicInteger();
+
+	/**
+	 * @param budget maximum number of vertices visited for a single slice
+	 */
+	public DfgSlicer(int budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * A backward slice of a vertex.
+	 */
+	public class Slice {
+		@NonNull
+		private final BitSet ordinals;
+		private final boolean complete;
+
+		private Slice(@NonNull BitSet ordinals, boolean complete) {
+			this.ordinals = ordinals;
+			this.complete = complete;
+		}
+
+		/**
+		 * Returns true, if the sliced vertex receives a value from the given vertex via one or more DFG edges.
+		 */
+		public boolean contains(@NonNull Vertex v) {
+			Integer ordinal = ordinalById.get(v.id());
+			return ordinal != null && ordinals.get(ordinal);
+		}
+
+		/**
+		 * Returns false, if the budget was exceeded and the slice may miss vertices.
+		 */
+		public boolean isComplete() {
+			return complete;
+		}
+
+		/**
+		 * Returns the number of vertices in the slice.
+		 */
+		public int size() {
+			return ordinals.cardinality();
+		}
+	}
+
+	/**
+	 * Returns the backward slice of a vertex, i.e. all vertices from which there is a DFG path of length one or more to the vertex.
+	 *
+	 * @param target the vertex to slice from
+	 * @return the slice. If the budget is exceeded, the slice is incomplete.
+	 */
+	@NonNull
+	public Slice getBackwardSlice(@NonNull Vertex target) {
+		int targetOrdinal = ordinalOf(target);
+		BitSet memoized = slicesByOrdinal.get(targetOrdinal);
+		if (memoized != null) {
+			return new Slice(memoized, true);
+		}
+
+		BitSet slice = new BitSet();
+		Deque<Vertex> worklist = new ArrayDeque<>(CrymlinQueryWrapper.getDFGSources(target));
+		int visited = 0;
+		while (!worklist.isEmpty()) {
+			Vertex current = worklist.pop();
+			int ordinal = ordinalOf(current);
+			if (slice.get(ordinal)) {
+				continue;
+			}
+			slice.set(ordinal);
+
+			BitSet known = slicesByOrdinal.get(ordinal);
+			if (known != null) {
+				// the slice of this vertex is already known, no need to walk it again
+				slice.or(known);
+				continue;
+			}
+
+			if (++visited > budget) {
+				return new Slice(slice, false);
+			}
+			worklist.addAll(CrymlinQueryWrapper.getDFGSources(current));
+		}
+
+		BitSet previous = slicesByOrdinal.putIfAbsent(targetOrdinal, slice);
+		return new Slice(previous != null ? previous : slice, true);
+	}
+
+	private int ordinalOf(@NonNull Vertex v) {
+		return ordinalById.computeIfAbsent(v.id(), id -> nextOrdinal.getAndIncrement());
+	}
+}
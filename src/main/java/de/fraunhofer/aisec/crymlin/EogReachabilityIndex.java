@@ -0,0 +1,246 @@
+
+package de.fraunhofer.aisec.crymlin;
+
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.EOG;
+
+/**
+ * Reachability index on the evaluation order graph (EOG) of a single function.
+ * <p>
+ * The index covers all vertices of the function's AST and everything reachable from them via EOG edges. Strongly connected components of this subgraph are
+ * condensed into a DAG and each component is labeled with the set of components reachable from it, so a reachability query is a single bit test.
+ * <p>
+ * The set of covered vertices is closed under EOG successors, so for any covered source vertex, the answer of the index is exact. Indices are immutable once built
+ * and may be shared between threads.
+ */
+public class EogReachabilityIndex {
+
+	private static final Logger log = LoggerFactory.getLogger(EogReachabilityIndex.class);
+
+	/**
+	 * Maximum number of strongly connected components for which reachability labels are computed. Labels need (components^2 / 8) bytes, so larger functions are not
+	 * labeled and queries fall back to a graph search.
+	 */
+	private static final int MAX_COMPONENTS = 8192;
+
+	/** Strongly connected component of each covered vertex, by vertex ID. */
+	@NonNull
+	private final Map<Object, Integer> componentById;
+
+	/** For each component, the components reachable from it (including itself). Null if the function was too large to be labeled. */
+	private final long[][] reachable;
+
+	private EogReachabilityIndex(@NonNull Map<Object, Integer> componentById, long[][] reachable) {
+		this.componentById = componentById;
+		this.reachable = reachable;
+	}
+
+	/**
+	 * Builds the index for a function.
+	 *
+	 * @param function the vertex of a FunctionDeclaration or MethodDeclaration
+	 * @return the index
+	 */
+	@NonNull
+	public static EogReachabilityIndex build(@NonNull Vertex function) {
+		// Collect the AST of the function ...
+		Map<Object, Integer> indexById = new HashMap<>();
+		List<Vertex> vertices = new ArrayList<>();
+		indexById.put(function.id(), 0);
+		vertices.add(function);
+		for (int i = 0; i < vertices.size(); i++) {
+			Iterator<Edge> edges = vertices.get(i).edges(Direction.OUT);
+			while (edges.hasNext()) {
+				Edge e = edges.next();
+				if ("AST".equals(e.property("sub-graph").orElse(null))) {
+					add(e.inVertex(), indexById, vertices);
+				}
+			}
+		}
+
+		// ... and close it under EOG successors
+		for (int i = 0; i < vertices.size(); i++) {
+			Iterator<Edge> eog = vertices.get(i).edges(Direction.OUT, EOG);
+			while (eog.hasNext()) {
+				add(eog.next().inVertex(), indexById, vertices);
+			}
+		}
+
+		// EOG successors within the covered subgraph
+		int n = vertices.size();
+		int[][] successors = new int[n][];
+		for (int i = 0; i < n; i++) {
+			List<Integer> succ = new ArrayList<>();
+			Iterator<Edge> eog = vertices.get(i).edges(Direction.OUT, EOG);
+			while (eog.hasNext()) {
+				succ.add(indexById.get(eog.next().inVertex().id()));
+			}
+			successors[i] = succ.stream().mapToInt(Integer::intValue).toArray();
+		}
+
+		int[] component = new int[n];
+		int numComponents = computeComponents(successors, component);
+
+		Map<Object, Integer> componentById = new HashMap<>();
+		for (Map.Entry<Object, Integer> entry : indexById.entrySet()) {
+			componentById.put(entry.getKey(), component[entry.getValue()]);
+		}
+
+		if (numComponents > MAX_COMPONENTS) {
+			log.debug("EOG of function {} has {} components, not computing reachability labels", function.property("name").orElse(""), numComponents);
+			return new EogReachabilityIndex(componentById, null);
+		}
+
+		// Components are numbered in reverse topological order, i.e. successors of a component have smaller numbers
+		int words = (numComponents + 63) / 64;
+		long[][] reachable = new long[numComponents][words];
+		List<List<Integer>> members = new ArrayList<>();
+		for (int c = 0; c < numComponents; c++) {
+			members.add(new ArrayList<>());
+		}
+		for (int i = 0; i < n; i++) {
+			members.get(component[i]).add(i);
+		}
+		for (int c = 0; c < numComponents; c++) {
+			long[] label = reachable[c];
+			label[c >>> 6] |= 1L << c;
+			for (int i : members.get(c)) {
+				for (int s : successors[i]) {
+					int sc = component[s];
+					if (sc != c) {
+						long[] succLabel = reachable[sc];
+						for (int w = 0; w < words; w++) {
+							label[w] |= succLabel[w];
+						}
+					}
+				}
+			}
+		}
+
+		return new EogReachabilityIndex(componentById, reachable);
+	}
+
+	private static void add(@NonNull Vertex v, @NonNull Map<Object, Integer> indexById, @NonNull List<Vertex> vertices) {
+		if (!indexById.containsKey(v.id())) {
+			indexById.put(v.id(), vertices.size());
+			vertices.add(v);
+		}
+	}
+
+	/**
+	 * Computes the strongly connected components of a graph with Tarjan's algorithm (iteratively, as EOGs may be deep).
+	 *
+	 * @param successors adjacency lists
+	 * @param component  [out] the component of each vertex. Components are numbered in reverse topological order.
+	 * @return the number of components
+	 */
+	private static int computeComponents(int[][] successors, int[] component) {
+		int n = successors.length;
+		int[] index = new int[n];
+		int[] lowLink = new int[n];
+		int[] nextEdge = new int[n];
+		boolean[] onStack = new boolean[n];
+		Arrays.fill(index, -1);
+
+		int[] stack = new int[n];
+		int stackSize = 0;
+		int[] callStack = new int[n];
+		int counter = 0;
+		int numComponents = 0;
+
+		for (int root = 0; root < n; root++) {
+			if (index[root] != -1) {
+				continue;
+			}
+			int depth = 0;
+			callStack[depth++] = root;
+			index[root] = lowLink[root] = counter++;
+			stack[stackSize++] = root;
+			onStack[root] = true;
+
+			while (depth > 0) {
+				int v = callStack[depth - 1];
+				if (nextEdge[v] < successors[v].length) {
+					int w = successors[v][nextEdge[v]++];
+					if (index[w] == -1) {
+						index[w] = lowLink[w] = counter++;
+						stack[stackSize++] = w;
+						onStack[w] = true;
+						callStack[depth++] = w;
+					} else if (onStack[w]) {
+						lowLink[v] = Math.min(lowLink[v], index[w]);
+					}
+				} else {
+					depth--;
+					if (depth > 0) {
+						int parent = callStack[depth - 1];
+						lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+					}
+					if (lowLink[v] == index[v]) {
+						int w;
+						do {
+							w = stack[--stackSize];
+							onStack[w] = false;
+							component[w] = numComponents;
+						} while (w != v);
+						numComponents++;
+					}
+				}
+			}
+		}
+		return numComponents;
+	}
+
+	/**
+	 * Returns the IDs of all vertices covered by this index.
+	 */
+	@NonNull
+	public Set<Object> getVertexIds() {
+		return componentById.keySet();
+	}
+
+	/**
+	 * Returns true, if reachability queries from any of the covered vertices can be answered by this index.
+	 */
+	public boolean isLabeled() {
+		return reachable != null;
+	}
+
+	/**
+	 * Returns true, if the sink is reachable from the source via EOG edges. As in {@code CrymlinQueryWrapper.eogConnection}, a vertex is considered to reach itself.
+	 * The source must be covered by this index (see {@link #getVertexIds()}) and the index must be labeled.
+	 */
+	public boolean reaches(@NonNull Vertex source, @NonNull Vertex sink) {
+		if (source.id().equals(sink.id())) {
+			return true;
+		}
+		Integer sourceComponent = componentById.get(source.id());
+		Integer sinkComponent = componentById.get(sink.id());
+		if (sourceComponent == null || reachable == null) {
+			throw new IllegalArgumentException("Source vertex is not covered by this index");
+		}
+		if (sinkComponent == null) {
+			// the covered vertices are closed under EOG successors
+			return false;
+		}
+		if (sourceComponent.equals(sinkComponent)) {
+			// distinct vertices in the same component are on a common cycle
+			return true;
+		}
+		return (reachable[sourceComponent][sinkComponent >>> 6] & (1L << sinkComponent)) != 0;
+	}
+}
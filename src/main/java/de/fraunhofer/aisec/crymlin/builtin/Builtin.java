@@ -23,6 +23,19 @@ public interface Builtin {
 	@NonNull
 	String getName();
 
+	/**
+	 * Indicates whether this Builtin is a pure function of the values of its arguments.
+	 *
+	 * <p>
+	 * A pure Builtin must not depend on the CPG, the context or the responsible vertices of its arguments, and a successful result must have the responsible vertices
+	 * of all its arguments. Results of pure Builtins are reused by the evaluation for other contexts with the same argument values.
+	 *
+	 * @return true, if this Builtin is pure. Defaults to false.
+	 */
+	default boolean isPure() {
+		return false;
+	}
+
 	/**
 	 * Runs this Builtin.
 	 *
@@ -2,38 +2,58 @@
 package de.fraunhofer.aisec.crymlin.builtin;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * All MARK built-in functions that shall be supported by the evaluation must be registered here.
+ * <p>
+ * Builtins are kept in an immutable map from their name to the builtin, which is replaced on every (rare) registration. Lookups during evaluation thus neither copy
+ * nor lock.
  */
 public class BuiltinRegistry {
 
 	private static BuiltinRegistry instance = null;
-	private final Set<Builtin> builtins = new HashSet<>();
+	private volatile Map<String, Builtin> builtinsByName = Map.of();
 
 	private BuiltinRegistry() {
 		/* do not instantiate */ }
 
 	@NonNull
-	public static BuiltinRegistry getInstance() {
+	public static synchronized BuiltinRegistry getInstance() {
 		if (instance == null) {
 			instance = new BuiltinRegistry();
 		}
 		return instance;
 	}
 
-	public void register(Builtin builtin) {
-		this.builtins.add(builtin);
+	public synchronized void register(Builtin builtin) {
+		Map<String, Builtin> builtins = new HashMap<>(this.builtinsByName);
+		builtins.put(builtin.getName(), builtin);
+		this.builtinsByName = Map.copyOf(builtins);
 	}
 
-	public void unregister(Builtin builtin) {
-		this.builtins.remove(builtin);
+	public synchronized void unregister(Builtin builtin) {
+		Map<String, Builtin> builtins = new HashMap<>(this.builtinsByName);
+		builtins.remove(builtin.getName(), builtin);
+		this.builtinsByName = Map.copyOf(builtins);
+	}
+
+	/**
+	 * Returns the builtin registered under the given name.
+	 *
+	 * @param name name of the builtin, e.g. "_split"
+	 * @return the builtin or null, if no builtin of that name is registered
+	 */
+	@Nullable
+	public Builtin getBuiltin(@NonNull String name) {
+		return this.builtinsByName.get(name);
 	}
 
 	public Set<Builtin> getRegisteredBuiltins() {
-		return Set.copyOf(this.builtins);
+		return Set.copyOf(this.builtinsByName.values());
 	}
 }
@@ -38,7 +38,7 @@ public class EogConnection implements Builtin {
 			List<Vertex> vertices = BuiltinHelper.extractResponsibleVertices(argResultList, 2);
 			// now we have one vertex each for arg0 and arg1, both not null
 
-			ConstantValue ret = ConstantValue.of(CrymlinQueryWrapper.eogConnection(vertices.get(0), vertices.get(1), true));
+			ConstantValue ret = ConstantValue.of(CrymlinQueryWrapper.eogConnection(ctx, expressionEvaluator.getCrymlinTraversal(), vertices.get(0), vertices.get(1), true));
 			ret.addResponsibleVertices(vertices.get(0), vertices.get(1));
 			return ret;
 
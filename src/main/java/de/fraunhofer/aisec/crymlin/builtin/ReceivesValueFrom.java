@@ -7,17 +7,13 @@ import de.fraunhofer.aisec.analysis.structures.ConstantValue;
 import de.fraunhofer.aisec.analysis.structures.ErrorValue;
 import de.fraunhofer.aisec.analysis.structures.ListValue;
 import de.fraunhofer.aisec.analysis.structures.MarkContextHolder;
-import de.fraunhofer.aisec.crymlin.CrymlinQueryWrapper;
+import de.fraunhofer.aisec.crymlin.DfgSlicer;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Method signature: _receives_value_from(var target, var source).
@@ -51,26 +47,24 @@ public class ReceivesValueFrom implements Builtin {
 			Vertex targetV = vertices.get(0);
 			Vertex sourceV = vertices.get(1);
 
-			// Follow DFG edges backwards, avoiding loops
-			Set<Vertex> seen = new HashSet<>();
-			Deque<Vertex> worklist = new ArrayDeque<>();
-			worklist.addAll(CrymlinQueryWrapper.getDFGSources(targetV));
-			while (!worklist.isEmpty()) {
-				Vertex currentV = worklist.pop();
-				if (seen.contains(currentV)) {
-					continue;
-				}
-				seen.add(currentV);
-				if (currentV.id().equals(sourceV.id())) {
-					return ConstantValue.of(true);
-				}
-				worklist.addAll(CrymlinQueryWrapper.getDFGSources(targetV));
+			// Follow DFG edges backwards. Slices are shared between all contexts and rules of the analysis.
+			DfgSlicer.Slice slice = ctx.getDfgSlicer().getBackwardSlice(targetV);
+			if (slice.contains(sourceV)) {
+				ConstantValue ret = ConstantValue.of(true);
+				ret.addResponsibleVertices(targetV, sourceV);
+				return ret;
 			}
+			if (!slice.isComplete()) {
+				log.warn("Data flow into {} exceeds the slicing budget, cannot evaluate _receives_value_from", targetV.property("code").orElse(""));
+				return ErrorValue.newErrorValue("Data flow exceeds the slicing budget in _receives_value_from");
+			}
+			ConstantValue ret = ConstantValue.of(false);
+			ret.addResponsibleVertices(targetV, sourceV);
+			return ret;
 		}
 		catch (InvalidArgumentException e) {
 			log.warn(e.getMessage());
 			return ErrorValue.newErrorValue(e.getMessage() + " in _receives_value_from");
 		}
-		return ErrorValue.newErrorValue("Error in _receives_value_from");
 	}
 }
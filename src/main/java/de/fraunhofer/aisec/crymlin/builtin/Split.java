@@ -30,6 +30,11 @@ public class Split implements Builtin {
 		return "_split";
 	}
 
+	@Override
+	public boolean isPure() {
+		return true;
+	}
+
 	@Override
 	public ConstantValue execute(
 			@NonNull AnalysisContext ctx,
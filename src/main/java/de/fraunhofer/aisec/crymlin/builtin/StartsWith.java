@@ -28,6 +28,11 @@ public class StartsWith implements Builtin {
 		return "_starts_with";
 	}
 
+	@Override
+	public boolean isPure() {
+		return true;
+	}
+
 	@Override
 	public ConstantValue execute(
 			@NonNull AnalysisContext ctx,
@@ -0,0 +1,140 @@
+
+package de.fraunhofer.aisec.crymlin.connectors.db;
+
+import de.fraunhofer.aisec.cpg.graph.Node;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.VertexProperty;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Interned class hierarchy of the CPG.
+ * <p>
+ * Each vertex label, i.e. the simple name of a CPG class, is mapped to a small integer ID once, and the set of subclasses of each class is precomputed as a
+ * bitset over these IDs. Checking whether a vertex belongs to a class or any of its subclasses is thus a map lookup and a bit test, instead of building and
+ * searching a set of subclass names. Vertices store the ID of their class in the {@link #CLASS_ID} property, which is read instead of their label.
+ */
+public final class ClassHierarchy {
+
+	/** Name of the vertex property holding the ID of the class of the node. */
+	public static final String CLASS_ID = "classId";
+
+	private static final ClassHierarchy instance = new ClassHierarchy(OverflowDatabase.getNodeClasses());
+
+	/** IDs by label. Labels are assigned IDs in alphabetical order, so that IDs do not depend on the order of classpath scanning. */
+	@NonNull
+	private final Map<String, Integer> idsByLabel = new HashMap<>();
+
+	@NonNull
+	private final String[] labels;
+
+	/** For each class ID, the IDs of the class and all of its subclasses. */
+	@NonNull
+	private final BitSet[] subclasses;
+
+	@NonNull
+	private final ClassValue<BitSet> subclassesByClass = new ClassValue<>() {
+		@Override
+		protected BitSet computeValue(Class<?> c) {
+			Integer id = idsByLabel.get(c.getSimpleName());
+			return id != null ? subclasses[id] : new BitSet();
+		}
+	};
+
+	private ClassHierarchy(@NonNull Collection<Class<? extends Node>> classes) {
+		TreeSet<String> sortedLabels = new TreeSet<>();
+		for (Class<?> c : classes) {
+			for (Class<?> current = c; current != null && !current.equals(Object.class); current = current.getSuperclass()) {
+				sortedLabels.add(current.getSimpleName());
+			}
+		}
+		labels = sortedLabels.toArray(new String[0]);
+		for (int i = 0; i < labels.length; i++) {
+			idsByLabel.put(labels[i], i);
+		}
+
+		subclasses = new BitSet[labels.length];
+		for (int i = 0; i < labels.length; i++) {
+			subclasses[i] = new BitSet(labels.length);
+			subclasses[i].set(i);
+		}
+		List<Class<?>> sortedClasses = new ArrayList<>(classes);
+		sortedClasses.sort(Comparator.comparing(Class::getName));
+		for (Class<?> c : sortedClasses) {
+			int id = idsByLabel.get(c.getSimpleName());
+			for (Class<?> current = c.getSuperclass(); current != null && !current.equals(Object.class); current = current.getSuperclass()) {
+				subclasses[idsByLabel.get(current.getSimpleName())].set(id);
+			}
+		}
+	}
+
+	/**
+	 * Returns the ID of a label, or -1 if it is not the simple name of a CPG class.
+	 */
+	public static int getClassId(@Nullable String label) {
+		Integer id = instance.idsByLabel.get(label);
+		return id != null ? id : -1;
+	}
+
+	/**
+	 * Returns the ID of a CPG class, or -1 if it is not part of the CPG.
+	 */
+	public static int getClassId(@NonNull Class<?> c) {
+		return getClassId(c.getSimpleName());
+	}
+
+	/**
+	 * Returns the label of a class ID.
+	 */
+	@NonNull
+	public static String getLabel(int classId) {
+		return instance.labels[classId];
+	}
+
+	/**
+	 * Returns all labels, indexed by their class ID.
+	 */
+	@NonNull
+	static List<String> getLabels() {
+		return List.of(instance.labels);
+	}
+
+	/**
+	 * Returns true if the class with the given ID is the given class or one of its subclasses.
+	 */
+	public static boolean isSubclass(int classId, @NonNull Class<?> c) {
+		return classId >= 0 && instance.subclassesByClass.get(c).get(classId);
+	}
+
+	/**
+	 * Returns the class ID stored in a vertex, or the ID of its label for vertices without a stored ID.
+	 */
+	public static int getVertexClassId(@NonNull Vertex v) {
+		VertexProperty<Object> property = v.property(CLASS_ID);
+		if (property.isPresent() && property.value() instanceof Integer) {
+			return (Integer) property.value();
+		}
+		return getClassId(v.label());
+	}
+
+	/**
+	 * Returns true if the vertex is a node of the given class or one of its subclasses, according to its stored class ID.
+	 */
+	public static boolean hasLabel(@NonNull Vertex v, @NonNull Class<?> c) {
+		int classId = getVertexClassId(v);
+		if (classId < 0) {
+			// not a CPG class, fall back to comparing names
+			return c.getSimpleName().equals(v.label());
+		}
+		return isSubclass(classId, c);
+	}
+}
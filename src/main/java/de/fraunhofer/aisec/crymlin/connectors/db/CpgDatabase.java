@@ -0,0 +1,187 @@
+
+package de.fraunhofer.aisec.crymlin.connectors.db;
+
+import de.fraunhofer.aisec.cpg.graph.Node;
+import de.fraunhofer.aisec.cpg.helpers.Benchmark;
+import de.fraunhofer.aisec.cpg.helpers.SubgraphWalker;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <code>Database</code> implementation which does not persist the CPG, but exposes the in-memory nodes through a {@link CpgGraph}.
+ *
+ * <p>Saving nodes only assigns IDs to them and indexes their edges, so the persistence phase and the second copy of the CPG on the heap are avoided.
+ * Vertices, their properties and edges look like those created by <code>OverflowDatabase</code>, and <code>vertexToNode</code> returns the original node
+ * objects. The CPG must therefore not be modified after it has been saved.
+ */
+public class CpgDatabase<N> implements Database<N> {
+
+	private static final Logger log = LoggerFactory.getLogger(CpgDatabase.class);
+
+	private CpgGraph graph;
+
+	private final Map<N, CpgGraph.CpgVertex> nodeToVertex = new IdentityHashMap<>();
+
+	private long nextId = 0;
+
+	@Override
+	public boolean connect() {
+		if (graph == null) {
+			graph = new CpgGraph();
+		}
+		return true;
+	}
+
+	@Override
+	public boolean isConnected() {
+		return graph != null;
+	}
+
+	@Override
+	public <T extends N> T find(Class<T> clazz, Long id) {
+		CpgGraph.CpgVertex v = graph.getVertex(id);
+		if (v != null) {
+			return (T) v.node;
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Adds vertices for the given nodes and all nodes reachable from them, and edges for their relationships.
+	 *
+	 * <p>Vertex IDs are assigned in depth-first order of the CPG and written to the <code>@Id</code> field of each node, like <code>OverflowDatabase</code>
+	 * does when converting a vertex back into a node.
+	 */
+	@Override
+	public void saveAll(Collection<? extends N> list) {
+		Benchmark bench = new Benchmark(CpgDatabase.class, "save all");
+
+		// Create a vertex for every reachable node
+		List<CpgGraph.CpgVertex> added = new ArrayList<>();
+		Deque<Node> stack = new ArrayDeque<>();
+		for (N root : list) {
+			stack.push((Node) root);
+			while (!stack.isEmpty()) {
+				Node node = stack.pop();
+				if (nodeToVertex.containsKey(node)) {
+					continue;
+				}
+				NodeCodec codec = OverflowDatabase.getCodec(node.getClass());
+				long id = nextId++;
+				for (NodeCodec.FieldCodec f : codec.fields) {
+					if (f.id) {
+						f.set(node, id);
+					}
+				}
+				CpgGraph.CpgVertex v = graph.addVertex(id, node, codec);
+				nodeToVertex.put((N) node, v);
+				added.add(v);
+
+				List<Node> successors = new ArrayList<>(SubgraphWalker.getAstChildren(node));
+				for (NodeCodec.FieldCodec f : codec.fields) {
+					if (f.relationship) {
+						successors.addAll(getTargets(node, f));
+					}
+				}
+				for (int i = successors.size() - 1; i >= 0; i--) {
+					stack.push(successors.get(i));
+				}
+			}
+		}
+
+		// Create edges from relationship fields, omitting duplicates like OverflowDatabase
+		Map<CpgGraph.CpgVertex, Map<String, Set<CpgGraph.CpgVertex>>> edgesCache = new HashMap<>();
+		for (CpgGraph.CpgVertex v : added) {
+			for (NodeCodec.FieldCodec f : v.codec.fields) {
+				if (!f.relationship) {
+					continue;
+				}
+				for (Node target : getTargets(v.node, f)) {
+					CpgGraph.CpgVertex targetVertex = nodeToVertex.get(target);
+					boolean reverse = f.direction == Direction.IN;
+					CpgGraph.CpgVertex source = reverse ? targetVertex : v;
+					CpgGraph.CpgVertex sink = reverse ? v : targetVertex;
+					if (edgesCache.computeIfAbsent(source, k -> new HashMap<>())
+							.computeIfAbsent(f.label, k -> new HashSet<>())
+							.add(sink)) {
+						graph.addEdge(source, f.label, f.edgeProperties, sink);
+					}
+				}
+			}
+		}
+
+		bench.stop();
+		log.info("Added {} vertices for in-memory CPG", added.size());
+	}
+
+	/**
+	 * Returns the nodes a relationship field points to.
+	 */
+	private static List<Node> getTargets(Node node, NodeCodec.FieldCodec f) {
+		Object x = f.get(node);
+		List<Node> targets = new ArrayList<>();
+		if (x instanceof Collection) {
+			for (Object entry : (Collection<?>) x) {
+				if (entry instanceof Node) {
+					targets.add((Node) entry);
+				}
+			}
+		} else if (x instanceof Node) {
+			targets.add((Node) x);
+		}
+		return targets;
+	}
+
+	@Override
+	public void clearDatabase() {
+		if (isConnected()) {
+			close();
+			connect();
+		}
+	}
+
+	@Override
+	public void close() {
+		if (graph != null) {
+			graph.clear();
+		}
+		nodeToVertex.clear();
+		nextId = 0;
+	}
+
+	@Override
+	public long getNumNodes() {
+		return graph.getNumVertices();
+	}
+
+	@Nullable
+	@Override
+	public N vertexToNode(Vertex v) {
+		if (v instanceof CpgGraph.CpgVertex) {
+			return (N) ((CpgGraph.CpgVertex) v).node;
+		}
+		CpgGraph.CpgVertex vertex = graph.getVertex((Long) v.id());
+		return vertex != null ? (N) vertex.node : null;
+	}
+
+	@Override
+	public Graph getGraph() {
+		return graph;
+	}
+}
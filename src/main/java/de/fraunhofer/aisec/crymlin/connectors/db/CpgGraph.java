@@ -0,0 +1,542 @@
+
+package de.fraunhofer.aisec.crymlin.connectors.db;
+
+import de.fraunhofer.aisec.cpg.graph.Node;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.apache.tinkerpop.gremlin.process.computer.GraphComputer;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Element;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Property;
+import org.apache.tinkerpop.gremlin.structure.Transaction;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.VertexProperty;
+import org.apache.tinkerpop.gremlin.structure.util.ElementHelper;
+import org.apache.tinkerpop.gremlin.structure.util.StringFactory;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A read-only TinkerPop graph over the in-memory CPG.
+ * <p>
+ * Vertices wrap the {@code Node} objects of the CPG and edges are derived from their relationship fields, using the same mapping as {@code OverflowDatabase}.
+ * Vertex properties are read from the node fields on first access, through the cached accessors of {@link NodeCodec}, and look exactly like the properties of the
+ * corresponding OverflowDB vertex. Nodes are not copied, so {@link CpgDatabase#vertexToNode} returns the original objects.
+ */
+public class CpgGraph implements Graph {
+
+	/** Vertices by ID, in the order they were added. */
+	@NonNull
+	private final Map<Long, CpgVertex> vertices = new LinkedHashMap<>();
+
+	/** Edges by ID. */
+	@NonNull
+	private final Map<Long, CpgEdge> edges = new HashMap<>();
+
+	private long nextEdgeId = 0;
+
+	@Nullable
+	CpgVertex getVertex(long id) {
+		return vertices.get(id);
+	}
+
+	int getNumVertices() {
+		return vertices.size();
+	}
+
+	/**
+	 * Adds a vertex for a node. The node is wrapped, not copied.
+	 */
+	@NonNull
+	CpgVertex addVertex(long id, @NonNull Node node, @NonNull NodeCodec codec) {
+		CpgVertex v = new CpgVertex(this, id, node, codec);
+		vertices.put(id, v);
+		return v;
+	}
+
+	/**
+	 * Adds an edge between two vertices.
+	 */
+	void addEdge(@NonNull CpgVertex outVertex, @NonNull String label, @NonNull Map<String, Object> properties, @NonNull CpgVertex inVertex) {
+		CpgEdge e = new CpgEdge(this, nextEdgeId++, label, properties, outVertex, inVertex);
+		edges.put(e.id, e);
+		outVertex.outEdges.add(e);
+		inVertex.inEdges.add(e);
+	}
+
+	void clear() {
+		vertices.clear();
+		edges.clear();
+		nextEdgeId = 0;
+	}
+
+	@Override
+	public Vertex addVertex(Object... keyValues) {
+		throw Exceptions.vertexAdditionsNotSupported();
+	}
+
+	@Override
+	public <C extends GraphComputer> C compute(Class<C> graphComputerClass) {
+		throw Exceptions.graphComputerNotSupported();
+	}
+
+	@Override
+	public GraphComputer compute() {
+		throw Exceptions.graphComputerNotSupported();
+	}
+
+	@Override
+	public Iterator<Vertex> vertices(Object... vertexIds) {
+		return lookup(vertices, vertexIds);
+	}
+
+	@Override
+	public Iterator<Edge> edges(Object... edgeIds) {
+		return lookup(edges, edgeIds);
+	}
+
+	private static <E extends Element> Iterator<E> lookup(@NonNull Map<Long, ? extends E> elements, Object... ids) {
+		if (ids.length == 0) {
+			return Collections.unmodifiableCollection(elements.values()).iterator();
+		}
+		List<E> result = new ArrayList<>(ids.length);
+		for (Object id : ids) {
+			Long key = toId(id);
+			E element = key != null ? elements.get(key) : null;
+			if (element != null) {
+				result.add(element);
+			}
+		}
+		return result.iterator();
+	}
+
+	@Nullable
+	private static Long toId(@Nullable Object id) {
+		if (id instanceof Element) {
+			id = ((Element) id).id();
+		}
+		if (id instanceof Number) {
+			return ((Number) id).longValue();
+		}
+		if (id instanceof String) {
+			try {
+				return Long.parseLong((String) id);
+			}
+			catch (NumberFormatException e) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public Transaction tx() {
+		throw Exceptions.transactionsNotSupported();
+	}
+
+	/**
+	 * Does nothing, as traversals close their graph when they are done. The graph is only cleared by its <code>CpgDatabase</code>.
+	 */
+	@Override
+	public void close() {
+		// nothing to release
+	}
+
+	@Override
+	public Variables variables() {
+		throw Exceptions.variablesNotSupported();
+	}
+
+	@Override
+	public Configuration configuration() {
+		return new BaseConfiguration();
+	}
+
+	@Override
+	public String toString() {
+		return StringFactory.graphString(this, "vertices:" + vertices.size() + " edges:" + edges.size());
+	}
+
+	/**
+	 * A vertex wrapping a CPG node.
+	 */
+	static class CpgVertex implements Vertex {
+		@NonNull
+		private final CpgGraph graph;
+		private final long id;
+		@NonNull
+		final Node node;
+		@NonNull
+		final NodeCodec codec;
+		@NonNull
+		final List<CpgEdge> outEdges = new ArrayList<>();
+		@NonNull
+		final List<CpgEdge> inEdges = new ArrayList<>();
+
+		/** Properties, read from the node on first access. */
+		@Nullable
+		private Map<String, Object> properties;
+
+		CpgVertex(@NonNull CpgGraph graph, long id, @NonNull Node node, @NonNull NodeCodec codec) {
+			this.graph = graph;
+			this.id = id;
+			this.node = node;
+			this.codec = codec;
+		}
+
+		@NonNull
+		private synchronized Map<String, Object> getProperties() {
+			if (properties == null) {
+				Map<String, Object> result = new HashMap<>();
+				for (Map.Entry<Object, Object> entry : OverflowDatabase.getVertexProperties(node, codec).entrySet()) {
+					if (entry.getKey() instanceof String) {
+						result.put((String) entry.getKey(), entry.getValue());
+					}
+				}
+				// type hints of relationships, as set by OverflowDatabase
+				for (NodeCodec.FieldCodec f : codec.fields) {
+					if (f.relationship) {
+						Object x = f.get(node);
+						if (x != null) {
+							result.put(f.typeKey, x.getClass().getName());
+						}
+					}
+				}
+				properties = result;
+			}
+			return properties;
+		}
+
+		@Override
+		public Object id() {
+			return id;
+		}
+
+		@Override
+		public String label() {
+			return codec.label;
+		}
+
+		@Override
+		public Graph graph() {
+			return graph;
+		}
+
+		@Override
+		public Edge addEdge(String label, Vertex inVertex, Object... keyValues) {
+			throw Vertex.Exceptions.edgeAdditionsNotSupported();
+		}
+
+		@Override
+		public <V> VertexProperty<V> property(VertexProperty.Cardinality cardinality, String key, V value, Object... keyValues) {
+			throw Element.Exceptions.propertyAdditionNotSupported();
+		}
+
+		@Override
+		public Iterator<Edge> edges(Direction direction, String... edgeLabels) {
+			List<Edge> result = new ArrayList<>();
+			if (direction != Direction.IN) {
+				result.addAll(filter(outEdges, edgeLabels));
+			}
+			if (direction != Direction.OUT) {
+				result.addAll(filter(inEdges, edgeLabels));
+			}
+			return result.iterator();
+		}
+
+		@Override
+		public Iterator<Vertex> vertices(Direction direction, String... edgeLabels) {
+			List<Vertex> result = new ArrayList<>();
+			if (direction != Direction.IN) {
+				for (CpgEdge e : filter(outEdges, edgeLabels)) {
+					result.add(e.inVertex);
+				}
+			}
+			if (direction != Direction.OUT) {
+				for (CpgEdge e : filter(inEdges, edgeLabels)) {
+					result.add(e.outVertex);
+				}
+			}
+			return result.iterator();
+		}
+
+		@NonNull
+		private static List<CpgEdge> filter(@NonNull List<CpgEdge> edges, @NonNull String[] labels) {
+			if (labels.length == 0) {
+				return edges;
+			}
+			Set<String> accepted = new HashSet<>(Arrays.asList(labels));
+			List<CpgEdge> result = new ArrayList<>();
+			for (CpgEdge e : edges) {
+				if (accepted.contains(e.label)) {
+					result.add(e);
+				}
+			}
+			return result;
+		}
+
+		@Override
+		public <V> Iterator<VertexProperty<V>> properties(String... propertyKeys) {
+			Map<String, Object> props = getProperties();
+			List<VertexProperty<V>> result = new ArrayList<>();
+			for (String key : propertyKeys.length > 0 ? Arrays.asList(propertyKeys) : props.keySet()) {
+				if (props.containsKey(key)) {
+					result.add(new CpgVertexProperty<>(this, key, (V) props.get(key)));
+				}
+			}
+			return result.iterator();
+		}
+
+		@Override
+		public void remove() {
+			throw Vertex.Exceptions.vertexRemovalNotSupported();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return ElementHelper.areEqual(this, o);
+		}
+
+		@Override
+		public int hashCode() {
+			return ElementHelper.hashCode(this);
+		}
+
+		@Override
+		public String toString() {
+			return StringFactory.vertexString(this);
+		}
+	}
+
+	/**
+	 * An edge derived from a relationship field of a CPG node.
+	 */
+	static class CpgEdge implements Edge {
+		@NonNull
+		private final CpgGraph graph;
+		private final long id;
+		@NonNull
+		private final String label;
+		@NonNull
+		private final Map<String, Object> properties;
+		@NonNull
+		private final CpgVertex outVertex;
+		@NonNull
+		private final CpgVertex inVertex;
+
+		CpgEdge(@NonNull CpgGraph graph, long id, @NonNull String label, @NonNull Map<String, Object> properties, @NonNull CpgVertex outVertex,
+				@NonNull CpgVertex inVertex) {
+			this.graph = graph;
+			this.id = id;
+			this.label = label;
+			this.properties = properties;
+			this.outVertex = outVertex;
+			this.inVertex = inVertex;
+		}
+
+		@Override
+		public Iterator<Vertex> vertices(Direction direction) {
+			switch (direction) {
+				case OUT:
+					return List.<Vertex> of(outVertex).iterator();
+				case IN:
+					return List.<Vertex> of(inVertex).iterator();
+				default:
+					return List.<Vertex> of(outVertex, inVertex).iterator();
+			}
+		}
+
+		@Override
+		public Object id() {
+			return id;
+		}
+
+		@Override
+		public String label() {
+			return label;
+		}
+
+		@Override
+		public Graph graph() {
+			return graph;
+		}
+
+		@Override
+		public <V> Property<V> property(String key, V value) {
+			throw Element.Exceptions.propertyAdditionNotSupported();
+		}
+
+		@Override
+		public <V> Iterator<Property<V>> properties(String... propertyKeys) {
+			List<Property<V>> result = new ArrayList<>();
+			for (String key : propertyKeys.length > 0 ? Arrays.asList(propertyKeys) : properties.keySet()) {
+				if (properties.containsKey(key)) {
+					result.add(new CpgProperty<>(this, key, (V) properties.get(key)));
+				}
+			}
+			return result.iterator();
+		}
+
+		@Override
+		public void remove() {
+			throw Edge.Exceptions.edgeRemovalNotSupported();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return ElementHelper.areEqual(this, o);
+		}
+
+		@Override
+		public int hashCode() {
+			return ElementHelper.hashCode(this);
+		}
+
+		@Override
+		public String toString() {
+			return StringFactory.edgeString(this);
+		}
+	}
+
+	/**
+	 * A (read-only) property of an edge.
+	 */
+	static class CpgProperty<V> implements Property<V> {
+		@NonNull
+		private final Element element;
+		@NonNull
+		private final String key;
+		private final V value;
+
+		CpgProperty(@NonNull Element element, @NonNull String key, V value) {
+			this.element = element;
+			this.key = key;
+			this.value = value;
+		}
+
+		@Override
+		public String key() {
+			return key;
+		}
+
+		@Override
+		public V value() {
+			return value;
+		}
+
+		@Override
+		public boolean isPresent() {
+			return true;
+		}
+
+		@Override
+		public Element element() {
+			return element;
+		}
+
+		@Override
+		public void remove() {
+			throw Property.Exceptions.propertyRemovalNotSupported();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return ElementHelper.areEqual(this, o);
+		}
+
+		@Override
+		public int hashCode() {
+			return ElementHelper.hashCode(this);
+		}
+
+		@Override
+		public String toString() {
+			return StringFactory.propertyString(this);
+		}
+	}
+
+	/**
+	 * A (read-only) property of a vertex. Vertex properties have no meta-properties.
+	 */
+	static class CpgVertexProperty<V> implements VertexProperty<V> {
+		@NonNull
+		private final CpgVertex vertex;
+		@NonNull
+		private final String key;
+		private final V value;
+
+		CpgVertexProperty(@NonNull CpgVertex vertex, @NonNull String key, V value) {
+			this.vertex = vertex;
+			this.key = key;
+			this.value = value;
+		}
+
+		@Override
+		public String key() {
+			return key;
+		}
+
+		@Override
+		public V value() {
+			return value;
+		}
+
+		@Override
+		public boolean isPresent() {
+			return true;
+		}
+
+		@Override
+		public Vertex element() {
+			return vertex;
+		}
+
+		@Override
+		public Object id() {
+			return vertex.id + "." + key;
+		}
+
+		@Override
+		public <U> Property<U> property(String key, U value) {
+			throw Element.Exceptions.propertyAdditionNotSupported();
+		}
+
+		@Override
+		public <U> Iterator<Property<U>> properties(String... propertyKeys) {
+			return Collections.emptyIterator();
+		}
+
+		@Override
+		public void remove() {
+			throw Property.Exceptions.propertyRemovalNotSupported();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return ElementHelper.areEqual(this, o);
+		}
+
+		@Override
+		public int hashCode() {
+			return ElementHelper.hashCode((Element) this);
+		}
+
+		@Override
+		public String toString() {
+			return StringFactory.propertyString(this);
+		}
+	}
+}
@@ -0,0 +1,473 @@
+
+package de.fraunhofer.aisec.crymlin.connectors.db;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Ints;
+import de.fraunhofer.aisec.analysis.structures.LongObjectMap;
+import de.fraunhofer.aisec.cpg.TranslationConfiguration;
+import de.fraunhofer.aisec.cpg.TranslationManager;
+import de.fraunhofer.aisec.cpg.passes.Pass;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.Property;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Persistent snapshot of a graph, which can be reused by later analyses of the same sources.
+ * <p>
+ * A snapshot contains all vertices and edges of the graph with their properties, and the class table of the CPG (see {@link ClassHierarchy}), which the
+ * <code>classId</code> properties refer to. It is identified by a key, which is a hash of the snapshot format, the CPG version, the translation options and
+ * the paths and contents of all source files. A snapshot is only loaded if its key, format version and class table match the current ones and its CRC32
+ * checksum is valid.
+ * <p>
+ * Vertex IDs are not retained, they are assigned anew when the snapshot is loaded. Strings of labels, property keys and pooled properties (see
+ * {@link StringPool}) are written once and referenced by index afterwards.
+ */
+public final class GraphSnapshot {
+
+	/** Version of the file format. Must be incremented whenever the format or the content of the graph changes. */
+	static final int FORMAT_VERSION = 2;
+
+	private static final String MAGIC = "CODYZE-GRAPH-SNAPSHOT";
+
+	private static final String FILE_EXTENSION = ".snapshot";
+
+	private static final byte STRING = 1;
+	private static final byte INTEGER = 2;
+	private static final byte LONG = 3;
+	private static final byte BOOLEAN = 4;
+	private static final byte DOUBLE = 5;
+	private static final byte FLOAT = 6;
+	private static final byte SHORT = 7;
+	private static final byte BYTE = 8;
+	private static final byte CHARACTER = 9;
+	private static final byte LIST = 10;
+
+	private GraphSnapshot() {
+		// Static helpers only
+	}
+
+	/**
+	 * Returns the options of a translation which influence the resulting graph, i.e. its passes, include paths, defined symbols and flags. They are part of
+	 * the key of a snapshot (see <code>computeKey</code>).
+	 */
+	@NonNull
+	public static List<String> getTranslationOptions(@NonNull TranslationConfiguration config) {
+		List<String> options = new ArrayList<>();
+		for (Pass pass : config.getRegisteredPasses()) {
+			options.add("pass=" + pass.getClass().getName());
+		}
+		for (String includePath : config.getIncludePaths()) {
+			options.add("includePath=" + includePath);
+		}
+		new TreeMap<>(config.getSymbols()).forEach((symbol, value) -> options.add("symbol=" + symbol + "=" + value));
+		options.add("loadIncludes=" + config.loadIncludes);
+		options.add("codeInNodes=" + config.codeInNodes);
+		return options;
+	}
+
+	/**
+	 * Computes the key of a snapshot of the given sources.
+	 *
+	 * @param sources source files or directories, which are hashed recursively
+	 * @param options translation options which influence the resulting graph
+	 * @return hex-encoded SHA-256 hash
+	 */
+	@NonNull
+	public static String computeKey(@NonNull Collection<File> sources, @NonNull Collection<String> options) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+
+		update(digest, MAGIC + FORMAT_VERSION);
+		update(digest, String.valueOf(TranslationManager.class.getPackage().getImplementationVersion()));
+		for (String option : options) {
+			update(digest, option);
+		}
+
+		byte[] buffer = new byte[64 * 1024];
+		for (File source : sources) {
+			List<Path> files;
+			try (Stream<Path> walk = Files.walk(source.toPath())) {
+				files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+			}
+			for (Path file : files) {
+				update(digest, file.toAbsolutePath().toString());
+				try (InputStream in = Files.newInputStream(file)) {
+					int read;
+					while ((read = in.read(buffer)) != -1) {
+						digest.update(buffer, 0, read);
+					}
+				}
+			}
+		}
+		return BaseEncoding.base16().lowerCase().encode(digest.digest());
+	}
+
+	private static void update(@NonNull MessageDigest digest, @NonNull String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		digest.update(Ints.toByteArray(bytes.length));
+		digest.update(bytes);
+	}
+
+	/**
+	 * Returns the file of the snapshot with the given key.
+	 */
+	@NonNull
+	public static File getFile(@NonNull File directory, @NonNull String key) {
+		return new File(directory, key + FILE_EXTENSION);
+	}
+
+	/**
+	 * Writes a snapshot of a graph. The file is written to a temporary file first and then moved, so that concurrent analyses never see an incomplete snapshot.
+	 *
+	 * @param storedProperties returns all properties stored in a vertex. Note that <code>Vertex.properties()</code> might omit some of them.
+	 */
+	static void write(@NonNull Graph graph, @NonNull File file, @NonNull String key, @NonNull Function<Vertex, Map<String, Object>> storedProperties)
+			throws IOException {
+		Path target = file.toPath();
+		Path directory = target.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		Path tmp = Files.createTempFile(directory, file.getName(), ".tmp");
+		try {
+			try (BufferedOutputStream buffered = new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024)) {
+				CheckedOutputStream checked = new CheckedOutputStream(buffered, new CRC32());
+				Writer out = new Writer(new DataOutputStream(checked));
+				out.writeHeader(key);
+
+				out.data.writeLong(graph.traversal().V().count().next());
+				for (Iterator<Vertex> it = graph.vertices(); it.hasNext();) {
+					Vertex v = it.next();
+					out.data.writeLong((Long) v.id());
+					out.writeString(v.label(), true);
+					Map<String, Object> properties = new TreeMap<>();
+					storedProperties.apply(v).forEach((k, value) -> {
+						if (value != null) {
+							properties.put(k, value);
+						}
+					});
+					out.data.writeInt(properties.size());
+					for (Map.Entry<String, Object> p : properties.entrySet()) {
+						out.writeProperty(p.getKey(), p.getValue());
+					}
+				}
+
+				out.data.writeLong(graph.traversal().E().count().next());
+				for (Iterator<Edge> it = graph.edges(); it.hasNext();) {
+					Edge e = it.next();
+					out.data.writeLong((Long) e.outVertex().id());
+					out.data.writeLong((Long) e.inVertex().id());
+					out.writeString(e.label(), true);
+					List<Property<Object>> properties = new ArrayList<>();
+					e.properties().forEachRemaining(p -> properties.add((Property<Object>) p));
+					out.data.writeInt(properties.size());
+					for (Property<Object> p : properties) {
+						out.writeProperty(p.key(), p.value());
+					}
+				}
+
+				out.data.flush();
+				new DataOutputStream(buffered).writeLong(checked.getChecksum().getValue());
+			}
+			Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	/**
+	 * Reads a snapshot into an empty graph.
+	 *
+	 * @param added called with each vertex and its properties after it has been added to the graph
+	 * @throws IOException if the snapshot cannot be read or does not match the given key or the current class table. The graph might then be partially filled.
+	 */
+	static void read(@NonNull Graph graph, @NonNull File file, @NonNull String key, @NonNull BiConsumer<Vertex, Map<String, Object>> added) throws IOException {
+		// Verify the checksum before reading anything, so that a corrupt file does not fill the graph with garbage
+		verifyChecksum(file);
+
+		try (BufferedInputStream buffered = new BufferedInputStream(Files.newInputStream(file.toPath()), 64 * 1024)) {
+			Reader in = new Reader(new DataInputStream(buffered));
+			in.readHeader(key);
+
+			long numVertices = in.data.readLong();
+			if (numVertices < 0) {
+				throw new IOException("Invalid number of vertices " + numVertices);
+			}
+			LongObjectMap<Vertex> vertices = new LongObjectMap<>((int) Math.min(numVertices, 1 << 24));
+			for (long i = 0; i < numVertices; i++) {
+				long id = in.data.readLong();
+				String label = in.readString();
+				int numProperties = in.data.readInt();
+				Map<String, Object> properties = new HashMap<>(2 * numProperties);
+				Object[] keyValues = new Object[2 * numProperties + 2];
+				keyValues[0] = T.label;
+				keyValues[1] = label;
+				for (int p = 0; p < numProperties; p++) {
+					String propertyKey = in.readString();
+					Object value = in.readValue(propertyKey);
+					properties.put(propertyKey, value);
+					keyValues[2 * p + 2] = propertyKey;
+					keyValues[2 * p + 3] = value;
+				}
+				Vertex v = graph.addVertex(keyValues);
+				vertices.put(id, v);
+				added.accept(v, properties);
+			}
+
+			long numEdges = in.data.readLong();
+			for (long i = 0; i < numEdges; i++) {
+				Vertex source = vertices.get(in.data.readLong());
+				Vertex target = vertices.get(in.data.readLong());
+				String label = in.readString();
+				int numProperties = in.data.readInt();
+				Object[] keyValues = new Object[2 * numProperties];
+				for (int p = 0; p < numProperties; p++) {
+					String propertyKey = in.readString();
+					keyValues[2 * p] = propertyKey;
+					keyValues[2 * p + 1] = in.readValue(propertyKey);
+				}
+				if (source == null || target == null) {
+					throw new IOException("Edge " + label + " refers to unknown vertex");
+				}
+				source.addEdge(label, target, keyValues);
+			}
+		}
+	}
+
+	private static void verifyChecksum(@NonNull File file) throws IOException {
+		long length = file.length() - Long.BYTES;
+		if (length < 0) {
+			throw new IOException("Truncated snapshot");
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()), 64 * 1024))) {
+			CRC32 crc = new CRC32();
+			byte[] buffer = new byte[64 * 1024];
+			for (long remaining = length; remaining > 0;) {
+				int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if (read < 0) {
+					throw new IOException("Truncated snapshot");
+				}
+				crc.update(buffer, 0, read);
+				remaining -= read;
+			}
+			if (in.readLong() != crc.getValue()) {
+				throw new IOException("Checksum mismatch");
+			}
+		}
+	}
+
+	/**
+	 * Writes the values of a snapshot. Strings are written once and then referenced by index.
+	 */
+	private static class Writer {
+		@NonNull
+		final DataOutputStream data;
+		@NonNull
+		private final Map<String, Integer> strings = new HashMap<>();
+
+		Writer(@NonNull DataOutputStream data) {
+			this.data = data;
+		}
+
+		void writeHeader(@NonNull String key) throws IOException {
+			data.writeUTF(MAGIC);
+			data.writeInt(FORMAT_VERSION);
+			data.writeUTF(key);
+			List<String> labels = ClassHierarchy.getLabels();
+			data.writeInt(labels.size());
+			for (String label : labels) {
+				data.writeUTF(label);
+			}
+		}
+
+		void writeProperty(@NonNull String key, @NonNull Object value) throws IOException {
+			writeString(key, true);
+			writeValue(key, value);
+		}
+
+		private void writeValue(@NonNull String key, @NonNull Object value) throws IOException {
+			if (value instanceof String) {
+				data.writeByte(STRING);
+				writeString((String) value, StringPool.isPooled(key));
+			} else if (value instanceof Integer) {
+				data.writeByte(INTEGER);
+				data.writeInt((Integer) value);
+			} else if (value instanceof Long) {
+				data.writeByte(LONG);
+				data.writeLong((Long) value);
+			} else if (value instanceof Boolean) {
+				data.writeByte(BOOLEAN);
+				data.writeBoolean((Boolean) value);
+			} else if (value instanceof Double) {
+				data.writeByte(DOUBLE);
+				data.writeDouble((Double) value);
+			} else if (value instanceof Float) {
+				data.writeByte(FLOAT);
+				data.writeFloat((Float) value);
+			} else if (value instanceof Short) {
+				data.writeByte(SHORT);
+				data.writeShort((Short) value);
+			} else if (value instanceof Byte) {
+				data.writeByte(BYTE);
+				data.writeByte((Byte) value);
+			} else if (value instanceof Character) {
+				data.writeByte(CHARACTER);
+				data.writeChar((Character) value);
+			} else if (value instanceof List) {
+				data.writeByte(LIST);
+				List<?> list = (List<?>) value;
+				data.writeInt(list.size());
+				for (Object element : list) {
+					writeValue(key, element);
+				}
+			} else {
+				throw new IOException("Cannot write property " + key + " of type " + value.getClass().getName());
+			}
+		}
+
+		/**
+		 * Writes a string. If <code>shared</code> is true, the string is written once and referenced by its index afterwards. Otherwise, it is always written.
+		 */
+		void writeString(@NonNull String s, boolean shared) throws IOException {
+			Integer index = shared ? strings.get(s) : null;
+			if (index != null) {
+				data.writeInt(index);
+				return;
+			}
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			if (shared) {
+				strings.put(s, strings.size());
+				data.writeInt(-1);
+			} else {
+				data.writeInt(-2);
+			}
+			data.writeInt(bytes.length);
+			data.write(bytes);
+		}
+	}
+
+	/**
+	 * Reads the values written by {@link Writer}.
+	 */
+	private static class Reader {
+		@NonNull
+		final DataInputStream data;
+		@NonNull
+		private final List<String> strings = new ArrayList<>();
+
+		Reader(@NonNull DataInputStream data) {
+			this.data = data;
+		}
+
+		void readHeader(@NonNull String key) throws IOException {
+			if (!MAGIC.equals(data.readUTF())) {
+				throw new IOException("Not a graph snapshot");
+			}
+			int version = data.readInt();
+			if (version != FORMAT_VERSION) {
+				throw new IOException("Unsupported snapshot version " + version);
+			}
+			if (!key.equals(data.readUTF())) {
+				throw new IOException("Snapshot of different sources");
+			}
+			int numLabels = data.readInt();
+			List<String> labels = new ArrayList<>(numLabels);
+			for (int i = 0; i < numLabels; i++) {
+				labels.add(data.readUTF());
+			}
+			if (!labels.equals(ClassHierarchy.getLabels())) {
+				throw new IOException("Snapshot of different CPG classes");
+			}
+		}
+
+		@NonNull
+		Object readValue(@NonNull String key) throws IOException {
+			byte type = data.readByte();
+			switch (type) {
+				case STRING:
+					return readString();
+				case INTEGER:
+					return data.readInt();
+				case LONG:
+					return data.readLong();
+				case BOOLEAN:
+					return data.readBoolean();
+				case DOUBLE:
+					return data.readDouble();
+				case FLOAT:
+					return data.readFloat();
+				case SHORT:
+					return data.readShort();
+				case BYTE:
+					return data.readByte();
+				case CHARACTER:
+					return data.readChar();
+				case LIST:
+					int size = data.readInt();
+					List<Object> list = new ArrayList<>(size);
+					for (int i = 0; i < size; i++) {
+						list.add(readValue(key));
+					}
+					return list;
+				default:
+					throw new IOException("Unknown type " + type + " of property " + key);
+			}
+		}
+
+		@NonNull
+		String readString() throws IOException {
+			int index = data.readInt();
+			if (index >= 0) {
+				if (index >= strings.size()) {
+					throw new IOException("Invalid string reference " + index);
+				}
+				return strings.get(index);
+			}
+			int length = data.readInt();
+			if (length < 0) {
+				throw new IOException("Invalid string length " + length);
+			}
+			byte[] bytes = new byte[length];
+			data.readFully(bytes);
+			String s = new String(bytes, StandardCharsets.UTF_8);
+			if (index == -1) {
+				strings.add(s);
+			}
+			return s;
+		}
+	}
+}
@@ -0,0 +1,163 @@
+
+package de.fraunhofer.aisec.crymlin.connectors.db;
+
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-computed mapping of a CPG class to its vertex representation.
+ * <p>
+ * A codec is created once per class by {@code OverflowDatabase}. It holds the persisted fields of the class, how each of them is mapped (ID, property, converted
+ * property or relationship), and method handles to read and write them. Converting a node to a vertex and back thus does not need any reflective lookups per
+ * node.
+ */
+class NodeCodec {
+
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+	private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+	/**
+	 * Mapping of a single field.
+	 */
+	static class FieldCodec {
+		@NonNull
+		final Field field;
+		@NonNull
+		final String name;
+		@NonNull
+		private final MethodHandle getter;
+		@NonNull
+		private final MethodHandle setter;
+
+		/** Field annotated with {@code @Id}, which retains the vertex ID. */
+		boolean id;
+		/** Field which is stored as (one or more) vertex properties. */
+		boolean property;
+		/** Field annotated with {@code @Convert}, i.e. with an {@code AttributeConverter} or {@code CompositeAttributeConverter}. */
+		boolean converted;
+		/** Instance of the converter, or null if it could not be created. */
+		@Nullable
+		Object converter;
+		/** Field which is stored as edges. */
+		boolean relationship;
+
+		// For relationships only
+		@Nullable
+		Direction direction;
+		@Nullable
+		String label;
+		@Nullable
+		Map<String, Object> edgeProperties;
+		/** Name of the vertex property holding the runtime type of the field value. */
+		@Nullable
+		String typeKey;
+		boolean isCollection;
+		boolean isArray;
+		boolean isFinal;
+
+		FieldCodec(@NonNull Field field) throws IllegalAccessException {
+			this.field = field;
+			this.name = field.getName();
+			field.setAccessible(true);
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			this.getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+			this.setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+		}
+
+		@Nullable
+		Object get(@NonNull Object node) {
+			try {
+				return (Object) getter.invokeExact(node);
+			}
+			catch (RuntimeException | Error e) {
+				throw e;
+			}
+			catch (Throwable t) {
+				throw new IllegalStateException("Cannot read field " + name, t);
+			}
+		}
+
+		void set(@NonNull Object node, @Nullable Object value) {
+			try {
+				setter.invokeExact(node, value);
+			}
+			catch (RuntimeException | Error e) {
+				throw e;
+			}
+			catch (Throwable t) {
+				throw new IllegalStateException("Cannot write field " + name, t);
+			}
+		}
+	}
+
+	@NonNull
+	final Class<?> nodeClass;
+
+	/** Label of vertices of this class, i.e. its simple name. */
+	@NonNull
+	final String label;
+
+	/** Simple names of the class and all of its superclasses. */
+	@NonNull
+	final List<String> superclasses;
+
+	/** ID of the class in the {@link ClassHierarchy}, or -1 if it is not part of the CPG. */
+	final int classId;
+
+	/** Fields which are persisted, in the order of {@code getFieldsIncludingSuperclasses}. */
+	@NonNull
+	final List<FieldCodec> fields = new ArrayList<>();
+
+	@Nullable
+	private final MethodHandle constructor;
+
+	NodeCodec(@NonNull Class<?> nodeClass, @NonNull List<String> superclasses) {
+		this.nodeClass = nodeClass;
+		this.label = nodeClass.getSimpleName();
+		this.superclasses = superclasses;
+		this.classId = ClassHierarchy.getClassId(nodeClass);
+
+		MethodHandle ctor = null;
+		try {
+			Constructor<?> defaultConstructor = nodeClass.getDeclaredConstructor();
+			defaultConstructor.setAccessible(true);
+			ctor = MethodHandles.lookup().unreflectConstructor(defaultConstructor).asType(CONSTRUCTOR_TYPE);
+		}
+		catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+			// abstract classes and classes without default constructor cannot be restored from vertices
+		}
+		this.constructor = ctor;
+	}
+
+	/**
+	 * Creates a new, empty instance of the class.
+	 *
+	 * @throws IllegalStateException if the class has no accessible default constructor
+	 */
+	@NonNull
+	Object newInstance() {
+		if (constructor == null) {
+			throw new IllegalStateException("No default constructor for " + nodeClass.getName());
+		}
+		try {
+			return (Object) constructor.invokeExact();
+		}
+		catch (RuntimeException | Error e) {
+			throw e;
+		}
+		catch (Throwable t) {
+			throw new IllegalStateException("Cannot instantiate " + nodeClass.getName(), t);
+		}
+	}
+}
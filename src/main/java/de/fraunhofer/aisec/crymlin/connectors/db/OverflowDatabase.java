@@ -3,11 +3,14 @@ package de.fraunhofer.aisec.crymlin.connectors.db;
 
 import com.google.common.base.CaseFormat;
 import com.google.common.collect.Sets;
+import de.fraunhofer.aisec.analysis.structures.LongObjectMap;
+import de.fraunhofer.aisec.analysis.structures.LongPairSet;
 import de.fraunhofer.aisec.analysis.structures.ServerConfiguration;
 import de.fraunhofer.aisec.cpg.graph.EdgeProperty;
 import de.fraunhofer.aisec.cpg.graph.Node;
 import de.fraunhofer.aisec.cpg.helpers.Benchmark;
 import de.fraunhofer.aisec.cpg.helpers.SubgraphWalker;
+import org.apache.tinkerpop.gremlin.process.traversal.TraversalStrategies;
 import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
 import org.apache.tinkerpop.gremlin.structure.Direction;
 import org.apache.tinkerpop.gremlin.structure.Graph;
@@ -54,11 +57,14 @@ import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
@@ -69,6 +75,9 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -116,14 +125,33 @@ public class OverflowDatabase<N> implements Database<N> {
 	private OdbGraph graph;
 	private OdbConfig odbConfig;
 
-	private static final Map<String, List<Field>> fieldsIncludingSuperclasses = new HashMap<>();
-	private static final Map<String, Pair<List<EdgeLayoutInformation>, List<EdgeLayoutInformation>>> inAndOutFields = new HashMap<>();
-	private static final Map<String, Map<String, Object>> edgeProperties = new HashMap<>();
-	private static final Map<String, Boolean> mapsToRelationship = new HashMap<>();
-	private static final Map<String, Boolean> mapsToProperty = new HashMap<>();
-	private static final Map<String, NodeLayoutInformation> layoutInformation = new HashMap<>();
-	private static final Map<String, String[]> subClasses = new HashMap<>();
-	private static final Map<String, String[]> superClasses = new HashMap<>();
+	/**
+	 * File of the nodes overflowed to disk, or null if overflow is disabled. Each connection uses a new file, which is deleted when it is closed.
+	 */
+	@Nullable
+	private Path overflowFile;
+	@NonNull
+	private OverflowStatistics overflowStatistics = new OverflowStatistics();
+
+	private static final Map<String, List<Field>> fieldsIncludingSuperclasses = new ConcurrentHashMap<>();
+	private static final Map<String, Pair<List<EdgeLayoutInformation>, List<EdgeLayoutInformation>>> inAndOutFields = new ConcurrentHashMap<>();
+	private static final Map<String, Map<String, Object>> edgeProperties = new ConcurrentHashMap<>();
+	private static final Map<String, Boolean> mapsToRelationship = new ConcurrentHashMap<>();
+	private static final Map<String, Boolean> mapsToProperty = new ConcurrentHashMap<>();
+	private static final Map<String, NodeLayoutInformation> layoutInformation = new ConcurrentHashMap<>();
+	private static final Map<String, String[]> subClasses = new ConcurrentHashMap<>();
+	private static final Map<String, String[]> superClasses = new ConcurrentHashMap<>();
+
+	/**
+	 * Codecs of CPG classes, by fully qualified class name. Created on first use and never invalidated, as they only depend on the class.
+	 */
+	private static final Map<String, NodeCodec> codecs = new ConcurrentHashMap<>();
+	private static final Map<String, Class<?>> collectionTypes = new ConcurrentHashMap<>();
+
+	/**
+	 * Open databases by their graph. Traversal sources only know the graph, so this is how they find the label index.
+	 */
+	private static final Map<Graph, OverflowDatabase<?>> databasesByGraph = new ConcurrentHashMap<>();
 
 	// Scan all classes in package
 	private static final Reflections reflections = new Reflections(
@@ -135,25 +163,57 @@ public class OverflowDatabase<N> implements Database<N> {
 				.filterInputsBy(new FilterBuilder().include(FilterBuilder.prefix(CPG_PACKAGE))));
 
 	/**
-	 * maps from vertex ID to edge targets (map label to IDs of target vertices)
+	 * maps from edge label to the pairs of source and target vertex IDs of all edges with that label
 	 */
-	private Map<Object, Map<String, Set<Object>>> edgesCache = new HashMap<>();
+	private final Map<String, LongPairSet> edgesCache = new HashMap<>();
 	private final Map<N, Vertex> nodeToVertex = new IdentityHashMap<>(); // No cache.
-	private final Map<Long, N> nodesCache = new HashMap<>(); // Key is actually v.id() (Long)
-	private final Set<N> saved = new HashSet<>();
 
-	public OverflowDatabase(ServerConfiguration config) {
-		try {
-			if (!config.disableOverflow) {
-				// Delete overflow cache file. Otherwise, OverflowDB will try to initialize the DB from it.
-				Files.deleteIfExists(new File("graph-cache-overflow.bin").toPath());
-			}
-		}
-		catch (IOException e) {
-			log.error("IO", e);
-		}
+	/**
+	 * Complete nodes created by <code>vertexToNode</code>, by vertex ID. If {@link ServerConfiguration#nodeCacheSize} is positive, nodes which have not been
+	 * used recently are evicted from the cache once it is exceeded.
+	 */
+	private final LongObjectMap<CachedNode<N>> nodesCache = new LongObjectMap<>();
 
+	/**
+	 * IDs of the nodes in <code>nodesCache</code>, in the order they are considered for eviction. This is a ring buffer starting at
+	 * <code>nodesCacheHead</code>, only used if the cache is bounded.
+	 */
+	@Nullable
+	private long[] nodesCacheQueue;
+	private int nodesCacheHead;
+
+	/**
+	 * Largest number of nodes in <code>nodesCache</code> and largest number of nodes used by a single call of <code>vertexToNode</code> so far.
+	 */
+	private int maxNumCachedNodes;
+	private int maxNumMaterializedNodes;
+
+	/**
+	 * maps from label (simple class name) to IDs of all vertices of that class or any of its subclasses
+	 */
+	private final Map<String, List<Object>> vertexIdsByLabel = new HashMap<>();
+
+	/**
+	 * Deduplicates frequently repeated string properties whenever they are stored in a vertex.
+	 */
+	private final StringPool stringPool = new StringPool();
+
+	/**
+	 * Source of the <code>code</code> property of vertices which do not store their code, or null if all vertices store it.
+	 */
+	@Nullable
+	private final SourceCode sourceCode;
+
+	/**
+	 * Secondary indices on properties which are frequently queried for. They are used by <code>PropertyIndexStrategy</code>.
+	 */
+	private final List<PropertyIndex> propertyIndices = List.of(
+		new PropertyIndex("fqn", null),
+		new PropertyIndex("name", getSubclasses(de.fraunhofer.aisec.cpg.graph.type.Type.class)));
+
+	public OverflowDatabase(ServerConfiguration config) {
 		this.config = config;
+		this.sourceCode = config.lazyCode ? new SourceCode() : null;
 
 		// This is how to create indices. Unused at the moment.
 		// graph.createIndex("EOG", Vertex.class);
@@ -166,21 +226,83 @@ public class OverflowDatabase<N> implements Database<N> {
 		List<EdgeFactory<OdbEdge>> edgeFactories = factories.getValue1();
 
 		odbConfig = OdbConfig.withDefaults();
+		overflowStatistics = new OverflowStatistics();
+		deleteOverflowFile();
 
-		if (config.disableOverflow) {
+		if (!config.disableOverflow) {
+			try {
+				overflowFile = createOverflowFile();
+				odbConfig.withStorageLocation(overflowFile.toString()).withHeapPercentageThreshold(config.overflowHeapThreshold);
+			}
+			catch (IOException e) {
+				log.error("Cannot create overflow file, disabling overflow", e);
+			}
+		}
+		if (overflowFile == null) {
 			odbConfig.disableOverflow();
-		} else {
-			odbConfig.withStorageLocation("graph-cache-overflow.bin").withHeapPercentageThreshold(5);
+		}
+		if (config.overflowSerializationStats) {
+			odbConfig.withSerializationStatsEnabled();
 		}
 
 		graph = OdbGraph.open(
 			odbConfig,
 			Collections.unmodifiableList(nodeFactories),
 			Collections.unmodifiableList(edgeFactories));
+		databasesByGraph.put(graph, this);
+
+		// Make sure all traversals on OverflowDB make use of our property indices
+		TraversalStrategies strategies = TraversalStrategies.GlobalCache.getStrategies(OdbGraph.class);
+		if (strategies.getStrategy(PropertyIndexStrategy.class).isEmpty()) {
+			TraversalStrategies.GlobalCache.registerStrategies(
+				OdbGraph.class, strategies.clone().addStrategies(PropertyIndexStrategy.instance()));
+		}
 
 		return true;
 	}
 
+	/**
+	 * Returns a new, unique overflow file, so that concurrent analyses do not overwrite each other's overflowed nodes.
+	 */
+	private Path createOverflowFile() throws IOException {
+		Path directory = config.overflowDirectory != null ? config.overflowDirectory.toPath() : Path.of(System.getProperty("java.io.tmpdir"));
+		Files.createDirectories(directory);
+		Path file = Files.createTempFile(directory, "codyze-overflow-", ".bin");
+		// Only reserve the name. OverflowDB creates the file itself and would try to initialize the graph from an existing one.
+		Files.delete(file);
+		file.toFile().deleteOnExit();
+		return file;
+	}
+
+	private void deleteOverflowFile() {
+		if (this.overflowFile != null) {
+			try {
+				Files.deleteIfExists(this.overflowFile);
+			}
+			catch (IOException e) {
+				log.warn("Cannot delete overflow file {}", this.overflowFile, e);
+			}
+			this.overflowFile = null;
+		}
+	}
+
+	/**
+	 * Returns statistics on the nodes overflowed to disk, counting the nodes currently on disk.
+	 */
+	@NonNull
+	public OverflowStatistics getOverflowStatistics() {
+		if (graph != null && overflowFile != null) {
+			long overflowed = 0;
+			for (Iterator<Vertex> it = graph.vertices(); it.hasNext();) {
+				if (!((NodeRef<?>) it.next()).isSet()) {
+					overflowed++;
+				}
+			}
+			overflowStatistics.setOverflowed(overflowed, overflowFile.toFile().length());
+		}
+		return overflowStatistics;
+	}
+
 	public boolean isConnected() {
 		return this.graph != null;
 	}
@@ -194,42 +316,254 @@ public class OverflowDatabase<N> implements Database<N> {
 		}
 	}
 
+	/**
+	 * Saves the given nodes and all nodes reachable from them in OverflowDB.
+	 * <p>
+	 * Persisting happens in two phases. First, the properties and outgoing edges of all nodes are prepared, i.e. fields are read and converted. This is done per
+	 * translation unit (or whatever nodes are given) and, if configured, in parallel, as it does not touch the graph. Second, all vertices and then all edges are
+	 * added to the graph. OverflowDB does not support concurrent modifications, so this is done sequentially. If deterministic IDs are configured, vertices are
+	 * added in depth-first order of the CPG, so that their IDs do not depend on the scheduling of the first phase.
+	 */
 	public void saveAll(Collection<? extends N> list) {
 		Benchmark bench = new Benchmark(OverflowDatabase.class, "save all");
-		for (N node : list) {
-			save(node);
+
+		Map<N, PendingVertex<N>> pending = Collections.synchronizedMap(new IdentityHashMap<>());
+		List<List<PendingVertex<N>>> prepared = prepareAll(list, pending);
+
+		List<PendingVertex<N>> order;
+		if (config.deterministicIds) {
+			order = getDeterministicOrder(list, pending);
+		} else {
+			order = new ArrayList<>(pending.size());
+			prepared.forEach(order::addAll);
+		}
+
+		for (PendingVertex<N> p : order) {
+			p.vertex = addVertex(p.node, p.codec, p.properties);
+		}
+		for (PendingVertex<N> p : order) {
+			for (PendingEdge e : p.edges) {
+				Vertex target = nodeToVertex.get(e.target);
+				if (target == null) {
+					target = createVertex((N) e.target);
+				}
+				addEdge(p.vertex, e.field.label, e.field.edgeProperties, target, e.field.direction == Direction.IN);
+			}
 		}
 		bench.stop();
+		log.info("String pool: {}", stringPool);
+		if (overflowFile != null) {
+			log.info("Overflow: {}", getOverflowStatistics());
+		}
 
 		// Clear some caches. They are only needed during saving.
 		inAndOutFields.clear();
-		mapsToProperty.clear();
 		mapsToRelationship.clear();
-		nodesCache.clear();
+		mapsToProperty.clear();
+		clearNodesCache();
 
 		// Note: Do NOT clear "layoutInformation". They will be needed for queries.
 	}
 
 	/**
-	 * Saves a single Node in OverflowDB.
+	 * Writes a snapshot of the graph, which can be loaded by later analyses of the same sources (see {@link GraphSnapshot}). Code which is read from the sources
+	 * on demand is not written.
 	 */
-	private void save(N node) {
-		if (saved.contains(node)) {
-			// Has been seen before. Skip
-			return;
+	public void saveSnapshot(@NonNull File file, @NonNull String key) throws IOException {
+		Benchmark bench = new Benchmark(OverflowDatabase.class, "save snapshot");
+		GraphSnapshot.write(graph, file, key, this::getAllProperties);
+		bench.stop();
+		log.info("Wrote graph snapshot {} ({} KiB)", file, file.length() / 1024);
+	}
+
+	/**
+	 * Replaces the graph by a snapshot written by <code>saveSnapshot</code>.
+	 *
+	 * @return true, if the snapshot has been loaded. Otherwise, e.g. if it is outdated or corrupt, the database is empty.
+	 */
+	public boolean loadSnapshot(@NonNull File file, @NonNull String key) {
+		Benchmark bench = new Benchmark(OverflowDatabase.class, "load snapshot");
+		if (isConnected()) {
+			close();
+		}
+		connect();
+		try {
+			GraphSnapshot.read(graph, file, key, (v, properties) -> {
+				Object nodeType = properties.get("nodeType");
+				NodeCodec codec = nodeType instanceof String ? getCodec((String) nodeType) : null;
+				index(v, codec != null ? codec.superclasses : List.of(v.label()), properties);
+			});
 		}
+		catch (IOException | RuntimeException e) {
+			log.warn("Cannot load graph snapshot {}: {}", file, e.getMessage());
+			clearDatabase();
+			return false;
+		}
+		bench.stop();
+		log.info("Loaded graph snapshot {} with {} vertices", file, getNumNodes());
+		return true;
+	}
 
-		// Store node
-		createVertex(node);
-		saved.add(node);
+	/**
+	 * A node whose vertex and edges have been prepared by the first phase of <code>saveAll</code>.
+	 */
+	private static class PendingVertex<N> {
+		@NonNull
+		final N node;
+		@NonNull
+		final NodeCodec codec;
+		@NonNull
+		Map<Object, Object> properties = Collections.emptyMap();
+		@NonNull
+		final List<PendingEdge> edges = new ArrayList<>();
+		/** AST children and edge targets, in the order they are visited. */
+		@NonNull
+		final List<Node> successors = new ArrayList<>();
+		@Nullable
+		Vertex vertex;
+
+		PendingVertex(@NonNull N node, @NonNull NodeCodec codec) {
+			this.node = node;
+			this.codec = codec;
+		}
+	}
 
-		if (!Node.class.isAssignableFrom(node.getClass())) {
-			throw new RuntimeException("Cannot apply SubgraphWalker to " + node.getClass() + ".");
+	/**
+	 * An edge from a pending vertex to the vertex of a target node.
+	 */
+	private static class PendingEdge {
+		@NonNull
+		final NodeCodec.FieldCodec field;
+		@NonNull
+		final Node target;
+
+		PendingEdge(NodeCodec.FieldCodec field, Node target) {
+			this.field = field;
+			this.target = target;
 		}
+	}
 
-		for (Node child : SubgraphWalker.getAstChildren((Node) node)) {
-			save((N) child);
+	/**
+	 * First phase of <code>saveAll</code>: prepares all nodes reachable from the given roots, with one task per root.
+	 *
+	 * @return for each root, the nodes prepared by its task
+	 */
+	private List<List<PendingVertex<N>>> prepareAll(Collection<? extends N> roots, Map<N, PendingVertex<N>> pending) {
+		List<List<PendingVertex<N>>> result = new ArrayList<>();
+		if (config.persistParallelism <= 1 || roots.size() <= 1) {
+			for (N root : roots) {
+				result.add(prepare(root, pending));
+			}
+			return result;
 		}
+
+		ForkJoinPool pool = new ForkJoinPool(config.persistParallelism);
+		try {
+			List<ForkJoinTask<List<PendingVertex<N>>>> tasks = new ArrayList<>();
+			for (N root : roots) {
+				tasks.add(pool.submit(() -> prepare(root, pending)));
+			}
+			for (ForkJoinTask<List<PendingVertex<N>>> task : tasks) {
+				result.add(task.get());
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while preparing nodes for persistence", e);
+		}
+		catch (ExecutionException e) {
+			throw new IllegalStateException("Error preparing nodes for persistence", e.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+		return result;
+	}
+
+	/**
+	 * Prepares the vertices and edges of all nodes reachable from a root, which have not been claimed by another task and have not been persisted before.
+	 */
+	private List<PendingVertex<N>> prepare(N root, Map<N, PendingVertex<N>> pending) {
+		List<PendingVertex<N>> result = new ArrayList<>();
+		Deque<Node> stack = new ArrayDeque<>();
+		stack.push((Node) root);
+		while (!stack.isEmpty()) {
+			N node = (N) stack.pop();
+			if (nodeToVertex.containsKey(node)) {
+				continue;
+			}
+			PendingVertex<N> p = new PendingVertex<>(node, getCodec(node.getClass()));
+			if (pending.putIfAbsent(node, p) != null) {
+				// claimed by this or another task
+				continue;
+			}
+			prepareVertex(p);
+			result.add(p);
+			for (int i = p.successors.size() - 1; i >= 0; i--) {
+				stack.push(p.successors.get(i));
+			}
+		}
+		return result;
+	}
+
+	private void prepareVertex(PendingVertex<N> p) {
+		p.properties = getVertexProperties(p.node, p.codec);
+		if (sourceCode != null) {
+			sourceCode.omitCode(p.properties);
+		}
+
+		p.successors.addAll(SubgraphWalker.getAstChildren((Node) p.node));
+		for (NodeCodec.FieldCodec f : p.codec.fields) {
+			if (!f.relationship) {
+				continue;
+			}
+			Object x = f.get(p.node);
+			if (x == null) {
+				continue;
+			}
+
+			// provide a type hint for later re-translation into a field
+			p.properties.put(f.typeKey, x.getClass().getName());
+
+			if (isCollection(x.getClass())) {
+				for (Object entry : (Collection<?>) x) {
+					if (entry instanceof Node) {
+						p.edges.add(new PendingEdge(f, (Node) entry));
+						p.successors.add((Node) entry);
+					} else {
+						log.info("Found non-Node class in collection for label \"{}\"", f.label);
+					}
+				}
+			} else if (x instanceof Node) {
+				p.edges.add(new PendingEdge(f, (Node) x));
+				p.successors.add((Node) x);
+			} else {
+				log.info("Found non-Node class in collection for label \"{}\"", f.label);
+			}
+		}
+	}
+
+	/**
+	 * Orders the prepared nodes depth-first, starting from the roots in the given order. The order only depends on the CPG, not on which task prepared a node.
+	 */
+	private List<PendingVertex<N>> getDeterministicOrder(Collection<? extends N> roots, Map<N, PendingVertex<N>> pending) {
+		List<PendingVertex<N>> order = new ArrayList<>(pending.size());
+		Set<PendingVertex<N>> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		Deque<Node> stack = new ArrayDeque<>();
+		for (N root : roots) {
+			stack.push((Node) root);
+			while (!stack.isEmpty()) {
+				PendingVertex<N> p = pending.get(stack.pop());
+				if (p == null || !visited.add(p)) {
+					continue;
+				}
+				order.add(p);
+				for (int i = p.successors.size() - 1; i >= 0; i--) {
+					stack.push(p.successors.get(i));
+				}
+			}
+		}
+		return order;
 	}
 
 	/**
@@ -260,102 +594,299 @@ public class OverflowDatabase<N> implements Database<N> {
 
 	/**
 	 * Constructs a native Node object from a given Vertex or returns a cached Node object.
+	 * <p>
+	 * Relationships are followed up to {@link ServerConfiguration#nodeMaterializationDepth} edges away from the given vertex. Nodes at that depth are
+	 * materialized shallowly, i.e. only their properties are set. Nodes are never changed once they have been returned, so shallow nodes stay shallow: passing
+	 * their vertex to this method yields another node with its relationships.
 	 *
 	 * @return Null, if the Vertex could not be converted into a native object.
 	 */
 	@Nullable
-	public N vertexToNode(Vertex v) {
-		// avoid loops
-		if (nodesCache.containsKey((Long) v.id())) {
-			return nodesCache.get((Long) v.id());
+	public synchronized N vertexToNode(Vertex v) {
+		LongObjectMap<CachedNode<N>> visited = new LongObjectMap<>();
+		N node = materialize(v, 0, visited);
+		maxNumMaterializedNodes = Math.max(maxNumMaterializedNodes, visited.size());
+		return node;
+	}
+
+	/**
+	 * Returns the node of a vertex, creating it or filling its relationships if necessary.
+	 * <p>
+	 * Only complete nodes are cached. Relationships are filled before <code>vertexToNode</code> returns, so no other thread sees a node being filled.
+	 *
+	 * @param depth number of edges between the vertex and the one passed to <code>vertexToNode</code>
+	 * @param visited nodes created or used by the current call of <code>vertexToNode</code>. They must not be looked up in the evicting cache, so that
+	 *        cyclic relationships end up at the same node object.
+	 */
+	@Nullable
+	private N materialize(Vertex v, int depth, LongObjectMap<CachedNode<N>> visited) {
+		long id = (Long) v.id();
+		CachedNode<N> cached = visited.get(id);
+		if (cached == null) {
+			cached = nodesCache.get(id);
+			if (cached == null) {
+				N node = createNode(v);
+				if (node == null) {
+					return null;
+				}
+				cached = new CachedNode<>(node);
+			} else {
+				cached.referenced = true;
+			}
+			visited.put(id, cached);
 		}
 
-		Class<?> targetClass;
-		String nodeType = (String) v.property("nodeType").value();
-		try {
-			targetClass = Class.forName(nodeType);
+		int maxDepth = config.nodeMaterializationDepth;
+		if (!cached.complete && (maxDepth < 0 || depth < maxDepth)) {
+			// mark as complete first, cyclic relationships will find the node
+			cached.complete = true;
+			fillRelationships(v, cached.node, depth, visited);
+			cacheNode(id, cached);
 		}
-		catch (ClassNotFoundException e) {
+		return cached.node;
+	}
+	/**
+	 * Creates a node from a vertex and sets its ID and properties, but none of its relationships.
+	 */
+	@Nullable
+	private N createNode(Vertex v) {
+		String nodeType = (String) v.property("nodeType").value();
+		NodeCodec codec = getCodec(nodeType);
+		if (codec == null) {
 			log.error("Class not found (node type): {}", nodeType);
 			return null;
 		}
 
 		try {
-			Constructor<?> defaultConstructor = targetClass.getDeclaredConstructor();
-			defaultConstructor.setAccessible(true);
-			N node = (N) defaultConstructor.newInstance();
-			nodesCache.put((Long) v.id(), node);
-
-			for (Field f : getFieldsIncludingSuperclasses(targetClass)) {
-				f.setAccessible(true);
-				if (hasAnnotation(f, Id.class)) {
+			N node = (N) codec.newInstance();
+			for (NodeCodec.FieldCodec f : codec.fields) {
+				if (f.id) {
 					/* Retain the original vertex ID via this dedicated ID field */
 					f.set(node, v.id());
-				} else if (hasAnnotation(f, Convert.class)) {
+				} else if (f.converted) {
 					/* Need to first handle attributes which need a special treatment (annotated with AttributeConverter or CompositeConverter) */
 					Object value = convertToNodeProperty(v, f);
 					f.set(node, value);
-				} else if (mapsToProperty(f) && v.property(f.getName()).isPresent()) {
+				} else if (f.property && v.property(f.name).isPresent()) {
 					/* Handle "normal" properties */
-					Object value = restoreProblematicProperty(v, f.getName());
+					Object value = restoreProblematicProperty(v, f.name);
 					f.set(node, value);
-				} else if (mapsToRelationship(f)) {
-					/* Handle properties which should be treated as relationships */
-					Direction direction = getRelationshipDirection(f);
-					List<N> targets = IteratorUtils.stream(v.vertices(direction, getRelationshipLabel(f)))
-							.filter(distinctByKey(Vertex::id))
-							.map(this::vertexToNode)
-							.collect(Collectors.toList());
-					if (isCollection(f.getType())) {
-						/*
-						 * we don't know for sure that the relationships are stored as a list. Might as well be any other collection. Thus we'll create it using
-						 * reflection
-						 */
-						Class<?> collectionType;
-						String className = "";
-						try {
-							className = (String) v.property(f.getName() + "_type").value();
-							collectionType = Class.forName(className);
-						}
-						catch (ClassNotFoundException e) {
-							log.error("Class not found: {}", className);
-							continue;
-						}
-						catch (IllegalStateException e) {
-							log.error(
-								"Unable to instantiate collection property {} for node, no information about actual element type",
-								f);
-							continue;
-						}
-						assert Collection.class.isAssignableFrom(collectionType);
-						handleCollections(node, f, targets, collectionType);
-					} else if (f.getType().isArray()) {
-						Object targetArray = Array.newInstance(f.getType(), targets.size());
-						for (int i = 0; i < targets.size(); i++) {
-							Array.set(targetArray, i, targets.get(i));
-						}
-						f.set(node, targetArray);
-					} else {
-						// single edge
-						if (!targets.isEmpty() && !Modifier.isFinal(f.getModifiers())) {
-							f.set(node, targets.get(0));
-						}
-					}
 				}
 			}
 			return node;
 		}
 		catch (Exception e) {
-			log.error("Error creating new {} node", targetClass.getName(), e);
+			log.error("Error creating new {} node", nodeType, e);
 		}
 		return null;
 	}
 
-	private void handleCollections(N node, Field f, List<N> targets, Class<?> collectionType)
+	/**
+	 * Sets the relationship fields of a node to the nodes of the adjacent vertices.
+	 */
+	private void fillRelationships(Vertex v, N node, int depth, LongObjectMap<CachedNode<N>> visited) {
+		NodeCodec codec = getCodec(node.getClass());
+		for (NodeCodec.FieldCodec f : codec.fields) {
+			if (!f.relationship) {
+				continue;
+			}
+			/* Handle properties which should be treated as relationships */
+			List<N> targets = IteratorUtils.stream(v.vertices(f.direction, f.label))
+					.filter(distinctByKey(Vertex::id))
+					.map(target -> materialize(target, depth + 1, visited))
+					.collect(Collectors.toList());
+			try {
+				if (f.isCollection) {
+					/*
+					 * we don't know for sure that the relationships are stored as a list. Might as well be any other collection. Thus we'll create it using
+					 * reflection
+					 */
+					Class<?> collectionType;
+					String className = "";
+					try {
+						className = (String) v.property(f.typeKey).value();
+						collectionType = getCollectionType(className);
+					}
+					catch (ClassNotFoundException e) {
+						log.error("Class not found: {}", className);
+						continue;
+					}
+					catch (IllegalStateException e) {
+						log.error(
+							"Unable to instantiate collection property {} for node, no information about actual element type",
+							f.field);
+						continue;
+					}
+					assert Collection.class.isAssignableFrom(collectionType);
+					handleCollections(node, f, targets, collectionType);
+				} else if (f.isArray) {
+					Object targetArray = Array.newInstance(f.field.getType(), targets.size());
+					for (int i = 0; i < targets.size(); i++) {
+						Array.set(targetArray, i, targets.get(i));
+					}
+					f.set(node, targetArray);
+				} else {
+					// single edge
+					if (!targets.isEmpty() && !f.isFinal) {
+						f.set(node, targets.get(0));
+					}
+				}
+			}
+			catch (Exception e) {
+				log.error("Error restoring relationship {} of {} node", f.name, node.getClass().getName(), e);
+			}
+		}
+	}
+
+	/**
+	 * Adds a node to the node cache. If the cache is bounded and full, a node is evicted first.
+	 * <p>
+	 * Eviction approximates LRU by the clock algorithm: nodes are considered in the order they were added, and nodes which have been used since they were last
+	 * considered get a second chance.
+	 */
+	private void cacheNode(long id, CachedNode<N> cached) {
+		int capacity = config.nodeCacheSize;
+		if (capacity <= 0) {
+			nodesCache.put(id, cached);
+			maxNumCachedNodes = Math.max(maxNumCachedNodes, nodesCache.size());
+			return;
+		}
+		if (nodesCacheQueue == null) {
+			nodesCacheQueue = new long[capacity];
+		}
+		while (nodesCache.size() >= capacity) {
+			long candidate = nodesCacheQueue[nodesCacheHead];
+			CachedNode<N> c = nodesCache.get(candidate);
+			nodesCacheHead = (nodesCacheHead + 1) % capacity;
+			if (c != null && c.referenced) {
+				// the queue is full, so moving the head to the tail only advances the head
+				c.referenced = false;
+			} else {
+				nodesCache.remove(candidate);
+			}
+		}
+		nodesCacheQueue[(nodesCacheHead + nodesCache.size()) % capacity] = id;
+		nodesCache.put(id, cached);
+		maxNumCachedNodes = Math.max(maxNumCachedNodes, nodesCache.size());
+	}
+
+	private void clearNodesCache() {
+		nodesCache.clear();
+		nodesCacheQueue = null;
+		nodesCacheHead = 0;
+	}
+
+	/**
+	 * A node in the node cache or created by the current call of <code>vertexToNode</code>. Nodes are incomplete until their relationships have been filled.
+	 */
+	private static class CachedNode<N> {
+		@NonNull
+		final N node;
+		boolean complete;
+		/** Whether the node has been used since it was last considered for eviction. */
+		boolean referenced;
+
+		CachedNode(@NonNull N node) {
+			this.node = node;
+		}
+	}
+
+	/**
+	 * Returns the codec of a CPG class, creating it on first use.
+	 *
+	 * @param className fully qualified name of the class
+	 * @return the codec or null, if the class cannot be loaded
+	 */
+	@Nullable
+	static NodeCodec getCodec(@NonNull String className) {
+		NodeCodec codec = codecs.get(className);
+		if (codec != null) {
+			return codec;
+		}
+		try {
+			return getCodec(Class.forName(className));
+		}
+		catch (ClassNotFoundException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the codec of a CPG class, creating it on first use.
+	 * <p>
+	 * The codec reproduces the Neo4j-OGM mapping of <code>mapsToProperty</code> and <code>mapsToRelationship</code> for each field, and resolves labels, edge
+	 * properties and converters of relationships ahead of time.
+	 */
+	@NonNull
+	static NodeCodec getCodec(@NonNull Class<?> c) {
+		NodeCodec codec = codecs.get(c.getName());
+		if (codec != null) {
+			return codec;
+		}
+
+		codec = new NodeCodec(c, Arrays.asList(getSuperclasses(c)));
+		for (Field f : getFieldsIncludingSuperclasses(c)) {
+			boolean id = hasAnnotation(f, Id.class);
+			boolean relationship = mapsToRelationship(f);
+			boolean property = mapsToProperty(f);
+			boolean converted = hasAnnotation(f, Convert.class);
+			if (!id && !relationship && !property && !converted) {
+				continue;
+			}
+
+			NodeCodec.FieldCodec fieldCodec;
+			try {
+				fieldCodec = new NodeCodec.FieldCodec(f);
+			}
+			catch (IllegalAccessException | RuntimeException e) {
+				log.warn("Field {} of {} is not accessible and will not be persisted", f.getName(), c.getName());
+				continue;
+			}
+			fieldCodec.id = id;
+			fieldCodec.relationship = relationship;
+			fieldCodec.property = property;
+			fieldCodec.converted = converted;
+			if (converted) {
+				try {
+					fieldCodec.converter = f.getAnnotation(Convert.class).value().getDeclaredConstructor().newInstance();
+				}
+				catch (NoSuchMethodException e) {
+					log.error("A converter needs to have an empty constructor", e);
+				}
+				catch (Exception e) {
+					log.error("Error creating new converter instance", e);
+				}
+			}
+			if (relationship) {
+				fieldCodec.direction = getRelationshipDirection(f);
+				fieldCodec.label = getRelationshipLabel(f);
+				fieldCodec.edgeProperties = getEdgeProperties(f);
+				fieldCodec.typeKey = f.getName() + "_type";
+				fieldCodec.isCollection = isCollection(f.getType());
+				fieldCodec.isArray = f.getType().isArray();
+				fieldCodec.isFinal = Modifier.isFinal(f.getModifiers());
+			}
+			codec.fields.add(fieldCodec);
+		}
+
+		NodeCodec existing = codecs.putIfAbsent(c.getName(), codec);
+		return existing != null ? existing : codec;
+	}
+
+	private static Class<?> getCollectionType(@NonNull String className) throws ClassNotFoundException {
+		Class<?> collectionType = collectionTypes.get(className);
+		if (collectionType == null) {
+			collectionType = Class.forName(className);
+			collectionTypes.put(className, collectionType);
+		}
+		return collectionType;
+	}
+
+	private void handleCollections(N node, NodeCodec.FieldCodec f, List<N> targets, Class<?> collectionType)
 			throws InstantiationException, IllegalAccessException, InvocationTargetException,
 			NoSuchMethodException, ClassNotFoundException {
 		Collection targetCollection;
-		Class<?> clazz = Class.forName("java.util.ImmutableCollections");
+		Class<?> clazz = getCollectionType("java.util.ImmutableCollections");
 
 		if (collectionType.getEnclosingClass() != null
 				&& clazz.isAssignableFrom(collectionType.getEnclosingClass())) {
@@ -407,40 +938,44 @@ public class OverflowDatabase<N> implements Database<N> {
 			return nodeToVertex.get(n);
 		}
 
+		NodeCodec codec = getCodec(n.getClass());
+		Map<Object, Object> properties = getVertexProperties(n, codec);
+		if (sourceCode != null) {
+			sourceCode.omitCode(properties);
+		}
+		Vertex result = addVertex(n, codec, properties);
+		createEdges(result, n);
+		return result;
+	}
+
+	/**
+	 * Returns the properties of the vertex of a node, including its label.
+	 */
+	static Map<Object, Object> getVertexProperties(@NonNull Object n, @NonNull NodeCodec codec) {
 		HashMap<Object, Object> properties = new HashMap<>();
 
 		// Set node label (from its class)
-		properties.put(T.label, n.getClass().getSimpleName());
+		properties.put(T.label, codec.label);
 
 		// Set node properties (from field values which are not relationships)
-		List<Field> fields = getFieldsIncludingSuperclasses(n.getClass());
-		for (Field f : fields) {
-			if (!mapsToRelationship(f) && mapsToProperty(f)) {
-				try {
-					f.setAccessible(true);
-					Object x = f.get(n);
-					if (x == null) {
-						continue;
-					}
-					if (hasAnnotation(f, Convert.class)) {
-						properties.putAll(convertToVertexProperties(f, x));
-					} else if (mapsToProperty(f)) {
-						properties.put(f.getName(), x);
-					} else {
-						log.info("Not a property");
-					}
+		for (NodeCodec.FieldCodec f : codec.fields) {
+			if (!f.relationship && f.property) {
+				Object x = f.get(n);
+				if (x == null) {
+					continue;
 				}
-				catch (IllegalAccessException e) {
-					log.error("IllegalAccessException", e);
+				if (f.converted) {
+					properties.putAll(convertToVertexProperties(f, x));
+				} else {
+					properties.put(f.name, x);
 				}
 			}
 		}
 
 		convertProblematicProperties(properties);
 
-		// Add types of nodes (names of superclasses) to properties
-		List<String> superclasses = Arrays.asList(getSuperclasses(n.getClass()));
-		properties.put("labels", superclasses);
+		// Add the interned class of the node, which stands for its class hierarchy
+		properties.put(ClassHierarchy.CLASS_ID, codec.classId);
 
 		// Add hashCode of object so we can easily retrieve a vertex from graph given the node object
 		properties.put("hashCode", n.hashCode());
@@ -448,17 +983,36 @@ public class OverflowDatabase<N> implements Database<N> {
 		// Add current class needed for translating it back to a node object
 		properties.put("nodeType", n.getClass().getName());
 
+		return properties;
+	}
+
+	/**
+	 * Adds the vertex of a node to the graph and registers it in the indices.
+	 */
+	private Vertex addVertex(N n, NodeCodec codec, Map<Object, Object> properties) {
 		List<Object> props = linearize(properties);
 
 		/* Create a new vertex. Note that this will auto-generate a new id() for the vertex and thus this method should only be called once per Node. */
 		Vertex result = graph.addVertex(props.toArray());
 		nodeToVertex.put(n, result);
+		index(result, codec.superclasses, properties);
 
-		createEdges(result, n);
 		return result;
 	}
 
-	private List<Object> linearize(Map<?, ?> properties) {
+	/**
+	 * Registers a vertex in the label index under its own class and all of its superclasses, and in the property indices.
+	 */
+	private void index(@NonNull Vertex v, @NonNull Collection<String> labels, @NonNull Map<?, Object> properties) {
+		for (String label : labels) {
+			vertexIdsByLabel.computeIfAbsent(label, k -> new ArrayList<>()).add(v.id());
+		}
+		for (PropertyIndex index : propertyIndices) {
+			index.add(v.id(), v.label(), properties.get(index.getKey()));
+		}
+	}
+
+	private static List<Object> linearize(Map<?, ?> properties) {
 		List<Object> props = new ArrayList<>(properties.size() * 2);
 		for (Map.Entry p : properties.entrySet()) {
 			props.add(p.getKey());
@@ -472,7 +1026,7 @@ public class OverflowDatabase<N> implements Database<N> {
 	 * overflowing to disk works as intended, this method ensures that such properties are converted
 	 * to a persistable format.
 	 */
-	private void convertProblematicProperties(HashMap<Object, Object> properties) {
+	private static void convertProblematicProperties(HashMap<Object, Object> properties) {
 		for (Object key : new HashSet<>(properties.keySet())) {
 			Object value = properties.get(key);
 			if (value instanceof Integer) {
@@ -531,22 +1085,19 @@ public class OverflowDatabase<N> implements Database<N> {
 	 * Applies AttributeConverter or CompositeAttributeConverter to flatten a complex field into a map
 	 * of properties.
 	 */
-	private Map<Object, Object> convertToVertexProperties(Field f, Object content) {
+	private static Map<Object, Object> convertToVertexProperties(NodeCodec.FieldCodec f, Object content) {
 		try {
-			Object converter = f.getAnnotation(Convert.class).value().getDeclaredConstructor().newInstance();
+			Object converter = f.converter;
 			if (converter instanceof AttributeConverter) {
 				// Single attribute will be provided
-				return Map.of(f.getName(), ((AttributeConverter) converter).toGraphProperty(content));
+				return Map.of(f.name, ((AttributeConverter) converter).toGraphProperty(content));
 			} else if (converter instanceof CompositeAttributeConverter) {
 				// Yields a map of properties
 				return ((CompositeAttributeConverter) converter).toGraphProperties(content);
 			}
 		}
-		catch (NoSuchMethodException e) {
-			log.error("A converter needs to have an empty constructor", e);
-		}
 		catch (Exception e) {
-			log.error("Error creating new converter instance", e);
+			log.error("Error when trying to convert", e);
 		}
 
 		return Collections.emptyMap();
@@ -558,21 +1109,18 @@ public class OverflowDatabase<N> implements Database<N> {
 	 *
 	 * <p>Inverse of <code>convertToVertexProperties</code>.
 	 */
-	private Object convertToNodeProperty(Vertex v, Field f) {
+	private Object convertToNodeProperty(Vertex v, NodeCodec.FieldCodec f) {
 		try {
-			Object converter = f.getAnnotation(Convert.class).value().getDeclaredConstructor().newInstance();
+			Object converter = f.converter;
 			// check whether any property value has been altered. If so, restore its original version
 			Map<String, Object> properties = restoreProblematicProperties(v);
 			if (converter instanceof AttributeConverter) {
 				// Single attribute will be provided
-				return ((AttributeConverter) converter).toEntityAttribute(properties.get(f.getName()));
+				return ((AttributeConverter) converter).toEntityAttribute(properties.get(f.name));
 			} else if (converter instanceof CompositeAttributeConverter) {
 				return ((CompositeAttributeConverter) converter).toEntityAttribute(properties);
 			}
 		}
-		catch (NoSuchMethodException e) {
-			log.error("A converter needs to have an empty constructor", e);
-		}
 		catch (Exception e) {
 			log.error("Error when trying to convert", e);
 		}
@@ -581,44 +1129,27 @@ public class OverflowDatabase<N> implements Database<N> {
 	}
 
 	private void createEdges(Vertex v, N n) {
-		for (Field f : getFieldsIncludingSuperclasses(n.getClass())) {
-			if (mapsToRelationship(f)) {
-
-				Direction direction = getRelationshipDirection(f);
-				String relName = getRelationshipLabel(f);
-				Map<String, Object> edgePropertiesForField = getEdgeProperties(f);
-
-				try {
-					f.setAccessible(true);
-					Object x = f.get(n);
-					if (x == null) {
-						continue;
-					}
-
-					// provide a type hint for later re-translation into a field
-					v.property(f.getName() + "_type", x.getClass().getName());
-
-					// Create an edge from a field value
-					if (isCollection(x.getClass())) {
-						// Add multiple edges for collections
-						connectAll(
-							v, relName, edgePropertiesForField, (Collection) x, direction.equals(Direction.IN));
-					} else if (Node[].class.isAssignableFrom(x.getClass())) {
-						connectAll(
-							v,
-							relName,
-							edgePropertiesForField,
-							Collections.singletonList(x),
-							direction.equals(Direction.IN));
-					} else {
-						// Add single edge for non-collections
-						Vertex target = connect(
-							v, relName, edgePropertiesForField, (Node) x, direction.equals(Direction.IN));
-						assert target.property("hashCode").value().equals(x.hashCode());
-					}
+		for (NodeCodec.FieldCodec f : getCodec(n.getClass()).fields) {
+			if (f.relationship) {
+				Object x = f.get(n);
+				if (x == null) {
+					continue;
 				}
-				catch (IllegalAccessException e) {
-					log.error("IllegalAccessException", e);
+
+				// provide a type hint for later re-translation into a field
+				v.property(f.typeKey, x.getClass().getName());
+
+				// Create an edge from a field value
+				boolean reverse = f.direction == Direction.IN;
+				if (isCollection(x.getClass())) {
+					// Add multiple edges for collections
+					connectAll(v, f.label, f.edgeProperties, (Collection) x, reverse);
+				} else if (Node[].class.isAssignableFrom(x.getClass())) {
+					connectAll(v, f.label, f.edgeProperties, Collections.singletonList(x), reverse);
+				} else {
+					// Add single edge for non-collections
+					Vertex target = connect(v, f.label, f.edgeProperties, (Node) x, reverse);
+					assert target.property("hashCode").value().equals(x.hashCode());
 				}
 			}
 		}
@@ -642,20 +1173,22 @@ public class OverflowDatabase<N> implements Database<N> {
 			targetVertex = createVertex((N) targetNode);
 		}
 
+		addEdge(sourceVertex, label, edgeProperties, targetVertex, reverse);
+		return targetVertex;
+	}
+
+	/**
+	 * Adds an edge between two vertices, unless the same edge has been added before.
+	 */
+	private void addEdge(Vertex sourceVertex, String label, Map<String, Object> edgeProperties, Vertex targetVertex, boolean reverse) {
 		// determine the actual source and target for this edge (depending on the edge direction)
 		Vertex actualSource = reverse ? targetVertex : sourceVertex;
 		Vertex actualTarget = reverse ? sourceVertex : targetVertex;
 
-		// prepare the edge cache
-		edgesCache.putIfAbsent(actualSource.id(), new HashMap<>());
-		Map<String, Set<Object>> currOutgoingEdges = edgesCache.get(actualSource.id());
-		currOutgoingEdges.putIfAbsent(label, new HashSet<>());
 		// only add edge if this exact one has not been added before
-		if (currOutgoingEdges.get(label).add(actualTarget)) {
+		if (edgesCache.computeIfAbsent(label, l -> new LongPairSet()).add((Long) actualSource.id(), (Long) actualTarget.id())) {
 			actualSource.addEdge(label, actualTarget, linearize(edgeProperties).toArray());
 		}
-
-		return targetVertex;
 	}
 
 	private void connectAll(
@@ -677,7 +1210,7 @@ public class OverflowDatabase<N> implements Database<N> {
 	/**
 	 * Reproduced Neo4J-OGM behavior for mapping fields to relationships (or properties otherwise).
 	 */
-	private boolean mapsToRelationship(Field f) {
+	private static boolean mapsToRelationship(Field f) {
 		// Using cache. This method is called from several places and does heavyweight reflection
 		String key = f.getDeclaringClass().getName() + "." + f.getName();
 		if (mapsToRelationship.containsKey(key)) {
@@ -689,7 +1222,7 @@ public class OverflowDatabase<N> implements Database<N> {
 		return result;
 	}
 
-	private Class<?> getContainedType(Field f) {
+	private static Class<?> getContainedType(Field f) {
 		if (Collection.class.isAssignableFrom(f.getType())) {
 			// Check whether the elements in this collection are nodes
 			assert f.getGenericType() instanceof ParameterizedType;
@@ -703,7 +1236,7 @@ public class OverflowDatabase<N> implements Database<N> {
 		}
 	}
 
-	private boolean mapsToProperty(Field f) {
+	private static boolean mapsToProperty(Field f) {
 		// Check cache first to reduce heavy reflection
 		String key = f.getDeclaringClass().getName() + "." + f.getName();
 		if (mapsToProperty.containsKey(key)) {
@@ -736,7 +1269,7 @@ public class OverflowDatabase<N> implements Database<N> {
 		return result;
 	}
 
-	private boolean isCollection(Class<?> aClass) {
+	private static boolean isCollection(Class<?> aClass) {
 		return Collection.class.isAssignableFrom(aClass);
 	}
 
@@ -768,9 +1301,10 @@ public class OverflowDatabase<N> implements Database<N> {
 		}
 
 		List<String> labels = new ArrayList<>();
-		while (!c.equals(Object.class)) {
-			labels.add(c.getSimpleName());
-			c = c.getSuperclass();
+		Class<?> current = c;
+		while (!current.equals(Object.class)) {
+			labels.add(current.getSimpleName());
+			current = current.getSuperclass();
 		}
 
 		String[] result = labels.toArray(new String[0]);
@@ -778,6 +1312,41 @@ public class OverflowDatabase<N> implements Database<N> {
 		return result;
 	}
 
+	/**
+	 * Returns the IDs of all vertices of class c or any of its subclasses, as recorded in the label index of the database owning
+	 * the given graph.
+	 *
+	 * <p>The index is maintained by <code>createVertex</code> and thus lookups scale with the number of matching vertices rather
+	 * than with the size of the graph. Note that vertices added to the graph directly (e.g., by <code>addV()</code>) are not indexed.
+	 *
+	 * @param graph the graph to look up
+	 * @param c     a CPG class
+	 * @return IDs of all matching vertices (possibly empty) or <code>null</code>, if the graph is not backed by an open
+	 *         <code>OverflowDatabase</code>.
+	 */
+	@Nullable
+	public static Object[] getVertexIdsByLabel(@NonNull Graph graph, @NonNull Class<?> c) {
+		OverflowDatabase<?> db = databasesByGraph.get(graph);
+		if (db == null) {
+			return null;
+		}
+		return db.vertexIdsByLabel.getOrDefault(c.getSimpleName(), Collections.emptyList()).toArray();
+	}
+
+	/**
+	 * Returns the secondary property indices of the database owning the given graph.
+	 *
+	 * @return the property indices or an empty list, if the graph is not backed by an open <code>OverflowDatabase</code>.
+	 */
+	@NonNull
+	static List<PropertyIndex> getPropertyIndices(@NonNull Graph graph) {
+		OverflowDatabase<?> db = databasesByGraph.get(graph);
+		if (db == null) {
+			return Collections.emptyList();
+		}
+		return db.propertyIndices;
+	}
+
 	public void clearDatabase() {
 		/* The way to fully delete an OverflowDB is to simply close the graph
 		and connect again */
@@ -793,8 +1362,9 @@ public class OverflowDatabase<N> implements Database<N> {
 			this.odbConfig.withStorageLocation(null);
 		}
 
-		// Clear saved nodes.
-		this.saved.clear();
+		if (this.overflowFile != null) {
+			log.info("Overflow: {}", getOverflowStatistics());
+		}
 
 		// Close graph
 		try {
@@ -806,7 +1376,18 @@ public class OverflowDatabase<N> implements Database<N> {
 			log.error("Closing graph", e);
 		}
 
+		if (this.graph != null) {
+			databasesByGraph.remove(this.graph);
+		}
+		deleteOverflowFile();
+		this.vertexIdsByLabel.clear();
+		this.propertyIndices.forEach(PropertyIndex::clear);
 		this.nodeToVertex.clear();
+		this.edgesCache.clear();
+		clearNodesCache();
+		if (this.sourceCode != null) {
+			this.sourceCode.clear();
+		}
 	}
 
 	public void destroy() {
@@ -817,12 +1398,35 @@ public class OverflowDatabase<N> implements Database<N> {
 		return graph.traversal().V().count().next();
 	}
 
+	/**
+	 * Returns the largest number of nodes the node cache has held so far. It does not exceed {@link ServerConfiguration#nodeCacheSize}, if that is positive.
+	 */
+	public synchronized int getMaxNumCachedNodes() {
+		return maxNumCachedNodes;
+	}
+
+	/**
+	 * Returns the largest number of nodes created or taken from the cache by a single conversion of a vertex so far, see
+	 * {@link ServerConfiguration#nodeMaterializationDepth}.
+	 */
+	public synchronized int getMaxNumMaterializedNodes() {
+		return maxNumMaterializedNodes;
+	}
+
+	/**
+	 * Returns all classes of the CPG which can become vertices, i.e. <code>Node</code> and its subclasses.
+	 */
+	static Set<Class<? extends Node>> getNodeClasses() {
+		Set<Class<? extends Node>> allClasses = new HashSet<>(reflections.getSubTypesOf(Node.class));
+		allClasses.add(Node.class);
+		return allClasses;
+	}
+
 	/**
 	 * Generate the Node and Edge factories that are required by OverflowDB.
 	 */
 	private Pair<List<NodeFactory<OdbNode>>, List<EdgeFactory<OdbEdge>>> getFactories() {
-		Set<Class<? extends Node>> allClasses = reflections.getSubTypesOf(Node.class);
-		allClasses.add(Node.class);
+		Set<Class<? extends Node>> allClasses = getNodeClasses();
 
 		// Make sure to first call createEdgeFactories, which will collect some IN fields needed for
 		// createNodeFactories
@@ -906,7 +1510,7 @@ public class OverflowDatabase<N> implements Database<N> {
 		return new Pair<>(edgeFactories, inEdgeLayouts);
 	}
 
-	private List<Field> getFieldsIncludingSuperclasses(Class c) {
+	private static List<Field> getFieldsIncludingSuperclasses(Class c) {
 		// Try cache first. There are only few (<50) different inputs c, but many calls to this method.
 		if (fieldsIncludingSuperclasses.containsKey(c.getName())) {
 			return fieldsIncludingSuperclasses.get(c.getName());
@@ -932,7 +1536,7 @@ public class OverflowDatabase<N> implements Database<N> {
 	 *
 	 * <p>A field name of <code>myField</code> thus becomes a label <code>MY_FIELD</code>.
 	 */
-	private String getRelationshipLabel(Field f) {
+	private static String getRelationshipLabel(Field f) {
 		String relName = f.getName();
 		if (hasAnnotation(f, Relationship.class)) {
 			Relationship rel = (Relationship) Arrays.stream(f.getAnnotations())
@@ -945,7 +1549,7 @@ public class OverflowDatabase<N> implements Database<N> {
 		return CaseFormat.UPPER_CAMEL.converterTo(CaseFormat.UPPER_UNDERSCORE).convert(relName);
 	}
 
-	private Map<String, Object> getEdgeProperties(Field f) {
+	private static Map<String, Object> getEdgeProperties(Field f) {
 		String fieldFqn = f.getDeclaringClass().getName() + "." + f.getName();
 		if (edgeProperties.containsKey(fieldFqn)) {
 			return edgeProperties.get(fieldFqn);
@@ -1021,6 +1625,9 @@ public class OverflowDatabase<N> implements Database<N> {
 
 			@Override
 			public OdbNode createNode(NodeRef<OdbNode> ref) {
+				if (overflowFile != null) {
+					overflowStatistics.nodeCreated((long) ref.id());
+				}
 				return new OdbNode(ref) {
 					private Map<String, Object> propertyValues = new HashMap<>();
 
@@ -1082,6 +1689,10 @@ public class OverflowDatabase<N> implements Database<N> {
 						 * non-null.
 						 */
 						Object values = this.propertyValues.get(key);
+						if (values == null && sourceCode != null && SourceCode.CODE.equals(key)) {
+							// not kept in the vertex, so that the code can be collected again
+							values = sourceCode.getOmittedCode(this.propertyValues);
+						}
 						if (values == null) {
 							// the following empty collection filter breaks vertexToNode, but might be needed
 							// for GraphMLWriter. Leaving this in for future reference
@@ -1090,12 +1701,16 @@ public class OverflowDatabase<N> implements Database<N> {
 							return new ArrayList<VertexProperty<V>>(0).iterator();
 						}
 						return IteratorUtils.<VertexProperty<V>> of(
-							new OdbNodeProperty(this, key, this.propertyValues.get(key)));
+							new OdbNodeProperty(this, key, values));
 					}
 
 					@Override
 					protected Object specificProperty2(String key) {
-						return this.propertyValues.get(key);
+						Object value = this.propertyValues.get(key);
+						if (value == null && sourceCode != null && SourceCode.CODE.equals(key)) {
+							value = sourceCode.getOmittedCode(this.propertyValues);
+						}
+						return value;
 					}
 
 					@Override
@@ -1106,8 +1721,9 @@ public class OverflowDatabase<N> implements Database<N> {
 					@Override
 					protected <V> VertexProperty<V> updateSpecificProperty(
 							VertexProperty.Cardinality cardinality, String key, V value) {
-						this.propertyValues.put(key, value);
-						return new OdbNodeProperty<>(this, key, value);
+						V pooled = stringPool.intern(key, value);
+						this.propertyValues.put(key, pooled);
+						return new OdbNodeProperty<>(this, key, pooled);
 					}
 
 					@Override
@@ -1165,16 +1781,24 @@ public class OverflowDatabase<N> implements Database<N> {
 		return result;
 	}
 
-	private boolean hasAnnotation(Field f, Class annotationClass) {
+	private static boolean hasAnnotation(Field f, Class annotationClass) {
 		return Arrays.stream(f.getAnnotations())
 				.anyMatch(a -> a.annotationType().equals(annotationClass));
 	}
 
+	/**
+	 * Returns the pool deduplicating string properties of this database, e.g. for its statistics.
+	 */
+	@NonNull
+	public StringPool getStringPool() {
+		return stringPool;
+	}
+
 	public Graph getGraph() {
 		return this.graph;
 	}
 
-	private Direction getRelationshipDirection(Field f) {
+	private static Direction getRelationshipDirection(Field f) {
 		Direction direction = Direction.OUT;
 		if (hasAnnotation(f, Relationship.class)) {
 			Relationship rel = (Relationship) Arrays.stream(f.getAnnotations())
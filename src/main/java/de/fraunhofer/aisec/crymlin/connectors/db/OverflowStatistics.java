@@ -0,0 +1,92 @@
+
+package de.fraunhofer.aisec.crymlin.connectors.db;
+
+import java.util.BitSet;
+
+/**
+ * Statistics on nodes which OverflowDB overflowed to disk and read back.
+ * <p>
+ * OverflowDB creates the node of a vertex through its node factory when the vertex is added, and again whenever the node is read back from disk after it has
+ * been overflowed. Counting these creations per vertex ID thus tells which nodes were read back and how often. The read amplification is the number of reads
+ * per node read back, i.e. how often the same node is deserialized again because it was overflowed once more in between.
+ * <p>
+ * The statistics are thread-safe, as nodes may be read back by queries running in parallel.
+ */
+public class OverflowStatistics {
+
+	/** IDs of all vertices whose node has been created at least once. */
+	private final BitSet created = new BitSet();
+
+	/** IDs of all vertices whose node has been read back from disk at least once. */
+	private final BitSet readBack = new BitSet();
+
+	private long reads;
+
+	/** Number of nodes on disk and their storage size, as of the last call to <code>setOverflowed</code>. */
+	private long overflowedNodes;
+	private long storageBytes;
+
+	/**
+	 * Records that the node of a vertex has been created, either when the vertex was added or when the node was read back from disk.
+	 */
+	synchronized void nodeCreated(long id) {
+		if (id < 0 || id > Integer.MAX_VALUE) {
+			return;
+		}
+		int i = (int) id;
+		if (created.get(i)) {
+			readBack.set(i);
+			reads++;
+		} else {
+			created.set(i);
+		}
+	}
+
+	synchronized void setOverflowed(long overflowedNodes, long storageBytes) {
+		this.overflowedNodes = overflowedNodes;
+		this.storageBytes = storageBytes;
+	}
+
+	/**
+	 * Returns the number of nodes which were on disk, rather than on the heap, when the statistics were last updated.
+	 */
+	public synchronized long getOverflowedNodes() {
+		return overflowedNodes;
+	}
+
+	/**
+	 * Returns the size of the overflow file when the statistics were last updated.
+	 */
+	public synchronized long getStorageBytes() {
+		return storageBytes;
+	}
+
+	/**
+	 * Returns the number of distinct nodes which have been read back from disk.
+	 */
+	public synchronized long getNodesReadBack() {
+		return readBack.cardinality();
+	}
+
+	/**
+	 * Returns the number of times any node has been read back from disk.
+	 */
+	public synchronized long getReads() {
+		return reads;
+	}
+
+	/**
+	 * Returns the number of reads per node read back from disk, or 0 if no node has been read back.
+	 */
+	public synchronized double getReadAmplification() {
+		long nodes = getNodesReadBack();
+		return nodes > 0 ? (double) reads / nodes : 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format(
+			"%d nodes on disk (%d KiB), %d nodes read back %d times (read amplification %.2f)",
+			overflowedNodes, storageBytes / 1024, getNodesReadBack(), reads, getReadAmplification());
+	}
+}
@@ -0,0 +1,169 @@
+
+package de.fraunhofer.aisec.crymlin.connectors.db;
+
+import org.apache.tinkerpop.gremlin.process.traversal.Compare;
+import org.apache.tinkerpop.gremlin.process.traversal.Contains;
+import org.apache.tinkerpop.gremlin.process.traversal.P;
+import org.apache.tinkerpop.gremlin.process.traversal.Text;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Secondary index on a String property of vertices.
+ *
+ * <p>The index consists of an exact-match hash index (property value to vertex IDs) and a trigram index (trigram to property
+ * values containing it). The latter answers substring queries (<code>TextP.containing</code>, <code>startingWith</code>,
+ * <code>endingWith</code>) by intersecting the trigrams of the query string and verifying the remaining candidate values.
+ *
+ * <p>Note that only vertices created by <code>OverflowDatabase.createVertex</code> are indexed and later updates of the property
+ * are not reflected in the index.
+ */
+class PropertyIndex {
+
+	private static final int GRAM_LENGTH = 3;
+
+	@NonNull
+	private final String key;
+
+	/**
+	 * Labels of vertices covered by this index or <code>null</code>, if vertices of any label are indexed.
+	 */
+	@Nullable
+	private final Set<String> labels;
+
+	private final Map<String, List<Object>> idsByValue = new HashMap<>();
+	private final Map<String, Set<String>> valuesByGram = new HashMap<>();
+
+	/**
+	 * @param key    property key to index
+	 * @param labels labels of vertices to index (usually a class and its subclasses), or <code>null</code> for all vertices
+	 */
+	PropertyIndex(@NonNull String key, @Nullable String[] labels) {
+		this.key = key;
+		this.labels = labels != null ? Set.of(labels) : null;
+	}
+
+	@NonNull
+	String getKey() {
+		return key;
+	}
+
+	/**
+	 * Returns true, if the index contains all vertices which have one of the given labels. A value of <code>null</code> stands
+	 * for "any label".
+	 */
+	boolean covers(@Nullable Collection<String> queriedLabels) {
+		if (this.labels == null) {
+			return true;
+		}
+		return queriedLabels != null && this.labels.containsAll(queriedLabels);
+	}
+
+	/**
+	 * Adds a vertex to the index.
+	 *
+	 * @param id          ID of the vertex
+	 * @param vertexLabel label of the vertex
+	 * @param value       value of the indexed property. Values other than Strings are ignored.
+	 */
+	void add(@NonNull Object id, @NonNull String vertexLabel, @Nullable Object value) {
+		if (!(value instanceof String) || (labels != null && !labels.contains(vertexLabel))) {
+			return;
+		}
+
+		String s = (String) value;
+		List<Object> ids = idsByValue.get(s);
+		if (ids == null) {
+			ids = new ArrayList<>(1);
+			idsByValue.put(s, ids);
+			for (int i = 0; i + GRAM_LENGTH <= s.length(); i++) {
+				valuesByGram.computeIfAbsent(s.substring(i, i + GRAM_LENGTH), k -> new HashSet<>()).add(s);
+			}
+		}
+		ids.add(id);
+	}
+
+	/**
+	 * Returns the IDs of all indexed vertices whose property value might satisfy the predicate.
+	 *
+	 * <p>The result is a superset of the actual matches, i.e. the predicate must still be applied to the vertices.
+	 *
+	 * @return candidate vertex IDs or <code>null</code> if the index cannot answer this predicate.
+	 */
+	@Nullable
+	@SuppressWarnings("unchecked")
+	Set<Object> lookup(@NonNull P<?> predicate) {
+		if (predicate.getBiPredicate() == Compare.eq && predicate.getValue() instanceof String) {
+			return new HashSet<>(idsByValue.getOrDefault((String) predicate.getValue(), Collections.emptyList()));
+		}
+
+		if (predicate.getBiPredicate() == Contains.within && predicate.getValue() instanceof Collection) {
+			Set<Object> result = new HashSet<>();
+			for (Object value : (Collection<?>) predicate.getValue()) {
+				if (!(value instanceof String)) {
+					return null;
+				}
+				result.addAll(idsByValue.getOrDefault(value, Collections.emptyList()));
+			}
+			return result;
+		}
+
+		if ((predicate.getBiPredicate() == Text.containing || predicate.getBiPredicate() == Text.startingWith
+				|| predicate.getBiPredicate() == Text.endingWith) && predicate.getValue() instanceof String) {
+			Set<Object> result = new HashSet<>();
+			for (String candidate : getCandidateValues((String) predicate.getValue())) {
+				if (((P<Object>) predicate).test(candidate)) {
+					result.addAll(idsByValue.get(candidate));
+				}
+			}
+			return result;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns all indexed values which contain all trigrams of the given substring.
+	 */
+	private Collection<String> getCandidateValues(@NonNull String substring) {
+		if (substring.length() < GRAM_LENGTH) {
+			// Too short for the trigram index. Checking all distinct values is still much cheaper than checking all vertices.
+			return idsByValue.keySet();
+		}
+
+		Set<String> smallest = null;
+		List<Set<String>> postings = new ArrayList<>();
+		for (int i = 0; i + GRAM_LENGTH <= substring.length(); i++) {
+			Set<String> posting = valuesByGram.get(substring.substring(i, i + GRAM_LENGTH));
+			if (posting == null) {
+				return Collections.emptySet();
+			}
+			postings.add(posting);
+			if (smallest == null || posting.size() < smallest.size()) {
+				smallest = posting;
+			}
+		}
+
+		Set<String> candidates = new HashSet<>(smallest);
+		for (Set<String> posting : postings) {
+			if (posting != smallest) {
+				candidates.retainAll(posting);
+			}
+		}
+		return candidates;
+	}
+
+	void clear() {
+		idsByValue.clear();
+		valuesByGram.clear();
+	}
+}
@@ -0,0 +1,153 @@
+
+package de.fraunhofer.aisec.crymlin.connectors.db;
+
+import org.apache.tinkerpop.gremlin.process.traversal.Compare;
+import org.apache.tinkerpop.gremlin.process.traversal.Contains;
+import org.apache.tinkerpop.gremlin.process.traversal.Step;
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.process.traversal.TraversalStrategy;
+import org.apache.tinkerpop.gremlin.process.traversal.step.HasContainerHolder;
+import org.apache.tinkerpop.gremlin.process.traversal.step.filter.HasStep;
+import org.apache.tinkerpop.gremlin.process.traversal.step.map.GraphStep;
+import org.apache.tinkerpop.gremlin.process.traversal.step.sideEffect.InjectStep;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
+import org.apache.tinkerpop.gremlin.process.traversal.strategy.AbstractTraversalStrategy;
+import org.apache.tinkerpop.gremlin.process.traversal.util.TraversalHelper;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Answers property filters directly following a <code>V()</code> step from the {@link PropertyIndex}es of the
+ * <code>OverflowDatabase</code> owning the graph.
+ *
+ * <p>For instance, <code>g.V().hasLabel("CallExpression", ...).has("fqn", TextP.containing("foo"))</code> is turned into
+ * <code>g.V(id1, id2, ...).hasLabel("CallExpression", ...).has("fqn", TextP.containing("foo"))</code>, where the IDs are the
+ * candidates returned by the index. The filters themselves are kept, so the result of the traversal does not change.
+ *
+ * <p>The strategy is registered for all <code>OdbGraph</code> traversal sources by <code>OverflowDatabase</code> and thus
+ * applies to DSL steps as well as to queries from the console.
+ */
+public final class PropertyIndexStrategy extends AbstractTraversalStrategy<TraversalStrategy.ProviderOptimizationStrategy>
+		implements TraversalStrategy.ProviderOptimizationStrategy {
+
+	private static final PropertyIndexStrategy INSTANCE = new PropertyIndexStrategy();
+
+	private PropertyIndexStrategy() {
+		// Singleton
+	}
+
+	public static PropertyIndexStrategy instance() {
+		return INSTANCE;
+	}
+
+	@Override
+	public void apply(Traversal.Admin<?, ?> traversal) {
+		if (TraversalHelper.onGraphComputer(traversal) || !traversal.getGraph().isPresent()) {
+			return;
+		}
+
+		Graph graph = traversal.getGraph().get();
+		List<PropertyIndex> indices = OverflowDatabase.getPropertyIndices(graph);
+		if (indices.isEmpty()) {
+			return;
+		}
+
+		for (GraphStep<?, ?> graphStep : TraversalHelper.getStepsOfClass(GraphStep.class, traversal)) {
+			if (!graphStep.returnsVertex() || graphStep.getIds().length > 0) {
+				continue;
+			}
+
+			Set<Object> candidates = getCandidates(indices, collectHasContainers(graphStep));
+			if (candidates == null) {
+				continue;
+			}
+
+			if (!candidates.isEmpty()) {
+				graphStep.addIds(candidates.toArray());
+			} else if (graphStep.isStartStep()) {
+				// Note that V() without IDs would return all vertices
+				TraversalHelper.replaceStep(graphStep, new InjectStep<>(traversal), traversal);
+			}
+		}
+	}
+
+	/**
+	 * Collects all filters which directly follow the given <code>V()</code> step, including those which have already been folded
+	 * into the step by other strategies.
+	 */
+	private List<HasContainer> collectHasContainers(@NonNull GraphStep<?, ?> graphStep) {
+		List<HasContainer> hasContainers = new ArrayList<>();
+		if (graphStep instanceof HasContainerHolder) {
+			hasContainers.addAll(((HasContainerHolder) graphStep).getHasContainers());
+		}
+
+		Step<?, ?> current = graphStep.getNextStep();
+		while (current instanceof HasStep) {
+			hasContainers.addAll(((HasStep<?>) current).getHasContainers());
+			current = current.getNextStep();
+		}
+		return hasContainers;
+	}
+
+	/**
+	 * Returns the smallest candidate set any index can provide for the given filters or <code>null</code>, if none of the
+	 * filters can be answered by an index.
+	 */
+	@Nullable
+	private Set<Object> getCandidates(@NonNull List<PropertyIndex> indices, @NonNull List<HasContainer> hasContainers) {
+		Collection<String> labels = getLabels(hasContainers);
+
+		Set<Object> best = null;
+		for (HasContainer hasContainer : hasContainers) {
+			for (PropertyIndex index : indices) {
+				if (!index.getKey().equals(hasContainer.getKey()) || !index.covers(labels)) {
+					continue;
+				}
+				Set<Object> candidates = index.lookup(hasContainer.getPredicate());
+				if (candidates != null && (best == null || candidates.size() < best.size())) {
+					best = candidates;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Returns the labels which the filters restrict vertices to or <code>null</code> if vertices may have any label.
+	 */
+	@Nullable
+	private Collection<String> getLabels(@NonNull List<HasContainer> hasContainers) {
+		Set<String> labels = null;
+		for (HasContainer hasContainer : hasContainers) {
+			if (!T.label.getAccessor().equals(hasContainer.getKey())) {
+				continue;
+			}
+
+			Set<String> allowed = new HashSet<>();
+			if (hasContainer.getBiPredicate() == Compare.eq && hasContainer.getValue() instanceof String) {
+				allowed.add((String) hasContainer.getValue());
+			} else if (hasContainer.getBiPredicate() == Contains.within && hasContainer.getValue() instanceof Collection) {
+				for (Object label : (Collection<?>) hasContainer.getValue()) {
+					allowed.add(label.toString());
+				}
+			} else {
+				continue;
+			}
+
+			if (labels == null) {
+				labels = allowed;
+			} else {
+				labels.retainAll(allowed);
+			}
+		}
+		return labels;
+	}
+}
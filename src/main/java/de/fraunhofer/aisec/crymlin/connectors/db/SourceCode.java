@@ -0,0 +1,179 @@
+
+package de.fraunhofer.aisec.crymlin.connectors.db;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.END_COLUMN;
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.END_LINE;
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.START_COLUMN;
+import static de.fraunhofer.aisec.crymlin.dsl.CrymlinConstants.START_LINE;
+
+/**
+ * Reads the code of vertices from their source files on demand.
+ * <p>
+ * If code is read lazily (see {@code ServerConfiguration.lazyCode}), vertices do not store a <code>code</code> property which equals the source text of their
+ * region. Such vertices are marked by {@link #CODE_IN_SOURCE}, and their property is materialized from the <code>file</code> and region properties of the
+ * vertex whenever it is read. Source files are memory-mapped once and indexed by line, so reading the code of a vertex only decodes the lines it spans.
+ * <p>
+ * Code which differs from the source text, e.g. because a language frontend normalized its whitespace, is still stored in the vertex, as is the absence of
+ * code. Thus, the <code>code</code> property, and all queries on it, are the same as if code was kept in vertices.
+ * <p>
+ * Regions are expected to be SARIF-compliant, i.e. lines and columns start at 1 and the end column is exclusive.
+ */
+public class SourceCode {
+
+	private static final Logger log = LoggerFactory.getLogger(SourceCode.class);
+
+	/** Name of the property which is materialized from the sources. */
+	public static final String CODE = "code";
+
+	/** Name of the property which marks vertices whose code is not stored, but read from the sources. */
+	public static final String CODE_IN_SOURCE = "codeInSource";
+
+	private static final String FILE = "file";
+
+	private final Map<String, Optional<SourceFile>> files = new ConcurrentHashMap<>();
+
+	/**
+	 * Removes the code from the properties of a new vertex, if it equals the source text of the region of the vertex. The vertex is then marked by
+	 * {@link #CODE_IN_SOURCE}.
+	 */
+	public void omitCode(@NonNull Map<Object, Object> properties) {
+		Object code = properties.get(CODE);
+		if (code instanceof String && code.equals(getCode(properties))) {
+			properties.remove(CODE);
+			properties.put(CODE_IN_SOURCE, true);
+		}
+	}
+
+	/**
+	 * Returns the code of a vertex whose code has been removed by <code>omitCode</code>, given its properties.
+	 *
+	 * @return the code or null, if the vertex stores its code or has none
+	 */
+	@Nullable
+	public String getOmittedCode(@NonNull Map<?, Object> properties) {
+		if (!Boolean.TRUE.equals(properties.get(CODE_IN_SOURCE))) {
+			return null;
+		}
+		return getCode(properties);
+	}
+
+	/**
+	 * Returns the source text of the region of a vertex, given its properties.
+	 *
+	 * @return the code or null, if the vertex has no complete location or its source file cannot be read
+	 */
+	@Nullable
+	public String getCode(@NonNull Map<?, Object> properties) {
+		Object file = properties.get(FILE);
+		Object startLine = properties.get(START_LINE);
+		Object startColumn = properties.get(START_COLUMN);
+		Object endLine = properties.get(END_LINE);
+		Object endColumn = properties.get(END_COLUMN);
+		if (!(file instanceof String) || !(startLine instanceof Number) || !(startColumn instanceof Number) || !(endLine instanceof Number)
+				|| !(endColumn instanceof Number)) {
+			return null;
+		}
+		return getCode((String) file, ((Number) startLine).intValue(), ((Number) startColumn).intValue(), ((Number) endLine).intValue(),
+			((Number) endColumn).intValue());
+	}
+
+	/**
+	 * Returns the code in a region of a source file.
+	 *
+	 * @return the code or null, if the region is invalid or the file cannot be read
+	 */
+	@Nullable
+	public String getCode(@NonNull String file, int startLine, int startColumn, int endLine, int endColumn) {
+		if (startLine < 1 || startColumn < 1 || endLine < startLine || endColumn < 1) {
+			return null;
+		}
+		return files.computeIfAbsent(file, SourceCode::map)
+				.map(f -> f.getText(startLine, startColumn, endLine, endColumn))
+				.orElse(null);
+	}
+
+	/**
+	 * Unmaps all source files. They are mapped again when code is read from them.
+	 */
+	public void clear() {
+		files.clear();
+	}
+
+	private static Optional<SourceFile> map(@NonNull String file) {
+		try (FileChannel channel = FileChannel.open(Path.of(file), StandardOpenOption.READ)) {
+			return Optional.of(new SourceFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())));
+		}
+		catch (IOException | RuntimeException e) {
+			log.warn("Cannot read code from {}: {}", file, e.getMessage());
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * A memory-mapped source file and the byte offsets of its lines.
+	 */
+	private static class SourceFile {
+		@NonNull
+		private final MappedByteBuffer buffer;
+		@NonNull
+		private final int[] lineStarts;
+
+		SourceFile(@NonNull MappedByteBuffer buffer) {
+			this.buffer = buffer;
+
+			int[] starts = new int[64];
+			int lines = 1;
+			for (int i = 0; i < buffer.limit(); i++) {
+				if (buffer.get(i) == '\n') {
+					if (lines == starts.length) {
+						starts = Arrays.copyOf(starts, 2 * lines);
+					}
+					starts[lines++] = i + 1;
+				}
+			}
+			this.lineStarts = Arrays.copyOf(starts, lines);
+		}
+
+		@Nullable
+		String getText(int startLine, int startColumn, int endLine, int endColumn) {
+			if (endLine > lineStarts.length) {
+				return null;
+			}
+			int from = lineStarts[startLine - 1];
+			int to = endLine < lineStarts.length ? lineStarts[endLine] : buffer.limit();
+
+			// Decode the complete lines, as columns count characters, not bytes
+			ByteBuffer lines = buffer.duplicate();
+			lines.position(from).limit(to);
+			String text = StandardCharsets.UTF_8.decode(lines).toString();
+
+			int lastLineStart = 0;
+			for (int line = startLine; line < endLine; line++) {
+				lastLineStart = text.indexOf('\n', lastLineStart) + 1;
+			}
+			int begin = startColumn - 1;
+			int end = Math.min(lastLineStart + endColumn - 1, text.length());
+			if (begin > end) {
+				return null;
+			}
+			return text.substring(begin, end);
+		}
+	}
+}
@@ -0,0 +1,96 @@
+
+package de.fraunhofer.aisec.crymlin.connectors.db;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deduplicates strings stored in vertex properties.
+ * <p>
+ * Properties such as <code>file</code> or <code>nodeType</code> have the same value for many vertices, but each vertex holds its own copy once it has been
+ * restored from the overflow file or created from a node whose strings were parsed separately. Values of the pooled properties are replaced by a canonical
+ * instance when they are stored in a vertex. The pool holds these instances weakly, so strings which are no longer used by any vertex can be collected.
+ * <p>
+ * The pool is thread-safe. It counts the strings it deduplicated and estimates the heap this saved, assuming compact (Latin-1) strings.
+ */
+public class StringPool {
+
+	/** Properties whose values are pooled. Additionally, the type hints of collections (ending with <code>_type</code>) are pooled. */
+	private static final Set<String> POOLED_KEYS = Set.of("code", "file", "name", "fqn", "nodeType");
+
+	/** Estimated size of a String object and the header of its value array, with compressed oops. */
+	private static final int STRING_OVERHEAD = 24 + 16;
+
+	private final Interner<String> interner = Interners.newWeakInterner();
+
+	private final LongAdder lookups = new LongAdder();
+	private final LongAdder duplicates = new LongAdder();
+	private final LongAdder bytesSaved = new LongAdder();
+
+	/**
+	 * Returns true if values of the given property are pooled.
+	 */
+	public static boolean isPooled(@NonNull String key) {
+		return POOLED_KEYS.contains(key) || key.endsWith("_type");
+	}
+
+	/**
+	 * Returns the canonical instance of a property value, if the property is pooled and the value is a string. Otherwise, the value is returned as is.
+	 */
+	@Nullable
+	public <V> V intern(@NonNull String key, @Nullable V value) {
+		if (value instanceof String && isPooled(key)) {
+			return (V) intern((String) value);
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the canonical instance of a string.
+	 */
+	@NonNull
+	public String intern(@NonNull String s) {
+		lookups.increment();
+		String pooled = interner.intern(s);
+		if (pooled != s) {
+			duplicates.increment();
+			bytesSaved.add(align(STRING_OVERHEAD + s.length()));
+		}
+		return pooled;
+	}
+
+	/**
+	 * Returns the number of strings which were looked up in the pool.
+	 */
+	public long getLookups() {
+		return lookups.sum();
+	}
+
+	/**
+	 * Returns the number of strings which were replaced by an equal string already in the pool.
+	 */
+	public long getDuplicates() {
+		return duplicates.sum();
+	}
+
+	/**
+	 * Returns the estimated number of bytes of all strings replaced by the pool.
+	 */
+	public long getBytesSaved() {
+		return bytesSaved.sum();
+	}
+
+	private static long align(long bytes) {
+		return (bytes + 7) & ~7L;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d of %d strings deduplicated, approx. %d KiB saved", getDuplicates(), getLookups(), getBytesSaved() / 1024);
+	}
+}
@@ -11,14 +11,19 @@ public class CrymlinConstants {
 	public static final String ARGUMENT_INDEX = "argumentIndex";
 	public static final String BASE = "BASE";
 	public static final String BODY = "BODY";
+	public static final String DECLARATIONS = "DECLARATIONS";
 	public static final String DFG = "DFG";
 	public static final String EOG = "EOG";
 	public static final String FIELDS = "FIELDS";
 	public static final String INITIALIZER = "INITIALIZER";
+	public static final String INVOKES = "INVOKES";
+	public static final String MEMBER = "MEMBER";
 	public static final String NAME = "name";
 	public static final String END_COLUMN = "endColumn";
 	public static final String END_LINE = "endLine";
+	public static final String PARAMETERS = "PARAMETERS";
 	public static final String REFERS_TO = "REFERS_TO";
+	public static final String RETURN_VALUE = "RETURN_VALUE";
 	public static final String POSSIBLE_SUB_TYPES = "POSSIBLE_SUB_TYPES";
 	public static final String START_COLUMN = "startColumn";
 	public static final String START_LINE = "startLine";
@@ -17,6 +17,7 @@ import de.fraunhofer.aisec.cpg.graph.Statement;
 import de.fraunhofer.aisec.cpg.graph.TranslationUnitDeclaration;
 import de.fraunhofer.aisec.cpg.graph.TypedefDeclaration;
 import de.fraunhofer.aisec.cpg.graph.VariableDeclaration;
+import de.fraunhofer.aisec.cpg.graph.type.Type;
 import de.fraunhofer.aisec.crymlin.connectors.db.OverflowDatabase;
 import org.apache.tinkerpop.gremlin.process.remote.RemoteConnection;
 import org.apache.tinkerpop.gremlin.process.traversal.TextP;
@@ -24,7 +25,6 @@ import org.apache.tinkerpop.gremlin.process.traversal.TraversalStrategies;
 import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
 import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
 import org.apache.tinkerpop.gremlin.structure.Graph;
-import org.apache.tinkerpop.gremlin.structure.T;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
 import org.eclipse.xtend.lib.macro.declaration.ParameterDeclaration;
 
@@ -68,10 +68,7 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("All function/method calls")
 	public GraphTraversal<Vertex, Vertex> calls() {
-		GraphTraversal<Vertex, Vertex> traversal = this.clone().V();
-
-		return traversal.hasLabel(
-			CallExpression.class.getSimpleName(), OverflowDatabase.getSubclasses(CallExpression.class));
+		return IndexedTraversals.verticesOfType(this.clone(), CallExpression.class);
 	}
 
 	/**
@@ -83,9 +80,9 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 * @return traversal of matched {@code CallExpression} vertices
 	 */
 	public GraphTraversal<Vertex, Vertex> callsFqn(String calleeName) {
-		GraphTraversal<Vertex, Vertex> traversal = this.clone().V();
-
-		return traversal
+		// Note that the property index is only used if the traversal starts with V() and no IDs
+		return this.clone()
+				.V()
 				.hasLabel(
 					CallExpression.class.getSimpleName(),
 					OverflowDatabase.getSubclasses(CallExpression.class))
@@ -102,15 +99,26 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("Calls to functions/methods whose (fully qualified) name contains the argument.")
 	public GraphTraversal<Vertex, Vertex> calls(String calleeName) {
-		GraphTraversal<Vertex, Vertex> traversal = this.clone().V();
-
-		return traversal
+		return this.clone()
+				.V()
 				.hasLabel(
 					CallExpression.class.getSimpleName(),
 					OverflowDatabase.getSubclasses(CallExpression.class))
 				.has("fqn", TextP.containing(calleeName));
 	}
 
+	/**
+	 * Returns the vertices representing the construct sites of objects.
+	 *
+	 * This traversal step will return vertices of type ConstructExpression (or its subclasses).
+	 *
+	 * @return traversal of matched {@code ConstructExpression} vertices
+	 */
+	@ShellCommand("All constructors")
+	public GraphTraversal<Vertex, Vertex> ctors() {
+		return IndexedTraversals.verticesOfType(this.clone(), ConstructExpression.class);
+	}
+
 	/**
 	 * Returns the vertices representing the construct site of a object with the given fully qualified type.
 	 *
@@ -123,11 +131,18 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("Constructors containing a given type")
 	public GraphTraversal<Vertex, Vertex> ctors(String type) {
-		GraphTraversal<Vertex, Vertex> traversal = this.clone().V();
-
-		return traversal.hasLabel(ConstructExpression.class.getSimpleName(), OverflowDatabase.getSubclasses(ConstructExpression.class))
-				.where(out(CrymlinConstants.TYPE)
-						.has(NAME, TextP.containing(type)));
+		// Start from the (indexed) types and go back to the constructors
+		return this.clone()
+				.V()
+				.hasLabel(
+					Type.class.getSimpleName(),
+					OverflowDatabase.getSubclasses(Type.class))
+				.has(NAME, TextP.containing(type))
+				.in(CrymlinConstants.TYPE)
+				.hasLabel(
+					ConstructExpression.class.getSimpleName(),
+					OverflowDatabase.getSubclasses(ConstructExpression.class))
+				.dedup();
 	}
 
 	/**
@@ -137,11 +152,7 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("Namespaces")
 	public GraphTraversal<Vertex, Vertex> namespaces() {
-		return this.clone()
-				.V()
-				.hasLabel(
-					NamespaceDeclaration.class.getSimpleName(),
-					OverflowDatabase.getSubclasses(NamespaceDeclaration.class));
+		return IndexedTraversals.verticesOfType(this.clone(), NamespaceDeclaration.class);
 	}
 
 	/**
@@ -151,11 +162,7 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("Namespaces containing the given substring")
 	public GraphTraversal<Vertex, Vertex> namespaces(String substring) {
-		return this.clone()
-				.V()
-				.hasLabel(
-					NamespaceDeclaration.class.getSimpleName(),
-					OverflowDatabase.getSubclasses(NamespaceDeclaration.class))
+		return IndexedTraversals.verticesOfType(this.clone(), NamespaceDeclaration.class)
 				.has("name", TextP.containing(substring));
 	}
 
@@ -166,11 +173,7 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("Statements")
 	public GraphTraversal<Vertex, Vertex> statements() {
-		return this.clone()
-				.V()
-				.hasLabel(
-					Statement.class.getSimpleName(),
-					OverflowDatabase.getSubclasses(Statement.class));
+		return IndexedTraversals.verticesOfType(this.clone(), Statement.class);
 	}
 
 	/**
@@ -180,11 +183,7 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("All class methods (Note: rather use 'functions()' to include C/C++ functions)")
 	public GraphTraversal<Vertex, Vertex> methods() {
-		return this.clone()
-				.V()
-				.hasLabel(
-					MethodDeclaration.class.getSimpleName(),
-					OverflowDatabase.getSubclasses(MethodDeclaration.class));
+		return IndexedTraversals.verticesOfType(this.clone(), MethodDeclaration.class);
 	}
 
 	/**
@@ -194,11 +193,7 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("Class methods containing the given name (Note: rather use 'functions()' to include C/C++ functions)")
 	public GraphTraversal<Vertex, Vertex> methods(String substring) {
-		return this.clone()
-				.V()
-				.hasLabel(
-					MethodDeclaration.class.getSimpleName(),
-					OverflowDatabase.getSubclasses(MethodDeclaration.class))
+		return IndexedTraversals.verticesOfType(this.clone(), MethodDeclaration.class)
 				.has("name", TextP.containing(substring));
 	}
 
@@ -209,11 +204,7 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("All TranslationUnits (=Source code files)")
 	public GraphTraversal<Vertex, Vertex> sourcefiles() {
-		return this.clone()
-				.V()
-				.hasLabel(
-					TranslationUnitDeclaration.class.getSimpleName(),
-					OverflowDatabase.getSubclasses(TranslationUnitDeclaration.class));
+		return IndexedTraversals.verticesOfType(this.clone(), TranslationUnitDeclaration.class);
 	}
 
 	/**
@@ -223,11 +214,7 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("TranslationUnits (=Source code files) containing the given name")
 	public GraphTraversal<Vertex, Vertex> sourcefiles(String substring) {
-		return this.clone()
-				.V()
-				.hasLabel(
-					TranslationUnitDeclaration.class.getSimpleName(),
-					OverflowDatabase.getSubclasses(TranslationUnitDeclaration.class))
+		return IndexedTraversals.verticesOfType(this.clone(), TranslationUnitDeclaration.class)
 				.has("name", TextP.containing(substring));
 	}
 
@@ -238,11 +225,7 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("All IfStatements")
 	public GraphTraversal<Vertex, Vertex> ifstmts() {
-		return this.clone()
-				.V()
-				.hasLabel(
-					IfStatement.class.getSimpleName(),
-					OverflowDatabase.getSubclasses(IfStatement.class));
+		return IndexedTraversals.verticesOfType(this.clone(), IfStatement.class);
 	}
 
 	/**
@@ -252,11 +235,7 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("IfStatements whose code contains the given substring")
 	public GraphTraversal<Vertex, Vertex> ifstmts(String subcode) {
-		return this.clone()
-				.V()
-				.hasLabel(
-					IfStatement.class.getSimpleName(),
-					OverflowDatabase.getSubclasses(IfStatement.class))
+		return IndexedTraversals.verticesOfType(this.clone(), IfStatement.class)
 				.has("code", TextP.containing(subcode));
 	}
 
@@ -267,11 +246,7 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("All RecordDeclarations (Java classes, enums, C/C++ structs)")
 	public GraphTraversal<Vertex, Vertex> records() {
-		return this.clone()
-				.V()
-				.hasLabel(
-					RecordDeclaration.class.getSimpleName(),
-					OverflowDatabase.getSubclasses(RecordDeclaration.class));
+		return IndexedTraversals.verticesOfType(this.clone(), RecordDeclaration.class);
 	}
 
 	/**
@@ -281,11 +256,7 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("RecordDeclarations (Java classes, enums, C/C++ structs) containing the given name")
 	public GraphTraversal<Vertex, Vertex> records(String substring) {
-		return this.clone()
-				.V()
-				.hasLabel(
-					RecordDeclaration.class.getSimpleName(),
-					OverflowDatabase.getSubclasses(RecordDeclaration.class))
+		return IndexedTraversals.verticesOfType(this.clone(), RecordDeclaration.class)
 				.has("name", TextP.containing(substring));
 	}
 
@@ -296,11 +267,7 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("All functions/methods")
 	public GraphTraversal<Vertex, Vertex> functions() {
-		GraphTraversal<Vertex, Vertex> traversal = this.clone().V();
-
-		return traversal.hasLabel(
-			FunctionDeclaration.class.getSimpleName(),
-			OverflowDatabase.getSubclasses(FunctionDeclaration.class));
+		return IndexedTraversals.verticesOfType(this.clone(), FunctionDeclaration.class);
 	}
 
 	/**
@@ -310,11 +277,8 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("Functions/methods containing the given name")
 	public GraphTraversal<Vertex, Vertex> functions(String functionname) {
-		GraphTraversal<Vertex, Vertex> traversal = this.clone().V();
-
-		return traversal.hasLabel(
-			FunctionDeclaration.class.getSimpleName(),
-			OverflowDatabase.getSubclasses(FunctionDeclaration.class)).has("name", TextP.containing(functionname));
+		return IndexedTraversals.verticesOfType(this.clone(), FunctionDeclaration.class)
+				.has("name", TextP.containing(functionname));
 	}
 
 	/**
@@ -357,10 +321,7 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("Variable declarations. Use valdecl() instead to include parameters, fields, and enums")
 	public GraphTraversal<Vertex, Vertex> vars() {
-		GraphTraversal<Vertex, Vertex> traversal = this.clone().V();
-
-		return traversal.hasLabel(
-			VariableDeclaration.class.getSimpleName(), OverflowDatabase.getSubclasses(VariableDeclaration.class));
+		return IndexedTraversals.verticesOfType(this.clone(), VariableDeclaration.class);
 	}
 
 	/**
@@ -370,18 +331,11 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("Field declarations")
 	public GraphTraversal<Vertex, Vertex> fields() {
-		GraphTraversal<Vertex, Vertex> traversal = this.clone().V();
-
-		return traversal.hasLabel(
-			FieldDeclaration.class.getSimpleName(), OverflowDatabase.getSubclasses(FieldDeclaration.class));
+		return IndexedTraversals.verticesOfType(this.clone(), FieldDeclaration.class);
 	}
 
 	public GraphTraversal<Vertex, Vertex> fields(String fieldName) {
-		return this.clone()
-				.V()
-				.hasLabel(
-					FieldDeclaration.class.getSimpleName(),
-					OverflowDatabase.getSubclasses(FieldDeclaration.class))
+		return IndexedTraversals.verticesOfType(this.clone(), FieldDeclaration.class)
 				.has("name", fieldName);
 	}
 
@@ -392,9 +346,7 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("Node by its ID")
 	public GraphTraversal<Vertex, Vertex> byID(long id) {
-		GraphTraversal<Vertex, Vertex> traversal = this.clone().V();
-
-		return traversal.has(T.id, id);
+		return this.clone().V(id);
 	}
 
 	/**
@@ -404,9 +356,8 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("Next call statement following node by ID")
 	public GraphTraversal<Vertex, Vertex> nextCallByID(long id) {
-		GraphTraversal<Vertex, Vertex> traversal = this.clone().V();
-
-		return traversal.has(T.id, id)
+		return this.clone()
+				.V(id)
 				.repeat(out(EOG))
 				.until(
 					hasLabel(
@@ -425,9 +376,8 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("Next call statement following node by ID")
 	public GraphTraversal<Vertex, Vertex> prevCallByID(long id) {
-		GraphTraversal<Vertex, Vertex> traversal = this.clone().V();
-
-		return traversal.has(T.id, id)
+		return this.clone()
+				.V(id)
 				.repeat(in(EOG))
 				.until(
 					hasLabel(
@@ -446,11 +396,7 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("All return statements")
 	public GraphTraversal<Vertex, Vertex> returns() {
-		GraphTraversal<Vertex, Vertex> traversal = this.clone().V();
-
-		return traversal.hasLabel(
-			FunctionDeclaration.class.getSimpleName(),
-			OverflowDatabase.getSubclasses(ReturnStatement.class));
+		return IndexedTraversals.verticesOfType(this.clone(), ReturnStatement.class);
 	}
 
 	/**
@@ -460,11 +406,7 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("All typedefs")
 	public GraphTraversal<Vertex, Vertex> typedefs() {
-		GraphTraversal<Vertex, Vertex> traversal = this.clone().V();
-
-		return traversal.hasLabel(
-			FunctionDeclaration.class.getSimpleName(),
-			OverflowDatabase.getSubclasses(TypedefDeclaration.class));
+		return IndexedTraversals.verticesOfType(this.clone(), TypedefDeclaration.class);
 	}
 
 	/**
@@ -474,11 +416,8 @@ public class CrymlinTraversalSourceDsl extends GraphTraversalSource {
 	 */
 	@ShellCommand("All typedefs containing the given name")
 	public GraphTraversal<Vertex, Vertex> typedefs(String substring) {
-		GraphTraversal<Vertex, Vertex> traversal = this.clone().V();
-
-		return traversal.hasLabel(
-			FunctionDeclaration.class.getSimpleName(),
-			OverflowDatabase.getSubclasses(TypedefDeclaration.class)).has("name", TextP.containing(substring));
+		return IndexedTraversals.verticesOfType(this.clone(), TypedefDeclaration.class)
+				.has("name", TextP.containing(substring));
 	}
 
 }
@@ -0,0 +1,54 @@
+
+package de.fraunhofer.aisec.crymlin.dsl;
+
+import de.fraunhofer.aisec.cpg.graph.Node;
+import de.fraunhofer.aisec.crymlin.connectors.db.OverflowDatabase;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Start steps for Crymlin traversals which make use of the indices maintained by {@code OverflowDatabase}.
+ *
+ * Note: These helpers must not live in {@link CrymlinTraversalSourceDsl}, as the Gremlin DSL processor would expose them as traversal steps.
+ */
+final class IndexedTraversals {
+
+	private IndexedTraversals() {
+		// do not instantiate
+	}
+
+	/**
+	 * Returns all vertices of the given CPG class, including vertices of its subclasses.
+	 *
+	 * If the graph is backed by an {@code OverflowDatabase}, the traversal starts from its label index and thus avoids a scan over all vertices.
+	 * Otherwise, vertices are filtered by their labels.
+	 *
+	 * @param source a fresh (cloned) traversal source
+	 * @param c      CPG class
+	 * @return traversal of matched vertices
+	 */
+	static GraphTraversal<Vertex, Vertex> verticesOfType(@NonNull GraphTraversalSource source, @NonNull Class<? extends Node> c) {
+		Object[] ids = OverflowDatabase.getVertexIdsByLabel(source.getGraph(), c);
+		if (ids == null) {
+			return source.V()
+					.hasLabel(c.getSimpleName(), OverflowDatabase.getSubclasses(c));
+		}
+
+		return startFrom(source, ids);
+	}
+
+	/**
+	 * Starts a traversal from the given vertex IDs.
+	 *
+	 * Note that <code>V()</code> without arguments would return all vertices, so an empty array must result in an empty traversal.
+	 */
+	static GraphTraversal<Vertex, Vertex> startFrom(@NonNull GraphTraversalSource source, @NonNull Object[] ids) {
+		if (ids.length == 0) {
+			return source.inject();
+		}
+
+		return source.V(ids);
+	}
+}
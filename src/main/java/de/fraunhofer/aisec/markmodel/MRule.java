@@ -1,10 +1,12 @@
 
 package de.fraunhofer.aisec.markmodel;
 
+import de.fraunhofer.aisec.analysis.markevaluation.EvaluationPlan;
 import de.fraunhofer.aisec.analysis.markevaluation.ExpressionHelper;
 import de.fraunhofer.aisec.analysis.structures.Pair;
 import de.fraunhofer.aisec.mark.markDsl.RuleStatement;
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -24,6 +26,11 @@ public class MRule {
 	 * todo maybe we should not allow rules with NULL references here, as they cannot be evaluated anyway
 	 */
 	private Map<String, Pair<String, MEntity>> entityReferences;
+	/**
+	 * The compiled "when" and "ensure" expressions of the statement. Set by the {@code MarkModelLoader}.
+	 */
+	@Nullable
+	private EvaluationPlan plan;
 
 	public MRule(@NonNull String name) {
 		this.name = name;
@@ -83,4 +90,13 @@ public class MRule {
 	public Map<String, Pair<String, MEntity>> getEntityReferences() {
 		return entityReferences;
 	}
+
+	public void setPlan(@Nullable EvaluationPlan plan) {
+		this.plan = plan;
+	}
+
+	@Nullable
+	public EvaluationPlan getPlan() {
+		return plan;
+	}
 }
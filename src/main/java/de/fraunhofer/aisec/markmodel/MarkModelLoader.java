@@ -1,6 +1,7 @@
 
 package de.fraunhofer.aisec.markmodel;
 
+import de.fraunhofer.aisec.analysis.markevaluation.EvaluationPlan;
 import de.fraunhofer.aisec.analysis.markevaluation.ExpressionHelper;
 import de.fraunhofer.aisec.analysis.structures.Pair;
 import de.fraunhofer.aisec.mark.markDsl.EntityDeclaration;
@@ -104,6 +105,8 @@ public class MarkModelLoader {
 		MRule mRule = new MRule(rule.getName());
 		mRule.setStatement(rule.getStmt());
 		mRule.setErrorMessage(rule.getStmt().getMsg());
+		// compile the expressions once, as the rule may be evaluated many times
+		mRule.setPlan(EvaluationPlan.compile(rule.getStmt()));
 
 		HashMap<String, Pair<String, MEntity>> entityReferences = new HashMap<>();
 		rule.getStmt()
@@ -0,0 +1,284 @@
+
+package de.fraunhofer.aisec.markmodel.fsm;
+
+import de.fraunhofer.aisec.mark.markDsl.Expression;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Minimized deterministic automaton of a MARK "order" expression.
+ * <p>
+ * The automaton is created from the {@link FSM} of the expression by subset construction. A state stands for the set of FSM nodes whose ops are expected next,
+ * i.e. a call of an op moves from the current set of nodes to the successors of all nodes with this op. A state is accepting if it contains the END node. The
+ * automaton is then minimized, merging states which accept the same sequences of ops and expect the same nodes.
+ * <p>
+ * States and ops are numbered. State 0 is the initial state and transitions are stored in a table indexed by state and op ID. The automaton is immutable, so
+ * it is compiled once per expression and shared by all evaluations of the rule.
+ */
+public final class DFA {
+
+	/** Returned by {@link #next} and {@link #getOpId} if there is no such transition or op. */
+	public static final int NONE = -1;
+
+	@NonNull
+	private final String[] ops;
+	@NonNull
+	private final Map<String, Integer> opIds = new HashMap<>();
+
+	/** Target of the transition of state <code>s</code> with op <code>o</code> at <code>s * ops.length + o</code>, or NONE. */
+	@NonNull
+	private final int[] transitions;
+	@NonNull
+	private final boolean[] accepting;
+
+	/** Sorted distinct names of the FSM nodes of each state, i.e. the ops (prefixed with their base) that may follow. */
+	@NonNull
+	private final List<String>[] expected;
+
+	private DFA(@NonNull String[] ops, @NonNull int[] transitions, @NonNull boolean[] accepting, @NonNull List<String>[] expected) {
+		this.ops = ops;
+		for (int i = 0; i < ops.length; i++) {
+			opIds.put(ops[i], i);
+		}
+		this.transitions = transitions;
+		this.accepting = accepting;
+		this.expected = expected;
+	}
+
+	/**
+	 * Compiles an order expression into a minimized DFA.
+	 */
+	@NonNull
+	public static DFA of(@NonNull Expression seq) {
+		FSM fsm = new FSM();
+		fsm.sequenceToFSM(seq);
+		return of(fsm);
+	}
+
+	/**
+	 * Converts the FSM of an order expression into a minimized DFA.
+	 */
+	@NonNull
+	public static DFA of(@NonNull FSM fsm) {
+		// Number all nodes. Nodes are compared by identity, as their equals() only compares names of successors.
+		Map<Node, Integer> nodeIds = new IdentityHashMap<>();
+		List<Node> nodes = new ArrayList<>();
+		Deque<Node> work = new ArrayDeque<>(fsm.getStart());
+		while (!work.isEmpty()) {
+			Node n = work.pop();
+			if (!nodeIds.containsKey(n)) {
+				nodeIds.put(n, nodes.size());
+				nodes.add(n);
+				work.addAll(n.getSuccessors());
+			}
+		}
+
+		TreeSet<String> sortedOps = new TreeSet<>();
+		nodes.forEach(n -> sortedOps.add(n.getOp()));
+		String[] ops = sortedOps.toArray(new String[0]);
+		Map<String, Integer> opIds = new HashMap<>();
+		for (int i = 0; i < ops.length; i++) {
+			opIds.put(ops[i], i);
+		}
+		BitSet[] successors = new BitSet[nodes.size()];
+		for (int i = 0; i < nodes.size(); i++) {
+			successors[i] = new BitSet(nodes.size());
+			for (Node s : nodes.get(i).getSuccessors()) {
+				successors[i].set(nodeIds.get(s));
+			}
+		}
+
+		// Subset construction
+		BitSet initial = new BitSet(nodes.size());
+		fsm.getStart().forEach(n -> initial.set(nodeIds.get(n)));
+		Map<BitSet, Integer> subsetIds = new HashMap<>();
+		List<BitSet> subsets = new ArrayList<>();
+		subsetIds.put(initial, 0);
+		subsets.add(initial);
+		List<int[]> subsetTransitions = new ArrayList<>();
+		for (int s = 0; s < subsets.size(); s++) {
+			BitSet subset = subsets.get(s);
+			BitSet[] targets = new BitSet[ops.length];
+			for (int n = subset.nextSetBit(0); n >= 0; n = subset.nextSetBit(n + 1)) {
+				int op = opIds.get(nodes.get(n).getOp());
+				if (targets[op] == null) {
+					targets[op] = new BitSet(nodes.size());
+				}
+				targets[op].or(successors[n]);
+			}
+			int[] row = new int[ops.length];
+			Arrays.fill(row, NONE);
+			for (int op = 0; op < ops.length; op++) {
+				if (targets[op] == null) {
+					continue;
+				}
+				// The empty set is a valid target: the op is allowed, but nothing may follow it
+				Integer targetId = subsetIds.get(targets[op]);
+				if (targetId == null) {
+					targetId = subsets.size();
+					subsetIds.put(targets[op], targetId);
+					subsets.add(targets[op]);
+				}
+				row[op] = targetId;
+			}
+			subsetTransitions.add(row);
+		}
+
+		int numSubsets = subsets.size();
+		boolean[] accepting = new boolean[numSubsets];
+		List<String>[] expected = new List[numSubsets];
+		for (int s = 0; s < numSubsets; s++) {
+			TreeSet<String> names = new TreeSet<>();
+			BitSet subset = subsets.get(s);
+			for (int n = subset.nextSetBit(0); n >= 0; n = subset.nextSetBit(n + 1)) {
+				accepting[s] |= nodes.get(n).isEnd();
+				names.add(nodes.get(n).getName());
+			}
+			expected[s] = List.copyOf(names);
+		}
+		int[] table = new int[numSubsets * ops.length];
+		for (int s = 0; s < numSubsets; s++) {
+			System.arraycopy(subsetTransitions.get(s), 0, table, s * ops.length, ops.length);
+		}
+		return minimize(ops, table, accepting, expected);
+	}
+
+	/**
+	 * Merges equivalent states by partition refinement (Moore's algorithm). States are initially partitioned by acceptance and expected nodes, so that merged
+	 * states report the same expected ops.
+	 */
+	@NonNull
+	private static DFA minimize(@NonNull String[] ops, @NonNull int[] table, @NonNull boolean[] accepting, @NonNull List<String>[] expected) {
+		int numStates = accepting.length;
+		int[] classes = new int[numStates];
+		Map<List<Object>, Integer> classIds = new HashMap<>();
+		for (int s = 0; s < numStates; s++) {
+			classes[s] = classIds.computeIfAbsent(List.of(accepting[s], expected[s]), k -> classIds.size());
+		}
+		int numClasses = classIds.size();
+		while (true) {
+			Map<List<Integer>, Integer> signatures = new HashMap<>();
+			int[] refined = new int[numStates];
+			for (int s = 0; s < numStates; s++) {
+				List<Integer> signature = new ArrayList<>(ops.length + 1);
+				signature.add(classes[s]);
+				for (int o = 0; o < ops.length; o++) {
+					int target = table[s * ops.length + o];
+					signature.add(target == NONE ? NONE : classes[target]);
+				}
+				refined[s] = signatures.computeIfAbsent(signature, k -> signatures.size());
+			}
+			classes = refined;
+			if (signatures.size() == numClasses) {
+				break;
+			}
+			numClasses = signatures.size();
+		}
+
+		// Number the classes reachable from the initial state in breadth-first order
+		int[] newIds = new int[numClasses];
+		Arrays.fill(newIds, NONE);
+		int[] representatives = new int[numClasses];
+		Deque<Integer> work = new ArrayDeque<>();
+		int numNew = 0;
+		newIds[classes[0]] = numNew++;
+		representatives[0] = 0;
+		work.add(0);
+		while (!work.isEmpty()) {
+			int s = work.poll();
+			for (int o = 0; o < ops.length; o++) {
+				int target = table[s * ops.length + o];
+				if (target != NONE && newIds[classes[target]] == NONE) {
+					representatives[numNew] = target;
+					newIds[classes[target]] = numNew++;
+					work.add(target);
+				}
+			}
+		}
+
+		int[] minTable = new int[numNew * ops.length];
+		boolean[] minAccepting = new boolean[numNew];
+		List<String>[] minExpected = new List[numNew];
+		for (int m = 0; m < numNew; m++) {
+			int s = representatives[m];
+			minAccepting[m] = accepting[s];
+			minExpected[m] = expected[s];
+			for (int o = 0; o < ops.length; o++) {
+				int target = table[s * ops.length + o];
+				minTable[m * ops.length + o] = target == NONE ? NONE : newIds[classes[target]];
+			}
+		}
+		return new DFA(ops, minTable, minAccepting, minExpected);
+	}
+
+	public int getInitialState() {
+		return 0;
+	}
+
+	public int getNumStates() {
+		return accepting.length;
+	}
+
+	public int getNumOps() {
+		return ops.length;
+	}
+
+	/**
+	 * Returns the ID of an op, or NONE if it does not occur in the expression.
+	 */
+	public int getOpId(@Nullable String op) {
+		Integer id = opIds.get(op);
+		return id != null ? id : NONE;
+	}
+
+	/**
+	 * Returns the state reached by calling an op in a state, or NONE if the op is not allowed in this state.
+	 */
+	public int next(int state, int opId) {
+		if (opId < 0) {
+			return NONE;
+		}
+		return transitions[state * ops.length + opId];
+	}
+
+	/**
+	 * Returns true if the order may end in this state.
+	 */
+	public boolean isAccepting(int state) {
+		return accepting[state];
+	}
+
+	/**
+	 * Returns the sorted names of the ops (prefixed with their base) which may follow in this state. If the state is accepting, they contain END.
+	 */
+	@NonNull
+	public List<String> getExpected(int state) {
+		return expected[state];
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int s = 0; s < getNumStates(); s++) {
+			sb.append(s).append(accepting[s] ? " (E)" : "").append(' ').append(expected[s]).append('\n');
+			for (int o = 0; o < ops.length; o++) {
+				int target = next(s, o);
+				if (target != NONE) {
+					sb.append("\t-> ").append(ops[o]).append(" (").append(target).append(")\n");
+				}
+			}
+		}
+		return sb.toString();
+	}
+}
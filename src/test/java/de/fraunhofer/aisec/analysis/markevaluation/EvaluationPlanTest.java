@@ -0,0 +1,121 @@
+
+package de.fraunhofer.aisec.analysis.markevaluation;
+
+import de.fraunhofer.aisec.analysis.structures.AnalysisContext;
+import de.fraunhofer.aisec.analysis.structures.ConstantValue;
+import de.fraunhofer.aisec.analysis.structures.MarkContextHolder;
+import de.fraunhofer.aisec.analysis.structures.MarkIntermediateResult;
+import de.fraunhofer.aisec.analysis.structures.ServerConfiguration;
+import de.fraunhofer.aisec.analysis.structures.TypestateMode;
+import de.fraunhofer.aisec.crymlin.connectors.db.OverflowDatabase;
+import de.fraunhofer.aisec.crymlin.connectors.db.TraversalConnection;
+import de.fraunhofer.aisec.mark.XtextParser;
+import de.fraunhofer.aisec.mark.markDsl.Expression;
+import de.fraunhofer.aisec.mark.markDsl.MarkModel;
+import de.fraunhofer.aisec.markmodel.MRule;
+import de.fraunhofer.aisec.markmodel.Mark;
+import de.fraunhofer.aisec.markmodel.MarkModelLoader;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that evaluating a rule with its compiled plan, in which constant subexpressions are folded, yields the same results as evaluating it without a plan.
+ */
+class EvaluationPlanTest {
+
+	private static final int NUM_CONTEXTS = 2;
+
+	@Test
+	void testFoldingMatchesEvaluation() {
+		URL resource = EvaluationPlanTest.class.getClassLoader().getResource("mark/rules/ensure/folding/folding.mark");
+		assertNotNull(resource);
+		String markFile = new File(resource.getFile()).getAbsolutePath();
+
+		XtextParser parser = new XtextParser();
+		parser.addMarkFile(new File(markFile));
+		HashMap<String, MarkModel> markModels = parser.parse();
+		assertFalse(markModels.isEmpty());
+
+		Mark mark = new MarkModelLoader().load(markModels, markFile);
+		ServerConfiguration config = ServerConfiguration.builder().disableOverflow(true).markFiles(markFile).typestateAnalysis(TypestateMode.NFA).build();
+		AnalysisContext ctx = new AnalysisContext(new File(markFile), new OverflowDatabase<>(config));
+		ctx.getDatabase().connect();
+
+		Map<String, String> results = new TreeMap<>();
+		try (TraversalConnection t = new TraversalConnection(ctx.getDatabase())) {
+			for (MRule rule : mark.getRules()) {
+				EvaluationPlan plan = rule.getPlan();
+				assertNotNull(plan);
+				Expression ensureExpr = rule.getStatement().getEnsure().getExp();
+
+				// folded nodes skip the evaluation of their operands
+				if (rule.getName().startsWith("Folded_")) {
+					assertNotNull(plan.get(ensureExpr).folded, rule.getName());
+				} else {
+					assertNull(plan.get(ensureExpr).folded, rule.getName());
+				}
+
+				String withPlan = evaluate(mark, rule, ensureExpr, ctx, config, t);
+				rule.setPlan(EvaluationPlan.empty());
+				String withoutPlan = evaluate(mark, rule, ensureExpr, ctx, config, t);
+				rule.setPlan(plan);
+
+				assertEquals(withoutPlan, withPlan, rule.getName());
+				results.put(rule.getName(), withPlan);
+			}
+		}
+
+		results.forEach((name, result) -> {
+			if (name.endsWith("true")) {
+				assertEquals("true", result, name);
+			} else if (name.endsWith("false")) {
+				assertEquals("false", result, name);
+			} else if (name.endsWith("fail")) {
+				assertEquals("error", result, name);
+			} else {
+				assertEquals(ArithmeticException.class.getSimpleName(), result, name);
+			}
+		});
+	}
+
+	/**
+	 * Evaluates the expression in several contexts and returns its value, "error" or the name of the exception thrown by the evaluation.
+	 */
+	private static String evaluate(Mark mark, MRule rule, Expression expr, AnalysisContext ctx, ServerConfiguration config, TraversalConnection t) {
+		MarkContextHolder markContextHolder = new MarkContextHolder();
+		for (int i = 0; i < NUM_CONTEXTS; i++) {
+			markContextHolder.getAllContexts().put(i, null); // dummies, so that we get one result back for each context
+		}
+
+		Map<Integer, MarkIntermediateResult> result;
+		try {
+			result = new ExpressionEvaluator(mark, rule, ctx, config, t.getCrymlinTraversal(), markContextHolder).evaluateExpression(expr);
+		}
+		catch (RuntimeException e) {
+			return e.getClass().getSimpleName();
+		}
+
+		assertEquals(NUM_CONTEXTS, result.size());
+		String value = null;
+		for (MarkIntermediateResult inner : result.values()) {
+			assertTrue(inner instanceof ConstantValue);
+			String v = ConstantValue.isError(inner) ? "error" : String.valueOf(((ConstantValue) inner).getValue());
+			if (value != null) {
+				assertEquals(value, v, "contexts differ");
+			}
+			value = v;
+		}
+		return value;
+	}
+}
@@ -0,0 +1,132 @@
+
+package de.fraunhofer.aisec.analysis.markevaluation;
+
+import com.google.common.collect.Lists;
+import de.fraunhofer.aisec.analysis.structures.CPGInstanceContext;
+import de.fraunhofer.aisec.analysis.structures.MarkContextHolder;
+import de.fraunhofer.aisec.analysis.structures.Pair;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the lazy enumeration of instance combinations yields the same combinations as {@code Lists.cartesianProduct}, minus those ruled out by
+ * constraints.
+ */
+class InstanceCombinationsTest {
+
+	private final TinkerGraph graph = TinkerGraph.open();
+
+	@Test
+	void testEmptyEntityList() {
+		List<List<Pair<String, Vertex>>> entities = List.of();
+		List<List<Vertex>> combinations = enumerate(new InstanceCombinations(entities, List.of()), List.of());
+
+		// the product of no entities is a single empty combination
+		assertEquals(List.of(List.of()), combinations);
+		assertEquals(Lists.cartesianProduct(entities).size(), combinations.size());
+	}
+
+	@Test
+	void testEntityWithoutInstances() {
+		List<List<Pair<String, Vertex>>> entities = List.of(instances("a", 2), List.of(), instances("c", 3));
+
+		assertFalse(new InstanceCombinations(entities, List.of()).hasNext());
+		assertTrue(Lists.cartesianProduct(entities).isEmpty());
+	}
+
+	@Test
+	void testCartesianProduct() {
+		List<List<Pair<String, Vertex>>> entities = List.of(instances("a", 2), instances("b", 3), instances("c", 4));
+
+		assertEquals(product(entities), enumerate(new InstanceCombinations(entities, List.of()), List.of("a", "b", "c")));
+	}
+
+	@Test
+	void testConstraintPrunes() {
+		List<List<Pair<String, Vertex>>> entities = List.of(instances("a", 3), instances("b", 2), instances("c", 3));
+
+		// only combine instances of a and c with the same index
+		InstanceCombinations.Constraint sameIndex = new InstanceCombinations.Constraint(2, 0, (c, a) -> index(c) == index(a));
+		List<List<Vertex>> expected = product(entities).stream()
+				.filter(combination -> index(combination.get(0)) == index(combination.get(2)))
+				.collect(Collectors.toList());
+
+		List<List<Vertex>> combinations = enumerate(new InstanceCombinations(entities, List.of(sameIndex)), List.of("a", "b", "c"));
+		assertEquals(expected, combinations);
+		assertEquals(3 * 2, combinations.size());
+	}
+
+	@Test
+	void testConstraintPrunesAll() {
+		List<List<Pair<String, Vertex>>> entities = List.of(instances("a", 2), instances("b", 2));
+
+		assertFalse(new InstanceCombinations(entities, List.of(new InstanceCombinations.Constraint(0, 1, (a, b) -> false))).hasNext());
+	}
+
+	@Test
+	void testBatches() {
+		int size = Evaluator.MAX_CONTEXTS_PER_BATCH;
+		for (int numCombinations : List.of(size - 1, size, 2 * size, 2 * size + 1)) {
+			List<List<Pair<String, Vertex>>> entities = List.of(instances("a", 1), instances("b", numCombinations));
+			InstanceCombinations combinations = new InstanceCombinations(entities, List.of());
+
+			List<Integer> batchSizes = new ArrayList<>();
+			List<List<Vertex>> all = new ArrayList<>();
+			while (combinations.hasNext()) {
+				MarkContextHolder holder = Evaluator.createMarkContext(combinations, size);
+				batchSizes.add(holder.getAllContexts().size());
+				for (int id = 0; id < holder.getAllContexts().size(); id++) {
+					all.add(vertices(holder.getContext(id).getInstanceContext(), List.of("a", "b")));
+				}
+			}
+
+			List<Integer> expectedBatchSizes = new ArrayList<>();
+			for (int remaining = numCombinations; remaining > 0; remaining -= size) {
+				expectedBatchSizes.add(Math.min(remaining, size));
+			}
+			assertEquals(expectedBatchSizes, batchSizes, numCombinations + " combinations");
+			assertEquals(product(entities), all);
+		}
+	}
+
+	private List<Pair<String, Vertex>> instances(String name, int count) {
+		List<Pair<String, Vertex>> instances = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			instances.add(new Pair<>(name, graph.addVertex("index", i)));
+		}
+		return instances;
+	}
+
+	private static int index(Vertex v) {
+		return v.value("index");
+	}
+
+	private static List<List<Vertex>> product(List<List<Pair<String, Vertex>>> entities) {
+		return Lists.cartesianProduct(entities)
+				.stream()
+				.map(combination -> combination.stream().map(Pair::getValue1).collect(Collectors.toList()))
+				.collect(Collectors.toList());
+	}
+
+	private static List<List<Vertex>> enumerate(InstanceCombinations combinations, List<String> names) {
+		List<List<Vertex>> result = new ArrayList<>();
+		while (combinations.hasNext()) {
+			result.add(vertices(combinations.next(), names));
+		}
+		return result;
+	}
+
+	private static List<Vertex> vertices(CPGInstanceContext instanceContext, List<String> names) {
+		assertEquals(names.size(), instanceContext.getMarkInstances().size());
+		return names.stream().map(instanceContext::getVertex).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,174 @@
+
+package de.fraunhofer.aisec.analysis.markevaluation;
+
+import de.fraunhofer.aisec.analysis.structures.AnalysisContext;
+import de.fraunhofer.aisec.analysis.structures.ConstantValue;
+import de.fraunhofer.aisec.analysis.structures.ListValue;
+import de.fraunhofer.aisec.analysis.structures.MarkContextHolder;
+import de.fraunhofer.aisec.analysis.structures.MarkIntermediateResult;
+import de.fraunhofer.aisec.analysis.structures.ServerConfiguration;
+import de.fraunhofer.aisec.analysis.structures.TypestateMode;
+import de.fraunhofer.aisec.crymlin.builtin.Builtin;
+import de.fraunhofer.aisec.crymlin.builtin.BuiltinRegistry;
+import de.fraunhofer.aisec.crymlin.builtin.Length;
+import de.fraunhofer.aisec.crymlin.builtin.Split;
+import de.fraunhofer.aisec.crymlin.builtin.StartsWith;
+import de.fraunhofer.aisec.crymlin.connectors.db.OverflowDatabase;
+import de.fraunhofer.aisec.crymlin.connectors.db.TraversalConnection;
+import de.fraunhofer.aisec.mark.XtextParser;
+import de.fraunhofer.aisec.mark.markDsl.MarkModel;
+import de.fraunhofer.aisec.markmodel.MRule;
+import de.fraunhofer.aisec.markmodel.Mark;
+import de.fraunhofer.aisec.markmodel.MarkModelLoader;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that results of pure builtins are reused for repeated calls with the same argument values, and that impure builtins are executed for every call.
+ */
+class PureBuiltinMemoTest {
+
+	private static final int NUM_CONTEXTS = 3;
+
+	/**
+	 * Counts the executions of the builtin it delegates to.
+	 */
+	private static class CountingBuiltin implements Builtin {
+		private final Builtin delegate;
+		private final String name;
+		private final boolean pure;
+		private int executions = 0;
+
+		CountingBuiltin(Builtin delegate, String name, boolean pure) {
+			this.delegate = delegate;
+			this.name = name;
+			this.pure = pure;
+		}
+
+		@NonNull
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public boolean isPure() {
+			return pure;
+		}
+
+		@Override
+		public ConstantValue execute(@NonNull AnalysisContext ctx, @NonNull ListValue argResultList, @NonNull Integer contextID,
+				@NonNull MarkContextHolder markContextHolder, @NonNull ExpressionEvaluator expressionEvaluator) {
+			executions++;
+			return delegate.execute(ctx, argResultList, contextID, markContextHolder, expressionEvaluator);
+		}
+	}
+
+	@Test
+	void testPureFlags() {
+		assertTrue(new Split().isPure());
+		assertTrue(new StartsWith().isPure());
+		// depends on the CPG
+		assertFalse(new Length().isPure());
+	}
+
+	@Test
+	void testMemoization() {
+		CountingBuiltin split = new CountingBuiltin(new Split(), "_split", new Split().isPure());
+		CountingBuiltin startsWith = new CountingBuiltin(new StartsWith(), "_starts_with", new StartsWith().isPure());
+		CountingBuiltin impureSplit = new CountingBuiltin(new Split(), "_impure_split", false);
+		CountingBuiltin length = new CountingBuiltin(new Length(), "_length", new Length().isPure());
+		List<CountingBuiltin> counting = List.of(split, startsWith, impureSplit, length);
+
+		BuiltinRegistry registry = BuiltinRegistry.getInstance();
+		List<Builtin> replaced = new ArrayList<>();
+		for (CountingBuiltin builtin : counting) {
+			Builtin previous = registry.getBuiltin(builtin.getName());
+			if (previous != null) {
+				replaced.add(previous);
+			}
+			registry.register(builtin);
+		}
+
+		try {
+			Map<String, Object> results = evaluateRules("mark/rules/ensure/memo/memo.mark");
+
+			// pure builtins are executed once per distinct argument values, for all contexts and all calls
+			assertEquals(true, results.get("Split_twice"));
+			assertEquals(1, split.executions);
+			assertEquals(true, results.get("Starts_with_twice"));
+			assertEquals(1, startsWith.executions);
+
+			// the same function, when not pure, is executed for every call in every context
+			assertEquals(true, results.get("Impure_split_twice"));
+			assertEquals(2 * NUM_CONTEXTS, impureSplit.executions);
+			assertEquals(2 * NUM_CONTEXTS, length.executions);
+		}
+		finally {
+			for (CountingBuiltin builtin : counting) {
+				registry.unregister(builtin);
+			}
+			for (Builtin builtin : replaced) {
+				registry.register(builtin);
+			}
+		}
+	}
+
+	/**
+	 * Evaluates the "ensure" expression of each rule with a single evaluator per rule, and returns the value of each rule, if it is the same in all contexts.
+	 */
+	private static Map<String, Object> evaluateRules(String markFileName) {
+		URL resource = PureBuiltinMemoTest.class.getClassLoader().getResource(markFileName);
+		assertNotNull(resource);
+		String markFile = new File(resource.getFile()).getAbsolutePath();
+
+		XtextParser parser = new XtextParser();
+		parser.addMarkFile(new File(markFile));
+		HashMap<String, MarkModel> markModels = parser.parse();
+		assertFalse(markModels.isEmpty());
+
+		// the builtins are resolved when the rules are compiled
+		Mark mark = new MarkModelLoader().load(markModels, markFile);
+		ServerConfiguration config = ServerConfiguration.builder().disableOverflow(true).markFiles(markFile).typestateAnalysis(TypestateMode.NFA).build();
+		AnalysisContext ctx = new AnalysisContext(new File(markFile), new OverflowDatabase<>(config));
+		ctx.getDatabase().connect();
+
+		Map<String, Object> results = new HashMap<>();
+		try (TraversalConnection t = new TraversalConnection(ctx.getDatabase())) {
+			for (MRule rule : mark.getRules()) {
+				MarkContextHolder markContextHolder = new MarkContextHolder();
+				for (int i = 0; i < NUM_CONTEXTS; i++) {
+					markContextHolder.getAllContexts().put(i, null); // dummies, so that we get one result back for each context
+				}
+
+				ExpressionEvaluator ee = new ExpressionEvaluator(mark, rule, ctx, config, t.getCrymlinTraversal(), markContextHolder);
+				Map<Integer, MarkIntermediateResult> result = ee.evaluateExpression(rule.getStatement().getEnsure().getExp());
+				assertEquals(NUM_CONTEXTS, result.size());
+
+				Object value = null;
+				for (MarkIntermediateResult inner : result.values()) {
+					assertTrue(inner instanceof ConstantValue);
+					Object v = ConstantValue.isError(inner) ? "error" : ((ConstantValue) inner).getValue();
+					if (value != null) {
+						assertEquals(value, v, rule.getName());
+					}
+					value = v;
+				}
+				results.put(rule.getName(), value);
+			}
+		}
+		return results;
+	}
+}
@@ -30,6 +30,12 @@ public abstract class AbstractMarkTest {
 	protected AnalysisServer server;
 	protected AnalysisContext ctx;
 	protected TypestateMode tsMode = TypestateMode.NFA;
+	protected int ruleParallelism = 1;
+	protected int dfgSliceBudget = DfgSlicer.DEFAULT_BUDGET;
+	protected int nodeMaterializationDepth = -1;
+	protected int nodeCacheSize = 0;
+	protected boolean lazyCode = false;
+	protected File snapshotDirectory = null;
 
 	Set<Finding> performTest(String sourceFileName) throws Exception {
 		return performTest(sourceFileName, null);
@@ -87,6 +93,12 @@ public abstract class AbstractMarkTest {
 							.typestateAnalysis(tsMode)
 							.markFiles(markDirPath)
 							.disableOverflow(true)
+							.ruleParallelism(ruleParallelism)
+							.dfgSliceBudget(dfgSliceBudget)
+							.nodeMaterializationDepth(nodeMaterializationDepth)
+							.nodeCacheSize(nodeCacheSize)
+							.lazyCode(lazyCode)
+							.snapshotDirectory(snapshotDirectory)
 							.build())
 				.build();
 		server.start();
@@ -7,9 +7,14 @@ import de.fraunhofer.aisec.analysis.structures.ServerConfiguration;
 import de.fraunhofer.aisec.cpg.TranslationConfiguration;
 import de.fraunhofer.aisec.cpg.TranslationManager;
 import de.fraunhofer.aisec.crymlin.connectors.db.OverflowDatabase;
+import de.fraunhofer.aisec.crymlin.dsl.CrymlinTraversalSource;
+import de.fraunhofer.aisec.mark.markDsl.FunctionDeclaration;
+import de.fraunhofer.aisec.mark.markDsl.OpStatement;
 import de.fraunhofer.aisec.markmodel.MEntity;
+import de.fraunhofer.aisec.markmodel.MOp;
 import de.fraunhofer.aisec.markmodel.MRule;
 import de.fraunhofer.aisec.markmodel.Mark;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -19,9 +24,12 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assumptions.assumeFalse;
@@ -108,6 +116,40 @@ public class AnalysisServerBotanTest {
 		}
 	}
 
+	/**
+	 * Matching the op statements of all entities in a single pass must assign the same vertices to each op statement as looking it up on its own.
+	 */
+	@Test
+	public void opStatementMatchingTest() {
+		AnalysisContext ctx = (AnalysisContext) AnalysisServerBotanTest.result;
+		assertNotNull(ctx);
+		CrymlinTraversalSource crymlin = ctx.getDatabase().getGraph().traversal(CrymlinTraversalSource.class);
+
+		List<FunctionDeclaration> calls = new ArrayList<>();
+		for (MEntity ent : server.getMarkModel().getEntities()) {
+			for (MOp op : ent.getOps()) {
+				for (OpStatement opStmt : op.getStatements()) {
+					calls.add(opStmt.getCall());
+				}
+			}
+		}
+		Map<FunctionDeclaration, Set<Vertex>> verticesByCall = CrymlinQueryWrapper.getVerticesForFunctionDeclarations(ctx.getDatabase(), calls, crymlin);
+		assertEquals(calls.size(), verticesByCall.size());
+
+		int numMatches = 0;
+		for (FunctionDeclaration call : calls) {
+			Set<Object> expected = CrymlinQueryWrapper.getVerticesForFunctionDeclaration(ctx.getDatabase(), call, crymlin)
+					.stream()
+					.map(Vertex::id)
+					.collect(Collectors.toSet());
+			Set<Object> actual = verticesByCall.get(call).stream().map(Vertex::id).collect(Collectors.toSet());
+			assertEquals(expected, actual, call.getName() + "(" + String.join(", ", MOp.paramsToString(call.getParams())) + ")");
+			numMatches += expected.size();
+		}
+		// the example calls Botan, so some op statements must match
+		assertTrue(numMatches > 0);
+	}
+
 	/**
 	 * Helper method for initializing an Analysis Run.
 	 *
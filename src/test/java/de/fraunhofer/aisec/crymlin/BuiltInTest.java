@@ -8,12 +8,17 @@ import de.fraunhofer.aisec.analysis.structures.ListValue;
 import de.fraunhofer.aisec.crymlin.builtin.BuiltinHelper;
 import de.fraunhofer.aisec.crymlin.builtin.InvalidArgumentException;
 import de.fraunhofer.aisec.crymlin.connectors.db.OverflowDatabase;
+import de.fraunhofer.aisec.crymlin.dsl.CrymlinTraversalSource;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
 import org.apache.tinkerpop.gremlin.structure.util.detached.DetachedVertex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
 import java.util.Set;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.junit.jupiter.api.Assumptions.assumeFalse;
 
@@ -58,6 +63,42 @@ public class BuiltInTest extends AbstractMarkTest {
 			"line [45, 46]: Rule ControlFlow verified");
 	}
 
+	@Test
+	public void eog_reachability_index() throws Exception {
+		performTest("mark_cpp/simple_eog_connection.cpp", "mark_cpp/eog_connection.mark");
+
+		CrymlinTraversalSource crymlin = ctx.getDatabase().getGraph().traversal(CrymlinTraversalSource.class);
+		List<Vertex> calls = crymlin.calls().toList();
+		assertFalse(calls.isEmpty());
+
+		// the index must give the same answers as a search in the graph
+		for (Vertex source : calls) {
+			for (Vertex sink : calls) {
+				assertEquals(CrymlinQueryWrapper.eogConnection(source, sink, true), CrymlinQueryWrapper.eogConnection(ctx, crymlin, source, sink, true),
+					source.property("code").orElse("") + " -> " + sink.property("code").orElse(""));
+			}
+		}
+	}
+
+	@Test
+	public void receivesValueFromJava() throws Exception {
+		Set<Finding> findings = performTest("mark_java/receives_value_from.java", "mark_java/receives_value_from.mark");
+
+		// a complete slice without a flow is a violation, not an error
+		expected(findings,
+			"line [12, 14]: Rule ReceivesValue verified",
+			"line [18, 20]: Rule ReceivesValue violated");
+	}
+
+	@Test
+	public void receivesValueFromBudgetExceeded() throws Exception {
+		dfgSliceBudget = 1;
+		Set<Finding> findings = performTest("mark_java/receives_value_from.java", "mark_java/receives_value_from.mark");
+
+		// both slices are incomplete, so the rule cannot be evaluated in either function
+		expected(findings);
+	}
+
 	@Test
 	public void dimensionLengthJava() throws Exception {
 		Set<Finding> findings = performTest("mark_java/length.java", "mark_java/length.mark");
@@ -0,0 +1,100 @@
+
+package de.fraunhofer.aisec.crymlin;
+
+import com.google.common.collect.Iterators;
+import de.fraunhofer.aisec.analysis.server.AnalysisServer;
+import de.fraunhofer.aisec.analysis.structures.AnalysisContext;
+import de.fraunhofer.aisec.analysis.structures.ServerConfiguration;
+import de.fraunhofer.aisec.cpg.TranslationConfiguration;
+import de.fraunhofer.aisec.cpg.TranslationManager;
+import de.fraunhofer.aisec.cpg.graph.MethodDeclaration;
+import de.fraunhofer.aisec.cpg.graph.Node;
+import de.fraunhofer.aisec.cpg.graph.RecordDeclaration;
+import de.fraunhofer.aisec.crymlin.connectors.db.CpgDatabase;
+import de.fraunhofer.aisec.crymlin.connectors.db.OverflowDatabase;
+import org.apache.tinkerpop.gremlin.process.traversal.P;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.__;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for querying the in-memory CPG through <code>CpgDatabase</code>.
+ *
+ * <p>
+ * The graph is expected to have the same structure as the one persisted into OverflowDB (see {@link OGMTest}).
+ */
+class CpgDatabaseTest {
+
+	private static AnalysisContext result;
+
+	@BeforeAll
+	static void setup() throws ExecutionException, InterruptedException {
+		URL resource = CpgDatabaseTest.class.getClassLoader().getResource("unittests/order.java");
+		assertNotNull(resource);
+		File sourceFile = new File(resource.getFile());
+
+		TranslationConfiguration config = TranslationConfiguration.builder().sourceLocations(sourceFile).defaultPasses().debugParser(true).failOnError(true).build();
+
+		TranslationManager tm = TranslationManager.builder().config(config).build();
+		AnalysisServer server = AnalysisServer.builder()
+				.config(ServerConfiguration.builder().launchConsole(false).launchLsp(false).inMemoryCpg(true).build())
+				.build();
+		server.start();
+
+		result = server.analyze(tm).get();
+	}
+
+	@Test
+	void verticesAreNodes() {
+		var db = result.getDatabase();
+		assertTrue(db instanceof CpgDatabase);
+
+		Iterator<Vertex> vIt = db.getGraph().vertices();
+		int vertices = 0;
+		while (vIt.hasNext()) {
+			Vertex v = vIt.next();
+			Node n = db.vertexToNode(v);
+			assertNotNull(n);
+			assertEquals(v.id(), n.getId());
+			assertEquals(n.getClass().getSimpleName(), v.label());
+			assertSame(n, db.vertexToNode(db.getGraph().vertices(v.id()).next()));
+
+			long vEdgeCount = Iterators.size(v.edges(Direction.OUT));
+			long gEdgeCount = db.getGraph().traversal().V(v.id()).outE().count().next();
+			assertEquals(vEdgeCount, gEdgeCount);
+			vertices++;
+		}
+		assertEquals(db.getNumNodes(), vertices);
+	}
+
+	@Test
+	void countDeclarations() {
+		var g = result.getDatabase().getGraph().traversal();
+
+		assertEquals(2, g.V().hasLabel(RecordDeclaration.class.getSimpleName(), OverflowDatabase.getSubclasses(RecordDeclaration.class)).count().next());
+		assertEquals(16, g.V().hasLabel(MethodDeclaration.class.getSimpleName(), OverflowDatabase.getSubclasses(MethodDeclaration.class)).count().next());
+		assertEquals(1, g.V().hasLabel(MethodDeclaration.class.getSimpleName()).has("name", "ok").outE("EOG").count().next());
+	}
+
+	@Test
+	void getContainingFunction() {
+		var g = result.getDatabase().getGraph().traversal();
+
+		Vertex p2Start = g.V().has("code", "p2.start(iv);").next();
+		Vertex containingFunction = g.V(p2Start.id())
+				.until(__.hasLabel("MethodDeclaration"))
+				.repeat(
+					__.inE().has("sub-graph", new P<>(String::contains, "AST")).outV())
+				.next();
+		assertEquals("nok2", containingFunction.property("name").value());
+	}
+}
@@ -7,6 +7,7 @@ import de.fraunhofer.aisec.mark.markDsl.impl.MarkDslFactoryImpl;
 import de.fraunhofer.aisec.markmodel.MRule;
 import de.fraunhofer.aisec.markmodel.Mark;
 import de.fraunhofer.aisec.markmodel.MarkModelLoader;
+import de.fraunhofer.aisec.markmodel.fsm.DFA;
 import de.fraunhofer.aisec.markmodel.fsm.FSM;
 import de.fraunhofer.aisec.markmodel.fsm.Node;
 import org.junit.jupiter.api.BeforeAll;
@@ -15,6 +16,7 @@ import org.junit.jupiter.api.Test;
 import java.io.File;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -162,6 +164,53 @@ class FSMTest {
 			fsm.toString());
 	}
 
+	@Test
+	void testDfa() {
+		Optional<MRule> opt = mark.getRules().stream().filter(x -> x.getName().equals("UseOfBotan_CipherMode")).findFirst();
+		assertTrue(opt.isPresent());
+		assertNotNull(opt.get().getPlan());
+		DFA dfa = opt.get().getPlan().getDfa((OrderExpression) opt.get().getStatement().getEnsure().getExp());
+
+		// create, init, start, finish/process, finish, reset and the empty state after END
+		assertEquals(7, dfa.getNumStates());
+		assertEquals(List.of("cm.create"), dfa.getExpected(dfa.getInitialState()));
+		assertFalse(dfa.isAccepting(dfa.getInitialState()));
+
+		int state = dfa.getInitialState();
+		for (String op : List.of("create", "init", "start", "process", "process", "finish")) {
+			state = dfa.next(state, dfa.getOpId(op));
+			assertNotEquals(DFA.NONE, state, op);
+		}
+		assertTrue(dfa.isAccepting(state));
+		assertEquals(List.of("END", "cm.reset", "cm.start"), dfa.getExpected(state));
+
+		// process is not allowed after finish, unknown ops are never allowed
+		assertEquals(DFA.NONE, dfa.next(state, dfa.getOpId("process")));
+		assertEquals(DFA.NONE, dfa.getOpId("foo"));
+		assertEquals(DFA.NONE, dfa.next(state, dfa.getOpId("foo")));
+
+		// the second start continues the repetition from the same state as the first one
+		int started = dfa.next(dfa.next(dfa.next(dfa.getInitialState(), dfa.getOpId("create")), dfa.getOpId("init")), dfa.getOpId("start"));
+		assertEquals(started, dfa.next(state, dfa.getOpId("start")));
+		assertFalse(dfa.isAccepting(started));
+		assertEquals(List.of("cm.finish", "cm.process"), dfa.getExpected(started));
+	}
+
+	@Test
+	void testMinimizedDfa() {
+		Optional<MRule> opt = mark.getRules().stream().filter(x -> x.getName().equals("SimpleUseOfBotan_CipherMode")).findFirst();
+		assertTrue(opt.isPresent());
+		DFA dfa = DFA.of(((OrderExpression) opt.get().getStatement().getEnsure().getExp()).getExp());
+
+		// start()* loops in the state which also expects finish
+		assertEquals(5, dfa.getNumStates());
+		int init = dfa.next(dfa.next(dfa.getInitialState(), dfa.getOpId("create")), dfa.getOpId("init"));
+		assertEquals(init, dfa.next(init, dfa.getOpId("start")));
+		int finished = dfa.next(init, dfa.getOpId("finish"));
+		assertTrue(dfa.isAccepting(finished));
+		assertFalse(dfa.isAccepting(init));
+	}
+
 	@Test
 	void testRegexToFsm() {
 		FSM fsm = new FSM();
@@ -6,12 +6,15 @@ import de.fraunhofer.aisec.analysis.structures.AnalysisContext;
 import de.fraunhofer.aisec.analysis.structures.ServerConfiguration;
 import de.fraunhofer.aisec.cpg.TranslationConfiguration;
 import de.fraunhofer.aisec.cpg.TranslationManager;
+import de.fraunhofer.aisec.cpg.graph.CallExpression;
 import de.fraunhofer.aisec.cpg.graph.FunctionDeclaration;
 import de.fraunhofer.aisec.cpg.graph.MethodDeclaration;
 import de.fraunhofer.aisec.cpg.graph.Node;
 import de.fraunhofer.aisec.crymlin.connectors.db.OverflowDatabase;
+import de.fraunhofer.aisec.crymlin.connectors.db.PropertyIndexStrategy;
 import de.fraunhofer.aisec.crymlin.connectors.db.TraversalConnection;
 import de.fraunhofer.aisec.crymlin.dsl.CrymlinTraversalSource;
+import org.apache.tinkerpop.gremlin.process.traversal.TextP;
 import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
 import org.apache.tinkerpop.gremlin.process.traversal.step.util.BulkSet;
 import org.apache.tinkerpop.gremlin.structure.T;
@@ -110,6 +113,62 @@ class GraphTest {
 		assertFalse(functions.isEmpty());
 	}
 
+	/**
+	 * Root steps of the Crymlin DSL start from the label index of <code>OverflowDatabase</code>. They must return the same vertices as a scan over all vertices.
+	 */
+	@Test
+	void testLabelIndex() {
+		Set<Object> scanned = result.getDatabase()
+				.getGraph()
+				.traversal()
+				.V()
+				.hasLabel(
+					FunctionDeclaration.class.getSimpleName(),
+					OverflowDatabase.getSubclasses(FunctionDeclaration.class))
+				.id()
+				.toSet();
+
+		Object[] indexed = OverflowDatabase.getVertexIdsByLabel(result.getDatabase().getGraph(), FunctionDeclaration.class);
+		assertNotNull(indexed);
+		assertEquals(scanned, Set.of(indexed));
+
+		try (TraversalConnection traversalConnection = new TraversalConnection(result.getDatabase())) {
+			CrymlinTraversalSource crymlin = traversalConnection.getCrymlinTraversal();
+			assertEquals(scanned, crymlin.functions().id().toSet());
+		}
+	}
+
+	/**
+	 * Queries answered by the property indices of <code>OverflowDatabase</code> must return the same vertices as without the indices.
+	 */
+	@Test
+	void testPropertyIndex() {
+		GraphTraversalSource g = result.getDatabase().getGraph().traversal();
+		GraphTraversalSource unindexed = g.withoutStrategies(PropertyIndexStrategy.class);
+
+		Set<Object> fqns = unindexed.V()
+				.hasLabel(
+					CallExpression.class.getSimpleName(),
+					OverflowDatabase.getSubclasses(CallExpression.class))
+				.values("fqn")
+				.toSet();
+		assertFalse(fqns.isEmpty());
+
+		for (Object fqn : fqns) {
+			String exact = fqn.toString();
+			assertEquals(
+				unindexed.V().has("fqn", TextP.eq(exact)).id().toSet(),
+				g.V().has("fqn", TextP.eq(exact)).id().toSet());
+
+			String substring = exact.substring(exact.length() / 2);
+			assertEquals(
+				unindexed.V().has("fqn", TextP.containing(substring)).id().toSet(),
+				g.V().has("fqn", TextP.containing(substring)).id().toSet());
+		}
+
+		assertTrue(g.V().has("fqn", TextP.containing("does.not.exist")).toList().isEmpty());
+	}
+
 	@Test
 	void crymlinDslTest() {
 		try (TraversalConnection traversalConnection = new TraversalConnection(result.getDatabase())) {
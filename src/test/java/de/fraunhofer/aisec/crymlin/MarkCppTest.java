@@ -8,7 +8,9 @@ import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
 import java.util.Set;
+import java.util.stream.Collectors;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assumptions.assumeFalse;
 
@@ -41,6 +43,23 @@ public class MarkCppTest extends AbstractMarkTest {
 			"line [17, 18]: Rule Global violated");
 	}
 
+	@Test
+	public void rulesInParallel() throws Exception {
+		Set<String> sequential = performTest("unittests/regression88.cpp", "../../src/dist/mark/botan")
+				.stream()
+				.map(Finding::toString)
+				.collect(Collectors.toSet());
+
+		ruleParallelism = 4;
+		Set<String> parallel = performTest("unittests/regression88.cpp", "../../src/dist/mark/botan")
+				.stream()
+				.map(Finding::toString)
+				.collect(Collectors.toSet());
+
+		assertFalse(sequential.isEmpty());
+		assertEquals(sequential, parallel);
+	}
+
 	@Test
 	@Disabled // requires interprocedural context-insensitive dataflow analysis for constant resolution.
 	public void _01_assign() throws Exception {
@@ -6,28 +6,45 @@ import com.google.common.collect.Lists;
 import de.fraunhofer.aisec.analysis.server.AnalysisServer;
 import de.fraunhofer.aisec.analysis.structures.AnalysisContext;
 import de.fraunhofer.aisec.analysis.structures.ServerConfiguration;
+import de.fraunhofer.aisec.analysis.utils.Utils;
 import de.fraunhofer.aisec.cpg.TranslationConfiguration;
 import de.fraunhofer.aisec.cpg.TranslationManager;
+import de.fraunhofer.aisec.cpg.TranslationResult;
 import de.fraunhofer.aisec.cpg.graph.*;
 import de.fraunhofer.aisec.cpg.sarif.PhysicalLocation;
+import de.fraunhofer.aisec.crymlin.connectors.db.ClassHierarchy;
+import de.fraunhofer.aisec.crymlin.connectors.db.GraphSnapshot;
 import de.fraunhofer.aisec.crymlin.connectors.db.OverflowDatabase;
+import de.fraunhofer.aisec.crymlin.connectors.db.SourceCode;
 import org.apache.tinkerpop.gremlin.process.traversal.P;
+import org.apache.tinkerpop.gremlin.process.traversal.TextP;
 import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
 import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.__;
 import org.apache.tinkerpop.gremlin.structure.Direction;
 import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Element;
 import org.apache.tinkerpop.gremlin.structure.Graph;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -79,7 +96,7 @@ public class OGMTest {
 			// ... which should be the same as the one of the converted Node object.
 			assertEquals(v.id(), n.getId());
 
-			// Vertices will have a "labels" property
+			// Vertices are labeled with the simple name of their class only, superclasses are kept in the label index of the database
 			if (v.label() != null) {
 				String vLabel = v.label();
 				assertNotNull(vLabel, "Null label");
@@ -131,6 +148,41 @@ public class OGMTest {
 		assertEquals(vertices, verticesWithLabel, "Only " + verticesWithLabel + " of " + vertices + " vertices have a type label");
 	}
 
+	@Test
+	void classHierarchy() {
+		var db = result.getDatabase();
+
+		Iterator<Vertex> vIt = db.getGraph().vertices();
+		while (vIt.hasNext()) {
+			Vertex v = vIt.next();
+			Node n = db.vertexToNode(v);
+			assertNotNull(n);
+
+			// Vertices store the interned class of their node ...
+			int classId = v.<Integer> property(ClassHierarchy.CLASS_ID).value();
+			assertEquals(v.label(), ClassHierarchy.getLabel(classId));
+
+			// ... and label checks agree with the Java class hierarchy
+			assertTrue(Utils.hasLabel(v, Node.class));
+			assertEquals(n instanceof Expression, Utils.hasLabel(v, Expression.class));
+			assertEquals(n instanceof CallExpression, Utils.hasLabel(v, CallExpression.class));
+			assertEquals(n instanceof Declaration, Utils.hasLabel(v, Declaration.class));
+		}
+	}
+
+	@Test
+	void pooledStrings() {
+		var db = result.getDatabase();
+
+		// Equal file names of vertices are the same instance
+		Map<String, String> canonical = new HashMap<>();
+		db.getGraph().vertices().forEachRemaining(v -> v.<String> property("file").ifPresent(f -> assertSame(canonical.computeIfAbsent(f, k -> f), f)));
+		assertFalse(canonical.isEmpty());
+
+		assertTrue(db instanceof OverflowDatabase);
+		assertTrue(((OverflowDatabase<Node>) db).getStringPool().getLookups() > 0);
+	}
+
 	/** Test proper edges around an <code>IfStatement</code> */
 	@Test
 	void testIfGraph() {
@@ -283,6 +335,273 @@ public class OGMTest {
 		assertEquals(1, restored.size(), "Expected exactly one TranslationUnit");
 	}
 
+	@Test
+	void shallowMaterialization() throws Exception {
+		URL resource = OGMTest.class.getClassLoader().getResource("unittests/order.java");
+		assertNotNull(resource);
+		TranslationConfiguration config = TranslationConfiguration.builder().sourceLocations(new File(resource.getFile())).defaultPasses().build();
+		TranslationResult translationResult = TranslationManager.builder().config(config).build().analyze().get();
+
+		OverflowDatabase<Node> db = new OverflowDatabase<>(
+			ServerConfiguration.builder().disableOverflow(true).nodeMaterializationDepth(1).nodeCacheSize(100).build());
+		db.connect();
+		try {
+			db.saveAll(translationResult.getTranslationUnits());
+
+			MethodDeclaration method = null;
+			Iterator<Vertex> records = db.getGraph().traversal().V().hasLabel(RecordDeclaration.class.getSimpleName());
+			while (records.hasNext() && method == null) {
+				RecordDeclaration record = (RecordDeclaration) db.vertexToNode(records.next());
+				assertNotNull(record);
+				method = record.getMethods().stream().filter(m -> m.getName().equals("nok2")).findFirst().orElse(null);
+			}
+			assertNotNull(method);
+
+			// Methods are one relationship away from their record and thus created without their body ...
+			assertNull(method.getBody());
+
+			// ... and stay like that. Requesting the method itself yields another node with its body
+			Vertex methodVertex = db.getGraph().traversal().V(method.getId()).next();
+			MethodDeclaration completeMethod = (MethodDeclaration) db.vertexToNode(methodVertex);
+			assertNotNull(completeMethod);
+			assertNotSame(method, completeMethod);
+			assertNotNull(completeMethod.getBody());
+			assertNull(method.getBody());
+
+			// The complete node is cached
+			assertSame(completeMethod, db.vertexToNode(methodVertex));
+			assertTrue(db.getMaxNumCachedNodes() <= 100);
+		}
+		finally {
+			db.close();
+		}
+	}
+
+	@Test
+	void lazyCode() throws Exception {
+		URL resource = OGMTest.class.getClassLoader().getResource("unittests/order.java");
+		assertNotNull(resource);
+		TranslationConfiguration config = TranslationConfiguration.builder()
+				.sourceLocations(new File(resource.getFile()))
+				.codeInNodes(true)
+				.defaultPasses()
+				.build();
+		TranslationResult translationResult = TranslationManager.builder().config(config).build().analyze().get();
+
+		OverflowDatabase<Node> eager = new OverflowDatabase<>(ServerConfiguration.builder().disableOverflow(true).build());
+		OverflowDatabase<Node> lazy = new OverflowDatabase<>(ServerConfiguration.builder().disableOverflow(true).lazyCode(true).build());
+		eager.connect();
+		lazy.connect();
+		try {
+			eager.saveAll(translationResult.getTranslationUnits());
+			lazy.saveAll(translationResult.getTranslationUnits());
+
+			// Most vertices read their code from the source file ...
+			long inSource = lazy.getGraph().traversal().V().has(SourceCode.CODE_IN_SOURCE).count().next();
+			assertTrue(inSource > 0);
+
+			// ... but the code of all vertices is the same as the one stored by the frontend
+			Map<String, Long> eagerCodes = countCodes(eager);
+			assertFalse(eagerCodes.isEmpty());
+			assertEquals(eagerCodes, countCodes(lazy));
+
+			// Queries on code have the same results
+			for (String code : List.of("p2.start(iv);", "p2.start(iv)", "iv")) {
+				assertEquals(
+					eager.getGraph().traversal().V().has("code", code).values("name").toList(),
+					lazy.getGraph().traversal().V().has("code", code).values("name").toList());
+			}
+			assertEquals(
+				eager.getGraph().traversal().V().has("code", TextP.containing("start")).count().next(),
+				lazy.getGraph().traversal().V().has("code", TextP.containing("start")).count().next());
+
+			// The code is also set when the vertex is converted back into a node
+			Vertex call = lazy.getGraph().traversal().V().has(SourceCode.CODE_IN_SOURCE).hasLabel(CallExpression.class.getSimpleName()).next();
+			Node node = lazy.vertexToNode(call);
+			assertNotNull(node);
+			assertNotNull(node.getCode());
+			assertEquals(call.property("code").value(), node.getCode());
+		}
+		finally {
+			eager.close();
+			lazy.close();
+		}
+	}
+
+	/**
+	 * Counts the vertices of a database by their code.
+	 */
+	private static Map<String, Long> countCodes(OverflowDatabase<Node> db) {
+		Map<String, Long> result = new TreeMap<>();
+		for (Iterator<Vertex> it = db.getGraph().vertices(); it.hasNext();) {
+			Vertex v = it.next();
+			String code = v.<String> property("code").orElse(null);
+			result.merge(code != null ? code : "<none>", 1L, Long::sum);
+		}
+		return result;
+	}
+
+	@Test
+	void snapshot(@TempDir Path snapshotDirectory) throws Exception {
+		URL resource = OGMTest.class.getClassLoader().getResource("unittests/order.java");
+		assertNotNull(resource);
+		File source = new File(resource.getFile());
+		List<String> options = GraphSnapshot.getTranslationOptions(TranslationConfiguration.builder().sourceLocations(source).defaultPasses().build());
+		String key = GraphSnapshot.computeKey(List.of(source), options);
+		assertEquals(key, GraphSnapshot.computeKey(List.of(source), options));
+
+		// Translations with other passes or options result in other graphs
+		assertNotEquals(key,
+			GraphSnapshot.computeKey(List.of(source), GraphSnapshot.getTranslationOptions(TranslationConfiguration.builder().sourceLocations(source).build())));
+		assertNotEquals(key, GraphSnapshot.computeKey(List.of(source),
+			GraphSnapshot.getTranslationOptions(TranslationConfiguration.builder().sourceLocations(source).defaultPasses().loadIncludes(true).build())));
+		File file = GraphSnapshot.getFile(snapshotDirectory.toFile(), key);
+
+		var db = result.getDatabase();
+		((OverflowDatabase<Node>) db).saveSnapshot(file, key);
+		assertTrue(file.exists());
+
+		OverflowDatabase<Node> loaded = new OverflowDatabase<>(ServerConfiguration.builder().disableOverflow(true).build());
+		try {
+			// Snapshots of other sources are rejected
+			assertFalse(loaded.loadSnapshot(file, GraphSnapshot.computeKey(List.of(), List.of())));
+
+			assertTrue(loaded.loadSnapshot(file, key));
+			assertEquals(db.getNumNodes(), loaded.getNumNodes());
+			assertEquals(
+				db.getGraph().traversal().E().count().next(),
+				loaded.getGraph().traversal().E().count().next());
+
+			// Properties and edges are restored, indices are rebuilt
+			Vertex call = loaded.getGraph().traversal().V().has("code", "p2.start(iv);").next();
+			assertEquals("start", call.property("name").value());
+			assertTrue(Utils.hasLabel(call, CallExpression.class));
+			assertEquals(
+				db.getGraph().traversal().V().has("code", "p2.start(iv);").out("EOG").count().next(),
+				loaded.getGraph().traversal().V(call.id()).out("EOG").count().next());
+			assertEquals(
+				db.getGraph().traversal().V().hasLabel("MethodDeclaration").count().next(),
+				loaded.getGraph().traversal().V().hasLabel("MethodDeclaration").count().next());
+
+			// Vertices are converted back into nodes of their class ...
+			for (Iterator<Vertex> it = loaded.getGraph().vertices(); it.hasNext();) {
+				Vertex v = it.next();
+				Node node = loaded.vertexToNode(v);
+				assertNotNull(node, v.label());
+				assertEquals(v.label(), node.getClass().getSimpleName());
+				assertTrue(Utils.hasLabel(v, Node.class));
+			}
+			assertTrue(loaded.vertexToNode(call) instanceof CallExpression);
+
+			// ... and are found by their superclasses
+			assertTrue(Utils.hasLabel(call, Expression.class));
+			assertTrue(Utils.hasLabel(call, Statement.class));
+			assertFalse(Utils.hasLabel(call, Declaration.class));
+			for (Class<? extends Node> c : List.of(Expression.class, Statement.class, Declaration.class, ValueDeclaration.class)) {
+				Object[] ids = OverflowDatabase.getVertexIdsByLabel(loaded.getGraph(), c);
+				assertNotNull(ids);
+				assertEquals(OverflowDatabase.getVertexIdsByLabel(db.getGraph(), c).length, ids.length, c.getSimpleName());
+			}
+
+			// Corrupt snapshots are rejected
+			byte[] bytes = Files.readAllBytes(file.toPath());
+			bytes[bytes.length / 2] ^= 1;
+			Files.write(file.toPath(), bytes);
+			assertFalse(loaded.loadSnapshot(file, key));
+			assertEquals(0, loaded.getNumNodes());
+		}
+		finally {
+			loaded.close();
+		}
+	}
+
+	@Test
+	void overflowFiles(@TempDir Path overflowDirectory) throws Exception {
+		ServerConfiguration config = ServerConfiguration.builder().overflowDirectory(overflowDirectory.toFile()).build();
+		OverflowDatabase<Node> first = new OverflowDatabase<>(config);
+		OverflowDatabase<Node> second = new OverflowDatabase<>(config);
+		first.connect();
+		second.connect();
+		try {
+			first.saveAll(server.getTranslationResult().getTranslationUnits());
+			assertEquals(result.getDatabase().getNumNodes(), first.getNumNodes());
+			assertEquals(0, first.getOverflowStatistics().getReads());
+			assertEquals(0.0, first.getOverflowStatistics().getReadAmplification());
+
+			// Each database overflows to a file of its own ...
+			try (var files = Files.list(overflowDirectory)) {
+				Set<Path> overflowFiles = files.collect(Collectors.toSet());
+				assertEquals(2, overflowFiles.size(), overflowFiles.toString());
+				for (Path file : overflowFiles) {
+					assertTrue(file.getFileName().toString().startsWith("codyze-overflow-"), file.toString());
+				}
+			}
+		}
+		finally {
+			first.close();
+			second.close();
+		}
+
+		// ... which is removed when it is closed
+		try (var files = Files.list(overflowDirectory)) {
+			assertEquals(0, files.count());
+		}
+	}
+
+	@Test
+	void persistInParallel() throws Exception {
+		// several translation units, so that they are prepared by parallel tasks
+		List<File> sources = new ArrayList<>();
+		for (String name : List.of("unittests/order.java", "unittests/order2.java", "unittests/forbidden.java", "unittests/ConstantTest.java")) {
+			URL resource = OGMTest.class.getClassLoader().getResource(name);
+			assertNotNull(resource);
+			sources.add(new File(resource.getFile()));
+		}
+		TranslationConfiguration config = TranslationConfiguration.builder().sourceLocations(sources.toArray(new File[0])).defaultPasses().build();
+		TranslationResult translationResult = TranslationManager.builder().config(config).build().analyze().get();
+		assertEquals(sources.size(), translationResult.getTranslationUnits().size());
+
+		Set<String> sequential = persist(translationResult, 1);
+		Set<String> parallel = persist(translationResult, 4);
+
+		// with deterministic IDs, the graphs are the same, including the IDs of vertices
+		assertFalse(sequential.isEmpty());
+		assertEquals(sequential, parallel);
+	}
+
+	/**
+	 * Saves a translation result into a new database and returns all of its vertices and edges, each as a string of its ID, label and properties.
+	 */
+	private static Set<String> persist(TranslationResult translationResult, int persistParallelism) {
+		OverflowDatabase<Node> db = new OverflowDatabase<>(
+			ServerConfiguration.builder().disableOverflow(true).persistParallelism(persistParallelism).deterministicIds(true).build());
+		db.connect();
+		try {
+			db.saveAll(translationResult.getTranslationUnits());
+
+			Set<String> contents = new HashSet<>();
+			db.getGraph().vertices().forEachRemaining(v -> {
+				contents.add("vertex " + v.id() + " " + v.label() + " " + propertiesOf(v));
+				v.edges(Direction.OUT)
+						.forEachRemaining(e -> contents.add("edge " + v.id() + " -" + e.label() + "-> " + e.inVertex().id() + " " + propertiesOf(e)));
+			});
+			return contents;
+		}
+		finally {
+			db.close();
+		}
+	}
+
+	private static Map<String, String> propertiesOf(Element element) {
+		Map<String, String> properties = new TreeMap<>();
+		element.properties().forEachRemaining(p -> {
+			Object value = p.value();
+			// arrays are compared by their contents
+			properties.put(p.key(), value != null && value.getClass().isArray() ? Arrays.deepToString(new Object[] { value }) : String.valueOf(value));
+		});
+		return properties;
+	}
+
 	@Test
 	void getContainingFunction() throws Exception {
 		var db = result.getDatabase();
@@ -3,7 +3,10 @@ package de.fraunhofer.aisec.crymlin;
 
 import de.fraunhofer.aisec.analysis.structures.Finding;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.File;
+import java.nio.file.Path;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -28,6 +31,26 @@ class OrderTest extends AbstractMarkTest {
 		check(findings);
 	}
 
+	@Test
+	void checkJavaSnapshot(@TempDir Path snapshotDirectory) throws Exception {
+		this.snapshotDirectory = snapshotDirectory.toFile();
+		Set<String> translated = performTest("unittests/order.java", "unittests/order.mark").stream()
+				.map(Finding::toString)
+				.collect(Collectors.toSet());
+		assertFalse(server.getTranslationResult().getTranslationUnits().isEmpty());
+		File[] snapshots = snapshotDirectory.toFile().listFiles();
+		assertNotNull(snapshots);
+		assertEquals(1, snapshots.length);
+
+		// The second analysis evaluates the rules on the graph of the snapshot, without translating the sources
+		Set<String> loaded = performTest("unittests/order.java", "unittests/order.mark").stream()
+				.map(Finding::toString)
+				.collect(Collectors.toSet());
+		assertTrue(server.getTranslationResult().getTranslationUnits().isEmpty());
+		assertEquals(translated, loaded);
+		check(loaded);
+	}
+
 	private void check(Set<String> findings) {
 
 		assertTrue(
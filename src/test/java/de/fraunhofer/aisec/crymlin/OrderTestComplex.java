@@ -12,6 +12,7 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class OrderTestComplex extends AbstractMarkTest {
@@ -51,4 +52,58 @@ class OrderTestComplex extends AbstractMarkTest {
 	void testCpp() throws Exception {
 		performTestAndCheck("unittests/order2.cpp");
 	}
+
+	@Test
+	void testContexts() throws Exception {
+		Set<Finding> results = performTest("unittests/order2-contexts.java", "unittests/order2.mark");
+		String onfail = " (WrongUseOfBotan_CipherMode): The order of called Botan methods is wrong.";
+
+		// p1 and p2 are used in the same function. p1 is verified, so it does not get the findings of p2.
+		Set<String> twoInstances = results.stream()
+				.filter(f -> f.getRegions().get(0).getStartLine() + 1 >= 7 && f.getRegions().get(0).getStartLine() + 1 <= 17)
+				.map(Finding::toString)
+				.collect(Collectors.toSet());
+		assertEquals(
+			Set.of(
+				"line 8: Verified Order: UseOfBotan2_CipherMode",
+				"line 14: Violation against Order: p2.start(); (startOp) is not allowed. Expected one of: cm.initOp" + onfail,
+				"line 11: Violation against Order: Base p2 is not correctly terminated. Expected one of [cm.initOp] to follow the correct last call on this base."
+						+ onfail),
+			twoInstances);
+
+		// The base of botan().start() does not refer to a variable, so it belongs to the contexts of p3 and p4. Neither of them is verified.
+		Set<String> findings = results.stream().map(Finding::toString).collect(Collectors.toSet());
+		assertTrue(findings.contains("line 30: Violation against Order: botan().start(); (startOp) is not allowed. Expected one of: cm.createOp" + onfail));
+		assertFalse(findings.contains("line 20: Verified Order: UseOfBotan2_CipherMode"));
+		assertFalse(findings.contains("line 21: Verified Order: UseOfBotan2_CipherMode"));
+	}
+
+	@Test
+	void testJoins() throws Exception {
+		Set<Finding> results = performTest("unittests/order2-joins.cpp", "unittests/order2.mark");
+		Set<String> findings = results.stream()
+				.map(Finding::toString)
+				.filter(s -> s.contains("Violation against Order"))
+				.collect(Collectors.toSet());
+
+		String onfail = " (WrongUseOfBotan_CipherMode): The order of called Botan methods is wrong.";
+		assertEquals(
+			Set.of(
+				// only one branch initializes p1, the base stays created on the other one
+				"line 15: Violation against Order: p1.start(); (startOp) is not allowed. Expected one of: cm.initOp" + onfail,
+				"line 9: Violation against Order: Base p1 is not correctly terminated. Expected one of [cm.initOp] to follow the correct last call on this base."
+						+ onfail,
+				// the second iteration of the loop starts again, and the loop may also not be entered at all
+				"line 24: Violation against Order: p2.start(); (startOp) is not allowed. Expected one of: cm.finishOp, cm.processOp" + onfail,
+				"line 26: Violation against Order: p2.finish(); (finishOp) is not allowed. Expected one of: cm.startOp" + onfail,
+				"line 22: Violation against Order: Base p2 is not correctly terminated. Expected one of [cm.startOp] to follow the correct last call on this base."
+						+ onfail,
+				"line 24: Violation against Order: Base p2 is not correctly terminated. Expected one of [cm.finishOp, cm.processOp] to follow the correct last call on this base."
+						+ onfail,
+				// p3 is disallowed after start(), so process() is ignored and p3 is left after create()
+				"line 32: Violation against Order: p3.start(); (startOp) is not allowed. Expected one of: cm.initOp" + onfail,
+				"line 31: Violation against Order: Base p3 is not correctly terminated. Expected one of [cm.initOp] to follow the correct last call on this base."
+						+ onfail),
+			findings);
+	}
 }
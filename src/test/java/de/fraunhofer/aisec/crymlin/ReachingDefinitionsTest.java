@@ -0,0 +1,54 @@
+
+package de.fraunhofer.aisec.crymlin;
+
+import de.fraunhofer.aisec.analysis.structures.ConstantValue;
+import de.fraunhofer.aisec.crymlin.dsl.CrymlinTraversalSource;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the values {@code CrymlinQueryWrapper.resolveConstantValues} resolves from the reaching definitions of a reference.
+ */
+class ReachingDefinitionsTest extends AbstractMarkTest {
+
+	@Test
+	void testResolveConstantValues() throws Exception {
+		performTest("mark_cpp/reaching_definitions.cpp", "mark_cpp/int.mark");
+
+		Map<String, Set<Object>> valuesByFunction = new HashMap<>();
+		CrymlinTraversalSource crymlin = ctx.getDatabase().getGraph().traversal(CrymlinTraversalSource.class);
+		for (Vertex call : crymlin.calls().has("name", "call").toList()) {
+			Optional<Vertex> function = CrymlinQueryWrapper.getContainingFunction(call, crymlin);
+			assertTrue(function.isPresent());
+
+			List<Vertex> arguments = CrymlinQueryWrapper.getArguments(call);
+			assertEquals(1, arguments.size());
+
+			Optional<Set<ConstantValue>> values = CrymlinQueryWrapper.resolveConstantValues(ctx, crymlin, arguments.get(0));
+			assertTrue(values.isPresent());
+			valuesByFunction.put(function.get().value("name"), values.get().stream().map(ConstantValue::getValue).collect(Collectors.toSet()));
+		}
+
+		assertEquals(Map.of(
+			// both assignments in an if/else reach the use
+			"branches", Set.of(42, 43),
+			// only the last of several assignments reaches the use, the initializer is overwritten
+			"straightLine", Set.of(43),
+			// the initializer reaches the use on the path skipping the assignment
+			"overwrittenInBranch", Set.of(1, 42),
+			// the last expression of the list is assigned
+			"expressionList", Set.of(42),
+			// the referenced variable has the values it had at the assignment, not the ones assigned later
+			"referenceInExpressionList", Set.of(23, 42)), valuesByFunction);
+	}
+}
@@ -3,8 +3,15 @@ package de.fraunhofer.aisec.crymlin;
 
 import de.fraunhofer.aisec.analysis.structures.ConstantValue;
 import de.fraunhofer.aisec.analysis.structures.ErrorValue;
+import de.fraunhofer.aisec.analysis.structures.LongObjectMap;
+import de.fraunhofer.aisec.analysis.structures.LongPairSet;
+import de.fraunhofer.aisec.crymlin.connectors.db.StringPool;
 import org.junit.jupiter.api.Test;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class StructuresTest {
@@ -26,4 +33,63 @@ public class StructuresTest {
 		assertNotEquals(oneCV, new Object());
 	}
 
+	@Test
+	public void testLongObjectMap() {
+		LongObjectMap<String> map = new LongObjectMap<>();
+		Map<Long, String> expected = new HashMap<>();
+		Random random = new Random(42);
+
+		// Small key range, so that puts, overwrites and removes interleave
+		for (int i = 0; i < 100_000; i++) {
+			long key = random.nextInt(5_000) - 100;
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(key), map.remove(key));
+			} else {
+				String value = "v" + i;
+				assertEquals(expected.put(key, value), map.put(key, value));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+		for (long key = -100; key < 4_900; key++) {
+			assertEquals(expected.get(key), map.get(key));
+		}
+
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertNull(map.get(1));
+	}
+
+	@Test
+	public void testLongPairSet() {
+		LongPairSet set = new LongPairSet();
+		for (long i = 0; i < 1_000; i++) {
+			assertTrue(set.add(i, i + 1));
+			assertTrue(set.add(i + 1, i));
+		}
+		assertEquals(2_000, set.size());
+		assertFalse(set.add(5, 6));
+		assertTrue(set.contains(6, 5));
+		assertFalse(set.contains(5, 7));
+
+		set.clear();
+		assertFalse(set.contains(5, 6));
+		assertEquals(0, set.size());
+	}
+
+	@Test
+	public void testStringPool() {
+		StringPool pool = new StringPool();
+		String first = new String("Main.java");
+		String second = new String("Main.java");
+
+		assertSame(first, pool.intern("file", first));
+		assertSame(first, pool.intern("file", second));
+		assertEquals(1, pool.getDuplicates());
+		assertTrue(pool.getBytesSaved() > 0);
+
+		// Values of other properties and non-strings are not pooled
+		assertSame(second, pool.intern("value", second));
+		assertEquals(42, (int) pool.intern("name", 42));
+		assertEquals(2, pool.getLookups());
+	}
 }
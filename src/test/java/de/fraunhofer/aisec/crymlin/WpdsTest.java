@@ -1,10 +1,14 @@
 
 package de.fraunhofer.aisec.crymlin;
 
+import de.breakpointsec.pushdown.weights.Semiring;
 import de.fraunhofer.aisec.analysis.structures.Finding;
 import de.fraunhofer.aisec.analysis.structures.TypestateMode;
 import de.fraunhofer.aisec.analysis.wpds.NFA;
 import de.fraunhofer.aisec.analysis.wpds.NFATransition;
+import de.fraunhofer.aisec.analysis.wpds.TransitionMatrix;
+import de.fraunhofer.aisec.analysis.wpds.TypestateWeight;
+import de.fraunhofer.aisec.crymlin.connectors.db.OverflowDatabase;
 import de.fraunhofer.aisec.mark.XtextParser;
 import de.fraunhofer.aisec.mark.markDsl.OrderExpression;
 import de.fraunhofer.aisec.markmodel.fsm.FSM;
@@ -89,6 +93,57 @@ class WpdsTest extends AbstractMarkTest {
 		}
 	}
 
+	@Test
+	void testMatrixWeights() throws Exception {
+		XtextParser parser = new XtextParser();
+		parser.addMarkFile(new File("src/test/resources/unittests/nfa-test.mark"));
+		OrderExpression expr = (OrderExpression) parser
+				.parse()
+				.values()
+				.iterator()
+				.next()
+				.getRule()
+				.get(0)
+				.getStmt()
+				.getEnsure()
+				.getExp();
+		NFA nfa = NFA.of(expr.getExp());
+
+		// Extend and combine each single transition with the whole NFA in both representations
+		TypestateWeight all = new TypestateWeight(nfa.getTransitions());
+		TransitionMatrix.Interner interner = new TransitionMatrix.Interner();
+		TypestateWeight allMatrix = new TypestateWeight(TransitionMatrix.of(interner, nfa.getTransitions()));
+		for (NFATransition<Node> t : nfa.getTransitions()) {
+			TypestateWeight single = new TypestateWeight(Set.of(t));
+			TypestateWeight singleMatrix = new TypestateWeight(TransitionMatrix.of(interner, Set.of(t)));
+
+			assertEquals(edges(single.extendWith(all)), edges(singleMatrix.extendWith(allMatrix)));
+			assertEquals(edges(all.extendWith(single)), edges(allMatrix.extendWith(singleMatrix)));
+			assertEquals(edges(single.combineWith(all)), edges(singleMatrix.combineWith(allMatrix)));
+
+			// Mixed representations are converted to matrices
+			assertEquals(edges(single.extendWith(all)), edges(single.extendWith(allMatrix)));
+		}
+
+		// Typestates are numbered per interner, so matrices of different interners are neither equal nor combined
+		TransitionMatrix other = TransitionMatrix.of(new TransitionMatrix.Interner(), nfa.getTransitions());
+		assertNotEquals(TransitionMatrix.of(interner, nfa.getTransitions()), other);
+		assertThrows(IllegalArgumentException.class, () -> other.multiply(TransitionMatrix.of(interner, nfa.getTransitions())));
+	}
+
+	/**
+	 * Returns the source and target of all transitions of a weight, ignoring their labels.
+	 */
+	@SuppressWarnings("unchecked")
+	private Set<String> edges(Semiring weight) {
+		if (weight.equals(TypestateWeight.zero())) {
+			return Set.of();
+		}
+		return ((Set<NFATransition<Node>>) weight.value()).stream()
+				.map(t -> t.getSource() + " -> " + t.getTarget())
+				.collect(Collectors.toSet());
+	}
+
 	/**
 	 * Test for issue 88.
 	 *
@@ -290,6 +345,68 @@ class WpdsTest extends AbstractMarkTest {
 		assertTrue(startLineNumbers.get(32)); // isProblem
 	}
 
+	@Test
+	void testCppInterprocNOk1ShallowNodes() throws Exception {
+		Set<String> expected = performTest("unittests/orderInterprocNOk1.cpp", "unittests/order2.mark").stream()
+				.map(Finding::toString)
+				.collect(Collectors.toSet());
+		int allMaterializedNodes = ((OverflowDatabase<?>) ctx.getDatabase()).getMaxNumMaterializedNodes();
+
+		// Convert only direct neighbors of a vertex and keep few nodes, so that the analysis runs into incomplete and evicted nodes
+		nodeMaterializationDepth = 1;
+		nodeCacheSize = 8;
+		Set<String> findings = performTest("unittests/orderInterprocNOk1.cpp", "unittests/order2.mark").stream()
+				.map(Finding::toString)
+				.collect(Collectors.toSet());
+
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, findings);
+
+		// The analysis stayed within the bounds
+		OverflowDatabase<?> db = (OverflowDatabase<?>) ctx.getDatabase();
+		assertTrue(db.getMaxNumCachedNodes() > 0);
+		assertTrue(db.getMaxNumCachedNodes() <= nodeCacheSize);
+		assertTrue(db.getMaxNumMaterializedNodes() < allMaterializedNodes);
+	}
+
+	@Test
+	void testCppInterprocNOk1LazyCode() throws Exception {
+		Set<String> expected = performTest("unittests/orderInterprocNOk1.cpp", "unittests/order2.mark").stream()
+				.map(Finding::toString)
+				.collect(Collectors.toSet());
+
+		// Calls into functions are followed if their first statement has code, which is now read from the sources
+		lazyCode = true;
+		Set<String> findings = performTest("unittests/orderInterprocNOk1.cpp", "unittests/order2.mark").stream()
+				.map(Finding::toString)
+				.collect(Collectors.toSet());
+
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, findings);
+	}
+
+	@Test
+	void testWpdsReusedAcrossFiles() throws Exception {
+		// p2 in wpds-nok1.cpp and p2 in orderInterprocNOk2.cpp are two instances of the same rule
+		@NonNull
+		Set<Finding> findings = performTest("unittests/wpds-nok1.cpp", new String[] { "unittests/orderInterprocNOk2.cpp" }, "unittests/order2.mark");
+
+		// The WPDS is created once for the rule and shared by both contexts ...
+		assertEquals(1, ctx.getTypestateWpds().size());
+
+		// ... but findings are reported in the file of the instance they belong to. Line numbers of the range are the actual line numbers -1.
+		assertTrue(hasProblemAt(findings, "wpds-nok1.cpp", 22));
+		assertTrue(hasProblemAt(findings, "wpds-nok1.cpp", 24));
+		assertTrue(hasProblemAt(findings, "orderInterprocNOk2.cpp", 30));
+	}
+
+	private static boolean hasProblemAt(Set<Finding> findings, String fileName, int startLine) {
+		return findings.stream()
+				.filter(Finding::isProblem)
+				.anyMatch(f -> f.getRegions().get(0).getStartLine() == startLine
+						&& f.getLocations().get(0).getArtifactLocation().getUri().getPath().endsWith("/" + fileName));
+	}
+
 	@Test
 	void testCppInterprocNOk2() throws Exception {
 		@NonNull
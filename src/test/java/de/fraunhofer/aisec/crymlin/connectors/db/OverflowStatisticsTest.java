@@ -0,0 +1,65 @@
+
+package de.fraunhofer.aisec.crymlin.connectors.db;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the counts of {@link OverflowStatistics} for a sequence of node creations, as reported by the node factories of OverflowDB.
+ */
+class OverflowStatisticsTest {
+
+	@Test
+	void testNoReads() {
+		OverflowStatistics stats = new OverflowStatistics();
+		for (long id = 0; id < 10; id++) {
+			stats.nodeCreated(id);
+		}
+
+		assertEquals(0, stats.getNodesReadBack());
+		assertEquals(0, stats.getReads());
+		assertEquals(0.0, stats.getReadAmplification());
+	}
+
+	@Test
+	void testReads() {
+		OverflowStatistics stats = new OverflowStatistics();
+		// vertices 1 to 4 are added
+		for (long id = 1; id <= 4; id++) {
+			stats.nodeCreated(id);
+		}
+		// node 2 is read back three times, node 3 once
+		stats.nodeCreated(2);
+		stats.nodeCreated(3);
+		stats.nodeCreated(2);
+		stats.nodeCreated(2);
+
+		assertEquals(2, stats.getNodesReadBack());
+		assertEquals(4, stats.getReads());
+		assertEquals(2.0, stats.getReadAmplification());
+	}
+
+	@Test
+	void testIdsOutOfRange() {
+		OverflowStatistics stats = new OverflowStatistics();
+		stats.nodeCreated(-1);
+		stats.nodeCreated(-1);
+		stats.nodeCreated(Integer.MAX_VALUE + 1L);
+		stats.nodeCreated(Integer.MAX_VALUE + 1L);
+
+		assertEquals(0, stats.getReads());
+	}
+
+	@Test
+	void testOverflowed() {
+		OverflowStatistics stats = new OverflowStatistics();
+		stats.nodeCreated(7);
+		stats.nodeCreated(7);
+		stats.setOverflowed(5, 3 * 1024);
+
+		assertEquals(5, stats.getOverflowedNodes());
+		assertEquals(3 * 1024, stats.getStorageBytes());
+		assertEquals("5 nodes on disk (3 KiB), 1 nodes read back 1 times (read amplification 1.00)", stats.toString());
+	}
+}
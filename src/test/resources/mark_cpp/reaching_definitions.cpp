@@ -0,0 +1,53 @@
+class Test {
+  public:
+  int call(int a) {
+    return a + 1;
+  }
+};
+
+int branches(int cond) {
+  int foo = 1;
+  if (cond) {
+    foo = 42;
+  } else {
+    foo = 43;
+  }
+  Test t;
+  t.call(foo);
+}
+
+int straightLine() {
+  int foo = 1;
+  foo = 42;
+  foo = 43;
+  Test t;
+  t.call(foo);
+}
+
+int overwrittenInBranch(int cond) {
+  int foo = 1;
+  if (cond) {
+    foo = 42;
+  }
+  Test t;
+  t.call(foo);
+}
+
+int expressionList() {
+  int foo = 1;
+  foo = (1, 2, 42);
+  Test t;
+  t.call(foo);
+}
+
+int referenceInExpressionList(int cond) {
+  int x = 23;
+  if (cond) {
+    x = 42;
+  }
+  int foo = 1;
+  foo = (1, x);
+  x = 43;
+  Test t;
+  t.call(foo);
+}
@@ -0,0 +1,22 @@
+class Rng {
+    public Rng() {}
+}
+
+class Sink {
+    public Sink(Object data) {}
+}
+
+class bla {
+
+    public void flow() {
+        Rng r = new Rng();
+        Object data = r;
+        Sink s = new Sink(data);
+    }
+
+    public void noFlow() {
+        Rng r = new Rng();
+        Object data = new Object();
+        Sink s = new Sink(data);
+    }
+}
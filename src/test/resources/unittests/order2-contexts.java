@@ -0,0 +1,50 @@
+public class Contexts {
+  // DOES NOT COMPILE
+
+  // allowed:
+  // cm.create(), cm.init(), (cm.start(), cm.process()*, cm.finish())+, cm.reset()?
+
+  void twoInstances() {
+    Botan2 p1 = new Botan2(1);
+    Botan2 p2 = new Botan2(1);
+    p1.create();
+    p2.create();
+    p1.init();
+    p1.start();
+    p2.start();
+    p1.finish();
+    p2.finish();
+  }
+
+  void unreferencedBase() {
+    Botan2 p3 = new Botan2(1);
+    Botan2 p4 = new Botan2(1);
+    p3.create();
+    p4.create();
+    p3.init();
+    p4.init();
+    p3.start();
+    p4.start();
+    p3.finish();
+    p4.finish();
+    botan().start();
+  }
+
+  Botan2 botan() {
+    return null;
+  }
+}
+
+public class Botan2 {
+  public void create() {}
+
+  public void finish() {}
+
+  public void init() {}
+
+  public void process() {}
+
+  public void reset() {}
+
+  public void start() {}
+}
@@ -0,0 +1,34 @@
+
+// DOES NOT COMPILE
+
+// allowed:
+// cm.create(), cm.init(), (cm.start(), cm.process()*, cm.finish())+, cm.reset()?
+
+  void branch(int cond) {
+    Botan2 p1 = new Botan2(1);
+    p1.create();
+    if (cond) {
+      p1.init();
+    } else {
+      cond = 0;
+    }
+    p1.start();
+    p1.finish();
+  }
+
+  void loop(int cond) {
+    Botan2 p2 = new Botan2(1);
+    p2.create();
+    p2.init();
+    while (cond) {
+      p2.start();
+    }
+    p2.finish();
+  }
+
+  void disallowed() {
+    Botan2 p3 = new Botan2(1);
+    p3.create();
+    p3.start();
+    p3.process();
+  }